@@ -0,0 +1,11 @@
+package com.fintech.benchmarks;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Same benchmarks as {@link TransactionServiceBenchmark} with one thread per core.
+ */
+@Threads(Threads.MAX)
+public class ContendedTransactionServiceBenchmark extends TransactionServiceBenchmark {
+
+}
@@ -0,0 +1,109 @@
+package com.fintech.benchmarks;
+
+import com.fintech.dao.DbConnectionManager;
+import com.fintech.dao.OperationDao;
+import com.fintech.dao.impl.DbOperationDao;
+import com.fintech.dao.impl.JournalOperationDao;
+import com.fintech.models.Money;
+import com.fintech.models.dao.OperationDaoEntity;
+import com.zaxxer.hikari.HikariConfig;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Compares OPERATIONS rows in H2 with the memory-mapped {@link JournalOperationDao}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+public class OperationDaoBenchmark {
+
+  private static final int ACCOUNTS = 1000;
+  private static final int PRELOADED = 10_000;
+  private static final Money AMOUNT = Money.of(1234);
+
+  @Param({"database", "journal"})
+  private String store;
+
+  private OperationDao<OperationDaoEntity, Long> operationDao;
+  private Path directory;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    if ("journal".equals(store)) {
+      directory = Files.createTempDirectory("operations");
+      operationDao = new JournalOperationDao(directory);
+    } else {
+      HikariConfig config = new HikariConfig();
+      config.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID());
+      config.setUsername("sa");
+      config.setPassword("sa");
+
+      DbConnectionManager.setConfig(config);
+      DbConnectionManager.create();
+      operationDao = new DbOperationDao();
+    }
+
+    for (int i = 0; i < PRELOADED; i++) {
+      operationDao.insert(operation("KZ" + i % ACCOUNTS));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (operationDao instanceof JournalOperationDao) {
+      ((JournalOperationDao) operationDao).close();
+      try (Stream<Path> files = Files.walk(directory)) {
+        files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+      }
+    } else {
+      DbConnectionManager.close();
+    }
+  }
+
+  @Benchmark
+  public OperationDaoEntity insert() {
+    return operationDao.insert(operation(randomAccount()));
+  }
+
+  @Benchmark
+  public Money accountBalance() {
+    return operationDao.accountBalance(randomAccount());
+  }
+
+  @Benchmark
+  public OperationDaoEntity getById() {
+    return operationDao.getById(1 + ThreadLocalRandom.current().nextLong(PRELOADED));
+  }
+
+  private OperationDaoEntity operation(String account) {
+    OperationDaoEntity entity = new OperationDaoEntity();
+    entity.setAccountNumber(account);
+    entity.setDebit(AMOUNT);
+
+    return entity;
+  }
+
+  private String randomAccount() {
+    return "KZ" + ThreadLocalRandom.current().nextInt(ACCOUNTS);
+  }
+
+}
@@ -0,0 +1,132 @@
+package com.fintech.benchmarks;
+
+import com.fintech.dao.DbConnectionManager;
+import com.fintech.dao.impl.DbAccountDao;
+import com.fintech.dao.impl.DbOperationDao;
+import com.fintech.dao.impl.DbTransactionManager;
+import com.fintech.dao.impl.DbTransferDao;
+import com.fintech.dao.impl.DbUserDao;
+import com.fintech.models.Money;
+import com.fintech.models.TransferOperation;
+import com.fintech.models.User;
+import com.fintech.services.AccountService;
+import com.fintech.services.TransactionService;
+import com.fintech.services.UserService;
+import com.fintech.services.impl.DefaultAccountService;
+import com.fintech.services.impl.DefaultTransactionService;
+import com.fintech.services.impl.DefaultUserService;
+import com.fintech.services.impl.GroupCommitTransactionService;
+import com.zaxxer.hikari.HikariConfig;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Transaction service against a fresh in-memory H2 database per trial.
+ *
+ * <p>{@code accounts} decides how spread the load is: with two accounts every call
+ * hits the same hot pair, with many accounts calls rarely meet. {@code groupCommit}
+ * puts transfers through {@link GroupCommitTransactionService}, {@code concurrency}
+ * picks how debits are guarded. Run with
+ * {@code gradle jmh -PjmhThreads=N} to sweep thread counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(1)
+public class TransactionServiceBenchmark {
+
+  private static final Money INITIAL_BALANCE = Money.parse("1000000000000");
+  private static final Money AMOUNT = Money.parse("1");
+  private static final int GROUP_COMMIT_MAX_BATCH = 512;
+  private static final long GROUP_COMMIT_WINDOW_MICROS = 2000;
+  private static final int TRANSACTION_ATTEMPTS = 20;
+
+  @Param({"2", "1000"})
+  private int accounts;
+
+  @Param({"false", "true"})
+  private boolean groupCommit;
+
+  @Param({"PESSIMISTIC", "OPTIMISTIC"})
+  private DbOperationDao.Concurrency concurrency;
+
+  private TransactionService transactionService;
+  private String[] numbers;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    HikariConfig config = new HikariConfig();
+    config.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID());
+    config.setUsername("sa");
+    config.setPassword("sa");
+    config.setMaximumPoolSize(Runtime.getRuntime().availableProcessors() * 2);
+
+    DbConnectionManager.setConfig(config);
+    DbConnectionManager.create();
+
+    UserService userService = new DefaultUserService(new DbUserDao());
+    AccountService accountService = new DefaultAccountService(new DbAccountDao(), userService);
+    transactionService = new DefaultTransactionService(new DbOperationDao(concurrency),
+        new DbTransferDao(), accountService, new DbTransactionManager(TRANSACTION_ATTEMPTS));
+    if (groupCommit) {
+      transactionService = new GroupCommitTransactionService(transactionService,
+          GROUP_COMMIT_MAX_BATCH, GROUP_COMMIT_WINDOW_MICROS, TimeUnit.MICROSECONDS);
+    }
+
+    User user = userService.save(User.builder().fullName("Benchmark").build());
+    numbers = new String[accounts];
+    for (int i = 0; i < accounts; i++) {
+      numbers[i] = accountService.addAccountToUser(user.getId(), "KZT").getNumber();
+      transactionService.cashIn(numbers[i], INITIAL_BALANCE);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (transactionService instanceof GroupCommitTransactionService) {
+      ((GroupCommitTransactionService) transactionService).close();
+    }
+    DbConnectionManager.close();
+  }
+
+  @Benchmark
+  public void transfer() {
+    int from = ThreadLocalRandom.current().nextInt(accounts);
+    int to = (from + 1 + ThreadLocalRandom.current().nextInt(accounts - 1)) % accounts;
+
+    transactionService.transfer(TransferOperation.builder()
+        .accountFrom(numbers[from]).accountTo(numbers[to]).amount(AMOUNT).build());
+  }
+
+  @Benchmark
+  public void withdraw() {
+    transactionService.withdraw(randomAccount(), AMOUNT);
+  }
+
+  @Benchmark
+  public void cashIn() {
+    transactionService.cashIn(randomAccount(), AMOUNT);
+  }
+
+  @Benchmark
+  public Money balance() {
+    return transactionService.balance(randomAccount());
+  }
+
+  private String randomAccount() {
+    return numbers[ThreadLocalRandom.current().nextInt(accounts)];
+  }
+
+}
@@ -21,7 +21,7 @@ public class Application {
 
     Undertow server = Undertow.builder()
         .addHttpListener(8080, "0.0.0.0")
-        .setHandler(Router.getInstance().routingHandler())
+        .setHandler(Router.getInstance().httpHandler())
         .build();
 
     server.start();
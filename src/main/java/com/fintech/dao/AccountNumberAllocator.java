@@ -0,0 +1,7 @@
+package com.fintech.dao;
+
+public interface AccountNumberAllocator {
+
+  String next();
+
+}
@@ -0,0 +1,11 @@
+package com.fintech.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface BatchBinder<T> {
+
+  void bind(PreparedStatement statement, T row) throws SQLException;
+
+}
@@ -0,0 +1,11 @@
+package com.fintech.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface ConnectionCallback<T> {
+
+  T execute(Connection connection) throws SQLException;
+
+}
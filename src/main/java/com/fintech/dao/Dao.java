@@ -12,6 +12,8 @@ public interface Dao<T, I> {
 
   List<T> findAll(Integer limit, Integer offset);
 
+  List<T> findAllAfter(I after, Integer limit);
+
   void deleteById(I id);
 
   void delete(T obj);
@@ -2,13 +2,20 @@ package com.fintech.dao;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Locale;
 import java.util.Objects;
 import org.flywaydb.core.Flyway;
 
 public class DbConnectionManager {
 
+  private static final ThreadLocal<Connection> TRANSACTION = new ThreadLocal<>();
+  private static final String STATEMENT_CACHE_SETTING = "QUERY_CACHE_SIZE";
+  private static final int STATEMENT_CACHE_SIZE = 64;
+
   private static HikariConfig config;
   private static HikariDataSource ds;
 
@@ -19,6 +26,11 @@ public class DbConnectionManager {
     DbConnectionManager.config = config;
   }
 
+  /**
+   * Creates the pool and migrates the database. Unless the H2 URL sets its own
+   * {@code QUERY_CACHE_SIZE}, every connection caches the last {@value #STATEMENT_CACHE_SIZE}
+   * parsed statements instead of the default 8, enough for all the DAO statements.
+   */
   public static void create() {
     if (Objects.isNull(config)) {
       config = new HikariConfig();
@@ -26,6 +38,11 @@ public class DbConnectionManager {
       config.setUsername("sa");
       config.setPassword("sa");
     }
+    String url = config.getJdbcUrl();
+    if (url.startsWith("jdbc:h2:")
+        && !url.toUpperCase(Locale.ROOT).contains(STATEMENT_CACHE_SETTING)) {
+      config.setJdbcUrl(url + ";" + STATEMENT_CACHE_SETTING + "=" + STATEMENT_CACHE_SIZE);
+    }
     ds = new HikariDataSource(config);
 
     Flyway flyway = Flyway.configure()
@@ -39,11 +56,74 @@ public class DbConnectionManager {
     }
   }
 
+  /**
+   * Returns a pooled connection, or the connection of the unit of work bound to the
+   * current thread. Closing the latter is a no-op, it is released on commit or rollback.
+   */
   public static Connection getConnection() {
+    Connection transaction = TRANSACTION.get();
+    if (Objects.nonNull(transaction)) {
+      return unclosable(transaction);
+    }
+
     try {
       return ds.getConnection();
     } catch (SQLException e) {
       throw new RuntimeException(e);
     }
   }
+
+  /**
+   * Checks if the current thread runs inside a unit of work.
+   */
+  public static boolean isInTransaction() {
+    return Objects.nonNull(TRANSACTION.get());
+  }
+
+  /**
+   * Runs the callback as a single unit of work: every DAO call made by the current thread
+   * inside it shares one connection, committed once when the outermost callback returns.
+   * Nested calls join the running unit of work.
+   */
+  public static <T> T inTransaction(ConnectionCallback<T> callback) {
+    Connection transaction = TRANSACTION.get();
+    try {
+      if (Objects.nonNull(transaction)) {
+        return callback.execute(unclosable(transaction));
+      }
+
+      try (Connection connection = ds.getConnection()) {
+        connection.setAutoCommit(false);
+        TRANSACTION.set(connection);
+        try {
+          T result = callback.execute(unclosable(connection));
+          connection.commit();
+
+          return result;
+        } catch (SQLException | RuntimeException | Error e) {
+          connection.rollback();
+          throw e;
+        } finally {
+          TRANSACTION.remove();
+        }
+      }
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static Connection unclosable(Connection connection) {
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+        new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+          if ("close".equals(method.getName())) {
+            return null;
+          }
+
+          try {
+            return method.invoke(connection, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+  }
 }
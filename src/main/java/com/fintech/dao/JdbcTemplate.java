@@ -0,0 +1,379 @@
+package com.fintech.dao;
+
+import com.fintech.utils.Config;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Runs the statements of the DAOs: prepares them on {@link DbConnectionManager#getConnection()},
+ * so they join the unit of work of the current thread if there is one, applies the fetch size
+ * and query timeout, and closes every statement and result set before returning.
+ *
+ * <p>Closing statements is also what makes the per-connection statement cache work: H2 keeps
+ * the parsed statements of a session in a cache of {@code QUERY_CACHE_SIZE} entries, see
+ * {@link DbConnectionManager#create()}, and can only hand a cached one out again once the
+ * statement that used it is closed.
+ *
+ * <p>Every {@link SQLException} is rethrown wrapped in a {@link RuntimeException}.
+ *
+ * <p>The shared template is set up from {@code db.fetch-size} and
+ * {@code db.query-timeout-seconds}, {@code 0} leaves the driver default for either.
+ */
+public class JdbcTemplate {
+
+  private static final int BATCH_SIZE = 1000;
+  private static final int STREAM_FETCH_SIZE = 1000;
+
+  private final int fetchSize;
+  private final int queryTimeoutSeconds;
+  private final List<StatementListener> listeners = new CopyOnWriteArrayList<>();
+
+  public JdbcTemplate(int fetchSize, int queryTimeoutSeconds) {
+    this.fetchSize = fetchSize;
+    this.queryTimeoutSeconds = queryTimeoutSeconds;
+  }
+
+  public static JdbcTemplate shared() {
+    return Shared.INSTANCE;
+  }
+
+  public void addListener(StatementListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(StatementListener listener) {
+    listeners.remove(listener);
+  }
+
+  public <T> List<T> query(String sql, RowMapper<T> mapper) {
+    return query(sql, statement -> { }, mapper);
+  }
+
+  public <T> List<T> query(String sql, StatementBinder binder, RowMapper<T> mapper) {
+    return execute(sql, null, statement -> {
+      binder.bind(statement);
+
+      List<T> rows = new ArrayList<>();
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          rows.add(mapper.map(resultSet));
+        }
+      }
+
+      return rows;
+    });
+  }
+
+  /**
+   * Maps the first row of the result.
+   *
+   * @return null if there are no rows
+   */
+  public <T> T queryOne(String sql, StatementBinder binder, RowMapper<T> mapper) {
+    return execute(sql, null, statement -> {
+      binder.bind(statement);
+
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next() ? mapper.map(resultSet) : null;
+      }
+    });
+  }
+
+  /**
+   * Checks if the query returns any row.
+   */
+  public boolean exists(String sql, StatementBinder binder) {
+    return execute(sql, null, statement -> {
+      binder.bind(statement);
+
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next();
+      }
+    });
+  }
+
+  /**
+   * Runs an insert, update or delete.
+   *
+   * @return the number of rows changed
+   */
+  public int update(String sql, StatementBinder binder) {
+    return execute(sql, null, statement -> {
+      binder.bind(statement);
+
+      return statement.executeUpdate();
+    });
+  }
+
+  /**
+   * Runs an insert and maps the {@code keyColumns} of the inserted row, they may name
+   * any column the database fills in, not only the identity.
+   *
+   * @throws IllegalArgumentException if the driver returns no keys
+   */
+  public <K> K insert(String sql, String[] keyColumns, StatementBinder binder,
+                      RowMapper<K> keyMapper) {
+    return execute(sql, keyColumns, statement -> {
+      binder.bind(statement);
+      statement.executeUpdate();
+
+      try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+        if (!generatedKeys.next()) {
+          throw new IllegalArgumentException("Persistence error");
+        }
+
+        return keyMapper.map(generatedKeys);
+      }
+    });
+  }
+
+  /**
+   * Runs the statement once per row, sent to the database in batches of at most
+   * {@value #BATCH_SIZE} rows.
+   *
+   * @return the number of rows changed by every run, in the order of {@code rows}
+   */
+  public <T> int[] batch(String sql, List<T> rows, BatchBinder<T> binder) {
+    return execute(sql, null, statement -> {
+      int[] updated = new int[rows.size()];
+      for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+        int to = Math.min(from + BATCH_SIZE, rows.size());
+        for (T row : rows.subList(from, to)) {
+          binder.bind(statement, row);
+          statement.addBatch();
+        }
+
+        int[] counts = statement.executeBatch();
+        System.arraycopy(counts, 0, updated, from, counts.length);
+      }
+
+      return updated;
+    });
+  }
+
+  /**
+   * Batched counterpart of {@link #insert}.
+   *
+   * @return the mapped keys in the order of {@code rows}
+   * @throws IllegalArgumentException if the driver doesn't return a key for every row
+   */
+  public <T, K> List<K> batchInsert(String sql, String[] keyColumns, List<T> rows,
+                                    BatchBinder<T> binder, RowMapper<K> keyMapper) {
+    return execute(sql, keyColumns, statement -> {
+      List<K> keys = new ArrayList<>(rows.size());
+      for (int from = 0; from < rows.size(); from += BATCH_SIZE) {
+        int to = Math.min(from + BATCH_SIZE, rows.size());
+        for (T row : rows.subList(from, to)) {
+          binder.bind(statement, row);
+          statement.addBatch();
+        }
+        statement.executeBatch();
+
+        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+          while (generatedKeys.next()) {
+            keys.add(keyMapper.map(generatedKeys));
+          }
+        }
+      }
+      if (keys.size() != rows.size()) {
+        throw new IllegalArgumentException("Persistence error");
+      }
+
+      return keys;
+    });
+  }
+
+  /**
+   * Reads the rows one at a time from a forward-only cursor, for results too large to
+   * hold in memory. H2 is switched to lazy execution on the connection for as long as the
+   * stream is open, so it doesn't build the whole result either. The query timeout doesn't
+   * apply, the stream may be read as slowly as the client takes it.
+   *
+   * <p>The stream holds a connection and must be closed, the listeners are called then.
+   */
+  public <T> Stream<T> stream(String sql, StatementBinder binder, RowMapper<T> mapper) {
+    Cursor<T> cursor = new Cursor<>(sql, mapper);
+    cursor.open(binder, fetchSize > 0 ? fetchSize : STREAM_FETCH_SIZE);
+
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor,
+        Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(cursor::close);
+  }
+
+  private <T> T execute(String sql, String[] keyColumns, StatementCallback<T> callback) {
+    long started = System.nanoTime();
+    boolean failed = true;
+
+    try (Connection connection = DbConnectionManager.getConnection();
+         PreparedStatement statement = prepare(connection, sql, keyColumns)) {
+      T result = callback.execute(statement);
+      failed = false;
+
+      return result;
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    } finally {
+      executed(sql, started, failed);
+    }
+  }
+
+  private PreparedStatement prepare(Connection connection, String sql, String[] keyColumns)
+      throws SQLException {
+    PreparedStatement statement = Objects.isNull(keyColumns)
+        ? connection.prepareStatement(sql)
+        : connection.prepareStatement(sql, keyColumns);
+    if (fetchSize > 0) {
+      statement.setFetchSize(fetchSize);
+    }
+    if (queryTimeoutSeconds > 0) {
+      statement.setQueryTimeout(queryTimeoutSeconds);
+    }
+
+    return statement;
+  }
+
+  private void executed(String sql, long started, boolean failed) {
+    long elapsed = System.nanoTime() - started;
+    for (StatementListener listener : listeners) {
+      listener.executed(sql, elapsed, failed);
+    }
+  }
+
+  @FunctionalInterface
+  private interface StatementCallback<T> {
+
+    T execute(PreparedStatement statement) throws SQLException;
+
+  }
+
+  private final class Cursor<T> implements Iterator<T> {
+
+    private final String sql;
+    private final RowMapper<T> mapper;
+    private final long started = System.nanoTime();
+
+    private Connection connection;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+    private Boolean hasNext;
+    private boolean failed;
+    private boolean closed;
+
+    private Cursor(String sql, RowMapper<T> mapper) {
+      this.sql = sql;
+      this.mapper = mapper;
+    }
+
+    private void open(StatementBinder binder, int fetchSize) {
+      connection = DbConnectionManager.getConnection();
+      try {
+        lazy(true);
+        statement = connection.prepareStatement(sql,
+            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(fetchSize);
+        binder.bind(statement);
+        resultSet = statement.executeQuery();
+      } catch (SQLException | RuntimeException e) {
+        failed = true;
+        try {
+          close();
+        } catch (RuntimeException suppressed) {
+          e.addSuppressed(suppressed);
+        }
+        throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (Objects.isNull(hasNext)) {
+        try {
+          hasNext = resultSet.next();
+        } catch (SQLException e) {
+          failed = true;
+          throw new RuntimeException(e);
+        }
+      }
+
+      return hasNext;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      hasNext = null;
+
+      try {
+        return mapper.map(resultSet);
+      } catch (SQLException e) {
+        failed = true;
+        throw new RuntimeException(e);
+      }
+    }
+
+    private void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+
+      RuntimeException error = null;
+      try {
+        if (Objects.nonNull(resultSet)) {
+          resultSet.close();
+        }
+        if (Objects.nonNull(statement)) {
+          statement.close();
+        }
+        lazy(false);
+      } catch (SQLException e) {
+        error = new RuntimeException(e);
+      } finally {
+        try {
+          connection.close();
+        } catch (SQLException e) {
+          if (Objects.isNull(error)) {
+            error = new RuntimeException(e);
+          } else {
+            error.addSuppressed(e);
+          }
+        }
+        failed |= Objects.nonNull(error);
+        executed(sql, started, failed);
+      }
+
+      if (Objects.nonNull(error)) {
+        throw error;
+      }
+    }
+
+    private void lazy(boolean lazy) throws SQLException {
+      try (Statement setting = connection.createStatement()) {
+        setting.execute("SET LAZY_QUERY_EXECUTION " + (lazy ? 1 : 0));
+      }
+    }
+
+  }
+
+  private static final class Shared {
+
+    private static final JdbcTemplate INSTANCE = new JdbcTemplate(
+        Config.getInt("db.fetch-size", 0), Config.getInt("db.query-timeout-seconds", 0));
+
+  }
+
+}
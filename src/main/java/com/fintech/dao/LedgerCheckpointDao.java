@@ -0,0 +1,9 @@
+package com.fintech.dao;
+
+public interface LedgerCheckpointDao {
+
+  long position(int journal);
+
+  void save(int journal, long position);
+
+}
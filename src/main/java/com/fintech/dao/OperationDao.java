@@ -1,9 +1,36 @@
 package com.fintech.dao;
 
-import java.math.BigDecimal;
+import com.fintech.models.Money;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 public interface OperationDao<T, I> extends Dao<T, I> {
 
-  BigDecimal accountBalance(String number);
+  Money accountBalance(String number);
+
+  Map<String, Money> accountBalances(Collection<String> numbers);
+
+  /**
+   * Same as {@link #accountBalances}, but the balances stay locked until the running
+   * transaction ends, so nobody else can move them in between.
+   */
+  Map<String, Money> lockAccountBalances(Collection<String> numbers);
+
+  /**
+   * Balance of the account with every operation created up to {@code timestamp}.
+   */
+  Money balanceAt(String number, LocalDateTime timestamp);
+
+  /**
+   * Inserts the operation only if the account balance covers it. The check is made by
+   * the store and holds across application instances.
+   *
+   * @return the inserted operation, or null if the balance is too low
+   */
+  T insertIfCovered(T operation);
+
+  List<I> insertAll(List<T> operations);
 
 }
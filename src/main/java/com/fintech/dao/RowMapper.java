@@ -0,0 +1,11 @@
+package com.fintech.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface RowMapper<T> {
+
+  T map(ResultSet resultSet) throws SQLException;
+
+}
@@ -0,0 +1,11 @@
+package com.fintech.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+@FunctionalInterface
+public interface StatementBinder {
+
+  void bind(PreparedStatement statement) throws SQLException;
+
+}
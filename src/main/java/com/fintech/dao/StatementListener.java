@@ -0,0 +1,18 @@
+package com.fintech.dao;
+
+/**
+ * Called by {@link JdbcTemplate} after every statement, on the thread that ran it.
+ */
+@FunctionalInterface
+public interface StatementListener {
+
+  /**
+   * Receives a statement that has just been closed.
+   *
+   * @param elapsedNanos time from preparing the statement to closing it, including
+   *     reading the rows
+   * @param failed whether the statement threw
+   */
+  void executed(String sql, long elapsedNanos, boolean failed);
+
+}
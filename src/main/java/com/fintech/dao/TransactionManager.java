@@ -0,0 +1,9 @@
+package com.fintech.dao;
+
+import java.util.function.Supplier;
+
+public interface TransactionManager {
+
+  <T> T inTransaction(Supplier<T> work);
+
+}
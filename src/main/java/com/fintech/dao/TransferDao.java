@@ -1,4 +1,27 @@
 package com.fintech.dao;
 
+import com.fintech.models.TransferRepresentation;
+import java.util.List;
+import java.util.stream.Stream;
+
 public interface TransferDao<T, I> extends Dao<T, I> {
+
+  /**
+   * The transfer as its accounts and amount.
+   *
+   * @return null if there is no such transfer
+   */
+  TransferRepresentation findRepresentation(I id);
+
+  List<TransferRepresentation> findRepresentations(Integer limit, Integer offset);
+
+  List<TransferRepresentation> findRepresentationsAfter(I after, Integer limit);
+
+  /**
+   * All transfers ordered by id, read lazily. The stream holds a connection until closed.
+   */
+  Stream<TransferRepresentation> streamRepresentations();
+
+  List<I> insertAll(List<T> transfers);
+
 }
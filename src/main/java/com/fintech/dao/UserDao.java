@@ -1,4 +1,12 @@
 package com.fintech.dao;
 
+import java.util.stream.Stream;
+
 public interface UserDao<T, I> extends Dao<T, I> {
+
+  /**
+   * All users ordered by id, read lazily. The stream holds a connection until closed.
+   */
+  Stream<T> streamAll();
+
 }
@@ -0,0 +1,191 @@
+package com.fintech.dao.impl;
+
+import com.fintech.dao.JdbcTemplate;
+import com.fintech.models.Money;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the materialized ACCOUNT_BALANCES rows in step with OPERATIONS.
+ *
+ * <p>Callers must invoke it inside the same unit of work as the operation rows they
+ * insert or delete. Every change bumps the version of the row, see
+ * {@link #applyVersioned}. A change that takes a balance out of the BIGINT range fails
+ * with an {@link IllegalArgumentException}, as a wrong amount.
+ */
+final class AccountBalances {
+
+  private static final String SERIALIZATION_FAILURE = "40001";
+  private static final String OUT_OF_RANGE = "22003";
+
+  private AccountBalances() {
+  }
+
+  /**
+   * Net change of a balance in minor units.
+   */
+  static long delta(Money debit, Money credit) {
+    long delta = Objects.isNull(debit) ? 0 : debit.getMinorUnits();
+
+    return Objects.isNull(credit) ? delta : Math.subtractExact(delta, credit.getMinorUnits());
+  }
+
+  /**
+   * Adds the change to the balance in memory.
+   *
+   * @throws IllegalArgumentException if the result doesn't fit
+   */
+  static long add(long balance, long delta) {
+    try {
+      return Math.addExact(balance, delta);
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Wrong amount " + Money.of(delta), e);
+    }
+  }
+
+  static void apply(JdbcTemplate jdbc, String account, long delta) {
+    if (update(jdbc, account, delta)) {
+      return;
+    }
+
+    try {
+      jdbc.update("INSERT INTO ACCOUNT_BALANCES (account, balance) VALUES (?, ?)", statement -> {
+        statement.setString(1, account);
+        statement.setLong(2, delta);
+      });
+    } catch (RuntimeException e) {
+      // Another transaction created the row first, fall back to the update
+      if (!(e.getCause() instanceof SQLIntegrityConstraintViolationException)
+          || !update(jdbc, account, delta)) {
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Applies a negative change only if it leaves the balance non-negative. The check
+   * and the change are one guarded update, so the row lock it takes keeps them atomic
+   * for every connection, whichever application instance holds it.
+   *
+   * @return false if the balance doesn't cover the change and nothing was applied
+   */
+  static boolean applyCovered(JdbcTemplate jdbc, String account, long delta) {
+    if (delta >= 0) {
+      apply(jdbc, account, delta);
+      return true;
+    }
+
+    try {
+      return jdbc.update("UPDATE ACCOUNT_BALANCES SET balance = balance + ?, "
+          + "version = version + 1 WHERE account = ? AND balance >= ?", statement -> {
+            statement.setLong(1, delta);
+            statement.setString(2, account);
+            statement.setLong(3, Math.negateExact(delta));
+          }) > 0;
+    } catch (RuntimeException e) {
+      throw outOfRange(e, delta);
+    }
+  }
+
+  /**
+   * Optimistic counterpart of {@link #applyCovered}: reads the balance without locking
+   * it and writes the new one only if the row still has the version that was read. The
+   * write waits for the row lock if another transaction changed the row and hasn't
+   * committed, it is a conflict once that one commits.
+   *
+   * @return false if the balance doesn't cover the change and nothing was applied
+   * @throws SQLTransactionRollbackException if the row changed in between, the whole
+   *     transaction has to be run again
+   */
+  static boolean applyVersioned(JdbcTemplate jdbc, String account, long delta)
+      throws SQLTransactionRollbackException {
+    if (delta >= 0) {
+      apply(jdbc, account, delta);
+      return true;
+    }
+
+    long[] row = jdbc.queryOne("SELECT balance, version FROM ACCOUNT_BALANCES WHERE account = ?",
+        statement -> statement.setString(1, account),
+        resultSet -> new long[] {resultSet.getLong("balance"), resultSet.getLong("version")});
+    if (Objects.isNull(row)) {
+      return false;
+    }
+    long balance = add(row[0], delta);
+    long version = row[1];
+    if (balance < 0) {
+      return false;
+    }
+
+    int updated = jdbc.update("UPDATE ACCOUNT_BALANCES SET balance = ?, version = ? "
+        + "WHERE account = ? AND version = ?", statement -> {
+          statement.setLong(1, balance);
+          statement.setLong(2, version + 1);
+          statement.setString(3, account);
+          statement.setLong(4, version);
+        });
+    if (updated == 0) {
+      throw new SQLTransactionRollbackException(
+          "Balance of " + account + " changed concurrently", SERIALIZATION_FAILURE);
+    }
+
+    return true;
+  }
+
+  /**
+   * Applies the net change of several accounts with one batched update, inserting the
+   * rows of accounts that have none yet.
+   */
+  static void applyAll(JdbcTemplate jdbc, Map<String, Long> deltas) {
+    List<String> accounts = new ArrayList<>(deltas.keySet());
+
+    int[] updated;
+    try {
+      updated = jdbc.batch("UPDATE ACCOUNT_BALANCES SET balance = balance + ?, "
+          + "version = version + 1 WHERE account = ?", accounts, (statement, account) -> {
+            statement.setLong(1, deltas.get(account));
+            statement.setString(2, account);
+          });
+    } catch (RuntimeException e) {
+      throw outOfRange(e, Collections.max(deltas.values()));
+    }
+    for (int i = 0; i < updated.length; i++) {
+      if (updated[i] == 0) {
+        apply(jdbc, accounts.get(i), deltas.get(accounts.get(i)));
+      }
+    }
+  }
+
+  private static boolean update(JdbcTemplate jdbc, String account, long delta) {
+    try {
+      return jdbc.update("UPDATE ACCOUNT_BALANCES SET balance = balance + ?, "
+          + "version = version + 1 WHERE account = ?", statement -> {
+            statement.setLong(1, delta);
+            statement.setString(2, account);
+          }) > 0;
+    } catch (RuntimeException e) {
+      throw outOfRange(e, delta);
+    }
+  }
+
+  /**
+   * Turns a balance the database can't hold into a wrong amount, anything else is
+   * returned as is.
+   */
+  private static RuntimeException outOfRange(RuntimeException e, long delta) {
+    for (Throwable cause = e.getCause(); Objects.nonNull(cause); cause = cause.getCause()) {
+      if (cause instanceof SQLException
+          && OUT_OF_RANGE.equals(((SQLException) cause).getSQLState())) {
+        return new IllegalArgumentException("Wrong amount " + Money.of(delta), e);
+      }
+    }
+
+    return e;
+  }
+
+}
@@ -0,0 +1,181 @@
+package com.fintech.dao.impl;
+
+import com.fintech.dao.DbConnectionManager;
+import com.fintech.dao.JdbcTemplate;
+import com.fintech.dao.StatementBinder;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.jboss.logging.Logger;
+
+/**
+ * Periodically stores the balance of every account as of an operation id into
+ * BALANCE_CHECKPOINTS, so {@link DbOperationDao#balanceAt} only sums the operations
+ * after the last checkpoint.
+ *
+ * <p>A run writes one row for each account with operations past the newest checkpoint,
+ * once there are at least {@code minOperations} of them to keep the table small. Ids
+ * don't follow commit order, so the row of an account is written under the lock of its
+ * balance row: every writer moves the balance before it inserts operations, so no
+ * operation of the account with a lower id can still be in flight, and the ones
+ * inserted later get higher ids.
+ */
+public class BalanceCheckpointJob implements Runnable, AutoCloseable {
+
+  private static final Logger log = Logger.getLogger(BalanceCheckpointJob.class);
+
+  private static final int CHUNK_SIZE = 1000;
+
+  private final int minOperations;
+  private final long intervalMillis;
+  private final JdbcTemplate jdbc = JdbcTemplate.shared();
+
+  private final Thread thread;
+  private volatile boolean running = true;
+
+  private final LongAdder checkpoints = new LongAdder();
+
+  public BalanceCheckpointJob(int minOperations, long interval, TimeUnit unit) {
+    this.minOperations = minOperations;
+    this.intervalMillis = unit.toMillis(interval);
+    this.thread = new Thread(this, "balance-checkpoints");
+    this.thread.setDaemon(true);
+  }
+
+  public void start() {
+    thread.start();
+  }
+
+  /**
+   * Takes the checkpoints right away.
+   *
+   * @return number of accounts checkpointed
+   */
+  public int checkpoint() {
+    long after = jdbc.queryOne(
+        "SELECT IFNULL(MAX(operation_id), 0) FROM BALANCE_CHECKPOINTS", statement -> { },
+        resultSet -> resultSet.getLong(1));
+    long count = jdbc.queryOne("SELECT COUNT(*) FROM OPERATIONS WHERE id > ?",
+        statement -> statement.setLong(1, after), resultSet -> resultSet.getLong(1));
+    if (count == 0 || count < minOperations) {
+      return 0;
+    }
+
+    List<String> accounts = jdbc.query(
+        "SELECT DISTINCT account FROM OPERATIONS WHERE id > ? ORDER BY account",
+        statement -> statement.setLong(1, after), resultSet -> resultSet.getString(1));
+
+    int written = 0;
+    for (int from = 0; from < accounts.size(); from += CHUNK_SIZE) {
+      List<String> chunk = accounts.subList(from, Math.min(from + CHUNK_SIZE, accounts.size()));
+      written += DbConnectionManager.inTransaction(connection -> checkpoint(chunk));
+    }
+    checkpoints.add(written);
+
+    return written;
+  }
+
+  /**
+   * Writes the checkpoints of accounts given in their order, locking their balances first.
+   */
+  private int checkpoint(List<String> accounts) {
+    String in = String.join(", ", Collections.nCopies(accounts.size(), "?"));
+    StatementBinder bindAccounts = statement -> {
+      for (int i = 0; i < accounts.size(); i++) {
+        statement.setString(i + 1, accounts.get(i));
+      }
+    };
+
+    jdbc.query("SELECT account FROM ACCOUNT_BALANCES WHERE account IN (" + in + ") "
+        + "ORDER BY account FOR UPDATE", bindAccounts, resultSet -> resultSet.getString(1));
+
+    Map<String, Checkpoint> latest = new HashMap<>();
+    jdbc.query("SELECT C.account, C.operation_id, C.balance, C.as_of FROM BALANCE_CHECKPOINTS C "
+            + "WHERE C.account IN (" + in + ") AND C.operation_id = "
+            + "(SELECT MAX(L.operation_id) FROM BALANCE_CHECKPOINTS L WHERE L.account = C.account)",
+        bindAccounts, resultSet -> new Checkpoint(resultSet.getString("account"),
+            resultSet.getLong("operation_id"), resultSet.getLong("balance"),
+            resultSet.getTimestamp("as_of")))
+        .forEach(checkpoint -> latest.put(checkpoint.account, checkpoint));
+
+    // as_of stays at the latest creation time of everything the checkpoint includes
+    int[] inserted = jdbc.batch(
+        "INSERT INTO BALANCE_CHECKPOINTS (account, operation_id, balance, as_of) "
+            + "SELECT account, MAX(id), ? + SUM(IFNULL(debit, 0) - IFNULL(credit, 0)), "
+            + "GREATEST(IFNULL(?, MAX(created)), MAX(created)) "
+            + "FROM OPERATIONS WHERE account = ? AND id > ? GROUP BY account",
+        accounts, (statement, account) -> {
+          Checkpoint previous = latest.get(account);
+          statement.setLong(1, Objects.isNull(previous) ? 0 : previous.balance);
+          statement.setTimestamp(2, Objects.isNull(previous) ? null : previous.asOf);
+          statement.setString(3, account);
+          statement.setLong(4, Objects.isNull(previous) ? 0 : previous.operationId);
+        });
+
+    return Arrays.stream(inserted).sum();
+  }
+
+  /**
+   * Takes a deleted operation back out of the checkpoints that include it, in the
+   * transaction of the delete.
+   */
+  static void discount(JdbcTemplate jdbc, String account, long operationId, long delta) {
+    jdbc.update("UPDATE BALANCE_CHECKPOINTS SET balance = balance - ? "
+        + "WHERE account = ? AND operation_id >= ?", statement -> {
+          statement.setLong(1, delta);
+          statement.setString(2, account);
+          statement.setLong(3, operationId);
+        });
+  }
+
+  public long getCheckpoints() {
+    return checkpoints.sum();
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      try {
+        Thread.sleep(intervalMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+
+      try {
+        checkpoint();
+      } catch (RuntimeException e) {
+        log.error("Can't take balance checkpoints", e);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    thread.interrupt();
+  }
+
+  private static final class Checkpoint {
+
+    private final String account;
+    private final long operationId;
+    private final long balance;
+    private final Timestamp asOf;
+
+    private Checkpoint(String account, long operationId, long balance, Timestamp asOf) {
+      this.account = account;
+      this.operationId = operationId;
+      this.balance = balance;
+      this.asOf = asOf;
+    }
+
+  }
+
+}
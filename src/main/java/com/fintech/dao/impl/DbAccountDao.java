@@ -1,133 +1,100 @@
 package com.fintech.dao.impl;
 
 import com.fintech.dao.AccountDao;
-import com.fintech.dao.DbConnectionManager;
+import com.fintech.dao.AccountNumberAllocator;
+import com.fintech.dao.JdbcTemplate;
 import com.fintech.models.dao.AccountDaoEntity;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.Objects;
 
 public class DbAccountDao implements AccountDao<AccountDaoEntity, String> {
 
+  private final AccountNumberAllocator numberAllocator;
+  private final JdbcTemplate jdbc;
+
+  public DbAccountDao() {
+    this(new SequenceAccountNumberAllocator());
+  }
+
+  public DbAccountDao(AccountNumberAllocator numberAllocator) {
+    this(numberAllocator, JdbcTemplate.shared());
+  }
+
+  public DbAccountDao(AccountNumberAllocator numberAllocator, JdbcTemplate jdbc) {
+    this.numberAllocator = numberAllocator;
+    this.jdbc = jdbc;
+  }
+
   @Override
   public List<AccountDaoEntity> userAccounts(String userId) {
-    List<AccountDaoEntity> accounts = new ArrayList<>();
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement = connection.prepareStatement(
-          "SELECT * FROM ACCOUNTS WHERE USER_ID LIKE ?");
-      preparedStatement.setString(1, userId);
-
-      ResultSet resultSet = preparedStatement.executeQuery();
-
-      while (resultSet.next()) {
-        accounts.add(mapRow(resultSet));
-      }
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
-    return accounts;
+    return jdbc.query("SELECT * FROM ACCOUNTS WHERE USER_ID = ?",
+        statement -> statement.setString(1, userId), this::mapRow);
   }
 
   @Override
   public AccountDaoEntity getById(String s) {
-    AccountDaoEntity user = null;
-
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement("SELECT * FROM ACCOUNTS WHERE number like ?");
-      preparedStatement.setString(1, s);
-
-      ResultSet resultSet = preparedStatement.executeQuery();
-      if (resultSet.next()) {
-        user = mapRow(resultSet);
-      }
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
-
-    return user;
+    return jdbc.queryOne("SELECT * FROM ACCOUNTS WHERE number = ?",
+        statement -> statement.setString(1, s), this::mapRow);
   }
 
   @Override
   public AccountDaoEntity update(AccountDaoEntity obj) {
-    AccountDaoEntity account = null;
-
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement(
-          "UPDATE ACCOUNTS SET user_id = ?, currency = ? WHERE number like ?");
-      preparedStatement.setString(1, obj.getUserId());
-      preparedStatement.setString(2, obj.getCurrency());
-      preparedStatement.setString(3, obj.getNumber());
-
-      preparedStatement.executeUpdate();
-
-      account = getById(obj.getNumber());
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
+    jdbc.update("UPDATE ACCOUNTS SET user_id = ?, currency = ? WHERE number = ?", statement -> {
+      statement.setString(1, obj.getUserId());
+      statement.setString(2, obj.getCurrency());
+      statement.setString(3, obj.getNumber());
+    });
 
-    return account;
+    return getById(obj.getNumber());
   }
 
   @Override
   public AccountDaoEntity insert(AccountDaoEntity obj) {
-    AccountDaoEntity account = null;
-
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      String number = createNumber();
-
-      PreparedStatement preparedStatement
-          = connection.prepareStatement(
-          "INSERT INTO ACCOUNTS (number, user_id, currency) VALUES (?, ?, ?)");
-      preparedStatement.setString(1, number);
-      preparedStatement.setString(2, obj.getUserId());
-      preparedStatement.setString(3, obj.getCurrency());
-
-      preparedStatement.executeUpdate();
-
-      account = getById(number);
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
-
-    return account;
+    String number = numberAllocator.next();
+
+    return jdbc.insert("INSERT INTO ACCOUNTS (number, user_id, currency) VALUES (?, ?, ?)",
+        new String[] {"CREATED"}, statement -> {
+          statement.setString(1, number);
+          statement.setString(2, obj.getUserId());
+          statement.setString(3, obj.getCurrency());
+        }, generatedKeys -> {
+          AccountDaoEntity account = new AccountDaoEntity();
+          account.setNumber(number);
+          account.setUserId(obj.getUserId());
+          account.setCurrency(obj.getCurrency());
+          account.setCreated(generatedKeys.getTimestamp("CREATED").toLocalDateTime());
+
+          return account;
+        });
   }
 
   @Override
   public List<AccountDaoEntity> findAll(Integer limit, Integer offset) {
-    List<AccountDaoEntity> accounts = new ArrayList<>();
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement("SELECT * FROM ACCOUNTS LIMIT ? OFFSET ?");
-      preparedStatement.setInt(1, limit);
-      preparedStatement.setInt(2, offset);
-      ResultSet resultSet = preparedStatement.executeQuery();
-
-      while (resultSet.next()) {
-        accounts.add(mapRow(resultSet));
-      }
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
+    return jdbc.query("SELECT * FROM ACCOUNTS LIMIT ? OFFSET ?", statement -> {
+      statement.setInt(1, limit);
+      statement.setInt(2, offset);
+    }, this::mapRow);
+  }
+
+  @Override
+  public List<AccountDaoEntity> findAllAfter(String after, Integer limit) {
+    if (Objects.isNull(after)) {
+      return jdbc.query("SELECT * FROM ACCOUNTS ORDER BY number LIMIT ?",
+          statement -> statement.setInt(1, limit), this::mapRow);
     }
-    return accounts;
+
+    return jdbc.query("SELECT * FROM ACCOUNTS WHERE number > ? ORDER BY number LIMIT ?",
+        statement -> {
+          statement.setString(1, after);
+          statement.setInt(2, limit);
+        }, this::mapRow);
   }
 
   @Override
   public void deleteById(String s) {
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement("DELETE FROM ACCOUNTS WHERE NUMBER LIKE ?");
-
-      preparedStatement.setString(1, s);
-      preparedStatement.executeUpdate();
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
+    jdbc.update("DELETE FROM ACCOUNTS WHERE NUMBER = ?", statement -> statement.setString(1, s));
   }
 
   @Override
@@ -137,19 +104,8 @@ public class DbAccountDao implements AccountDao<AccountDaoEntity, String> {
 
   @Override
   public boolean isExist(String s) {
-    boolean exists = false;
-
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement("SELECT * FROM ACCOUNTS WHERE number like ?");
-      preparedStatement.setString(1, s);
-
-      exists = preparedStatement.executeQuery().next();
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
-
-    return exists;
+    return jdbc.exists("SELECT * FROM ACCOUNTS WHERE number = ?",
+        statement -> statement.setString(1, s));
   }
 
   private AccountDaoEntity mapRow(ResultSet resultSet) throws SQLException {
@@ -161,17 +117,4 @@ public class DbAccountDao implements AccountDao<AccountDaoEntity, String> {
 
     return entity;
   }
-
-  private String createNumber() {
-    Random random = new Random(899999999999L);
-
-    String id;
-    do {
-      long number = Math.abs(random.nextLong()) + 100000000000L;
-
-      id = "KZ" + number;
-    } while (isExist(id));
-
-    return id;
-  }
 }
@@ -0,0 +1,41 @@
+package com.fintech.dao.impl;
+
+import com.fintech.dao.JdbcTemplate;
+import com.fintech.dao.LedgerCheckpointDao;
+import java.util.Objects;
+
+/**
+ * Positions up to which every ledger journal has been projected into OPERATIONS.
+ */
+public class DbLedgerCheckpointDao implements LedgerCheckpointDao {
+
+  private final JdbcTemplate jdbc;
+
+  public DbLedgerCheckpointDao() {
+    this(JdbcTemplate.shared());
+  }
+
+  public DbLedgerCheckpointDao(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
+  @Override
+  public long position(int journal) {
+    Long position = jdbc.queryOne(
+        "SELECT journal_position FROM LEDGER_CHECKPOINTS WHERE journal_id = ?",
+        statement -> statement.setInt(1, journal),
+        resultSet -> resultSet.getLong("journal_position"));
+
+    return Objects.isNull(position) ? 0 : position;
+  }
+
+  @Override
+  public void save(int journal, long position) {
+    jdbc.update("MERGE INTO LEDGER_CHECKPOINTS (journal_id, journal_position) KEY (journal_id) "
+        + "VALUES (?, ?)", statement -> {
+          statement.setInt(1, journal);
+          statement.setLong(2, position);
+        });
+  }
+
+}
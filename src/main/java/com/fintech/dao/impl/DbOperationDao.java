@@ -1,65 +1,134 @@
 package com.fintech.dao.impl;
 
 import com.fintech.dao.DbConnectionManager;
+import com.fintech.dao.JdbcTemplate;
 import com.fintech.dao.OperationDao;
+import com.fintech.models.Money;
 import com.fintech.models.dao.OperationDaoEntity;
-import java.math.BigDecimal;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
 
 public class DbOperationDao implements OperationDao<OperationDaoEntity, Long> {
 
+  private static final int IN_LIST_SIZE = 1000;
+
+  /**
+   * How {@link #insertIfCovered} keeps concurrent debits of an account from
+   * overdrawing it.
+   */
+  public enum Concurrency {
+    /**
+     * One guarded update that waits for the balance row lock.
+     */
+    PESSIMISTIC,
+    /**
+     * Read without a lock and a compare-and-set on the row version. The compare-and-set
+     * still waits for the row lock of an uncommitted change, then finds the version
+     * changed: the conflict rolls the transaction back to be retried.
+     */
+    OPTIMISTIC
+  }
+
+  private final Concurrency concurrency;
+  private final JdbcTemplate jdbc;
+
+  private final LongAdder versionedUpdates = new LongAdder();
+  private final LongAdder versionConflicts = new LongAdder();
+
+  public DbOperationDao() {
+    this(Concurrency.PESSIMISTIC);
+  }
+
+  public DbOperationDao(Concurrency concurrency) {
+    this(concurrency, JdbcTemplate.shared());
+  }
+
+  public DbOperationDao(Concurrency concurrency, JdbcTemplate jdbc) {
+    this.concurrency = concurrency;
+    this.jdbc = jdbc;
+  }
+
   @Override
   public OperationDaoEntity getById(Long id) {
-    OperationDaoEntity operation = null;
+    return jdbc.queryOne("SELECT * FROM OPERATIONS WHERE id = ?",
+        statement -> statement.setLong(1, id), this::mapRow);
+  }
+
+  @Override
+  public OperationDaoEntity insert(OperationDaoEntity obj) {
+    // The balance is moved first, so its row lock is held before the operation gets an id,
+    // see BalanceCheckpointJob
+    return DbConnectionManager.inTransaction(connection -> {
+      AccountBalances.apply(jdbc, obj.getAccountNumber(),
+          AccountBalances.delta(obj.getDebit(), obj.getCredit()));
 
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement("SELECT * FROM OPERATIONS WHERE id = ?");
-      preparedStatement.setLong(1, id);
+      return insertRow(obj);
+    });
+  }
 
-      ResultSet resultSet = preparedStatement.executeQuery();
-      if (resultSet.next()) {
-        operation = mapRow(resultSet);
+  /**
+   * Moves the balance first, as set by {@link Concurrency}, and inserts the operation
+   * only if that succeeded.
+   */
+  @Override
+  public OperationDaoEntity insertIfCovered(OperationDaoEntity obj) {
+    return DbConnectionManager.inTransaction(connection -> {
+      long delta = AccountBalances.delta(obj.getDebit(), obj.getCredit());
+      boolean covered = concurrency == Concurrency.OPTIMISTIC
+          ? applyVersioned(obj.getAccountNumber(), delta)
+          : AccountBalances.applyCovered(jdbc, obj.getAccountNumber(), delta);
+      if (!covered) {
+        return null;
       }
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
 
-    return operation;
+      return insertRow(obj);
+    });
   }
 
+  /**
+   * Keeps the creation time of operations that have one, the others are created now.
+   */
   @Override
-  public OperationDaoEntity insert(OperationDaoEntity obj) {
-    OperationDaoEntity operation = null;
-
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement(
-          "INSERT INTO OPERATIONS (account, debit, credit) VALUES (?, ?, ?)",
-          Statement.RETURN_GENERATED_KEYS);
-      preparedStatement.setString(1, obj.getAccountNumber());
-      preparedStatement.setBigDecimal(2, obj.getDebit());
-      preparedStatement.setBigDecimal(3, obj.getCredit());
-
-      preparedStatement.executeUpdate();
-
-      ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
-      if (generatedKeys.next()) {
-        long id = generatedKeys.getLong(1);
-        operation = getById(id);
-      } else {
-        throw new IllegalArgumentException("Persistence error");
-      }
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
+  public List<Long> insertAll(List<OperationDaoEntity> operations) {
+    if (operations.isEmpty()) {
+      return Collections.emptyList();
     }
 
-    return operation;
+    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    return DbConnectionManager.inTransaction(connection -> {
+      Map<String, Long> deltas = new TreeMap<>();
+      for (OperationDaoEntity operation : operations) {
+        deltas.merge(operation.getAccountNumber(),
+            AccountBalances.delta(operation.getDebit(), operation.getCredit()),
+            AccountBalances::add);
+      }
+      // Before the operations get ids, as in insert, and in account order
+      AccountBalances.applyAll(jdbc, deltas);
+
+      return jdbc.batchInsert(
+          "INSERT INTO OPERATIONS (account, debit, credit, created) VALUES (?, ?, ?, ?)",
+          new String[] {"ID"}, operations, (statement, operation) -> {
+            statement.setString(1, operation.getAccountNumber());
+            MoneyColumns.set(statement, 2, operation.getDebit());
+            MoneyColumns.set(statement, 3, operation.getCredit());
+            statement.setTimestamp(4, Objects.isNull(operation.getCreated())
+                ? now : Timestamp.valueOf(operation.getCreated()));
+          }, generatedKeys -> generatedKeys.getLong(1));
+    });
   }
 
   @Override
@@ -72,6 +141,11 @@ public class DbOperationDao implements OperationDao<OperationDaoEntity, Long> {
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public List<OperationDaoEntity> findAllAfter(Long after, Integer limit) {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public void deleteById(Long id) {
     throw new UnsupportedOperationException();
@@ -88,31 +162,156 @@ public class DbOperationDao implements OperationDao<OperationDaoEntity, Long> {
   }
 
   @Override
-  public BigDecimal accountBalance(String number) {
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement(
-          "SELECT IFNULL(SUM(debit), 0) - IFNULL(SUM(credit), 0) "
-              + "as balance FROM OPERATIONS WHERE account like ?");
-      preparedStatement.setString(1, number);
-      ResultSet resultSet = preparedStatement.executeQuery();
-
-      if (resultSet.next()) {
-        return resultSet.getBigDecimal("balance");
+  public Money accountBalance(String number) {
+    Money balance = jdbc.queryOne("SELECT balance FROM ACCOUNT_BALANCES WHERE account = ?",
+        statement -> statement.setString(1, number),
+        resultSet -> Money.of(resultSet.getLong("balance")));
+
+    return Objects.isNull(balance) ? Money.ZERO : balance;
+  }
+
+  @Override
+  public Map<String, Money> accountBalances(Collection<String> numbers) {
+    List<String> accounts = new ArrayList<>(numbers);
+    Map<String, Money> balances = balances(accounts, false);
+    for (String account : accounts) {
+      balances.putIfAbsent(account, Money.ZERO);
+    }
+
+    return balances;
+  }
+
+  /**
+   * Locks the rows in the order of the account numbers, whichever order they are given
+   * in, so two batches locking the same accounts can't deadlock. Accounts without a row
+   * get one first, their balance is locked as well.
+   */
+  @Override
+  public Map<String, Money> lockAccountBalances(Collection<String> numbers) {
+    List<String> accounts = new ArrayList<>(new TreeSet<>(numbers));
+    Map<String, Money> balances = balances(accounts, true);
+
+    List<String> missing = new ArrayList<>();
+    for (String account : accounts) {
+      if (!balances.containsKey(account)) {
+        AccountBalances.apply(jdbc, account, 0);
+        missing.add(account);
+      }
+    }
+    if (!missing.isEmpty()) {
+      // Another transaction may have created the row meanwhile, with a balance already
+      balances.putAll(balances(missing, true));
+    }
+
+    return balances;
+  }
+
+  /**
+   * Starts from the newest checkpoint as of {@code timestamp} and sums only the
+   * operations after it, see {@link BalanceCheckpointJob}.
+   */
+  @Override
+  public Money balanceAt(String number, LocalDateTime timestamp) {
+    Timestamp asOf = Timestamp.valueOf(timestamp);
+
+    long[] checkpoint = jdbc.queryOne(
+        "SELECT operation_id, balance FROM BALANCE_CHECKPOINTS "
+            + "WHERE account = ? AND as_of <= ? ORDER BY operation_id DESC LIMIT 1",
+        statement -> {
+          statement.setString(1, number);
+          statement.setTimestamp(2, asOf);
+        }, resultSet -> new long[] {resultSet.getLong("operation_id"),
+            resultSet.getLong("balance")});
+    final long after = Objects.isNull(checkpoint) ? 0 : checkpoint[0];
+    final long balance = Objects.isNull(checkpoint) ? 0 : checkpoint[1];
+
+    long delta = jdbc.queryOne(
+        "SELECT IFNULL(SUM(IFNULL(debit, 0) - IFNULL(credit, 0)), 0) FROM OPERATIONS "
+            + "WHERE account = ? AND id > ? AND created <= ?",
+        statement -> {
+          statement.setString(1, number);
+          statement.setLong(2, after);
+          statement.setTimestamp(3, asOf);
+        }, resultSet -> resultSet.getLong(1));
+
+    return Money.of(balance + delta);
+  }
+
+  public long getVersionedUpdates() {
+    return versionedUpdates.sum();
+  }
+
+  public long getVersionConflicts() {
+    return versionConflicts.sum();
+  }
+
+  /**
+   * Reads the balances of the accounts that have a row, in chunks of
+   * {@link #IN_LIST_SIZE} accounts in the given order. Locked rows are locked in that order.
+   */
+  private Map<String, Money> balances(List<String> accounts, boolean lock) {
+    Map<String, Money> balances = new HashMap<>();
+
+    for (int from = 0; from < accounts.size(); from += IN_LIST_SIZE) {
+      List<String> batch = accounts.subList(from, Math.min(from + IN_LIST_SIZE, accounts.size()));
+
+      List<Map.Entry<String, Money>> rows = jdbc.query(
+          "SELECT account, balance FROM ACCOUNT_BALANCES WHERE account IN ("
+              + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")"
+              + (lock ? " ORDER BY account FOR UPDATE" : ""),
+          statement -> {
+            for (int i = 0; i < batch.size(); i++) {
+              statement.setString(i + 1, batch.get(i));
+            }
+          }, resultSet -> new SimpleImmutableEntry<>(resultSet.getString("account"),
+              Money.of(resultSet.getLong("balance"))));
+      for (Map.Entry<String, Money> row : rows) {
+        balances.put(row.getKey(), row.getValue());
       }
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
     }
 
-    return null;
+    return balances;
+  }
+
+  private boolean applyVersioned(String account, long delta)
+      throws SQLTransactionRollbackException {
+    versionedUpdates.increment();
+    try {
+      return AccountBalances.applyVersioned(jdbc, account, delta);
+    } catch (SQLTransactionRollbackException e) {
+      versionConflicts.increment();
+      throw e;
+    }
+  }
+
+  /**
+   * Inserts the row and builds the entity from the bound values and the generated id
+   * and creation time, without reading it back.
+   */
+  private OperationDaoEntity insertRow(OperationDaoEntity obj) {
+    return jdbc.insert("INSERT INTO OPERATIONS (account, debit, credit) VALUES (?, ?, ?)",
+        new String[] {"ID", "CREATED"}, statement -> {
+          statement.setString(1, obj.getAccountNumber());
+          MoneyColumns.set(statement, 2, obj.getDebit());
+          MoneyColumns.set(statement, 3, obj.getCredit());
+        }, generatedKeys -> {
+          OperationDaoEntity operation = new OperationDaoEntity();
+          operation.setId(generatedKeys.getLong("ID"));
+          operation.setAccountNumber(obj.getAccountNumber());
+          operation.setDebit(obj.getDebit());
+          operation.setCredit(obj.getCredit());
+          operation.setCreated(generatedKeys.getTimestamp("CREATED").toLocalDateTime());
+
+          return operation;
+        });
   }
 
   private OperationDaoEntity mapRow(ResultSet resultSet) throws SQLException {
     OperationDaoEntity entity = new OperationDaoEntity();
     entity.setId(resultSet.getLong("id"));
     entity.setAccountNumber(resultSet.getString("account"));
-    entity.setDebit(resultSet.getBigDecimal("debit"));
-    entity.setCredit(resultSet.getBigDecimal("credit"));
+    entity.setDebit(MoneyColumns.get(resultSet, "debit"));
+    entity.setCredit(MoneyColumns.get(resultSet, "credit"));
     entity.setCreated(resultSet.getTimestamp("created").toLocalDateTime());
 
     return entity;
@@ -0,0 +1,101 @@
+package com.fintech.dao.impl;
+
+import com.fintech.dao.DbConnectionManager;
+import com.fintech.dao.TransactionManager;
+import java.sql.SQLTransientException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.jboss.logging.Logger;
+
+/**
+ * Runs the work in a database transaction, running it again from the start when the
+ * database rolls it back as a deadlock victim or gives up waiting for a row lock, or an
+ * optimistic version check fails. Before each retry it sleeps for a random time up to
+ * {@code backoffMillis}, doubled with every attempt and capped, so conflicting
+ * transactions don't collide again right away.
+ *
+ * <p>Only the outermost unit of work is retried, a nested one joins it and lets the
+ * failure through.
+ */
+public class DbTransactionManager implements TransactionManager {
+
+  private static final Logger log = Logger.getLogger(DbTransactionManager.class);
+
+  private static final int DEFAULT_ATTEMPTS = 3;
+  private static final long DEFAULT_BACKOFF_MILLIS = 2;
+  private static final long MAX_BACKOFF_MILLIS = 100;
+
+  private final int attempts;
+  private final long backoffMillis;
+
+  private final LongAdder retries = new LongAdder();
+
+  public DbTransactionManager() {
+    this(DEFAULT_ATTEMPTS);
+  }
+
+  public DbTransactionManager(int attempts) {
+    this(attempts, DEFAULT_BACKOFF_MILLIS);
+  }
+
+  public DbTransactionManager(int attempts, long backoffMillis) {
+    if (attempts <= 0) {
+      throw new IllegalArgumentException("Wrong attempts count " + attempts);
+    }
+    this.attempts = attempts;
+    this.backoffMillis = backoffMillis;
+  }
+
+  @Override
+  public <T> T inTransaction(Supplier<T> work) {
+    if (DbConnectionManager.isInTransaction()) {
+      return DbConnectionManager.inTransaction(connection -> work.get());
+    }
+
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return DbConnectionManager.inTransaction(connection -> work.get());
+      } catch (RuntimeException e) {
+        if (attempt >= attempts || !isTransient(e)) {
+          throw e;
+        }
+        retries.increment();
+        log.debugf("Retrying transaction after attempt %d: %s", attempt, e.getMessage());
+        if (!backoff(attempt)) {
+          throw e;
+        }
+      }
+    }
+  }
+
+  public long getRetries() {
+    return retries.sum();
+  }
+
+  private boolean backoff(int attempt) {
+    long bound = Math.min(MAX_BACKOFF_MILLIS, backoffMillis << Math.min(attempt - 1, 16));
+    if (bound <= 0) {
+      return true;
+    }
+
+    try {
+      Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private static boolean isTransient(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SQLTransientException) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+}
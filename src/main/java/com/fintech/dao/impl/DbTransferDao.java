@@ -1,80 +1,124 @@
 package com.fintech.dao.impl;
 
 import com.fintech.dao.DbConnectionManager;
+import com.fintech.dao.JdbcTemplate;
 import com.fintech.dao.TransferDao;
+import com.fintech.models.Money;
+import com.fintech.models.TransferRepresentation;
+import com.fintech.models.dao.OperationDaoEntity;
 import com.fintech.models.dao.TransferDaoEntity;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class DbTransferDao implements TransferDao<TransferDaoEntity, Long> {
 
+  private static final String OFFSET_PAGE
+      = "SELECT id, created FROM TRANSFERS ORDER BY id LIMIT ? OFFSET ?";
+  private static final String KEYSET_PAGE
+      = "SELECT id, created FROM TRANSFERS WHERE id > ? ORDER BY id LIMIT ?";
+
+  private static final String BY_ID = "SELECT id, created FROM TRANSFERS WHERE id = ?";
+
+  private static final String TRANSFERS_PAGE
+      = "SELECT TR.id as id, TR.created as created, TR_OP.operation_id as op_id "
+      + "FROM (%s) TR "
+      + "JOIN TRANSFER_OPERATIONS TR_OP ON TR.id = TR_OP.transfer_id "
+      + "ORDER BY TR.id";
+  private static final String REPRESENTATIONS_PAGE
+      = "SELECT TR.id as id, TR.created as created, "
+      + "MAX(CASE WHEN OP.credit IS NOT NULL THEN OP.account END) as account_from, "
+      + "MAX(CASE WHEN OP.credit IS NULL THEN OP.account END) as account_to, "
+      + "MAX(IFNULL(OP.credit, OP.debit)) as amount "
+      + "FROM (%s) TR "
+      + "JOIN TRANSFER_OPERATIONS TR_OP ON TR.id = TR_OP.transfer_id "
+      + "JOIN OPERATIONS OP ON OP.id = TR_OP.operation_id "
+      + "GROUP BY TR.id, TR.created ORDER BY TR.id";
+
+  private final JdbcTemplate jdbc;
+
+  public DbTransferDao() {
+    this(JdbcTemplate.shared());
+  }
+
+  public DbTransferDao(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
   @Override
   public TransferDaoEntity getById(Long id) {
-    TransferDaoEntity entity = null;
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement(
-          "SELECT TR.id as id, TR.created as created, TR_OP.operation_id as op_id "
-              + "FROM TRANSFERS TR JOIN TRANSFER_OPERATIONS TR_OP ON TR.id = TR_OP.transfer_id "
-              + "WHERE TR.id = ?");
-      preparedStatement.setLong(1, id);
-
-      ResultSet resultSet = preparedStatement.executeQuery();
-
-      while (resultSet.next()) {
-        if (Objects.isNull(entity)) {
-          entity = mapRow(resultSet);
-        }
-        entity.getOperations().add(resultSet.getLong("op_id"));
-      }
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
+    List<TransferDaoEntity> transfers = merge(jdbc.query(
+        "SELECT TR.id as id, TR.created as created, TR_OP.operation_id as op_id "
+            + "FROM TRANSFERS TR JOIN TRANSFER_OPERATIONS TR_OP ON TR.id = TR_OP.transfer_id "
+            + "WHERE TR.id = ?", statement -> statement.setLong(1, id), this::mapRow));
 
-    return entity;
+    return transfers.isEmpty() ? null : transfers.get(0);
   }
 
   @Override
   public TransferDaoEntity insert(TransferDaoEntity obj) {
-    TransferDaoEntity operation = null;
+    return DbConnectionManager.inTransaction(connection -> {
+      TransferDaoEntity transfer = jdbc.insert("INSERT INTO TRANSFERS DEFAULT VALUES",
+          new String[] {"ID", "CREATED"}, statement -> { }, generatedKeys -> {
+            TransferDaoEntity entity = new TransferDaoEntity();
+            entity.setId(generatedKeys.getLong("ID"));
+            entity.setCreated(generatedKeys.getTimestamp("CREATED").toLocalDateTime());
+            entity.setOperations(new ArrayList<>(obj.getOperations()));
 
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement transferPreparedStatement
-          = connection.prepareStatement(
-          "INSERT INTO TRANSFERS DEFAULT VALUES",
-          Statement.RETURN_GENERATED_KEYS);
+            return entity;
+          });
 
-      transferPreparedStatement.executeUpdate();
+      jdbc.batch("INSERT INTO TRANSFER_OPERATIONS (transfer_id, operation_id) VALUES (? ,?)",
+          transfer.getOperations(), (statement, operationId) -> {
+            statement.setLong(1, transfer.getId());
+            statement.setLong(2, operationId);
+          });
 
-      ResultSet generatedKeys = transferPreparedStatement.getGeneratedKeys();
-      if (generatedKeys.next()) {
-        long id = generatedKeys.getLong(1);
+      return transfer;
+    });
+  }
 
-        for (Long operationId : obj.getOperations()) {
-          PreparedStatement preparedStatement
-              = connection.prepareStatement(
-              "INSERT INTO TRANSFER_OPERATIONS (transfer_id, operation_id) VALUES (? ,?)");
-          preparedStatement.setLong(1, id);
-          preparedStatement.setLong(2, operationId);
+  /**
+   * Keeps the creation time of transfers that have one, the others are created now.
+   */
+  @Override
+  public List<Long> insertAll(List<TransferDaoEntity> transfers) {
+    if (transfers.isEmpty()) {
+      return Collections.emptyList();
+    }
 
-          preparedStatement.executeUpdate();
-        }
+    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    return DbConnectionManager.inTransaction(connection -> {
+      List<Long> ids = jdbc.batchInsert("INSERT INTO TRANSFERS (created) VALUES (?)",
+          new String[] {"ID"}, transfers, (statement, transfer) -> statement.setTimestamp(1,
+              Objects.isNull(transfer.getCreated())
+                  ? now : Timestamp.valueOf(transfer.getCreated())),
+          generatedKeys -> generatedKeys.getLong(1));
 
-        operation = getById(id);
-      } else {
-        throw new IllegalArgumentException("Persistence error");
+      List<long[]> transferOperations = new ArrayList<>();
+      for (int i = 0; i < transfers.size(); i++) {
+        for (Long operationId : transfers.get(i).getOperations()) {
+          transferOperations.add(new long[] {ids.get(i), operationId});
+        }
       }
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
+      jdbc.batch("INSERT INTO TRANSFER_OPERATIONS (transfer_id, operation_id) VALUES (? ,?)",
+          transferOperations, (statement, transferOperation) -> {
+            statement.setLong(1, transferOperation[0]);
+            statement.setLong(2, transferOperation[1]);
+          });
 
-    return operation;
+      return ids;
+    });
   }
 
   @Override
@@ -84,53 +128,128 @@ public class DbTransferDao implements TransferDao<TransferDaoEntity, Long> {
 
   @Override
   public List<TransferDaoEntity> findAll(Integer limit, Integer offset) {
-    List<TransferDaoEntity> transfers = new ArrayList<>();
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement("SELECT id FROM TRANSFERS LIMIT ? OFFSET ?");
-      preparedStatement.setInt(1, limit);
-      preparedStatement.setInt(2, offset);
+    return merge(jdbc.query(String.format(TRANSFERS_PAGE, OFFSET_PAGE), statement -> {
+      statement.setInt(1, limit);
+      statement.setInt(2, offset);
+    }, this::mapRow));
+  }
 
-      ResultSet resultSet = preparedStatement.executeQuery();
+  @Override
+  public List<TransferDaoEntity> findAllAfter(Long after, Integer limit) {
+    return merge(jdbc.query(String.format(TRANSFERS_PAGE, KEYSET_PAGE), statement -> {
+      statement.setLong(1, Objects.isNull(after) ? Long.MIN_VALUE : after);
+      statement.setInt(2, limit);
+    }, this::mapRow));
+  }
+
+  @Override
+  public TransferRepresentation findRepresentation(Long id) {
+    List<TransferRepresentation> transfers = jdbc.query(
+        String.format(REPRESENTATIONS_PAGE, BY_ID), statement -> statement.setLong(1, id),
+        this::mapRepresentation);
+
+    return transfers.isEmpty() ? null : transfers.get(0);
+  }
+
+  @Override
+  public List<TransferRepresentation> findRepresentations(Integer limit, Integer offset) {
+    return jdbc.query(String.format(REPRESENTATIONS_PAGE, OFFSET_PAGE), statement -> {
+      statement.setInt(1, limit);
+      statement.setInt(2, offset);
+    }, this::mapRepresentation);
+  }
+
+  @Override
+  public List<TransferRepresentation> findRepresentationsAfter(Long after, Integer limit) {
+    return jdbc.query(String.format(REPRESENTATIONS_PAGE, KEYSET_PAGE), statement -> {
+      statement.setLong(1, Objects.isNull(after) ? Long.MIN_VALUE : after);
+      statement.setInt(2, limit);
+    }, this::mapRepresentation);
+  }
 
-      while (resultSet.next()) {
-        transfers.add(getById(resultSet.getLong(1)));
+  /**
+   * Reads one row per operation instead of grouping them in the database, which would
+   * have to aggregate every transfer before returning the first one, and folds the
+   * consecutive rows of each transfer.
+   */
+  @Override
+  public Stream<TransferRepresentation> streamRepresentations() {
+    Stream<TransferRepresentation> legs = jdbc.stream(
+        "SELECT TR.id as id, TR.created as created, OP.account as account, "
+            + "OP.debit as debit, OP.credit as credit "
+            + "FROM TRANSFERS TR "
+            + "JOIN TRANSFER_OPERATIONS TR_OP ON TR.id = TR_OP.transfer_id "
+            + "JOIN OPERATIONS OP ON OP.id = TR_OP.operation_id "
+            + "ORDER BY TR.id", statement -> { }, this::mapLeg);
+    Iterator<TransferRepresentation> rows = legs.iterator();
+
+    Iterator<TransferRepresentation> transfers = new Iterator<TransferRepresentation>() {
+      private TransferRepresentation pending;
+
+      @Override
+      public boolean hasNext() {
+        return Objects.nonNull(pending) || rows.hasNext();
       }
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
-    return transfers;
+
+      @Override
+      public TransferRepresentation next() {
+        TransferRepresentation transfer = Objects.isNull(pending) ? rows.next() : pending;
+        pending = null;
+        while (rows.hasNext()) {
+          TransferRepresentation leg = rows.next();
+          if (!transfer.getId().equals(leg.getId())) {
+            pending = leg;
+            break;
+          }
+          transfer = merge(transfer, leg);
+        }
+
+        return transfer;
+      }
+    };
+
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(transfers,
+        Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(legs::close);
   }
 
   @Override
   public void deleteById(Long id) {
-    try (Connection connection = DbConnectionManager.getConnection()) {
+    DbConnectionManager.inTransaction(connection -> {
       TransferDaoEntity entity = getById(id);
+      if (Objects.isNull(entity)) {
+        return null;
+      }
 
       for (Long operationId : entity.getOperations()) {
-        PreparedStatement operationDeleteStatement
-            = connection.prepareStatement(
-            "DELETE FROM OPERATIONS WHERE id = ?");
-        operationDeleteStatement.setLong(1, operationId);
-        operationDeleteStatement.executeUpdate();
-
-        PreparedStatement transferOpDeleteStatement
-            = connection.prepareStatement(
-            "DELETE FROM TRANSFER_OPERATIONS WHERE transfer_id = ? AND operation_id = ?");
-        transferOpDeleteStatement.setLong(1, id);
-        transferOpDeleteStatement.setLong(2, operationId);
-
-        transferOpDeleteStatement.executeUpdate();
+        OperationDaoEntity operation = jdbc.queryOne(
+            "SELECT account, debit, credit FROM OPERATIONS WHERE id = ?",
+            statement -> statement.setLong(1, operationId), resultSet -> {
+              OperationDaoEntity row = new OperationDaoEntity();
+              row.setAccountNumber(resultSet.getString("account"));
+              row.setDebit(MoneyColumns.get(resultSet, "debit"));
+              row.setCredit(MoneyColumns.get(resultSet, "credit"));
+
+              return row;
+            });
+        if (Objects.nonNull(operation)) {
+          long delta = AccountBalances.delta(operation.getDebit(), operation.getCredit());
+          AccountBalances.apply(jdbc, operation.getAccountNumber(), -delta);
+          BalanceCheckpointJob.discount(jdbc, operation.getAccountNumber(), operationId, delta);
+        }
+
+        jdbc.update("DELETE FROM OPERATIONS WHERE id = ?",
+            statement -> statement.setLong(1, operationId));
+        jdbc.update("DELETE FROM TRANSFER_OPERATIONS WHERE transfer_id = ? AND operation_id = ?",
+            statement -> {
+              statement.setLong(1, id);
+              statement.setLong(2, operationId);
+            });
       }
 
-      PreparedStatement transferDeleteStatement
-          = connection.prepareStatement(
-          "DELETE FROM TRANSFERS WHERE id = ?");
-      transferDeleteStatement.setLong(1, id);
-      transferDeleteStatement.executeUpdate();
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
+      jdbc.update("DELETE FROM TRANSFERS WHERE id = ?", statement -> statement.setLong(1, id));
+
+      return null;
+    });
   }
 
   @Override
@@ -140,19 +259,72 @@ public class DbTransferDao implements TransferDao<TransferDaoEntity, Long> {
 
   @Override
   public boolean isExist(Long id) {
-    boolean exists = false;
+    return jdbc.exists("SELECT * FROM TRANSFERS WHERE id = ?",
+        statement -> statement.setLong(1, id));
+  }
 
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement("SELECT * FROM TRANSFERS WHERE id = ?");
-      preparedStatement.setLong(1, id);
+  /**
+   * Folds the rows of one operation each, ordered by transfer, into transfers.
+   */
+  private List<TransferDaoEntity> merge(List<TransferDaoEntity> rows) {
+    List<TransferDaoEntity> transfers = new ArrayList<>();
+
+    TransferDaoEntity entity = null;
+    for (TransferDaoEntity row : rows) {
+      if (Objects.isNull(entity) || !entity.getId().equals(row.getId())) {
+        entity = row;
+        transfers.add(entity);
+      } else {
+        entity.getOperations().addAll(row.getOperations());
+      }
+    }
+
+    return transfers;
+  }
+
+  /**
+   * Same as MAX over the legs in {@link #REPRESENTATIONS_PAGE}.
+   */
+  private TransferRepresentation merge(TransferRepresentation transfer,
+                                       TransferRepresentation leg) {
+    return TransferRepresentation.builder()
+        .id(transfer.getId())
+        .accountFrom(max(transfer.getAccountFrom(), leg.getAccountFrom()))
+        .accountTo(max(transfer.getAccountTo(), leg.getAccountTo()))
+        .amount(max(transfer.getAmount(), leg.getAmount()))
+        .created(transfer.getCreated())
+        .build();
+  }
 
-      exists = preparedStatement.executeQuery().next();
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
+  private static <T extends Comparable<T>> T max(T first, T second) {
+    if (Objects.isNull(first)) {
+      return second;
     }
 
-    return exists;
+    return Objects.isNull(second) || first.compareTo(second) >= 0 ? first : second;
+  }
+
+  private TransferRepresentation mapLeg(ResultSet resultSet) throws SQLException {
+    Money credit = MoneyColumns.get(resultSet, "credit");
+    String account = resultSet.getString("account");
+
+    return TransferRepresentation.builder()
+        .id(resultSet.getLong("id"))
+        .accountFrom(Objects.isNull(credit) ? null : account)
+        .accountTo(Objects.isNull(credit) ? account : null)
+        .amount(Objects.isNull(credit) ? MoneyColumns.get(resultSet, "debit") : credit)
+        .created(resultSet.getTimestamp("created").toLocalDateTime())
+        .build();
+  }
+
+  private TransferRepresentation mapRepresentation(ResultSet resultSet) throws SQLException {
+    return TransferRepresentation.builder()
+        .id(resultSet.getLong("id"))
+        .accountFrom(resultSet.getString("account_from"))
+        .accountTo(resultSet.getString("account_to"))
+        .amount(MoneyColumns.get(resultSet, "amount"))
+        .created(resultSet.getTimestamp("created").toLocalDateTime())
+        .build();
   }
 
   private TransferDaoEntity mapRow(ResultSet resultSet) throws SQLException {
@@ -160,6 +332,7 @@ public class DbTransferDao implements TransferDao<TransferDaoEntity, Long> {
     entity.setId(resultSet.getLong("id"));
     entity.setCreated(resultSet.getTimestamp("created").toLocalDateTime());
     List<Long> operations = new ArrayList<>();
+    operations.add(resultSet.getLong("op_id"));
     entity.setOperations(operations);
 
     return entity;
@@ -1,112 +1,90 @@
 package com.fintech.dao.impl;
 
-import com.fintech.dao.DbConnectionManager;
+import com.fintech.dao.JdbcTemplate;
 import com.fintech.dao.UserDao;
 import com.fintech.models.dao.UserDaoEntity;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public class DbUserDao implements UserDao<UserDaoEntity, String> {
 
+  private final JdbcTemplate jdbc;
+
+  public DbUserDao() {
+    this(JdbcTemplate.shared());
+  }
+
+  public DbUserDao(JdbcTemplate jdbc) {
+    this.jdbc = jdbc;
+  }
+
   @Override
   public UserDaoEntity getById(String s) {
-    UserDaoEntity user = null;
-
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement("SELECT * FROM USERS WHERE id like ?");
-      preparedStatement.setString(1, s);
-
-      ResultSet resultSet = preparedStatement.executeQuery();
-      if (resultSet.next()) {
-        user = mapRow(resultSet);
-      }
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
-
-    return user;
+    return jdbc.queryOne("SELECT * FROM USERS WHERE id = ?",
+        statement -> statement.setString(1, s), this::mapRow);
   }
 
   @Override
   public UserDaoEntity update(UserDaoEntity obj) {
-    UserDaoEntity user = null;
+    jdbc.update("UPDATE USERS SET full_name = ? WHERE id = ?", statement -> {
+      statement.setString(1, obj.getFullName());
+      statement.setString(2, obj.getId());
+    });
 
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement(
-          "UPDATE USERS SET full_name = ? WHERE id like ?");
-      preparedStatement.setString(1, obj.getFullName());
-      preparedStatement.setString(2, obj.getId());
-
-      preparedStatement.executeUpdate();
-
-      user = getById(obj.getId());
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
-
-    return user;
+    return getById(obj.getId());
   }
 
   @Override
   public UserDaoEntity insert(UserDaoEntity obj) {
-    UserDaoEntity user = null;
-
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      String id = createId();
-
-      PreparedStatement preparedStatement
-          = connection.prepareStatement("INSERT INTO USERS (id, full_name) VALUES (?, ?)");
-      preparedStatement.setString(1, id);
-      preparedStatement.setString(2, obj.getFullName());
+    String id = createId();
+
+    return jdbc.insert("INSERT INTO USERS (id, full_name) VALUES (?, ?)",
+        new String[] {"CREATED"}, statement -> {
+          statement.setString(1, id);
+          statement.setString(2, obj.getFullName());
+        }, generatedKeys -> {
+          UserDaoEntity user = new UserDaoEntity();
+          user.setId(id);
+          user.setFullName(obj.getFullName());
+          user.setCreated(generatedKeys.getTimestamp("CREATED").toLocalDateTime());
+
+          return user;
+        });
+  }
 
-      preparedStatement.executeUpdate();
+  @Override
+  public List<UserDaoEntity> findAll(Integer limit, Integer offset) {
+    return jdbc.query("SELECT * FROM USERS LIMIT ? OFFSET ?", statement -> {
+      statement.setInt(1, limit);
+      statement.setInt(2, offset);
+    }, this::mapRow);
+  }
 
-      user = getById(id);
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
+  @Override
+  public List<UserDaoEntity> findAllAfter(String after, Integer limit) {
+    if (Objects.isNull(after)) {
+      return jdbc.query("SELECT * FROM USERS ORDER BY id LIMIT ?",
+          statement -> statement.setInt(1, limit), this::mapRow);
     }
 
-    return user;
+    return jdbc.query("SELECT * FROM USERS WHERE id > ? ORDER BY id LIMIT ?", statement -> {
+      statement.setString(1, after);
+      statement.setInt(2, limit);
+    }, this::mapRow);
   }
 
   @Override
-  public List<UserDaoEntity> findAll(Integer limit, Integer offset) {
-    List<UserDaoEntity> users = new ArrayList<>();
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement("SELECT * FROM USERS LIMIT ? OFFSET ?");
-      preparedStatement.setInt(1, limit);
-      preparedStatement.setInt(2, offset);
-
-      ResultSet resultSet = preparedStatement.executeQuery();
-
-      while (resultSet.next()) {
-        users.add(mapRow(resultSet));
-      }
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
-    return users;
+  public Stream<UserDaoEntity> streamAll() {
+    return jdbc.stream("SELECT * FROM USERS ORDER BY id", statement -> { }, this::mapRow);
   }
 
   @Override
   public void deleteById(String s) {
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement("DELETE FROM USERS WHERE ID LIKE ?");
-
-      preparedStatement.setString(1, s);
-      preparedStatement.executeUpdate();
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
+    jdbc.update("DELETE FROM USERS WHERE ID = ?", statement -> statement.setString(1, s));
   }
 
   @Override
@@ -116,19 +94,8 @@ public class DbUserDao implements UserDao<UserDaoEntity, String> {
 
   @Override
   public boolean isExist(String s) {
-    boolean exists = false;
-
-    try (Connection connection = DbConnectionManager.getConnection()) {
-      PreparedStatement preparedStatement
-          = connection.prepareStatement("SELECT * FROM USERS WHERE id like ?");
-      preparedStatement.setString(1, s);
-
-      exists = preparedStatement.executeQuery().next();
-    } catch (SQLException e) {
-      throw new RuntimeException(e);
-    }
-
-    return exists;
+    return jdbc.exists("SELECT * FROM USERS WHERE id = ?",
+        statement -> statement.setString(1, s));
   }
 
   private UserDaoEntity mapRow(ResultSet resultSet) throws SQLException {
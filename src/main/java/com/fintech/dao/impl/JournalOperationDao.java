@@ -0,0 +1,602 @@
+package com.fintech.dao.impl;
+
+import com.fintech.dao.OperationDao;
+import com.fintech.models.Money;
+import com.fintech.models.dao.OperationDaoEntity;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+
+/**
+ * Operations stored as fixed-width binary records in memory-mapped segment files instead
+ * of OPERATIONS rows.
+ *
+ * <p>A record is {@value #RECORD_SIZE} bytes: id, id of the previous record of the same
+ * account, account key, amount flags, debit and credit in minor units,
+ * creation time and a CRC32 of all of that. Account numbers are stored once in a
+ * dictionary file and referenced by an int key. Ids are sequential, so a record is
+ * found from the first id of its segment alone, and segments roll over once
+ * {@code segmentRecords} records are written.
+ *
+ * <p>Balances are kept in memory and rebuilt with one sequential scan on open. Every
+ * {@value #INDEX_INTERVAL}th operation of an account is sampled with the balance after
+ * it, so {@link #balanceAt} walks back at most that many records of the account.
+ *
+ * <p>Like OPERATIONS, the journal is append only: update and delete aren't supported.
+ */
+public class JournalOperationDao implements OperationDao<OperationDaoEntity, Long>,
+    AutoCloseable {
+
+  static final int RECORD_SIZE = 56;
+  static final int INDEX_INTERVAL = 64;
+
+  private static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+  private static final int HAS_DEBIT = 1;
+  private static final int HAS_CREDIT = 1 << 1;
+  private static final int CRC_OFFSET = 48;
+
+  private final Path directory;
+  private final int segmentRecords;
+  private final List<Segment> segments = new CopyOnWriteArrayList<>();
+  private final FileChannel dictionary;
+
+  private final Map<String, AccountIndex> accounts = new ConcurrentHashMap<>();
+  private final Map<Integer, AccountIndex> accountsByKey = new ConcurrentHashMap<>();
+
+  private volatile long nextId = 1;
+  private int unsynced;
+
+  public JournalOperationDao(Path directory) {
+    this(directory, DEFAULT_SEGMENT_RECORDS);
+  }
+
+  public JournalOperationDao(Path directory, int segmentRecords) {
+    if (segmentRecords <= 0) {
+      throw new IllegalArgumentException("Wrong segment size " + segmentRecords);
+    }
+    this.directory = directory;
+    this.segmentRecords = segmentRecords;
+
+    try {
+      Files.createDirectories(directory);
+      this.dictionary = FileChannel.open(directory.resolve("accounts.dict"),
+          StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      readDictionary();
+      openSegments();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't open operations journal " + directory, e);
+    }
+  }
+
+  @Override
+  public OperationDaoEntity getById(Long id) {
+    if (Objects.isNull(id) || id <= 0 || id >= nextId) {
+      return null;
+    }
+
+    return toEntity(read(id));
+  }
+
+  @Override
+  public synchronized OperationDaoEntity insert(OperationDaoEntity obj) {
+    Record record = append(obj, LocalDateTime.now());
+    sync();
+
+    return toEntity(record);
+  }
+
+  /**
+   * Checks and appends under the same monitor as every other write, the journal has a
+   * single writing process.
+   */
+  @Override
+  public synchronized OperationDaoEntity insertIfCovered(OperationDaoEntity obj) {
+    long delta = AccountBalances.delta(obj.getDebit(), obj.getCredit());
+    if (delta < 0 && accountBalance(obj.getAccountNumber()).getMinorUnits() + delta < 0) {
+      return null;
+    }
+
+    return insert(obj);
+  }
+
+  @Override
+  public synchronized List<Long> insertAll(List<OperationDaoEntity> operations) {
+    if (operations.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    // Nothing is appended unless every balance can take its operations
+    Map<String, Long> balances = new HashMap<>();
+    for (OperationDaoEntity operation : operations) {
+      String number = operation.getAccountNumber();
+      long balance = balances.containsKey(number)
+          ? balances.get(number) : accountBalance(number).getMinorUnits();
+      balances.put(number, AccountBalances.add(balance,
+          AccountBalances.delta(operation.getDebit(), operation.getCredit())));
+    }
+
+    LocalDateTime created = LocalDateTime.now();
+    List<Long> ids = new ArrayList<>(operations.size());
+    for (OperationDaoEntity operation : operations) {
+      ids.add(append(operation, created).id);
+    }
+    sync();
+
+    return ids;
+  }
+
+  @Override
+  public OperationDaoEntity update(OperationDaoEntity obj) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public List<OperationDaoEntity> findAll(Integer limit, Integer offset) {
+    return findAllAfter((long) offset, limit);
+  }
+
+  @Override
+  public List<OperationDaoEntity> findAllAfter(Long after, Integer limit) {
+    long from = Objects.isNull(after) ? 1 : Math.max(after + 1, 1);
+    long to = Math.min(nextId, from + limit);
+
+    List<OperationDaoEntity> operations = new ArrayList<>((int) Math.max(to - from, 0));
+    for (long id = from; id < to; id++) {
+      operations.add(toEntity(read(id)));
+    }
+
+    return operations;
+  }
+
+  @Override
+  public void deleteById(Long id) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void delete(OperationDaoEntity obj) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public boolean isExist(Long id) {
+    return Objects.nonNull(id) && id > 0 && id < nextId;
+  }
+
+  @Override
+  public Money accountBalance(String number) {
+    AccountIndex index = accounts.get(number);
+
+    return Objects.isNull(index) ? Money.ZERO : Money.of(index.balance);
+  }
+
+  @Override
+  public Map<String, Money> accountBalances(Collection<String> numbers) {
+    Map<String, Money> balances = new HashMap<>();
+    for (String number : numbers) {
+      balances.put(number, accountBalance(number));
+    }
+
+    return balances;
+  }
+
+  /**
+   * Same as {@link #accountBalances}: there are no transactions to hold the balances
+   * in, callers rely on the single writer instead.
+   */
+  @Override
+  public Map<String, Money> lockAccountBalances(Collection<String> numbers) {
+    return accountBalances(numbers);
+  }
+
+  /**
+   * Balance of the account right after operation {@code id}.
+   */
+  public synchronized Money balanceAt(String number, long id) {
+    AccountIndex index = accounts.get(number);
+    if (Objects.isNull(index) || index.count == 0) {
+      return Money.ZERO;
+    }
+    if (id >= index.lastId) {
+      return Money.of(index.balance);
+    }
+
+    // Start at the first sample past id, or the latest operation, and walk back
+    int sample = index.firstSampleAfter(id);
+    long current = sample < 0 ? index.lastId : index.sampleIds[sample];
+    long balance = sample < 0 ? index.balance : index.sampleBalances[sample];
+    while (current > id) {
+      Record record = read(current);
+      balance -= record.delta();
+      current = record.previousId;
+    }
+
+    return Money.of(balance);
+  }
+
+  @Override
+  public synchronized Money balanceAt(String number, LocalDateTime timestamp) {
+    AccountIndex index = accounts.get(number);
+    if (Objects.isNull(index) || index.count == 0) {
+      return Money.ZERO;
+    }
+
+    // Samples go in id and so in creation order, find the first one created after
+    // the timestamp and walk back from it
+    int low = 0;
+    int high = index.samples;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (read(index.sampleIds[middle]).created.isAfter(timestamp)) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    long current = low < index.samples ? index.sampleIds[low] : index.lastId;
+    long balance = low < index.samples ? index.sampleBalances[low] : index.balance;
+    while (current > 0) {
+      Record record = read(current);
+      if (!record.created.isAfter(timestamp)) {
+        break;
+      }
+      balance -= record.delta();
+      current = record.previousId;
+    }
+
+    return Money.of(balance);
+  }
+
+  @Override
+  public synchronized void close() {
+    sync();
+    try {
+      dictionary.close();
+      for (Segment segment : segments) {
+        segment.channel.close();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Record append(OperationDaoEntity operation, LocalDateTime created) {
+    AccountIndex index = account(operation.getAccountNumber());
+
+    Record record = new Record();
+    record.id = nextId;
+    record.previousId = index.lastId;
+    record.accountKey = index.key;
+    record.debit = operation.getDebit();
+    record.credit = operation.getCredit();
+    record.created = created;
+    AccountBalances.add(index.balance, record.delta());
+
+    Segment segment = segments.get(segments.size() - 1);
+    if (record.id - segment.firstId >= segmentRecords) {
+      segment = createSegment(record.id);
+    }
+    write(segment.buffer, (int) (record.id - segment.firstId) * RECORD_SIZE, record);
+
+    index.add(record.id, record.delta());
+    nextId = record.id + 1;
+
+    return record;
+  }
+
+  private void write(ByteBuffer buffer, int offset, Record record) {
+    int flags = 0;
+    long debit = 0;
+    long credit = 0;
+    if (Objects.nonNull(record.debit)) {
+      flags |= HAS_DEBIT;
+      debit = record.debit.getMinorUnits();
+    }
+    if (Objects.nonNull(record.credit)) {
+      flags |= HAS_CREDIT;
+      credit = record.credit.getMinorUnits();
+    }
+
+    buffer.putLong(offset, record.id);
+    buffer.putLong(offset + 8, record.previousId);
+    buffer.putInt(offset + 16, record.accountKey);
+    buffer.putInt(offset + 20, flags);
+    buffer.putLong(offset + 24, debit);
+    buffer.putLong(offset + 32, credit);
+    buffer.putLong(offset + 40, record.created.toInstant(ZoneOffset.UTC).toEpochMilli());
+    buffer.putInt(offset + CRC_OFFSET, checksum(buffer, offset));
+  }
+
+  private Record read(long id) {
+    Segment segment = segmentOf(id);
+    Record record = parse(segment.buffer, (int) (id - segment.firstId) * RECORD_SIZE);
+    if (Objects.isNull(record) || record.id != id) {
+      throw new IllegalStateException("Operation " + id + " is corrupt");
+    }
+
+    return record;
+  }
+
+  private Record parse(ByteBuffer buffer, int offset) {
+    int stored = buffer.getInt(offset + CRC_OFFSET);
+    if (buffer.getLong(offset) == 0 || stored != checksum(buffer, offset)) {
+      return null;
+    }
+
+    final int flags = buffer.getInt(offset + 20);
+    Record record = new Record();
+    record.id = buffer.getLong(offset);
+    record.previousId = buffer.getLong(offset + 8);
+    record.accountKey = buffer.getInt(offset + 16);
+    if ((flags & HAS_DEBIT) != 0) {
+      record.debit = Money.of(buffer.getLong(offset + 24));
+    }
+    if ((flags & HAS_CREDIT) != 0) {
+      record.credit = Money.of(buffer.getLong(offset + 32));
+    }
+    record.created = LocalDateTime.ofInstant(
+        Instant.ofEpochMilli(buffer.getLong(offset + 40)), ZoneOffset.UTC);
+
+    return record;
+  }
+
+  private int checksum(ByteBuffer buffer, int offset) {
+    ByteBuffer record = buffer.duplicate();
+    record.position(offset).limit(offset + CRC_OFFSET);
+
+    CRC32 crc = new CRC32();
+    crc.update(record);
+
+    return (int) crc.getValue();
+  }
+
+  private OperationDaoEntity toEntity(Record record) {
+    OperationDaoEntity entity = new OperationDaoEntity();
+    entity.setId(record.id);
+    entity.setAccountNumber(accountsByKey.get(record.accountKey).number);
+    entity.setDebit(record.debit);
+    entity.setCredit(record.credit);
+    entity.setCreated(record.created);
+
+    return entity;
+  }
+
+  private Segment segmentOf(long id) {
+    // Segments are sorted by first id and all but the last one are full
+    int position = (int) ((id - 1) / segmentRecords);
+    if (position < segments.size() && segments.get(position).firstId <= id) {
+      return segments.get(position);
+    }
+
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      if (segments.get(i).firstId <= id) {
+        return segments.get(i);
+      }
+    }
+
+    throw new IllegalArgumentException("Operation " + id + " doesn't exist");
+  }
+
+  private AccountIndex account(String number) {
+    AccountIndex index = accounts.get(number);
+    if (Objects.nonNull(index)) {
+      return index;
+    }
+
+    index = new AccountIndex(accountsByKey.size() + 1, number);
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeInt(index.key);
+      out.writeUTF(number);
+      out.flush();
+
+      ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+      while (buffer.hasRemaining()) {
+        dictionary.write(buffer);
+      }
+      dictionary.force(false);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't write account dictionary", e);
+    }
+    accountsByKey.put(index.key, index);
+    accounts.put(number, index);
+
+    return index;
+  }
+
+  private void readDictionary() throws IOException {
+    // Not closed on purpose: closing the stream would close the channel
+    DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Channels.newInputStream(dictionary.position(0))));
+    long end = 0;
+    long size = dictionary.size();
+    while (end < size) {
+      try {
+        int key = in.readInt();
+        String number = in.readUTF();
+        if (key != accountsByKey.size() + 1) {
+          break;
+        }
+
+        AccountIndex index = new AccountIndex(key, number);
+        accountsByKey.put(key, index);
+        accounts.put(number, index);
+        end += 4 + 2 + utfLength(number);
+      } catch (EOFException e) {
+        break;
+      }
+    }
+
+    // A torn entry was never referenced by a synced record, so it is simply dropped
+    dictionary.truncate(end);
+    dictionary.position(end);
+  }
+
+  private void openSegments() throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.log")) {
+      stream.forEach(files::add);
+    }
+    Collections.sort(files);
+
+    for (Path file : files) {
+      String name = file.getFileName().toString();
+      segments.add(mapSegment(file,
+          Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()))));
+    }
+    if (segments.isEmpty()) {
+      createSegment(1);
+      return;
+    }
+
+    // Records are written in id order, the first one that is missing or fails its
+    // CRC marks the end of the journal
+    for (Segment segment : segments) {
+      if (segment.firstId != nextId) {
+        throw new IllegalStateException("Operations journal has a gap before " + segment.firstId);
+      }
+      for (int slot = 0; slot < segmentRecords; slot++) {
+        Record record = parse(segment.buffer, slot * RECORD_SIZE);
+        if (Objects.isNull(record) || record.id != nextId) {
+          return;
+        }
+        accountsByKey.get(record.accountKey).add(record.id, record.delta());
+        nextId = record.id + 1;
+      }
+    }
+  }
+
+  private Segment createSegment(long firstId) {
+    Path file = directory.resolve(String.format("segment-%020d.log", firstId));
+    try {
+      Segment segment = mapSegment(file, firstId);
+      segments.add(segment);
+
+      return segment;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't create segment " + file, e);
+    }
+  }
+
+  private Segment mapSegment(Path file, long firstId) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+    return new Segment(firstId, channel,
+        channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE));
+  }
+
+  private void sync() {
+    // Every segment written since the last sync, a batch may have rolled over several
+    for (int i = unsynced; i < segments.size(); i++) {
+      segments.get(i).buffer.force();
+    }
+    unsynced = segments.size() - 1;
+  }
+
+  private static int utfLength(String value) {
+    int length = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      length += c >= 0x0001 && c <= 0x007F ? 1 : c > 0x07FF ? 3 : 2;
+    }
+
+    return length;
+  }
+
+  private static final class Segment {
+
+    private final long firstId;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private Segment(long firstId, FileChannel channel, MappedByteBuffer buffer) {
+      this.firstId = firstId;
+      this.channel = channel;
+      this.buffer = buffer;
+    }
+
+  }
+
+  private static final class Record {
+
+    private long id;
+    private long previousId;
+    private int accountKey;
+    private Money debit;
+    private Money credit;
+    private LocalDateTime created;
+
+    private long delta() {
+      return AccountBalances.delta(debit, credit);
+    }
+
+  }
+
+  private static final class AccountIndex {
+
+    private final int key;
+    private final String number;
+    private volatile long balance;
+    private long lastId;
+    private int count;
+    private long[] sampleIds = new long[4];
+    private long[] sampleBalances = new long[4];
+    private int samples;
+
+    private AccountIndex(int key, String number) {
+      this.key = key;
+      this.number = number;
+    }
+
+    private void add(long id, long delta) {
+      balance = Math.addExact(balance, delta);
+      lastId = id;
+      if (++count % INDEX_INTERVAL == 0) {
+        if (samples == sampleIds.length) {
+          sampleIds = Arrays.copyOf(sampleIds, samples * 2);
+          sampleBalances = Arrays.copyOf(sampleBalances, samples * 2);
+        }
+        sampleIds[samples] = id;
+        sampleBalances[samples] = balance;
+        samples++;
+      }
+    }
+
+    private int firstSampleAfter(long id) {
+      int found = Arrays.binarySearch(sampleIds, 0, samples, id + 1);
+      int position = found >= 0 ? found : -found - 1;
+
+      return position < samples ? position : -1;
+    }
+
+  }
+
+}
@@ -0,0 +1,33 @@
+package com.fintech.dao.impl;
+
+import com.fintech.models.Money;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Objects;
+
+/**
+ * Reads and binds nullable BIGINT columns of minor units.
+ */
+final class MoneyColumns {
+
+  private MoneyColumns() {
+  }
+
+  static Money get(ResultSet resultSet, String column) throws SQLException {
+    long minorUnits = resultSet.getLong(column);
+
+    return resultSet.wasNull() ? null : Money.of(minorUnits);
+  }
+
+  static void set(PreparedStatement preparedStatement, int index, Money amount)
+      throws SQLException {
+    if (Objects.isNull(amount)) {
+      preparedStatement.setNull(index, Types.BIGINT);
+    } else {
+      preparedStatement.setLong(index, amount.getMinorUnits());
+    }
+  }
+
+}
@@ -0,0 +1,91 @@
+package com.fintech.dao.impl;
+
+import com.fintech.dao.AccountNumberAllocator;
+import com.fintech.dao.JdbcTemplate;
+import java.util.Objects;
+
+/**
+ * Hands out account numbers from blocks reserved on the ACCOUNT_NUMBERS sequence.
+ *
+ * <p>Every NEXT VALUE reserves a whole block of the sequence increment size, so the
+ * database is only touched once per block and numbers never collide across instances.
+ */
+public class SequenceAccountNumberAllocator implements AccountNumberAllocator {
+
+  private static final String PREFIX = "KZ";
+
+  private final boolean checkDigit;
+
+  private long next;
+  private long blockEnd;
+
+  public SequenceAccountNumberAllocator() {
+    this(true);
+  }
+
+  public SequenceAccountNumberAllocator(boolean checkDigit) {
+    this.checkDigit = checkDigit;
+  }
+
+  @Override
+  public String next() {
+    long number = nextNumber();
+
+    return checkDigit ? PREFIX + number + luhn(number) : PREFIX + number;
+  }
+
+  public static boolean isValid(String number) {
+    if (!number.startsWith(PREFIX) || number.length() < PREFIX.length() + 2) {
+      return false;
+    }
+
+    try {
+      long body = Long.parseLong(number.substring(PREFIX.length(), number.length() - 1));
+      int digit = Character.digit(number.charAt(number.length() - 1), 10);
+
+      return luhn(body) == digit;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private synchronized long nextNumber() {
+    if (next == blockEnd) {
+      reserveBlock();
+    }
+
+    return next++;
+  }
+
+  private void reserveBlock() {
+    long[] block = JdbcTemplate.shared().queryOne(
+        "SELECT NEXT VALUE FOR ACCOUNT_NUMBERS, INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES "
+            + "WHERE SEQUENCE_NAME = 'ACCOUNT_NUMBERS'", statement -> { },
+        resultSet -> new long[] {resultSet.getLong(1), resultSet.getLong(2)});
+    if (Objects.isNull(block)) {
+      throw new IllegalStateException("Sequence ACCOUNT_NUMBERS doesn't exist");
+    }
+
+    next = block[0];
+    blockEnd = next + block[1];
+  }
+
+  private static int luhn(long number) {
+    int sum = 0;
+    boolean twice = true;
+    for (long rest = number; rest > 0; rest /= 10) {
+      int digit = (int) (rest % 10);
+      if (twice) {
+        digit *= 2;
+        if (digit > 9) {
+          digit -= 9;
+        }
+      }
+      sum += digit;
+      twice = !twice;
+    }
+
+    return (10 - sum % 10) % 10;
+  }
+
+}
@@ -0,0 +1,122 @@
+package com.fintech.events;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Fans events out to the subscribers of a topic within the process. Every subscription
+ * buffers its events on its own, up to its capacity, then drops the oldest ones: a slow
+ * subscriber misses intermediate events instead of holding back the publisher or the
+ * other subscribers.
+ *
+ * <p>An event is only computed when its topic has subscribers. It is computed outside of
+ * any lock, as it may be a database read, after taking a ticket of the topic. The events
+ * are handed to the subscriptions under a lock of the topic, and a subscription skips an
+ * event whose ticket is older than the last one it got: a computation started later saw
+ * every change the earlier one did, so a subscriber never ends up on a stale event.
+ */
+public class EventBus<T> {
+
+  private final ConcurrentMap<String, Topic<T>> topics = new ConcurrentHashMap<>();
+
+  private final AtomicInteger subscribers = new AtomicInteger();
+  private final LongAdder published = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+
+  /**
+   * Subscribes to the topic, the subscription starts with the {@code initial} event so
+   * the subscriber doesn't miss changes made before its first event.
+   *
+   * @throws IllegalArgumentException if {@code capacity} is not positive
+   */
+  public Subscription<T> subscribe(String topic, int capacity, Supplier<T> initial) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Wrong capacity " + capacity);
+    }
+
+    Subscription<T> subscription = new Subscription<>(this, topic, capacity);
+    Topic<T> subscribed = topics.compute(topic, (name, existing) -> {
+      Topic<T> added = Objects.isNull(existing) ? new Topic<>() : existing;
+      added.subscriptions.add(subscription);
+      return added;
+    });
+    subscribers.incrementAndGet();
+
+    try {
+      long ticket = subscribed.tickets.incrementAndGet();
+      T value = initial.get();
+      synchronized (subscribed) {
+        subscription.offer(value, ticket);
+      }
+    } catch (RuntimeException e) {
+      subscription.close();
+      throw e;
+    }
+
+    return subscription;
+  }
+
+  /**
+   * Hands the event to every subscription of the topic, nothing is computed if there
+   * are none.
+   */
+  public void publish(String topic, Supplier<T> event) {
+    Topic<T> subscribed = topics.get(topic);
+    if (Objects.isNull(subscribed) || subscribed.subscriptions.isEmpty()) {
+      return;
+    }
+
+    long ticket = subscribed.tickets.incrementAndGet();
+    T value = event.get();
+    synchronized (subscribed) {
+      for (Subscription<T> subscription : subscribed.subscriptions) {
+        subscription.offer(value, ticket);
+      }
+    }
+    published.increment();
+  }
+
+  public boolean hasSubscribers() {
+    return subscribers.get() > 0;
+  }
+
+  public int getSubscribers() {
+    return subscribers.get();
+  }
+
+  public long getPublished() {
+    return published.sum();
+  }
+
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  void unsubscribe(Subscription<T> subscription) {
+    topics.computeIfPresent(subscription.getTopic(), (name, topic) -> {
+      if (topic.subscriptions.remove(subscription)) {
+        subscribers.decrementAndGet();
+      }
+      return topic.subscriptions.isEmpty() ? null : topic;
+    });
+  }
+
+  void dropped() {
+    dropped.increment();
+  }
+
+  private static final class Topic<T> {
+
+    private final List<Subscription<T>> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong tickets = new AtomicLong();
+
+  }
+
+}
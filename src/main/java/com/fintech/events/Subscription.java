@@ -0,0 +1,95 @@
+package com.fintech.events;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+
+/**
+ * Events of one topic buffered for one subscriber, see {@link EventBus#subscribe}. Once
+ * the buffer holds {@code capacity} events, a new event drops the oldest one.
+ */
+public final class Subscription<T> implements AutoCloseable {
+
+  private static final Runnable NO_LISTENER = () -> { };
+
+  private final EventBus<T> bus;
+  private final String topic;
+  private final int capacity;
+
+  private final Deque<T> buffer = new ArrayDeque<>();
+  private volatile Runnable listener = NO_LISTENER;
+  private boolean closed;
+  // Guarded by the lock of the topic, see EventBus
+  private long ticket;
+
+  Subscription(EventBus<T> bus, String topic, int capacity) {
+    this.bus = bus;
+    this.topic = topic;
+    this.capacity = capacity;
+  }
+
+  public String getTopic() {
+    return topic;
+  }
+
+  /**
+   * Sets the listener run after every buffered event, on the publishing thread. It is
+   * run right away if there are buffered events already.
+   */
+  public void onEvent(Runnable listener) {
+    this.listener = listener;
+    if (hasEvents()) {
+      listener.run();
+    }
+  }
+
+  /**
+   * Takes the oldest buffered event.
+   *
+   * @return null if there are none
+   */
+  public synchronized T poll() {
+    return buffer.pollFirst();
+  }
+
+  public synchronized boolean hasEvents() {
+    return !buffer.isEmpty();
+  }
+
+  /**
+   * Stops the events, the buffered ones are dropped.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      buffer.clear();
+    }
+
+    bus.unsubscribe(this);
+  }
+
+  void offer(T event, long ticket) {
+    if (Objects.isNull(event) || ticket < this.ticket) {
+      return;
+    }
+    this.ticket = ticket;
+
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      if (buffer.size() == capacity) {
+        buffer.pollFirst();
+        bus.dropped();
+      }
+      buffer.addLast(event);
+    }
+
+    listener.run();
+  }
+
+}
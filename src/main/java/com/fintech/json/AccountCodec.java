@@ -0,0 +1,48 @@
+package com.fintech.json;
+
+import com.fintech.models.Account;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.Objects;
+
+class AccountCodec implements JsonCodec<Account> {
+
+  @Override
+  public Account read(JsonReader reader) throws IOException {
+    if (Json.nextNull(reader)) {
+      return null;
+    }
+
+    Account.AccountBuilder builder = Account.builder();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "number":
+          builder.number(Json.nextString(reader));
+          break;
+        case "currency":
+          builder.currency(Json.nextString(reader));
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    return builder.build();
+  }
+
+  @Override
+  public void write(JsonWriter writer, Account value) throws IOException {
+    writer.beginObject();
+    if (Objects.nonNull(value.getNumber())) {
+      writer.name("number").value(value.getNumber());
+    }
+    if (Objects.nonNull(value.getCurrency())) {
+      writer.name("currency").value(value.getCurrency());
+    }
+    writer.endObject();
+  }
+
+}
@@ -0,0 +1,41 @@
+package com.fintech.json;
+
+import com.fintech.models.AccountOperation;
+import com.fintech.models.Money;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.Objects;
+
+class AccountOperationCodec implements JsonCodec<AccountOperation> {
+
+  @Override
+  public AccountOperation read(JsonReader reader) throws IOException {
+    if (Json.nextNull(reader)) {
+      return null;
+    }
+
+    Money amount = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if ("amount".equals(reader.nextName())) {
+        amount = Json.nextMoney(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    return new AccountOperation(amount);
+  }
+
+  @Override
+  public void write(JsonWriter writer, AccountOperation value) throws IOException {
+    writer.beginObject();
+    if (Objects.nonNull(value.getAmount())) {
+      writer.name("amount").jsonValue(value.getAmount().toString());
+    }
+    writer.endObject();
+  }
+
+}
@@ -0,0 +1,50 @@
+package com.fintech.json;
+
+import com.fintech.models.ErrorResponse;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.Objects;
+
+class ErrorResponseCodec implements JsonCodec<ErrorResponse> {
+
+  @Override
+  public ErrorResponse read(JsonReader reader) throws IOException {
+    if (Json.nextNull(reader)) {
+      return null;
+    }
+
+    ErrorResponse.ErrorResponseBuilder builder = ErrorResponse.builder();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "code":
+          builder.code(reader.nextInt());
+          break;
+        case "message":
+          builder.message(Json.nextString(reader));
+          break;
+        case "timestamp":
+          builder.timestamp(reader.nextLong());
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    return builder.build();
+  }
+
+  @Override
+  public void write(JsonWriter writer, ErrorResponse value) throws IOException {
+    writer.beginObject();
+    writer.name("code").value(value.getCode());
+    if (Objects.nonNull(value.getMessage())) {
+      writer.name("message").value(value.getMessage());
+    }
+    writer.name("timestamp").value(value.getTimestamp());
+    writer.endObject();
+  }
+
+}
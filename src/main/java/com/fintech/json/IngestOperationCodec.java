@@ -0,0 +1,66 @@
+package com.fintech.json;
+
+import com.fintech.models.IngestOperation;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.Objects;
+
+class IngestOperationCodec implements JsonCodec<IngestOperation> {
+
+  @Override
+  public IngestOperation read(JsonReader reader) throws IOException {
+    if (Json.nextNull(reader)) {
+      return null;
+    }
+
+    IngestOperation.IngestOperationBuilder builder = IngestOperation.builder();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "type":
+          builder.type(IngestOperation.Type.of(Json.nextString(reader)));
+          break;
+        case "account":
+          builder.account(Json.nextString(reader));
+          break;
+        case "from":
+          builder.accountFrom(Json.nextString(reader));
+          break;
+        case "to":
+          builder.accountTo(Json.nextString(reader));
+          break;
+        case "amount":
+          builder.amount(Json.nextMoney(reader));
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    return builder.build();
+  }
+
+  @Override
+  public void write(JsonWriter writer, IngestOperation value) throws IOException {
+    writer.beginObject();
+    if (Objects.nonNull(value.getType())) {
+      writer.name("type").value(value.getType().getValue());
+    }
+    if (Objects.nonNull(value.getAccount())) {
+      writer.name("account").value(value.getAccount());
+    }
+    if (Objects.nonNull(value.getAccountFrom())) {
+      writer.name("from").value(value.getAccountFrom());
+    }
+    if (Objects.nonNull(value.getAccountTo())) {
+      writer.name("to").value(value.getAccountTo());
+    }
+    if (Objects.nonNull(value.getAmount())) {
+      writer.name("amount").jsonValue(value.getAmount().toString());
+    }
+    writer.endObject();
+  }
+
+}
@@ -0,0 +1,333 @@
+package com.fintech.json;
+
+import com.fintech.models.Account;
+import com.fintech.models.AccountOperation;
+import com.fintech.models.ErrorResponse;
+import com.fintech.models.IngestOperation;
+import com.fintech.models.Money;
+import com.fintech.models.TransferOperation;
+import com.fintech.models.TransferRepresentation;
+import com.fintech.models.TransferResult;
+import com.fintech.models.User;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HttpString;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Reads request bodies and writes responses with the model codecs.
+ *
+ * <p>Bodies are parsed straight from the received bytes. Responses are encoded into a
+ * per-thread scratch buffer and sent from a buffer of the connection pool, falling back
+ * to a heap copy when the response doesn't fit into one.
+ */
+public final class Json {
+
+  public static final JsonCodec<User> USER = new UserCodec();
+  public static final JsonCodec<Account> ACCOUNT = new AccountCodec();
+  public static final JsonCodec<AccountOperation> ACCOUNT_OPERATION = new AccountOperationCodec();
+  public static final JsonCodec<TransferOperation> TRANSFER_OPERATION
+      = new TransferOperationCodec();
+  public static final JsonCodec<TransferRepresentation> TRANSFER_REPRESENTATION
+      = new TransferRepresentationCodec();
+  public static final JsonCodec<TransferResult> TRANSFER_RESULT = new TransferResultCodec();
+  public static final JsonCodec<ErrorResponse> ERROR_RESPONSE = new ErrorResponseCodec();
+  public static final JsonCodec<IngestOperation> INGEST_OPERATION = new IngestOperationCodec();
+
+  private static final HttpString CONTENT_TYPE = HttpString.tryFromString("Content-Type");
+  private static final String APPLICATION_JSON = "application/json";
+
+  private static final int SCRATCH_SIZE = 4096;
+  private static final int MAX_RETAINED_SIZE = 256 * 1024;
+  private static final ThreadLocal<Utf8Writer> SCRATCH
+      = ThreadLocal.withInitial(() -> new Utf8Writer(SCRATCH_SIZE));
+
+  private Json() {
+  }
+
+  /**
+   * Parses the body the same way {@code Gson.fromJson} does: leniently, an empty body is
+   * null and trailing content is an error.
+   */
+  public static <T> T decode(byte[] bytes, JsonCodec<T> codec) {
+    return decode(bytes, bytes.length, codec);
+  }
+
+  /**
+   * Parses the first {@code length} bytes, see {@link #decode(byte[], JsonCodec)}.
+   */
+  public static <T> T decode(byte[] bytes, int length, JsonCodec<T> codec) {
+    JsonReader reader = new JsonReader(new Utf8Reader(bytes, length));
+    reader.setLenient(true);
+    try {
+      try {
+        reader.peek();
+      } catch (EOFException e) {
+        return null;
+      }
+
+      T value = codec.read(reader);
+      if (reader.peek() != JsonToken.END_DOCUMENT) {
+        throw new JsonSyntaxException("JSON document was not fully consumed");
+      }
+
+      return value;
+    } catch (IllegalStateException | IllegalArgumentException | IOException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+
+  /**
+   * Parses a JSON array body with the codec of its items, see {@link #decode}.
+   */
+  public static <T> List<T> decodeList(byte[] bytes, JsonCodec<T> codec) {
+    return decode(bytes, new JsonCodec<List<T>>() {
+      @Override
+      public List<T> read(JsonReader reader) throws IOException {
+        if (nextNull(reader)) {
+          return null;
+        }
+
+        List<T> values = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          values.add(codec.read(reader));
+        }
+        reader.endArray();
+
+        return values;
+      }
+
+      @Override
+      public void write(JsonWriter writer, List<T> values) {
+        throw new UnsupportedOperationException();
+      }
+    });
+  }
+
+  public static <T> byte[] encode(JsonCodec<T> codec, T value) {
+    Utf8Writer out = scratch();
+    try {
+      writeValue(out, codec, value);
+      return Arrays.copyOf(out.buffer(), out.size());
+    } finally {
+      release(out);
+    }
+  }
+
+  public static <T> void send(HttpServerExchange exchange, JsonCodec<T> codec, T value) {
+    Utf8Writer out = scratch();
+    try {
+      writeValue(out, codec, value);
+      sendBytes(exchange, out);
+    } finally {
+      release(out);
+    }
+  }
+
+  public static <T> void sendList(HttpServerExchange exchange, JsonCodec<T> codec,
+                                  List<T> values) {
+    Utf8Writer out = scratch();
+    try {
+      JsonWriter writer = writer(out);
+      writer.beginArray();
+      for (T value : values) {
+        codec.write(writer, value);
+      }
+      writer.endArray();
+      writer.flush();
+
+      sendBytes(exchange, out);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      release(out);
+    }
+  }
+
+  /**
+   * Writes the values as a JSON array while they are read, with chunked encoding. The
+   * encoded elements go out every {@value #SCRATCH_SIZE} bytes through the blocking
+   * response stream, which waits for the client to take them, so neither the values
+   * nor the response are ever held in memory as a whole. Must not run on an IO thread.
+   *
+   * <p>Once the status is sent an error can only abort the response, the client sees
+   * a truncated array.
+   */
+  public static <T> void sendStream(HttpServerExchange exchange, JsonCodec<T> codec,
+                                    Iterator<T> values) {
+    exchange.getResponseHeaders().add(CONTENT_TYPE, APPLICATION_JSON);
+    exchange.startBlocking();
+
+    Utf8Writer out = scratch();
+    try (OutputStream stream = exchange.getOutputStream()) {
+      JsonWriter writer = writer(out);
+      writer.beginArray();
+      while (values.hasNext()) {
+        codec.write(writer, values.next());
+        if (out.size() >= SCRATCH_SIZE) {
+          stream.write(out.buffer(), 0, out.size());
+          out.reset();
+        }
+      }
+      writer.endArray();
+      writer.flush();
+
+      stream.write(out.buffer(), 0, out.size());
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      release(out);
+    }
+  }
+
+  /**
+   * Writes every value as one line of JSON and flushes them, the response of a
+   * newline-delimited JSON exchange on the blocking response stream.
+   */
+  public static <T> void writeLines(OutputStream stream, JsonCodec<T> codec, List<T> values)
+      throws IOException {
+    Utf8Writer out = scratch();
+    try {
+      for (T value : values) {
+        // A writer per line, a JsonWriter takes a single top-level value
+        JsonWriter writer = writer(out);
+        codec.write(writer, value);
+        writer.flush();
+        out.write('\n');
+        if (out.size() >= SCRATCH_SIZE) {
+          stream.write(out.buffer(), 0, out.size());
+          out.reset();
+        }
+      }
+
+      stream.write(out.buffer(), 0, out.size());
+      stream.flush();
+    } finally {
+      release(out);
+    }
+  }
+
+  public static void sendError(HttpServerExchange exchange, int code, String message) {
+    exchange.setStatusCode(code);
+    send(exchange, ERROR_RESPONSE, ErrorResponse.builder().code(code)
+        .message(message)
+        .timestamp(System.currentTimeMillis()).build());
+  }
+
+  static String nextString(JsonReader reader) throws IOException {
+    JsonToken token = reader.peek();
+    if (token == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    } else if (token == JsonToken.BOOLEAN) {
+      return Boolean.toString(reader.nextBoolean());
+    }
+
+    return reader.nextString();
+  }
+
+  /**
+   * Reads a decimal amount given either as a number or as a string.
+   */
+  static Money nextMoney(JsonReader reader) throws IOException {
+    String value = nextString(reader);
+
+    return Objects.isNull(value) ? null : Money.parse(value);
+  }
+
+  static Long nextLong(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+
+    return reader.nextLong();
+  }
+
+  static boolean nextNull(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return true;
+    }
+
+    return false;
+  }
+
+  private static <T> void writeValue(Utf8Writer out, JsonCodec<T> codec, T value) {
+    try {
+      JsonWriter writer = writer(out);
+      if (Objects.isNull(value)) {
+        writer.nullValue();
+      } else {
+        codec.write(writer, value);
+      }
+      writer.flush();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static JsonWriter writer(Utf8Writer out) {
+    JsonWriter writer = new JsonWriter(out);
+    writer.setHtmlSafe(true);
+
+    return writer;
+  }
+
+  private static void sendBytes(HttpServerExchange exchange, Utf8Writer out) {
+    exchange.getResponseHeaders().add(CONTENT_TYPE, APPLICATION_JSON);
+
+    PooledByteBuffer pooled = exchange.getConnection().getByteBufferPool().allocate();
+    ByteBuffer buffer = pooled.getBuffer();
+    if (out.size() > buffer.remaining()) {
+      pooled.close();
+      exchange.getResponseSender().send(ByteBuffer.wrap(Arrays.copyOf(out.buffer(), out.size())));
+      return;
+    }
+
+    buffer.put(out.buffer(), 0, out.size());
+    buffer.flip();
+    exchange.getResponseSender().send(buffer, new IoCallback() {
+      @Override
+      public void onComplete(HttpServerExchange exchange, Sender sender) {
+        pooled.close();
+        IoCallback.END_EXCHANGE.onComplete(exchange, sender);
+      }
+
+      @Override
+      public void onException(HttpServerExchange exchange, Sender sender, IOException exception) {
+        pooled.close();
+        IoCallback.END_EXCHANGE.onException(exchange, sender, exception);
+      }
+    });
+  }
+
+  private static Utf8Writer scratch() {
+    Utf8Writer out = SCRATCH.get();
+    out.reset();
+
+    return out;
+  }
+
+  private static void release(Utf8Writer out) {
+    if (out.capacity() > MAX_RETAINED_SIZE) {
+      SCRATCH.remove();
+    }
+  }
+
+}
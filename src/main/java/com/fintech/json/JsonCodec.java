@@ -0,0 +1,17 @@
+package com.fintech.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+
+/**
+ * Streaming reader and writer of one model type. Null fields are not written, the same
+ * way Gson leaves them out by default.
+ */
+public interface JsonCodec<T> {
+
+  T read(JsonReader reader) throws IOException;
+
+  void write(JsonWriter writer, T value) throws IOException;
+
+}
@@ -0,0 +1,138 @@
+package com.fintech.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads newline-delimited JSON from a stream one line at a time. The stream is read in
+ * chunks into a buffer that is reused for every line, so the body is never held as a
+ * whole, and blank lines are skipped.
+ *
+ * <p>A line longer than {@code maxLength} bytes is skipped up to its end and fails to
+ * decode, the lines after it are read as usual.
+ */
+public final class JsonLineReader {
+
+  private static final int CHUNK_SIZE = 8192;
+
+  private final InputStream in;
+  private final int maxLength;
+
+  private final byte[] chunk = new byte[CHUNK_SIZE];
+  private int chunkPosition;
+  private int chunkLimit;
+
+  private byte[] line = new byte[CHUNK_SIZE];
+  private int length;
+  private boolean tooLong;
+  private int number = -1;
+
+  public JsonLineReader(InputStream in, int maxLength) {
+    this.in = in;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Moves to the next line that is not blank, blocking until it is read whole.
+   *
+   * @return false at the end of the stream
+   */
+  public boolean next() throws IOException {
+    while (readLine()) {
+      number++;
+      if (tooLong || !isBlank()) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Zero-based number of the current line, blank lines included.
+   */
+  public int number() {
+    return number;
+  }
+
+  /**
+   * Checks if the next line can be read, at least in part, without blocking.
+   */
+  public boolean ready() throws IOException {
+    return chunkPosition < chunkLimit || in.available() > 0;
+  }
+
+  /**
+   * Parses the current line, see {@link Json#decode(byte[], JsonCodec)}.
+   *
+   * @throws IllegalArgumentException if the line is longer than {@code maxLength}
+   */
+  public <T> T decode(JsonCodec<T> codec) {
+    if (tooLong) {
+      throw new IllegalArgumentException("Line is longer than " + maxLength + " bytes");
+    }
+
+    return Json.decode(line, length, codec);
+  }
+
+  private boolean readLine() throws IOException {
+    length = 0;
+    tooLong = false;
+
+    boolean read = false;
+    while (true) {
+      if (chunkPosition == chunkLimit) {
+        int count = in.read(chunk);
+        if (count < 0) {
+          return read;
+        }
+        chunkPosition = 0;
+        chunkLimit = count;
+        continue;
+      }
+      read = true;
+
+      int end = chunkPosition;
+      while (end < chunkLimit && chunk[end] != '\n') {
+        end++;
+      }
+      append(chunkPosition, end - chunkPosition);
+
+      if (end < chunkLimit) {
+        chunkPosition = end + 1;
+        return true;
+      }
+      chunkPosition = chunkLimit;
+    }
+  }
+
+  private void append(int offset, int count) {
+    if (tooLong) {
+      return;
+    }
+    if (length + count > maxLength) {
+      tooLong = true;
+      length = 0;
+      return;
+    }
+
+    if (length + count > line.length) {
+      line = Arrays.copyOf(line, Math.min(Math.max(line.length * 2, length + count), maxLength));
+    }
+    System.arraycopy(chunk, offset, line, length, count);
+    length += count;
+  }
+
+  private boolean isBlank() {
+    for (int i = 0; i < length; i++) {
+      byte b = line[i];
+      if (b != ' ' && b != '\t' && b != '\r') {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+}
@@ -0,0 +1,54 @@
+package com.fintech.json;
+
+import com.fintech.models.TransferOperation;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.Objects;
+
+class TransferOperationCodec implements JsonCodec<TransferOperation> {
+
+  @Override
+  public TransferOperation read(JsonReader reader) throws IOException {
+    if (Json.nextNull(reader)) {
+      return null;
+    }
+
+    TransferOperation.TransferOperationBuilder builder = TransferOperation.builder();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "from":
+          builder.accountFrom(Json.nextString(reader));
+          break;
+        case "to":
+          builder.accountTo(Json.nextString(reader));
+          break;
+        case "amount":
+          builder.amount(Json.nextMoney(reader));
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    return builder.build();
+  }
+
+  @Override
+  public void write(JsonWriter writer, TransferOperation value) throws IOException {
+    writer.beginObject();
+    if (Objects.nonNull(value.getAccountFrom())) {
+      writer.name("from").value(value.getAccountFrom());
+    }
+    if (Objects.nonNull(value.getAccountTo())) {
+      writer.name("to").value(value.getAccountTo());
+    }
+    if (Objects.nonNull(value.getAmount())) {
+      writer.name("amount").jsonValue(value.getAmount().toString());
+    }
+    writer.endObject();
+  }
+
+}
@@ -0,0 +1,72 @@
+package com.fintech.json;
+
+import com.fintech.models.TransferRepresentation;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Objects;
+
+class TransferRepresentationCodec implements JsonCodec<TransferRepresentation> {
+
+  @Override
+  public TransferRepresentation read(JsonReader reader) throws IOException {
+    if (Json.nextNull(reader)) {
+      return null;
+    }
+
+    TransferRepresentation.TransferRepresentationBuilder builder
+        = TransferRepresentation.builder();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "id":
+          builder.id(Json.nextLong(reader));
+          break;
+        case "accountFrom":
+          builder.accountFrom(Json.nextString(reader));
+          break;
+        case "accountTo":
+          builder.accountTo(Json.nextString(reader));
+          break;
+        case "amount":
+          builder.amount(Json.nextMoney(reader));
+          break;
+        case "created":
+          String created = Json.nextString(reader);
+          builder.created(Objects.isNull(created) ? null
+              : LocalDateTime.parse(created, DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    return builder.build();
+  }
+
+  @Override
+  public void write(JsonWriter writer, TransferRepresentation value) throws IOException {
+    writer.beginObject();
+    if (Objects.nonNull(value.getId())) {
+      writer.name("id").value(value.getId());
+    }
+    if (Objects.nonNull(value.getAccountFrom())) {
+      writer.name("accountFrom").value(value.getAccountFrom());
+    }
+    if (Objects.nonNull(value.getAccountTo())) {
+      writer.name("accountTo").value(value.getAccountTo());
+    }
+    if (Objects.nonNull(value.getAmount())) {
+      writer.name("amount").jsonValue(value.getAmount().toString());
+    }
+    if (Objects.nonNull(value.getCreated())) {
+      writer.name("created")
+          .value(value.getCreated().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+    }
+    writer.endObject();
+  }
+
+}
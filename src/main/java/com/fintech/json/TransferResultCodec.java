@@ -0,0 +1,59 @@
+package com.fintech.json;
+
+import com.fintech.models.TransferResult;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.Objects;
+
+class TransferResultCodec implements JsonCodec<TransferResult> {
+
+  @Override
+  public TransferResult read(JsonReader reader) throws IOException {
+    if (Json.nextNull(reader)) {
+      return null;
+    }
+
+    TransferResult.TransferResultBuilder builder = TransferResult.builder();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "index":
+          builder.index(reader.nextInt());
+          break;
+        case "id":
+          builder.id(Json.nextLong(reader));
+          break;
+        case "status":
+          String status = Json.nextString(reader);
+          builder.status(Objects.isNull(status) ? null : TransferResult.Status.valueOf(status));
+          break;
+        case "message":
+          builder.message(Json.nextString(reader));
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    return builder.build();
+  }
+
+  @Override
+  public void write(JsonWriter writer, TransferResult value) throws IOException {
+    writer.beginObject();
+    writer.name("index").value(value.getIndex());
+    if (Objects.nonNull(value.getId())) {
+      writer.name("id").value(value.getId());
+    }
+    if (Objects.nonNull(value.getStatus())) {
+      writer.name("status").value(value.getStatus().name());
+    }
+    if (Objects.nonNull(value.getMessage())) {
+      writer.name("message").value(value.getMessage());
+    }
+    writer.endObject();
+  }
+
+}
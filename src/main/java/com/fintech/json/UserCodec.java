@@ -0,0 +1,48 @@
+package com.fintech.json;
+
+import com.fintech.models.User;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.Objects;
+
+class UserCodec implements JsonCodec<User> {
+
+  @Override
+  public User read(JsonReader reader) throws IOException {
+    if (Json.nextNull(reader)) {
+      return null;
+    }
+
+    User.UserBuilder builder = User.builder();
+    reader.beginObject();
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "id":
+          builder.id(Json.nextString(reader));
+          break;
+        case "fullName":
+          builder.fullName(Json.nextString(reader));
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    return builder.build();
+  }
+
+  @Override
+  public void write(JsonWriter writer, User value) throws IOException {
+    writer.beginObject();
+    if (Objects.nonNull(value.getId())) {
+      writer.name("id").value(value.getId());
+    }
+    if (Objects.nonNull(value.getFullName())) {
+      writer.name("fullName").value(value.getFullName());
+    }
+    writer.endObject();
+  }
+
+}
@@ -0,0 +1,107 @@
+package com.fintech.json;
+
+import java.io.Reader;
+
+/**
+ * Decodes UTF-8 straight from a byte array, without the intermediate byte buffer of
+ * {@link java.io.InputStreamReader}. Malformed sequences are read as U+FFFD.
+ */
+final class Utf8Reader extends Reader {
+
+  private static final char REPLACEMENT = '\uFFFD';
+
+  private final byte[] bytes;
+  private final int limit;
+  private int position;
+  private char pending;
+
+  Utf8Reader(byte[] bytes) {
+    this(bytes, bytes.length);
+  }
+
+  /**
+   * Reads only the first {@code length} bytes.
+   */
+  Utf8Reader(byte[] bytes, int length) {
+    this.bytes = bytes;
+    this.limit = length;
+  }
+
+  @Override
+  public int read(char[] buffer, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    }
+    if (position >= limit && pending == 0) {
+      return -1;
+    }
+
+    int count = 0;
+    if (pending != 0) {
+      buffer[offset + count++] = pending;
+      pending = 0;
+    }
+
+    while (count < length && position < limit) {
+      int first = bytes[position];
+      if (first >= 0) {
+        buffer[offset + count++] = (char) first;
+        position++;
+        continue;
+      }
+
+      int codePoint = decode(first);
+      if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+        buffer[offset + count++] = (char) codePoint;
+      } else {
+        buffer[offset + count++] = Character.highSurrogate(codePoint);
+        if (count < length) {
+          buffer[offset + count++] = Character.lowSurrogate(codePoint);
+        } else {
+          pending = Character.lowSurrogate(codePoint);
+        }
+      }
+    }
+
+    return count;
+  }
+
+  @Override
+  public void close() {
+  }
+
+  private int decode(int first) {
+    int size;
+    int codePoint;
+    if ((first & 0xE0) == 0xC0) {
+      size = 2;
+      codePoint = first & 0x1F;
+    } else if ((first & 0xF0) == 0xE0) {
+      size = 3;
+      codePoint = first & 0x0F;
+    } else if ((first & 0xF8) == 0xF0) {
+      size = 4;
+      codePoint = first & 0x07;
+    } else {
+      position++;
+      return REPLACEMENT;
+    }
+
+    if (position + size > limit) {
+      position++;
+      return REPLACEMENT;
+    }
+    for (int i = 1; i < size; i++) {
+      int next = bytes[position + i];
+      if ((next & 0xC0) != 0x80) {
+        position += i;
+        return REPLACEMENT;
+      }
+      codePoint = (codePoint << 6) | (next & 0x3F);
+    }
+    position += size;
+
+    return codePoint > Character.MAX_CODE_POINT ? REPLACEMENT : codePoint;
+  }
+
+}
@@ -0,0 +1,104 @@
+package com.fintech.json;
+
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Encodes characters to UTF-8 into a growable byte array that is reused between calls.
+ */
+final class Utf8Writer extends Writer {
+
+  private byte[] buffer;
+  private int size;
+  private char highSurrogate;
+
+  Utf8Writer(int capacity) {
+    this.buffer = new byte[capacity];
+  }
+
+  @Override
+  public void write(int c) {
+    encode((char) c);
+  }
+
+  @Override
+  public void write(char[] chars, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      encode(chars[i]);
+    }
+  }
+
+  @Override
+  public void write(String str, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      encode(str.charAt(i));
+    }
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public void close() {
+  }
+
+  byte[] buffer() {
+    return buffer;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int capacity() {
+    return buffer.length;
+  }
+
+  void reset() {
+    size = 0;
+    highSurrogate = 0;
+  }
+
+  private void encode(char c) {
+    if (highSurrogate != 0) {
+      char high = highSurrogate;
+      highSurrogate = 0;
+      if (Character.isLowSurrogate(c)) {
+        int codePoint = Character.toCodePoint(high, c);
+        ensure(4);
+        buffer[size++] = (byte) (0xF0 | (codePoint >> 18));
+        buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buffer[size++] = (byte) (0x80 | (codePoint & 0x3F));
+        return;
+      }
+      encode('?');
+    }
+
+    if (c < 0x80) {
+      ensure(1);
+      buffer[size++] = (byte) c;
+    } else if (c < 0x800) {
+      ensure(2);
+      buffer[size++] = (byte) (0xC0 | (c >> 6));
+      buffer[size++] = (byte) (0x80 | (c & 0x3F));
+    } else if (Character.isHighSurrogate(c)) {
+      highSurrogate = c;
+    } else if (Character.isLowSurrogate(c)) {
+      encode('?');
+    } else {
+      ensure(3);
+      buffer[size++] = (byte) (0xE0 | (c >> 12));
+      buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+      buffer[size++] = (byte) (0x80 | (c & 0x3F));
+    }
+  }
+
+  private void ensure(int bytes) {
+    if (size + bytes > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + bytes));
+    }
+  }
+
+}
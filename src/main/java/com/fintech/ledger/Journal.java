@@ -0,0 +1,199 @@
+package com.fintech.ledger;
+
+import com.fintech.models.Money;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file of {@link LedgerEntry} records.
+ *
+ * <p>Every record is framed as its payload length and CRC32 followed by the payload.
+ * {@link #append} only buffers, {@link #flush} writes everything buffered and forces it
+ * to disk, so one fsync covers all the entries appended since the previous flush.
+ * A torn or corrupt tail left by a crash is cut off by {@link #replay}.
+ *
+ * <p>A journal has a single writer, it isn't thread safe.
+ */
+public class Journal implements AutoCloseable {
+
+  private static final int HEADER_SIZE = 8;
+  private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+  private final Path path;
+  private final FileChannel channel;
+
+  private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+  private final DataOutputStream payloadOut = new DataOutputStream(payload);
+  private final CRC32 crc = new CRC32();
+
+  private long position;
+
+  public Journal(Path path) {
+    this.path = path;
+    try {
+      this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+      this.position = channel.size();
+      channel.position(position);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't open journal " + path, e);
+    }
+  }
+
+  /**
+   * Reads every entry written after {@code from} and returns the position the journal
+   * ends at. Anything after the last intact record is truncated, so the next append
+   * follows it directly.
+   */
+  public long replay(long from, Consumer<LedgerEntry> consumer) {
+    try {
+      long size = channel.size();
+      if (from > size) {
+        throw new IllegalStateException("Journal " + path + " is shorter than its checkpoint");
+      }
+
+      long end = from;
+      // Not closed on purpose: closing the stream would close the channel
+      InputStream stream = Channels.newInputStream(channel.position(from));
+      DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+      while (size - end >= HEADER_SIZE) {
+        int length = in.readInt();
+        final long checksum = in.readInt() & 0xFFFFFFFFL;
+        if (length <= 0 || length > MAX_RECORD_SIZE || length > size - end - HEADER_SIZE) {
+          break;
+        }
+
+        byte[] record = new byte[length];
+        in.readFully(record);
+        crc.reset();
+        crc.update(record, 0, length);
+        if (crc.getValue() != checksum) {
+          break;
+        }
+
+        consumer.accept(decode(record));
+        end += HEADER_SIZE + length;
+      }
+
+      if (end < size) {
+        channel.truncate(end);
+        channel.force(true);
+      }
+      channel.position(end);
+      position = end;
+
+      return end;
+    } catch (EOFException e) {
+      throw new IllegalStateException("Journal " + path + " changed while replaying", e);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't replay journal " + path, e);
+    }
+  }
+
+  /**
+   * Buffers an entry accepted by a writer.
+   *
+   * @throws IllegalArgumentException if the entry has no creation time
+   */
+  public void append(LedgerEntry entry) {
+    if (Objects.isNull(entry.getCreated())) {
+      throw new IllegalArgumentException("Entry isn't accepted yet");
+    }
+
+    try {
+      payload.reset();
+      payloadOut.writeByte(entry.getType().code());
+      payloadOut.writeLong(entry.getReference());
+      payloadOut.writeUTF(entry.getAccount());
+      payloadOut.writeUTF(entry.hasCounterparty() ? entry.getCounterparty() : "");
+      payloadOut.writeUTF(entry.getAmount().toString());
+      payloadOut.writeLong(entry.getCreated().toInstant(ZoneOffset.UTC).toEpochMilli());
+      payloadOut.flush();
+
+      crc.reset();
+      crc.update(payload.toByteArray(), 0, payload.size());
+
+      DataOutputStream out = new DataOutputStream(pending);
+      out.writeInt(payload.size());
+      out.writeInt((int) crc.getValue());
+      payload.writeTo(out);
+      out.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes the appended entries, forces them to disk and returns the journal end.
+   */
+  public long flush() {
+    if (pending.size() == 0) {
+      return position;
+    }
+
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+      position = channel.position();
+      pending.reset();
+
+      return position;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't write journal " + path, e);
+    }
+  }
+
+  public long position() {
+    return position;
+  }
+
+  @Override
+  public void close() {
+    try {
+      flush();
+    } finally {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  private static LedgerEntry decode(byte[] record) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+    LedgerEntry.Type type = LedgerEntry.Type.of(in.readByte());
+    long reference = in.readLong();
+    String account = in.readUTF();
+    String counterparty = in.readUTF();
+    Money amount = Money.parse(in.readUTF());
+    LocalDateTime created = LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readLong()),
+        ZoneOffset.UTC);
+
+    return new LedgerEntry(type, reference, account,
+        counterparty.isEmpty() ? null : counterparty, amount, created);
+  }
+
+}
@@ -0,0 +1,496 @@
+package com.fintech.ledger;
+
+import com.fintech.dao.LedgerCheckpointDao;
+import com.fintech.dao.OperationDao;
+import com.fintech.dao.TransactionManager;
+import com.fintech.dao.TransferDao;
+import com.fintech.models.Money;
+import com.fintech.models.dao.OperationDaoEntity;
+import com.fintech.models.dao.TransferDaoEntity;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory account balances split into partitions by account hash, each updated by
+ * its own single writer thread and backed by its own journal.
+ *
+ * <p>An entry is acknowledged once its journal is on disk. The database is written
+ * later by the projector and is only the starting point on restart: balances of the
+ * accounts in use are loaded from ACCOUNT_BALANCES and every journal is replayed from
+ * its checkpoint on top of them.
+ */
+public class LedgerEngine implements AutoCloseable {
+
+  private static final long OFFER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+  private static final long CLOSE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final OperationDao<OperationDaoEntity, Long> operationDao;
+  private final TransferDao<TransferDaoEntity, Long> transferDao;
+  private final Partition[] partitions;
+  private final int mask;
+  private final Projector projector;
+
+  private final ReentrantLock exclusive = new ReentrantLock();
+  private final ReadWriteLock projection = new ReentrantReadWriteLock();
+  private final Set<Long> reversals = ConcurrentHashMap.newKeySet();
+  private volatile boolean closed;
+  private volatile RuntimeException failure;
+
+  private final LongAdder journaled = new LongAdder();
+
+  public LedgerEngine(Path directory, int partitions, int ringSize,
+                      OperationDao<OperationDaoEntity, Long> operationDao,
+                      TransferDao<TransferDaoEntity, Long> transferDao,
+                      LedgerCheckpointDao checkpointDao,
+                      TransactionManager transactionManager) {
+    if (partitions <= 0) {
+      throw new IllegalArgumentException("Wrong partitions count " + partitions);
+    }
+    int size = Integer.highestOneBit(partitions);
+    if (size < partitions) {
+      size <<= 1;
+    }
+
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Can't create ledger directory " + directory, e);
+    }
+
+    this.operationDao = operationDao;
+    this.transferDao = transferDao;
+    this.mask = size - 1;
+    this.partitions = new Partition[size];
+    for (int i = 0; i < size; i++) {
+      Journal journal = new Journal(directory.resolve("partition-" + i + ".journal"));
+      this.partitions[i] = new Partition(i, this, journal, ringSize);
+    }
+    this.projector = new Projector(this, operationDao, transferDao, checkpointDao,
+        transactionManager);
+
+    recover(checkpointDao);
+
+    projector.start();
+    for (Partition partition : this.partitions) {
+      partition.start();
+    }
+  }
+
+  /**
+   * Queues the entry on the partition of its account, the future completes once the
+   * entry is journaled and applied, or fails if the balance can't cover it.
+   */
+  public CompletableFuture<Void> submit(LedgerEntry entry) {
+    ensureOpen();
+
+    Partition.Command command = Partition.Command.submit(entry);
+    Partition partition = partitionOf(entry.getAccount());
+    while (!partition.offer(command)) {
+      ensureOpen();
+      LockSupport.parkNanos(OFFER_PARK_NANOS);
+    }
+
+    return command.future();
+  }
+
+  /**
+   * Applies the entries in order as a single journal write while the partitions of
+   * their accounts are paused, skipping the ones the balance can't cover or hold and the
+   * {@code null} ones. With {@code atomic} nothing is applied unless all of them fit.
+   *
+   * @return why each entry was skipped, {@code null} for the ones applied, or that would
+   *     have been in an atomic batch
+   */
+  public String[] submitAll(List<LedgerEntry> entries, boolean atomic) {
+    ensureOpen();
+
+    Set<Partition> touched = new HashSet<>();
+    for (LedgerEntry entry : entries) {
+      if (Objects.nonNull(entry)) {
+        touched.add(partitionOf(entry.getAccount()));
+        if (entry.hasCounterparty()) {
+          touched.add(partitionOf(entry.getCounterparty()));
+        }
+      }
+    }
+
+    String[] rejected = new String[entries.size()];
+    if (touched.isEmpty()) {
+      return rejected;
+    }
+    // One batch at a time, two pausing overlapping partitions in turn would deadlock
+    exclusive.lock();
+    try {
+      Partition.Barrier barrier = pause(touched);
+      try {
+        Map<String, Long> balances = new HashMap<>();
+        List<LedgerEntry> applied = new ArrayList<>(entries.size());
+        LocalDateTime created = LocalDateTime.now();
+        for (int i = 0; i < entries.size(); i++) {
+          LedgerEntry entry = entries.get(i);
+          if (Objects.isNull(entry)) {
+            continue;
+          }
+
+          long delta = entry.delta();
+          long current = current(balances, entry.getAccount());
+          if (entry.hasCounterparty()) {
+            current(balances, entry.getCounterparty());
+          }
+          if (delta < 0 && current + delta < 0) {
+            rejected[i] = "There is no enough money";
+            continue;
+          }
+          // Reserved like the credits of single entries, the other partitions go on
+          if (!reserveCredit(entry)) {
+            rejected[i] = "Wrong amount " + entry.getAmount();
+            continue;
+          }
+
+          balances.put(entry.getAccount(), current + delta);
+          if (entry.hasCounterparty()) {
+            balances.put(entry.getCounterparty(),
+                current(balances, entry.getCounterparty()) - delta);
+          }
+          applied.add(entry.createdAt(created));
+        }
+
+        if (applied.isEmpty() || atomic && applied.size() < entries.size()) {
+          applied.forEach(this::releaseCredit);
+          return rejected;
+        }
+
+        // Journaled before any balance changes, so a failed write leaves nothing behind
+        try {
+          partitionOf(applied.get(0).getAccount()).journalAll(applied);
+        } catch (RuntimeException e) {
+          applied.forEach(this::releaseCredit);
+          throw e;
+        }
+        balances.forEach(
+            (account, balance) -> partitionOf(account).set(account, Money.of(balance)));
+        applied.forEach(this::releaseDebit);
+        journaled.add(applied.size());
+
+        return rejected;
+      } finally {
+        barrier.resume();
+      }
+    } finally {
+      exclusive.unlock();
+    }
+  }
+
+  /**
+   * Balance of every acknowledged entry, the database is read only for accounts the
+   * ledger hasn't touched since it started.
+   */
+  public Money balance(String account) {
+    Money balance = partitionOf(account).published(account);
+
+    return Objects.isNull(balance) ? load(account) : balance;
+  }
+
+  /**
+   * Balance as of the time: the projected operations plus the journaled entries still
+   * waiting for the projector, which are created when they were accepted. No projection
+   * is committed while the two are read.
+   */
+  public Money balanceAt(String account, LocalDateTime timestamp) {
+    projection.readLock().lock();
+    try {
+      long balance = operationDao.balanceAt(account, timestamp).getMinorUnits();
+      for (Partition partition : partitions) {
+        for (List<LedgerEntry> entries : partition.unprojected()) {
+          for (LedgerEntry entry : entries) {
+            balance += deltaAt(entry, account, timestamp);
+          }
+        }
+      }
+
+      return Money.of(balance);
+    } finally {
+      projection.readLock().unlock();
+    }
+  }
+
+  /**
+   * Claims the persisted transfer for a reversal, false if another one is already
+   * pending for it.
+   */
+  public boolean reserveReversal(long transferId) {
+    return reversals.add(transferId);
+  }
+
+  public void releaseReversal(long transferId) {
+    reversals.remove(transferId);
+  }
+
+  public int partitions() {
+    return partitions.length;
+  }
+
+  public long getJournaled() {
+    return journaled.sum();
+  }
+
+  public long getProjected() {
+    return projector.projected();
+  }
+
+  public int getProjectionQueue() {
+    return projector.pending();
+  }
+
+  /**
+   * Waits for every acknowledged entry to reach the projector, projects them and
+   * closes the journals.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+
+    exclusive.lock();
+    try {
+      awaitQuiet();
+    } finally {
+      exclusive.unlock();
+    }
+
+    for (Partition partition : partitions) {
+      partition.stop();
+    }
+    projector.stop();
+    for (Partition partition : partitions) {
+      partition.journal().close();
+    }
+  }
+
+  Partition partitionOf(String account) {
+    int hash = account.hashCode();
+
+    return partitions[(hash ^ (hash >>> 16)) & mask];
+  }
+
+  Money load(String account) {
+    return operationDao.accountBalance(account);
+  }
+
+  void project(int journal, List<LedgerEntry> entries, long position) {
+    projector.submit(journal, entries, position);
+  }
+
+  /**
+   * Commits a projection and drops the entries it covers, up to the position of each
+   * journal, from the unprojected ones at once for {@link #balanceAt}.
+   */
+  void projected(Map<Integer, Long> positions, Runnable commit) {
+    projection.writeLock().lock();
+    try {
+      commit.run();
+      positions.forEach((journal, position) -> partitions[journal].projected(position));
+    } finally {
+      projection.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Reserves the credit of the entry on the partition of the credited account.
+   *
+   * @return false if the credit would overflow the balance
+   */
+  boolean reserveCredit(LedgerEntry entry) {
+    String credited = credited(entry);
+
+    return Objects.isNull(credited)
+        || partitionOf(credited).reserve(credited, Math.abs(entry.delta()));
+  }
+
+  void journaled(int count) {
+    journaled.add(count);
+  }
+
+  void reversed(Collection<Long> transferIds) {
+    reversals.removeAll(transferIds);
+  }
+
+  void fail(RuntimeException e) {
+    if (Objects.isNull(failure)) {
+      failure = e;
+    }
+  }
+
+  void ensureHealthy() {
+    if (Objects.nonNull(failure)) {
+      throw new IllegalStateException("Ledger is unavailable", failure);
+    }
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Ledger is closed");
+    }
+    ensureHealthy();
+  }
+
+  /**
+   * Change of the account balance as of the time by an unprojected entry. Projecting a
+   * reversal deletes the transfer, so the reversal counts only if the transfer does.
+   */
+  private long deltaAt(LedgerEntry entry, String account, LocalDateTime timestamp) {
+    long delta = account.equals(entry.getAccount()) ? entry.delta() : 0;
+    if (account.equals(entry.getCounterparty())) {
+      delta -= entry.delta();
+    }
+    if (delta == 0) {
+      return 0;
+    }
+
+    LocalDateTime created;
+    if (entry.getType() == LedgerEntry.Type.REVERSAL) {
+      TransferDaoEntity transfer = transferDao.getById(entry.getReference());
+      created = Objects.isNull(transfer) ? null : transfer.getCreated();
+    } else {
+      created = entry.getCreated();
+    }
+
+    return Objects.nonNull(created) && !created.isAfter(timestamp) ? delta : 0;
+  }
+
+  private void releaseCredit(LedgerEntry entry) {
+    String credited = credited(entry);
+    if (Objects.nonNull(credited)) {
+      partitionOf(credited).release(credited, Math.abs(entry.delta()));
+    }
+  }
+
+  private void releaseDebit(LedgerEntry entry) {
+    String debited = entry.delta() < 0 ? entry.getAccount() : entry.getCounterparty();
+    if (Objects.nonNull(debited)) {
+      partitionOf(debited).release(debited, Math.abs(entry.delta()));
+    }
+  }
+
+  /**
+   * Account the entry credits, null if it credits none.
+   */
+  private static String credited(LedgerEntry entry) {
+    return entry.delta() > 0 ? entry.getAccount() : entry.getCounterparty();
+  }
+
+  private long current(Map<String, Long> balances, String account) {
+    Long balance = balances.get(account);
+
+    return Objects.isNull(balance)
+        ? partitionOf(account).balance(account).getMinorUnits() : balance;
+  }
+
+  private Partition.Barrier pauseAll() {
+    return pause(Arrays.asList(partitions));
+  }
+
+  private Partition.Barrier pause(Collection<Partition> paused) {
+    Partition.Barrier barrier = new Partition.Barrier(paused.size());
+    for (Partition partition : paused) {
+      partition.handoff(Partition.Command.pause(barrier));
+    }
+    try {
+      barrier.awaitPaused(this);
+    } catch (RuntimeException e) {
+      barrier.resume();
+      throw e;
+    }
+
+    return barrier;
+  }
+
+  private void awaitQuiet() {
+    while (Objects.isNull(failure)) {
+      Partition.Barrier barrier;
+      try {
+        barrier = pauseAll();
+      } catch (IllegalStateException e) {
+        return;
+      }
+
+      boolean quiet = true;
+      for (Partition partition : partitions) {
+        quiet &= partition.isQuiet();
+      }
+      barrier.resume();
+
+      if (quiet) {
+        return;
+      }
+      LockSupport.parkNanos(CLOSE_PARK_NANOS);
+    }
+  }
+
+  private void recover(LedgerCheckpointDao checkpointDao) {
+    List<List<LedgerEntry>> pending = new ArrayList<>(partitions.length);
+    long[] positions = new long[partitions.length];
+    Set<String> accounts = new HashSet<>();
+
+    for (int i = 0; i < partitions.length; i++) {
+      List<LedgerEntry> entries = new ArrayList<>();
+      positions[i] = partitions[i].journal().replay(checkpointDao.position(i), entries::add);
+      for (LedgerEntry entry : entries) {
+        accounts.add(entry.getAccount());
+        if (entry.hasCounterparty()) {
+          accounts.add(entry.getCounterparty());
+        }
+      }
+      pending.add(entries);
+    }
+    if (accounts.isEmpty()) {
+      return;
+    }
+
+    // Journals may hold entries of any account, so all of them are applied before
+    // the balances are final
+    Map<String, Money> balances = new HashMap<>(operationDao.accountBalances(accounts));
+    for (List<LedgerEntry> entries : pending) {
+      for (LedgerEntry entry : entries) {
+        balances.merge(entry.getAccount(), Money.of(entry.delta()), Money::plus);
+        if (entry.hasCounterparty()) {
+          balances.merge(entry.getCounterparty(), Money.of(-entry.delta()), Money::plus);
+        }
+        if (entry.getType() == LedgerEntry.Type.REVERSAL) {
+          reversals.add(entry.getReference());
+        }
+      }
+    }
+    balances.forEach((account, balance) -> partitionOf(account).set(account, balance));
+
+    for (int i = 0; i < partitions.length; i++) {
+      if (!pending.get(i).isEmpty()) {
+        partitions[i].unprojected(pending.get(i), positions[i]);
+        projector.submit(i, pending.get(i), positions[i]);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,106 @@
+package com.fintech.ledger;
+
+import com.fintech.models.Money;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import lombok.Getter;
+
+/**
+ * One journaled ledger operation.
+ *
+ * <p>{@code account} is changed by {@link #delta()} and the optional {@code counterparty}
+ * by its negation, so a transfer debits the sender and credits the receiver in one entry
+ * and a reversal does the opposite.
+ *
+ * <p>{@code created} is set once a writer accepts the entry, before it is journaled and
+ * acknowledged, and becomes the creation time of the rows it is projected to.
+ */
+@Getter
+public final class LedgerEntry {
+
+  private final Type type;
+  private final long reference;
+  private final String account;
+  private final String counterparty;
+  private final Money amount;
+  private final LocalDateTime created;
+
+  LedgerEntry(Type type, long reference, String account, String counterparty,
+              Money amount, LocalDateTime created) {
+    this.type = type;
+    this.reference = reference;
+    this.account = account;
+    this.counterparty = counterparty;
+    this.amount = amount;
+    this.created = created;
+  }
+
+  public static LedgerEntry cashIn(String account, Money amount) {
+    return new LedgerEntry(Type.CASH_IN, 0, account, null, amount, null);
+  }
+
+  public static LedgerEntry withdraw(String account, Money amount) {
+    return new LedgerEntry(Type.WITHDRAW, 0, account, null, amount, null);
+  }
+
+  public static LedgerEntry transfer(String from, String to, Money amount) {
+    return new LedgerEntry(Type.TRANSFER, 0, from, to, amount, null);
+  }
+
+  /**
+   * Undoes the persisted transfer {@code transferId}: {@code from} gets the amount back
+   * and {@code to} gives it up.
+   */
+  public static LedgerEntry reversal(long transferId, String from, String to,
+                                     Money amount) {
+    return new LedgerEntry(Type.REVERSAL, transferId, from, to, amount, null);
+  }
+
+  /**
+   * The same entry accepted at {@code created}.
+   */
+  public LedgerEntry createdAt(LocalDateTime created) {
+    return new LedgerEntry(type, reference, account, counterparty, amount, created);
+  }
+
+  /**
+   * Change of the {@code account} balance in minor units.
+   */
+  public long delta() {
+    return type.credits ? amount.getMinorUnits() : -amount.getMinorUnits();
+  }
+
+  public boolean hasCounterparty() {
+    return Objects.nonNull(counterparty);
+  }
+
+  public enum Type {
+    CASH_IN(1, true),
+    WITHDRAW(2, false),
+    TRANSFER(3, false),
+    REVERSAL(4, true);
+
+    private final int code;
+    private final boolean credits;
+
+    Type(int code, boolean credits) {
+      this.code = code;
+      this.credits = credits;
+    }
+
+    int code() {
+      return code;
+    }
+
+    static Type of(int code) {
+      for (Type type : values()) {
+        if (type.code == code) {
+          return type;
+        }
+      }
+
+      throw new IllegalArgumentException("Unknown entry type " + code);
+    }
+  }
+
+}
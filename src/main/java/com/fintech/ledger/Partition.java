@@ -0,0 +1,545 @@
+package com.fintech.ledger;
+
+import com.fintech.models.Money;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.jboss.logging.Logger;
+
+/**
+ * Balances of the accounts hashed to one partition, owned by a single writer thread.
+ *
+ * <p>The writer drains its ring, applies every entry to the in-memory balances and
+ * appends it to the journal, then flushes the journal once for everything drained and
+ * only after that publishes the new balances and acknowledges the callers. The credit
+ * side of a transfer to another partition is handed to that partition's writer and the
+ * caller is acknowledged from there.
+ *
+ * <p>Flushed batches go to the projector in journal order, and only once every
+ * partition they touch has applied them, so an account balance is never loaded from
+ * the database while a projection of it is still pending.
+ *
+ * <p>Every account has a limit, its balance plus the credits reserved for it and not
+ * applied yet. A credit is reserved on the partition of the credited account before the
+ * entry is journaled, any thread may reserve, so it can't overflow the balance once it
+ * gets there. Debits lower the limit when they are applied.
+ *
+ * <p>A command that fails before it changes anything fails alone. Any other error
+ * stops the writer and fails the ledger, so callers are rejected instead of waiting
+ * for a writer that is gone.
+ */
+final class Partition implements Runnable {
+
+  private static final Logger log = Logger.getLogger(Partition.class);
+
+  private static final int MAX_DRAIN = 1024;
+  private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final int index;
+  private final LedgerEngine engine;
+  private final Journal journal;
+  private final RingBuffer<Command> commands;
+  private final Queue<Command> handoffs = new ConcurrentLinkedQueue<>();
+
+  private final Map<String, Money> balances = new HashMap<>();
+  private final Map<String, Money> published = new ConcurrentHashMap<>();
+  private final Map<String, AtomicLong> limits = new ConcurrentHashMap<>();
+  private final ConcurrentNavigableMap<Long, List<LedgerEntry>> unprojected =
+      new ConcurrentSkipListMap<>();
+  private final Set<String> touched = new HashSet<>();
+  private final Deque<Batch> unreleased = new ArrayDeque<>();
+  private Batch batch = new Batch();
+
+  private final Thread thread;
+  private volatile boolean sleeping;
+  private volatile boolean running = true;
+
+  Partition(int index, LedgerEngine engine, Journal journal, int ringSize) {
+    this.index = index;
+    this.engine = engine;
+    this.journal = journal;
+    this.commands = new RingBuffer<>(ringSize);
+    this.thread = new Thread(this, "ledger-" + index);
+    this.thread.setDaemon(true);
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  /**
+   * Queues a command from any thread, false if the ring is full.
+   */
+  boolean offer(Command command) {
+    if (!commands.offer(command)) {
+      return false;
+    }
+    wake();
+
+    return true;
+  }
+
+  void handoff(Command command) {
+    handoffs.add(command);
+    wake();
+  }
+
+  Money published(String account) {
+    return published.get(account);
+  }
+
+  /**
+   * Entries flushed to the journal and not yet written to the database, by the journal
+   * position they end at. Any thread may read them.
+   */
+  Collection<List<LedgerEntry>> unprojected() {
+    return unprojected.values();
+  }
+
+  /**
+   * Keeps flushed entries as unprojected until {@link #projected} covers their position.
+   */
+  void unprojected(List<LedgerEntry> entries, long position) {
+    unprojected.put(position, entries);
+  }
+
+  void projected(long position) {
+    unprojected.headMap(position, true).clear();
+  }
+
+  /**
+   * Current balance, loaded from the database on first use. Only the writer thread,
+   * or another thread while the writer is paused or not started, may call it.
+   */
+  Money balance(String account) {
+    return balances.computeIfAbsent(account, loading -> {
+      Money loaded = engine.load(loading);
+      limits.putIfAbsent(loading, new AtomicLong(loaded.getMinorUnits()));
+      return loaded;
+    });
+  }
+
+  /**
+   * Sets a balance outside the writer loop, under the same rules as {@link #balance}.
+   * The limit isn't changed, credits are reserved and debits released on their own.
+   */
+  void set(String account, Money balance) {
+    balances.put(account, balance);
+    published.put(account, balance);
+    limits.putIfAbsent(account, new AtomicLong(balance.getMinorUnits()));
+  }
+
+  /**
+   * Raises the limit of the account by a credit on its way to it, from any thread. A
+   * limit that isn't there yet starts at the balance the writer would load.
+   *
+   * @return false if the credit would overflow the balance, nothing is reserved then
+   */
+  boolean reserve(String account, long amount) {
+    AtomicLong limit = limits.computeIfAbsent(account,
+        reserved -> new AtomicLong(engine.balance(reserved).getMinorUnits()));
+    while (true) {
+      long current = limit.get();
+      if (overflows(current, amount)) {
+        return false;
+      }
+      if (limit.compareAndSet(current, current + amount)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Lowers the limit of the account by an applied debit or a reserved credit that won't
+   * come, from any thread.
+   */
+  void release(String account, long amount) {
+    limits.get(account).addAndGet(-amount);
+  }
+
+  /**
+   * Journals entries outside the writer loop, under the same rules as {@link #balance},
+   * and queues them for projection after whatever the writer flushed before.
+   */
+  void journalAll(List<LedgerEntry> entries) {
+    Batch external = new Batch();
+    for (LedgerEntry entry : entries) {
+      journal.append(entry);
+      external.entries.add(entry);
+    }
+    external.position = journal.flush();
+    unprojected(external.entries, external.position);
+    unreleased.add(external);
+  }
+
+  /**
+   * Checks that nothing is queued or waiting, under the same rules as {@link #balance}.
+   */
+  boolean isQuiet() {
+    return commands.isEmpty() && handoffs.isEmpty() && unreleased.isEmpty();
+  }
+
+  Journal journal() {
+    return journal;
+  }
+
+  void stop() {
+    running = false;
+    LockSupport.unpark(thread);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      int drained = 0;
+      Command command = next();
+      while (command != null) {
+        try {
+          handle(command);
+        } catch (RuntimeException e) {
+          abort(command, e);
+        }
+        if (++drained == MAX_DRAIN || !running) {
+          break;
+        }
+        command = next();
+      }
+
+      finishBatch();
+      if (drained == 0) {
+        idle();
+      }
+    }
+
+    IllegalStateException closed = new IllegalStateException("Ledger is closed");
+    for (Command command = next(); command != null; command = next()) {
+      if (command.future != null) {
+        command.future.completeExceptionally(closed);
+      }
+      if (command.barrier != null) {
+        command.barrier.arrive();
+      }
+    }
+  }
+
+  private Command next() {
+    Command handoff = handoffs.poll();
+
+    return handoff != null ? handoff : commands.poll();
+  }
+
+  private void handle(Command command) {
+    switch (command.kind) {
+      case SUBMIT:
+        submit(command);
+        break;
+      case COUNTERPARTY:
+        counterparty(command);
+        break;
+      case APPLIED:
+        command.batch.pendingHops--;
+        releaseReady();
+        break;
+      case PAUSE:
+        finishBatch();
+        command.barrier.arrive();
+        command.barrier.awaitResume();
+        releaseReady();
+        break;
+      default:
+        throw new IllegalStateException("Unknown command " + command.kind);
+    }
+  }
+
+  private void submit(Command command) {
+    LedgerEntry entry = command.entry;
+    long delta = entry.delta();
+    long current;
+    try {
+      current = balance(entry.getAccount()).getMinorUnits();
+      if (entry.hasCounterparty() && engine.partitionOf(entry.getCounterparty()) == this) {
+        balance(entry.getCounterparty());
+      }
+    } catch (RuntimeException e) {
+      // A balance that can't be loaded fails the entry, nothing is changed yet
+      command.future.completeExceptionally(e);
+      return;
+    }
+    if (delta < 0 && current + delta < 0) {
+      command.future.completeExceptionally(
+          new IllegalArgumentException("There is no enough money"));
+      return;
+    }
+    if (!engine.reserveCredit(entry)) {
+      command.future.completeExceptionally(
+          new IllegalArgumentException("Wrong amount " + entry.getAmount()));
+      return;
+    }
+
+    // Acknowledged with the batch, so the whole batch is created at once
+    if (Objects.isNull(batch.created)) {
+      batch.created = LocalDateTime.now();
+    }
+    entry = entry.createdAt(batch.created);
+    journal.append(entry);
+    apply(entry.getAccount(), delta);
+    batch.entries.add(entry);
+
+    if (entry.hasCounterparty()) {
+      Partition other = engine.partitionOf(entry.getCounterparty());
+      if (other != this) {
+        batch.hops.add(Command.counterparty(entry, command.future, this, batch));
+        return;
+      }
+      apply(entry.getCounterparty(), -delta);
+    }
+    batch.acks.add(command.future);
+  }
+
+  private void counterparty(Command command) {
+    apply(command.entry.getCounterparty(), -command.entry.delta());
+    batch.acks.add(command.future);
+    batch.applied.add(command);
+  }
+
+  /**
+   * Stops the writer after an error that may have left the balances or the journal
+   * half changed. The command and the batch that isn't flushed yet fail with it.
+   */
+  private void abort(Command command, RuntimeException e) {
+    log.errorf(e, "Ledger partition %d stopped", index);
+    running = false;
+    engine.fail(e);
+
+    if (command.future != null) {
+      command.future.completeExceptionally(e);
+    }
+    batch.acks.forEach(ack -> ack.completeExceptionally(e));
+    batch.hops.forEach(hop -> hop.future.completeExceptionally(e));
+    batch = new Batch();
+    touched.clear();
+  }
+
+  /**
+   * Applies a change to a loaded balance, a credit was reserved before.
+   */
+  private void apply(String account, long delta) {
+    balances.put(account, Money.of(balance(account).getMinorUnits() + delta));
+    touched.add(account);
+    if (delta < 0) {
+      release(account, -delta);
+    }
+  }
+
+  private void finishBatch() {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    Batch finished = batch;
+    batch = new Batch();
+    try {
+      finished.position = journal.flush();
+    } catch (RuntimeException e) {
+      running = false;
+      engine.fail(e);
+      finished.acks.forEach(ack -> ack.completeExceptionally(e));
+      finished.hops.forEach(hop -> hop.future.completeExceptionally(e));
+      return;
+    }
+
+    engine.journaled(finished.entries.size());
+    if (!finished.entries.isEmpty()) {
+      unprojected(finished.entries, finished.position);
+    }
+    for (String account : touched) {
+      published.put(account, balances.get(account));
+    }
+    touched.clear();
+
+    for (CompletableFuture<Void> ack : finished.acks) {
+      ack.complete(null);
+    }
+    for (Command hop : finished.hops) {
+      finished.pendingHops++;
+      engine.partitionOf(hop.entry.getCounterparty()).handoff(hop);
+    }
+    for (Command applied : finished.applied) {
+      applied.origin.handoff(Command.applied(applied.batch));
+    }
+
+    if (!finished.entries.isEmpty()) {
+      unreleased.add(finished);
+      releaseReady();
+    }
+  }
+
+  private void releaseReady() {
+    while (!unreleased.isEmpty() && unreleased.peek().pendingHops == 0) {
+      Batch released = unreleased.poll();
+      engine.project(index, released.entries, released.position);
+    }
+  }
+
+  private void idle() {
+    sleeping = true;
+    if (running && commands.isEmpty() && handoffs.isEmpty()) {
+      LockSupport.parkNanos(this, PARK_NANOS);
+    }
+    sleeping = false;
+  }
+
+  private void wake() {
+    if (sleeping) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * Checks if the change takes the balance past the range of a long.
+   */
+  static boolean overflows(long balance, long delta) {
+    return delta > 0 ? balance > Long.MAX_VALUE - delta : balance < Long.MIN_VALUE - delta;
+  }
+
+  private static final class Batch {
+
+    private final List<LedgerEntry> entries = new ArrayList<>();
+    private final List<CompletableFuture<Void>> acks = new ArrayList<>();
+    private final List<Command> hops = new ArrayList<>();
+    private final List<Command> applied = new ArrayList<>();
+    private LocalDateTime created;
+    private long position;
+    private int pendingHops;
+
+    private boolean isEmpty() {
+      return entries.isEmpty() && acks.isEmpty() && hops.isEmpty() && applied.isEmpty();
+    }
+
+  }
+
+  static final class Command {
+
+    private final Kind kind;
+    private final LedgerEntry entry;
+    private final CompletableFuture<Void> future;
+    private final Partition origin;
+    private final Batch batch;
+    private final Barrier barrier;
+
+    private Command(Kind kind, LedgerEntry entry, CompletableFuture<Void> future,
+                    Partition origin, Batch batch, Barrier barrier) {
+      this.kind = kind;
+      this.entry = entry;
+      this.future = future;
+      this.origin = origin;
+      this.batch = batch;
+      this.barrier = barrier;
+    }
+
+    static Command submit(LedgerEntry entry) {
+      return new Command(Kind.SUBMIT, entry, new CompletableFuture<>(), null, null, null);
+    }
+
+    static Command pause(Barrier barrier) {
+      return new Command(Kind.PAUSE, null, null, null, null, barrier);
+    }
+
+    CompletableFuture<Void> future() {
+      return future;
+    }
+
+    private static Command counterparty(LedgerEntry entry, CompletableFuture<Void> future,
+                                        Partition origin, Batch batch) {
+      return new Command(Kind.COUNTERPARTY, entry, future, origin, batch, null);
+    }
+
+    private static Command applied(Batch batch) {
+      return new Command(Kind.APPLIED, null, null, null, batch, null);
+    }
+
+    private enum Kind {
+      SUBMIT,
+      COUNTERPARTY,
+      APPLIED,
+      PAUSE
+    }
+
+  }
+
+  /**
+   * Stops partitions at a batch boundary so another thread can work on their balances
+   * and journals, then lets them go on.
+   */
+  static final class Barrier {
+
+    private static final long WAIT_MILLIS = 100;
+
+    private final CountDownLatch paused;
+    private final CountDownLatch resumed = new CountDownLatch(1);
+
+    Barrier(int parties) {
+      this.paused = new CountDownLatch(parties);
+    }
+
+    void awaitPaused(LedgerEngine engine) {
+      try {
+        while (!paused.await(WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+          engine.ensureHealthy();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        resume();
+        throw new IllegalStateException("Interrupted while pausing the ledger", e);
+      }
+    }
+
+    void resume() {
+      resumed.countDown();
+    }
+
+    private void arrive() {
+      paused.countDown();
+    }
+
+    private void awaitResume() {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          resumed.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+  }
+
+}
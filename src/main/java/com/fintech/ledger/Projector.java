@@ -0,0 +1,224 @@
+package com.fintech.ledger;
+
+import com.fintech.dao.LedgerCheckpointDao;
+import com.fintech.dao.OperationDao;
+import com.fintech.dao.TransactionManager;
+import com.fintech.dao.TransferDao;
+import com.fintech.models.Money;
+import com.fintech.models.dao.OperationDaoEntity;
+import com.fintech.models.dao.TransferDaoEntity;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.jboss.logging.Logger;
+
+/**
+ * Writes journaled entries into OPERATIONS and TRANSFERS in the background.
+ *
+ * <p>Each database transaction also moves the checkpoint of every journal it covers,
+ * so after a restart exactly the entries past the checkpoints are replayed.
+ */
+final class Projector implements Runnable {
+
+  private static final Logger log = Logger.getLogger(Projector.class);
+
+  private static final int MAX_ENTRIES = 4096;
+  private static final long POLL_MILLIS = 100;
+  private static final long RETRY_MILLIS = 500;
+
+  private final LedgerEngine engine;
+  private final OperationDao<OperationDaoEntity, Long> operationDao;
+  private final TransferDao<TransferDaoEntity, Long> transferDao;
+  private final LedgerCheckpointDao checkpointDao;
+  private final TransactionManager transactionManager;
+
+  private final BlockingQueue<Projection> queue = new LinkedBlockingQueue<>();
+  private final Thread thread;
+  private volatile boolean running = true;
+
+  private final LongAdder projected = new LongAdder();
+
+  Projector(LedgerEngine engine,
+            OperationDao<OperationDaoEntity, Long> operationDao,
+            TransferDao<TransferDaoEntity, Long> transferDao,
+            LedgerCheckpointDao checkpointDao,
+            TransactionManager transactionManager) {
+    this.engine = engine;
+    this.operationDao = operationDao;
+    this.transferDao = transferDao;
+    this.checkpointDao = checkpointDao;
+    this.transactionManager = transactionManager;
+    this.thread = new Thread(this, "ledger-projector");
+    this.thread.setDaemon(true);
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  void submit(int journal, List<LedgerEntry> entries, long position) {
+    queue.add(new Projection(journal, entries, position));
+  }
+
+  int pending() {
+    return queue.size();
+  }
+
+  long projected() {
+    return projected.sum();
+  }
+
+  /**
+   * Projects whatever is still queued and stops. Entries it fails to write stay in the
+   * journals and are replayed on the next start.
+   */
+  void stop() {
+    running = false;
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public void run() {
+    List<Projection> batch = new ArrayList<>();
+    while (running || !queue.isEmpty()) {
+      try {
+        Projection first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+
+      int entries = batch.get(0).entries.size();
+      while (entries < MAX_ENTRIES && !queue.isEmpty()) {
+        Projection next = queue.poll();
+        batch.add(next);
+        entries += next.entries.size();
+      }
+
+      while (!project(batch)) {
+        if (!running) {
+          return;
+        }
+        sleep();
+      }
+      batch.clear();
+    }
+  }
+
+  private boolean project(List<Projection> batch) {
+    List<OperationDaoEntity> operations = new ArrayList<>();
+    List<Integer> transfers = new ArrayList<>();
+    List<Long> reversals = new ArrayList<>();
+    Map<Integer, Long> positions = new HashMap<>();
+    int count = 0;
+
+    for (Projection projection : batch) {
+      positions.merge(projection.journal, projection.position, Math::max);
+      for (LedgerEntry entry : projection.entries) {
+        count++;
+        switch (entry.getType()) {
+          case CASH_IN:
+            operations.add(operation(entry, entry.getAccount(), entry.getAmount(), null));
+            break;
+          case WITHDRAW:
+            operations.add(operation(entry, entry.getAccount(), null, entry.getAmount()));
+            break;
+          case TRANSFER:
+            transfers.add(operations.size());
+            operations.add(operation(entry, entry.getAccount(), null, entry.getAmount()));
+            operations.add(operation(entry, entry.getCounterparty(), entry.getAmount(), null));
+            break;
+          case REVERSAL:
+            reversals.add(entry.getReference());
+            break;
+          default:
+            throw new IllegalStateException("Unknown entry type " + entry.getType());
+        }
+      }
+    }
+
+    try {
+      engine.projected(positions, () -> transactionManager.inTransaction(() -> {
+        List<Long> ids = operations.isEmpty()
+            ? Collections.emptyList() : operationDao.insertAll(operations);
+
+        List<TransferDaoEntity> entities = new ArrayList<>(transfers.size());
+        for (Integer start : transfers) {
+          TransferDaoEntity entity = new TransferDaoEntity();
+          entity.setCreated(operations.get(start).getCreated());
+          entity.setOperations(new ArrayList<>(ids.subList(start, start + 2)));
+          entities.add(entity);
+        }
+        if (!entities.isEmpty()) {
+          transferDao.insertAll(entities);
+        }
+
+        for (Long id : reversals) {
+          transferDao.deleteById(id);
+        }
+        positions.forEach(checkpointDao::save);
+
+        return null;
+      }));
+    } catch (RuntimeException e) {
+      log.error("Can't project ledger entries, retrying", e);
+      return false;
+    }
+
+    projected.add(count);
+    engine.reversed(reversals);
+
+    return true;
+  }
+
+  /**
+   * Row of one side of the entry, created when the entry was, not when it is projected.
+   */
+  private OperationDaoEntity operation(LedgerEntry entry, String account, Money debit,
+                                       Money credit) {
+    OperationDaoEntity entity = new OperationDaoEntity();
+    entity.setAccountNumber(account);
+    entity.setDebit(debit);
+    entity.setCredit(credit);
+    entity.setCreated(entry.getCreated());
+
+    return entity;
+  }
+
+  private void sleep() {
+    try {
+      Thread.sleep(RETRY_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static final class Projection {
+
+    private final int journal;
+    private final List<LedgerEntry> entries;
+    private final long position;
+
+    private Projection(int journal, List<LedgerEntry> entries, long position) {
+      this.journal = journal;
+      this.entries = entries;
+      this.position = position;
+    }
+
+  }
+
+}
@@ -0,0 +1,86 @@
+package com.fintech.ledger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer.
+ *
+ * <p>Producers claim a slot by moving the shared tail sequence with a CAS and publish
+ * it by advancing the slot sequence, the consumer owns the head and never contends
+ * with anyone. A full ring makes {@link #offer} fail instead of growing.
+ */
+public class RingBuffer<E> {
+
+  private final AtomicReferenceArray<E> slots;
+  private final AtomicLongArray sequences;
+  private final int mask;
+
+  private final AtomicLong tail = new AtomicLong();
+  private long head;
+
+  public RingBuffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Wrong capacity " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+
+    this.slots = new AtomicReferenceArray<>(size);
+    this.sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+    this.mask = size - 1;
+  }
+
+  public boolean offer(E element) {
+    while (true) {
+      long claimed = tail.get();
+      int index = (int) claimed & mask;
+      long sequence = sequences.get(index);
+
+      if (sequence == claimed) {
+        if (tail.compareAndSet(claimed, claimed + 1)) {
+          slots.lazySet(index, element);
+          sequences.set(index, claimed + 1);
+          return true;
+        }
+      } else if (sequence < claimed) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Takes the oldest element, only the consumer thread may call it.
+   */
+  public E poll() {
+    int index = (int) head & mask;
+    if (sequences.get(index) != head + 1) {
+      return null;
+    }
+
+    final E element = slots.get(index);
+    slots.lazySet(index, null);
+    sequences.lazySet(index, head + mask + 1);
+    head++;
+
+    return element;
+  }
+
+  /**
+   * Checks if there is nothing to poll, only the consumer thread may call it.
+   */
+  public boolean isEmpty() {
+    return sequences.get((int) head & mask) != head + 1;
+  }
+
+  public int capacity() {
+    return mask + 1;
+  }
+
+}
@@ -0,0 +1,54 @@
+package com.fintech.metrics;
+
+import io.undertow.server.Connectors;
+import io.undertow.server.ExchangeCompletionListener;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.PathTemplateMatch;
+import java.util.Objects;
+
+/**
+ * Records latency, status and in-flight count of every exchange passing through it.
+ *
+ * <p>The route is the template matched by the wrapped routing handler. The handler is
+ * its own completion listener and takes the start time from the exchange, so nothing
+ * is allocated per request.
+ */
+public class MetricsHandler implements HttpHandler, ExchangeCompletionListener {
+
+  private static final String UNMATCHED = "unmatched";
+
+  private final MetricsRegistry registry;
+  private final HttpHandler next;
+
+  public MetricsHandler(MetricsRegistry registry, HttpHandler next) {
+    this.registry = registry;
+    this.next = next;
+  }
+
+  @Override
+  public void handleRequest(HttpServerExchange exchange) throws Exception {
+    if (exchange.getRequestStartTime() == -1) {
+      Connectors.setRequestStartTime(exchange);
+    }
+    registry.requestStarted();
+    exchange.addExchangeCompleteListener(this);
+
+    next.handleRequest(exchange);
+  }
+
+  @Override
+  public void exchangeEvent(HttpServerExchange exchange, NextListener nextListener) {
+    try {
+      PathTemplateMatch match = exchange.getAttachment(PathTemplateMatch.ATTACHMENT_KEY);
+      String route = Objects.isNull(match) ? UNMATCHED : match.getMatchedTemplate();
+
+      registry.route(route, exchange.getRequestMethod())
+          .record(exchange.getStatusCode(), System.nanoTime() - exchange.getRequestStartTime());
+      registry.requestCompleted();
+    } finally {
+      nextListener.proceed();
+    }
+  }
+
+}
@@ -0,0 +1,150 @@
+package com.fintech.metrics;
+
+import io.undertow.util.HttpString;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Holds per-route request metrics plus registered gauges and counters, and renders
+ * them in the Prometheus text exposition format.
+ */
+public class MetricsRegistry {
+
+  private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+  private static final double MICROS_PER_SECOND = 1_000_000d;
+
+  private final Map<String, Map<HttpString, RouteMetrics>> routes = new ConcurrentHashMap<>();
+  private final LongAdder inFlight = new LongAdder();
+  private final List<Sample> samples = new CopyOnWriteArrayList<>();
+
+  public RouteMetrics route(String route, HttpString method) {
+    Map<HttpString, RouteMetrics> methods = routes.get(route);
+    if (methods == null) {
+      methods = routes.computeIfAbsent(route, key -> new ConcurrentHashMap<>());
+    }
+
+    RouteMetrics metrics = methods.get(method);
+    if (metrics == null) {
+      metrics = methods.computeIfAbsent(method,
+          key -> new RouteMetrics(route, key.toString()));
+    }
+
+    return metrics;
+  }
+
+  public void requestStarted() {
+    inFlight.increment();
+  }
+
+  public void requestCompleted() {
+    inFlight.decrement();
+  }
+
+  public long inFlight() {
+    return inFlight.sum();
+  }
+
+  public void gauge(String name, String help, LongSupplier value) {
+    samples.add(new Sample(name, help, "gauge", value));
+  }
+
+  public void counter(String name, String help, LongSupplier value) {
+    samples.add(new Sample(name, help, "counter", value));
+  }
+
+  public String scrape() {
+    StringBuilder builder = new StringBuilder();
+
+    builder.append("# HELP http_requests_total Requests by route, method and status.\n")
+        .append("# TYPE http_requests_total counter\n");
+    for (Map<HttpString, RouteMetrics> methods : routes.values()) {
+      for (RouteMetrics metrics : methods.values()) {
+        for (int status = 0; status < RouteMetrics.statusCodes(); status++) {
+          long requests = metrics.requests(status);
+          if (requests > 0) {
+            builder.append("http_requests_total{");
+            labels(builder, metrics);
+            builder.append(",status=\"").append(status).append("\"} ")
+                .append(requests).append('\n');
+          }
+        }
+      }
+    }
+
+    builder.append("# HELP http_request_duration_seconds Request latency by route and method.\n")
+        .append("# TYPE http_request_duration_seconds summary\n");
+    for (Map<HttpString, RouteMetrics> methods : routes.values()) {
+      for (RouteMetrics metrics : methods.values()) {
+        Histogram histogram = metrics.latencySnapshot();
+        for (double quantile : QUANTILES) {
+          builder.append("http_request_duration_seconds{");
+          labels(builder, metrics);
+          builder.append(",quantile=\"").append(quantile).append("\"} ")
+              .append(histogram.getValueAtPercentile(quantile * 100) / MICROS_PER_SECOND)
+              .append('\n');
+        }
+        builder.append("http_request_duration_seconds_sum{");
+        labels(builder, metrics);
+        builder.append("} ").append(metrics.latencySumMicros() / MICROS_PER_SECOND).append('\n');
+        builder.append("http_request_duration_seconds_count{");
+        labels(builder, metrics);
+        builder.append("} ").append(histogram.getTotalCount()).append('\n');
+      }
+    }
+
+    builder.append("# HELP http_requests_in_flight Requests currently being served.\n")
+        .append("# TYPE http_requests_in_flight gauge\n")
+        .append("http_requests_in_flight ").append(inFlight()).append('\n');
+
+    for (Sample sample : samples) {
+      builder.append("# HELP ").append(sample.name).append(' ').append(sample.help).append('\n')
+          .append("# TYPE ").append(sample.name).append(' ').append(sample.type).append('\n')
+          .append(sample.name).append(' ').append(sample.value.getAsLong()).append('\n');
+    }
+
+    return builder.toString();
+  }
+
+  private static void labels(StringBuilder builder, RouteMetrics metrics) {
+    builder.append("method=\"");
+    escape(builder, metrics.getMethod());
+    builder.append("\",route=\"");
+    escape(builder, metrics.getRoute());
+    builder.append('"');
+  }
+
+  private static void escape(StringBuilder builder, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' || c == '"') {
+        builder.append('\\').append(c);
+      } else if (c == '\n') {
+        builder.append("\\n");
+      } else {
+        builder.append(c);
+      }
+    }
+  }
+
+  private static final class Sample {
+
+    private final String name;
+    private final String help;
+    private final String type;
+    private final LongSupplier value;
+
+    private Sample(String name, String help, String type, LongSupplier value) {
+      this.name = name;
+      this.help = help;
+      this.type = type;
+      this.value = value;
+    }
+
+  }
+
+}
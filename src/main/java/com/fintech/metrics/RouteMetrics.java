@@ -0,0 +1,66 @@
+package com.fintech.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latency histogram and status code counters of a single route and method.
+ *
+ * <p>The histogram range is fixed up front, so {@link #record(int, long)} never
+ * resizes or allocates.
+ */
+public class RouteMetrics {
+
+  private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+  private static final int SIGNIFICANT_DIGITS = 3;
+  private static final int STATUS_CODES = 600;
+
+  private final String route;
+  private final String method;
+
+  private final ConcurrentHistogram latency
+      = new ConcurrentHistogram(1, MAX_LATENCY_MICROS, SIGNIFICANT_DIGITS);
+  private final LongAdder latencySum = new LongAdder();
+  private final AtomicLongArray statuses = new AtomicLongArray(STATUS_CODES);
+
+  RouteMetrics(String route, String method) {
+    this.route = route;
+    this.method = method;
+  }
+
+  public void record(int status, long latencyNanos) {
+    long micros = Math.min(Math.max(1, latencyNanos / 1000), MAX_LATENCY_MICROS);
+
+    latency.recordValue(micros);
+    latencySum.add(micros);
+    statuses.incrementAndGet(status > 0 && status < STATUS_CODES ? status : 0);
+  }
+
+  public String getRoute() {
+    return route;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public Histogram latencySnapshot() {
+    return latency.copy();
+  }
+
+  public long latencySumMicros() {
+    return latencySum.sum();
+  }
+
+  public long requests(int status) {
+    return statuses.get(status);
+  }
+
+  static int statusCodes() {
+    return STATUS_CODES;
+  }
+
+}
@@ -0,0 +1,57 @@
+package com.fintech.metrics;
+
+import com.fintech.dao.StatementListener;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.jboss.logging.Logger;
+
+/**
+ * Counts the statements run through a {@link com.fintech.dao.JdbcTemplate} and the time
+ * spent in them, and logs the ones slower than {@code slowNanos}.
+ */
+public class StatementMetrics implements StatementListener {
+
+  private static final Logger log = Logger.getLogger(StatementMetrics.class);
+
+  private final long slowNanos;
+
+  private final LongAdder statements = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private final LongAdder slow = new LongAdder();
+  private final LongAdder micros = new LongAdder();
+
+  public StatementMetrics(long slowThreshold, TimeUnit unit) {
+    this.slowNanos = unit.toNanos(slowThreshold);
+  }
+
+  @Override
+  public void executed(String sql, long elapsedNanos, boolean failed) {
+    statements.increment();
+    micros.add(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    if (failed) {
+      failures.increment();
+    }
+    if (slowNanos > 0 && elapsedNanos >= slowNanos) {
+      slow.increment();
+      log.warnf("Slow statement, %d ms: %s",
+          TimeUnit.NANOSECONDS.toMillis(elapsedNanos), sql);
+    }
+  }
+
+  public long getStatements() {
+    return statements.sum();
+  }
+
+  public long getFailures() {
+    return failures.sum();
+  }
+
+  public long getSlow() {
+    return slow.sum();
+  }
+
+  public long getMicros() {
+    return micros.sum();
+  }
+
+}
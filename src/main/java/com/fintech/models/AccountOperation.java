@@ -1,6 +1,5 @@
 package com.fintech.models;
 
-import java.math.BigDecimal;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
@@ -8,6 +7,6 @@ import lombok.Getter;
 @AllArgsConstructor
 public class AccountOperation {
 
-  private BigDecimal amount;
+  private Money amount;
 
 }
@@ -0,0 +1,58 @@
+package com.fintech.models;
+
+import com.google.gson.annotations.SerializedName;
+import java.util.Objects;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * One line of a bulk ingest, either a cash-in to {@code account} or a transfer.
+ */
+@Getter
+@Builder
+public class IngestOperation {
+
+  private Type type;
+  private String account;
+  @SerializedName("from")
+  private String accountFrom;
+  @SerializedName("to")
+  private String accountTo;
+  private Money amount;
+
+  public TransferOperation toTransfer() {
+    return TransferOperation.builder().accountFrom(accountFrom).accountTo(accountTo)
+        .amount(amount).build();
+  }
+
+  public enum Type {
+    CASH_IN("cash-in"),
+    TRANSFER("transfer");
+
+    private final String value;
+
+    Type(String value) {
+      this.value = value;
+    }
+
+    public String getValue() {
+      return value;
+    }
+
+    /**
+     * Type by its JSON value.
+     *
+     * @return null if there is no such type
+     */
+    public static Type of(String value) {
+      for (Type type : values()) {
+        if (Objects.equals(type.value, value)) {
+          return type;
+        }
+      }
+
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,120 @@
+package com.fintech.models;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Amount of money as a whole number of minor units, hundredths of the currency.
+ *
+ * <p>Arithmetic and comparisons work on the {@code long} and never allocate besides the
+ * result. The currency is optional: amounts read from request bodies and from the
+ * database carry none, since it belongs to the account. Two amounts with different
+ * currencies can't be added or compared.
+ */
+@Getter
+@EqualsAndHashCode
+public final class Money implements Comparable<Money> {
+
+  public static final int SCALE = 2;
+  public static final Money ZERO = new Money(0, null);
+
+  private final long minorUnits;
+  private final String currency;
+
+  private Money(long minorUnits, String currency) {
+    this.minorUnits = minorUnits;
+    this.currency = currency;
+  }
+
+  public static Money of(long minorUnits) {
+    return minorUnits == 0 ? ZERO : new Money(minorUnits, null);
+  }
+
+  public static Money of(long minorUnits, String currency) {
+    return new Money(minorUnits, currency);
+  }
+
+  /**
+   * Converts the decimal amount, which must have at most {@value #SCALE} fractional
+   * digits and fit into a {@code long} of minor units.
+   */
+  public static Money valueOf(BigDecimal amount) {
+    try {
+      return of(amount.movePointRight(SCALE).longValueExact());
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Wrong amount " + amount.toPlainString(), e);
+    }
+  }
+
+  public static Money parse(String amount) {
+    return valueOf(new BigDecimal(amount));
+  }
+
+  public Money plus(Money other) {
+    return new Money(Math.addExact(minorUnits, other.minorUnits), currencyWith(other));
+  }
+
+  public Money minus(Money other) {
+    return new Money(Math.subtractExact(minorUnits, other.minorUnits), currencyWith(other));
+  }
+
+  public Money negate() {
+    return new Money(Math.negateExact(minorUnits), currency);
+  }
+
+  public int signum() {
+    return Long.signum(minorUnits);
+  }
+
+  public boolean isNegative() {
+    return minorUnits < 0;
+  }
+
+  @Override
+  public int compareTo(Money other) {
+    currencyWith(other);
+
+    return Long.compare(minorUnits, other.minorUnits);
+  }
+
+  public BigDecimal toBigDecimal() {
+    return BigDecimal.valueOf(minorUnits, SCALE);
+  }
+
+  /**
+   * Plain decimal with trailing zeros dropped but at least one fractional digit, the
+   * way the amounts have always been printed: {@code 100.0}, {@code 12.5}, {@code 0.05}.
+   */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(24);
+    if (minorUnits < 0) {
+      builder.append('-');
+    }
+    // Unsigned math keeps Long.MIN_VALUE printable
+    long units = Math.abs(minorUnits);
+    builder.append(Long.toUnsignedString(Long.divideUnsigned(units, 100))).append('.');
+
+    int cents = (int) Long.remainderUnsigned(units, 100);
+    builder.append(cents / 10);
+    if (cents % 10 != 0) {
+      builder.append(cents % 10);
+    }
+
+    return builder.toString();
+  }
+
+  private String currencyWith(Money other) {
+    if (Objects.isNull(currency)) {
+      return other.currency;
+    } else if (Objects.nonNull(other.currency) && !currency.equals(other.currency)) {
+      throw new IllegalArgumentException(
+          "Amounts with different currencies " + currency + " and " + other.currency);
+    }
+
+    return currency;
+  }
+
+}
@@ -1,7 +1,6 @@
 package com.fintech.models;
 
 import com.google.gson.annotations.SerializedName;
-import java.math.BigDecimal;
 import lombok.Builder;
 import lombok.Getter;
 
@@ -14,6 +13,6 @@ public class TransferOperation {
   @SerializedName("to")
   private String accountTo;
   @SerializedName("amount")
-  private BigDecimal amount;
+  private Money amount;
 
 }
@@ -1,6 +1,5 @@
 package com.fintech.models;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -14,7 +13,7 @@ public class TransferRepresentation {
   private Long id;
   private String accountFrom;
   private String accountTo;
-  private BigDecimal amount;
+  private Money amount;
   private LocalDateTime created;
 
 }
@@ -0,0 +1,21 @@
+package com.fintech.models;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class TransferResult {
+
+  private int index;
+  private Long id;
+  private Status status;
+  private String message;
+
+  public enum Status {
+    COMPLETED,
+    FAILED,
+    ROLLED_BACK
+  }
+
+}
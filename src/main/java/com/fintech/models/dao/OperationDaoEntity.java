@@ -1,6 +1,6 @@
 package com.fintech.models.dao;
 
-import java.math.BigDecimal;
+import com.fintech.models.Money;
 import java.time.LocalDateTime;
 import lombok.Getter;
 import lombok.Setter;
@@ -11,8 +11,8 @@ public class OperationDaoEntity {
 
   private Long id;
   private String accountNumber;
-  private BigDecimal debit;
-  private BigDecimal credit;
+  private Money debit;
+  private Money credit;
   private LocalDateTime created;
 
 }
@@ -1,100 +1,75 @@
 package com.fintech.routers;
 
+import com.fintech.json.Json;
 import com.fintech.models.Account;
-import com.fintech.models.ErrorResponse;
 import com.fintech.services.AccountService;
-import com.google.gson.Gson;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.RoutingHandler;
-import io.undertow.util.HttpString;
-import java.nio.charset.Charset;
 import java.util.List;
 
 public class AccountRouter implements RoutingHandlerFactory {
 
   private AccountService accountService;
+  private Dispatcher dispatcher;
 
   public AccountRouter(AccountService accountService) {
+    this(accountService, Dispatcher.shared());
+  }
+
+  public AccountRouter(AccountService accountService, Dispatcher dispatcher) {
     this.accountService = accountService;
+    this.dispatcher = dispatcher;
   }
 
   void accountInfo(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
+    dispatcher.receive(exchange, (exc, bytes) -> {
       String number = exc.getQueryParameters().get("number").getFirst();
 
-      final Gson gson = new Gson();
       try {
         Account account = accountService.getByNumber(number);
 
         exc.setStatusCode(200);
-        exc.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exc.getResponseSender().send(gson.toJson(account));
+        Json.send(exc, Json.ACCOUNT, account);
       } catch (IllegalArgumentException e) {
-        exc.setStatusCode(404);
-        exc.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exc.getResponseSender().send(gson.toJson(
-            ErrorResponse.builder().code(404)
-                .message(e.getMessage())
-                .timestamp(System.currentTimeMillis()).build()));
+        Json.sendError(exc, 404, e.getMessage());
       }
 
     });
   }
 
   void userAccounts(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
+    dispatcher.receive(exchange, (exc, bytes) -> {
       String userId = exc.getQueryParameters().get("userId").getFirst();
 
-      final Gson gson = new Gson();
-
       try {
         List<Account> accounts = accountService.userAccounts(userId);
 
         exc.setStatusCode(200);
-        exc.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exc.getResponseSender().send(gson.toJson(accounts));
+        Json.sendList(exc, Json.ACCOUNT, accounts);
       } catch (IllegalArgumentException e) {
-        exc.setStatusCode(400);
-        exc.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exc.getResponseSender().send(gson.toJson(
-            ErrorResponse.builder().code(400)
-                .message(e.getMessage())
-                .timestamp(System.currentTimeMillis()).build()));
+        Json.sendError(exc, 400, e.getMessage());
       }
     });
   }
 
   void createAccount(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
+    dispatcher.receive(exchange, (exc, bytes) -> {
       String userId = exc.getQueryParameters().get("userId").getFirst();
 
-      final Gson gson = new Gson();
-      Account account = gson.fromJson(new String(bytes, Charset.defaultCharset()), Account.class);
+      Account account = Json.decode(bytes, Json.ACCOUNT);
       try {
         Account result = accountService.addAccountToUser(userId, account.getCurrency());
 
         exc.setStatusCode(201);
-        exc.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exc.getResponseSender().send(gson.toJson(result));
+        Json.send(exc, Json.ACCOUNT, result);
       } catch (IllegalArgumentException e) {
-        exc.setStatusCode(400);
-        exc.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exc.getResponseSender().send(gson.toJson(
-            ErrorResponse.builder().code(400)
-                .message(e.getMessage())
-                .timestamp(System.currentTimeMillis()).build()));
+        Json.sendError(exc, 400, e.getMessage());
       }
     });
   }
 
   void delete(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
+    dispatcher.receive(exchange, (exc, bytes) -> {
       String number = exc.getQueryParameters().get("number").getFirst();
       try {
         accountService.delete(number);
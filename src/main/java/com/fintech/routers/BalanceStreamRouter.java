@@ -0,0 +1,128 @@
+package com.fintech.routers;
+
+import com.fintech.events.EventBus;
+import com.fintech.events.Subscription;
+import com.fintech.json.Json;
+import com.fintech.models.Money;
+import com.fintech.services.TransactionService;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.RoutingHandler;
+import io.undertow.server.handlers.sse.ServerSentEventConnection;
+import io.undertow.server.handlers.sse.ServerSentEventHandler;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.xnio.IoUtils;
+
+/**
+ * Pushes the balance of an account as Server-Sent Events instead of having clients poll
+ * {@code GET /accounts/{number}/balance}: the current balance once connected, then the
+ * new one after every committed change, as published by
+ * {@link com.fintech.services.impl.PublishingTransactionService}.
+ *
+ * <p>Every connection buffers up to {@code capacity} balances that are not sent yet and
+ * drops the oldest beyond that, a slow client only misses intermediate balances. A client
+ * that went away is noticed, and unsubscribed, once writing the next balance or keep-alive
+ * to it fails.
+ */
+public class BalanceStreamRouter implements RoutingHandlerFactory {
+
+  private static final String EVENT_BALANCE = "balance";
+  private static final long KEEP_ALIVE_MILLIS = 15_000;
+
+  private TransactionService transactionService;
+  private EventBus<Money> balances;
+  private Dispatcher dispatcher;
+  private int capacity;
+
+  public BalanceStreamRouter(TransactionService transactionService, EventBus<Money> balances,
+                             Dispatcher dispatcher, int capacity) {
+    this.transactionService = transactionService;
+    this.balances = balances;
+    this.dispatcher = dispatcher;
+    this.capacity = capacity;
+  }
+
+  void stream(HttpServerExchange exchange) {
+    dispatcher.dispatch(exchange, exc -> {
+      String number = exc.getQueryParameters().get("number").getFirst();
+
+      Subscription<Money> subscription;
+      try {
+        subscription = balances.subscribe(number, capacity,
+            () -> transactionService.balance(number));
+      } catch (IllegalArgumentException e) {
+        Json.sendError(exc, 404, e.getMessage());
+        return;
+      }
+
+      // Also when the client goes away before the stream is set up
+      exc.addExchangeCompleteListener((completed, next) -> {
+        subscription.close();
+        next.proceed();
+      });
+      new ServerSentEventHandler((connection, lastEventId) -> connected(connection,
+          subscription)).handleRequest(exc);
+    });
+  }
+
+  private void connected(ServerSentEventConnection connection, Subscription<Money> subscription) {
+    connection.setKeepAliveTime(KEEP_ALIVE_MILLIS);
+    subscription.onEvent(new Sender(connection, subscription)::send);
+  }
+
+  @Override
+  public RoutingHandler handler() {
+    return new RoutingHandler()
+        .get("/accounts/{number}/balance/stream", this::stream);
+  }
+
+  /**
+   * Sends the buffered balances one at a time, the next once the previous is written, so
+   * they wait in the subscription, where the old ones are dropped, and not in the
+   * unbounded queue of the connection.
+   */
+  private static final class Sender implements ServerSentEventConnection.EventCallback {
+
+    private final ServerSentEventConnection connection;
+    private final Subscription<Money> subscription;
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    private Sender(ServerSentEventConnection connection, Subscription<Money> subscription) {
+      this.connection = connection;
+      this.subscription = subscription;
+    }
+
+    private void send() {
+      // Checked again after the flag is cleared, an event may have come in meanwhile
+      while (sending.compareAndSet(false, true)) {
+        Money balance = subscription.poll();
+        if (Objects.nonNull(balance)) {
+          connection.send(balance.toString(), EVENT_BALANCE, null, this);
+          return;
+        }
+
+        sending.set(false);
+        if (!subscription.hasEvents()) {
+          return;
+        }
+      }
+    }
+
+    @Override
+    public void done(ServerSentEventConnection connection, String data, String event,
+                     String id) {
+      sending.set(false);
+      send();
+    }
+
+    @Override
+    public void failed(ServerSentEventConnection connection, String data, String event,
+                       String id, IOException e) {
+      subscription.close();
+      IoUtils.safeClose(connection);
+    }
+
+  }
+
+}
@@ -0,0 +1,166 @@
+package com.fintech.routers;
+
+import com.fintech.json.Json;
+import com.fintech.utils.Config;
+import io.undertow.io.Receiver;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.SameThreadExecutor;
+import io.undertow.util.StatusCodes;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.jboss.logging.Logger;
+
+/**
+ * Moves blocking service calls off the IO threads.
+ *
+ * <p>The request body is read on the IO thread, then the handler runs on the executor.
+ * Once {@code maxQueued} handlers are waiting, new requests are answered with 503
+ * straight from the IO thread instead of growing the queue.
+ *
+ * <p>The shared dispatcher is set up from {@code dispatch.mode}: {@code worker} (default)
+ * for a fixed pool of {@code dispatch.threads} threads, {@code virtual} for a virtual
+ * thread per request when the runtime has them, or {@code inline} to run handlers on the
+ * IO thread. {@code dispatch.queue} sets {@code maxQueued}.
+ */
+public class Dispatcher {
+
+  private static final Logger log = Logger.getLogger(Dispatcher.class);
+
+  private static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors() * 8;
+  private static final int DEFAULT_QUEUE = 10_000;
+
+  private final Executor executor;
+  private final int maxQueued;
+
+  private final AtomicLong queued = new AtomicLong();
+  private final AtomicLong active = new AtomicLong();
+  private final LongAdder completed = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  public Dispatcher(Executor executor, int maxQueued) {
+    this.executor = executor;
+    this.maxQueued = maxQueued;
+  }
+
+  public static Dispatcher shared() {
+    return Shared.INSTANCE;
+  }
+
+  public static Dispatcher inline() {
+    return new Dispatcher(SameThreadExecutor.INSTANCE, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Reads the whole request body, then runs the callback on the executor.
+   */
+  public void receive(HttpServerExchange exchange, Receiver.FullBytesCallback callback) {
+    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) ->
+        dispatch(exc, dispatched -> callback.handle(dispatched, bytes)));
+  }
+
+  /**
+   * Runs the handler on the executor without reading the request body, for handlers that
+   * read it themselves. Rejected the same way as {@link #receive} once the queue is full.
+   */
+  public void dispatch(HttpServerExchange exchange, HttpHandler handler) {
+    // Counted before the check, so concurrent requests can't all pass it for the last slot
+    if (queued.incrementAndGet() > maxQueued) {
+      queued.decrementAndGet();
+      rejected.increment();
+      Json.sendError(exchange, StatusCodes.SERVICE_UNAVAILABLE, "Server is overloaded");
+      return;
+    }
+
+    // Dispatching a handler, not a runnable, so the exchange is ended when it returns
+    exchange.dispatch(executor, dispatched -> {
+      queued.decrementAndGet();
+      active.incrementAndGet();
+      try {
+        handler.handleRequest(dispatched);
+      } finally {
+        active.decrementAndGet();
+        completed.increment();
+      }
+    });
+  }
+
+  /**
+   * Runs a handler that blocks on the response. It is run right away on a dispatch
+   * thread, but moved to the XNIO worker pool in {@code inline} mode, where it would
+   * otherwise block an IO thread.
+   */
+  public static void blocking(HttpServerExchange exchange, Consumer<HttpServerExchange> handler) {
+    if (exchange.isInIoThread()) {
+      // A dispatched handler, not a runnable, so the exchange is ended if it throws
+      exchange.dispatch(exchange.getConnection().getWorker(),
+          (HttpHandler) handler::accept);
+    } else {
+      handler.accept(exchange);
+    }
+  }
+
+  public long queued() {
+    return queued.get();
+  }
+
+  public long active() {
+    return active.get();
+  }
+
+  public long completed() {
+    return completed.sum();
+  }
+
+  public long rejected() {
+    return rejected.sum();
+  }
+
+  static Executor executor(String mode, int threads) {
+    switch (mode) {
+      case "inline":
+        return SameThreadExecutor.INSTANCE;
+      case "virtual":
+        try {
+          return (ExecutorService) Executors.class
+              .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException
+            | InvocationTargetException e) {
+          log.warn("Virtual threads are not supported by this runtime, using worker pool");
+          return workers(threads);
+        }
+      case "worker":
+        return workers(threads);
+      default:
+        throw new IllegalArgumentException("Unknown dispatch mode " + mode);
+    }
+  }
+
+  private static ExecutorService workers(int threads) {
+    AtomicInteger counter = new AtomicInteger();
+    ThreadFactory factory = task -> {
+      Thread thread = new Thread(task, "dispatch-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+
+    return Executors.newFixedThreadPool(threads, factory);
+  }
+
+  private static final class Shared {
+
+    private static final Dispatcher INSTANCE = new Dispatcher(
+        executor(Config.getString("dispatch.mode", "worker"),
+            Config.getInt("dispatch.threads", DEFAULT_THREADS)),
+        Config.getInt("dispatch.queue", DEFAULT_QUEUE));
+
+  }
+
+}
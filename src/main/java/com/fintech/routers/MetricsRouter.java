@@ -0,0 +1,29 @@
+package com.fintech.routers;
+
+import com.fintech.metrics.MetricsRegistry;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.server.RoutingHandler;
+import io.undertow.util.HttpString;
+
+public class MetricsRouter implements RoutingHandlerFactory {
+
+  private MetricsRegistry registry;
+
+  public MetricsRouter(MetricsRegistry registry) {
+    this.registry = registry;
+  }
+
+  void metrics(HttpServerExchange exchange) {
+    exchange.setStatusCode(200);
+    exchange.getResponseHeaders()
+        .add(HttpString.tryFromString("Content-Type"), "text/plain; version=0.0.4");
+    exchange.getResponseSender().send(registry.scrape());
+  }
+
+  @Override
+  public RoutingHandler handler() {
+    return new RoutingHandler()
+        .get("/metrics", this::metrics);
+  }
+
+}
@@ -0,0 +1,68 @@
+package com.fintech.routers;
+
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.HttpString;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Keyset pagination helpers. The cursor handed to clients is an opaque token which
+ * wraps the key of the last row of the previous page.
+ */
+final class Pagination {
+
+  static final HttpString NEXT_CURSOR = HttpString.tryFromString("X-Next-Cursor");
+
+  private static final int DEFAULT_LIMIT = 100;
+
+  private Pagination() {
+  }
+
+  static Integer limit(HttpServerExchange exchange) {
+    if (exchange.getQueryParameters().containsKey("limit")) {
+      return Integer.valueOf(exchange.getQueryParameters().get("limit").getFirst());
+    }
+
+    return DEFAULT_LIMIT;
+  }
+
+  /**
+   * Checks if all rows are asked for at once with {@code stream=true}, instead of a page.
+   */
+  static boolean isStream(HttpServerExchange exchange) {
+    return exchange.getQueryParameters().containsKey("stream")
+        && Boolean.parseBoolean(exchange.getQueryParameters().get("stream").getFirst());
+  }
+
+  static boolean isOffset(HttpServerExchange exchange) {
+    return exchange.getQueryParameters().containsKey("offset");
+  }
+
+  static Integer offset(HttpServerExchange exchange) {
+    return Integer.valueOf(exchange.getQueryParameters().get("offset").getFirst());
+  }
+
+  static String cursor(HttpServerExchange exchange) {
+    if (!exchange.getQueryParameters().containsKey("cursor")) {
+      return null;
+    }
+    String cursor = exchange.getQueryParameters().get("cursor").getFirst();
+
+    return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+  }
+
+  static <T> void nextCursor(HttpServerExchange exchange, List<T> page, Integer limit,
+                             Function<T, Object> key) {
+    if (page.isEmpty() || page.size() < limit) {
+      return;
+    }
+    String last = String.valueOf(key.apply(page.get(page.size() - 1)));
+
+    exchange.getResponseHeaders().put(NEXT_CURSOR,
+        Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(last.getBytes(StandardCharsets.UTF_8)));
+  }
+
+}
@@ -1,70 +1,229 @@
 package com.fintech.routers;
 
 import com.fintech.dao.AccountDao;
+import com.fintech.dao.JdbcTemplate;
 import com.fintech.dao.OperationDao;
 import com.fintech.dao.TransferDao;
 import com.fintech.dao.UserDao;
+import com.fintech.dao.impl.BalanceCheckpointJob;
 import com.fintech.dao.impl.DbAccountDao;
+import com.fintech.dao.impl.DbLedgerCheckpointDao;
 import com.fintech.dao.impl.DbOperationDao;
+import com.fintech.dao.impl.DbTransactionManager;
 import com.fintech.dao.impl.DbTransferDao;
 import com.fintech.dao.impl.DbUserDao;
-import com.fintech.models.ErrorResponse;
+import com.fintech.events.EventBus;
+import com.fintech.json.Json;
+import com.fintech.ledger.LedgerEngine;
+import com.fintech.metrics.MetricsHandler;
+import com.fintech.metrics.MetricsRegistry;
+import com.fintech.metrics.StatementMetrics;
+import com.fintech.models.Money;
 import com.fintech.models.dao.AccountDaoEntity;
 import com.fintech.models.dao.OperationDaoEntity;
 import com.fintech.models.dao.TransferDaoEntity;
 import com.fintech.models.dao.UserDaoEntity;
-import com.fintech.services.AccountService;
 import com.fintech.services.TransactionService;
-import com.fintech.services.UserService;
+import com.fintech.services.impl.CachingAccountService;
+import com.fintech.services.impl.CachingUserService;
 import com.fintech.services.impl.DefaultAccountService;
 import com.fintech.services.impl.DefaultTransactionService;
 import com.fintech.services.impl.DefaultUserService;
-import com.google.gson.Gson;
+import com.fintech.services.impl.GroupCommitTransactionService;
+import com.fintech.services.impl.LedgerTransactionService;
+import com.fintech.services.impl.PublishingTransactionService;
+import com.fintech.utils.Config;
+import io.undertow.server.HttpHandler;
 import io.undertow.server.RoutingHandler;
-import io.undertow.util.HttpString;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 public enum Router {
 
   INSTANCE;
 
+  private static final long CACHE_SIZE = 100_000;
+  private static final long CACHE_EXPIRY_MINUTES = 1;
+  private static final int GROUP_COMMIT_MAX_BATCH = 512;
+  private static final int GROUP_COMMIT_WINDOW_MICROS = 2000;
+  private static final String ENGINE_DATABASE = "database";
+  private static final String ENGINE_LEDGER = "ledger";
+  private static final int LEDGER_RING_SIZE = 4096;
+  private static final int CHECKPOINT_INTERVAL_SECONDS = 60;
+  private static final int CHECKPOINT_MIN_OPERATIONS = 10_000;
+  private static final int TRANSACTION_ATTEMPTS = 3;
+  private static final int TRANSACTION_BACKOFF_MILLIS = 2;
+  private static final int SLOW_STATEMENT_MILLIS = 100;
+  private static final int BALANCE_STREAM_BUFFER = 16;
+
+  private MetricsRegistry metrics = new MetricsRegistry();
+  private StatementMetrics statementMetrics = statementMetrics();
+
   private UserDao<UserDaoEntity, String> userDao = new DbUserDao();
-  private UserService userService = new DefaultUserService(userDao);
-  private UserRouter userRouter = new UserRouter(userService);
+  private CachingUserService userService = new CachingUserService(
+      new DefaultUserService(userDao), CACHE_SIZE, Duration.ofMinutes(CACHE_EXPIRY_MINUTES));
+  private Dispatcher dispatcher = Dispatcher.shared();
+
+  private UserRouter userRouter = new UserRouter(userService, dispatcher);
 
   private AccountDao<AccountDaoEntity, String> accountDao = new DbAccountDao();
-  private AccountService accountService = new DefaultAccountService(accountDao, userService);
-  private AccountRouter accountRouter = new AccountRouter(accountService);
+  private CachingAccountService accountService = new CachingAccountService(
+      new DefaultAccountService(accountDao, userService),
+      CACHE_SIZE, Duration.ofMinutes(CACHE_EXPIRY_MINUTES));
+  private AccountRouter accountRouter = new AccountRouter(accountService, dispatcher);
 
-  private OperationDao<OperationDaoEntity, Long> operationDao = new DbOperationDao();
+  private OperationDao<OperationDaoEntity, Long> operationDao = operationDao();
   private TransferDao<TransferDaoEntity, Long> transferDao = new DbTransferDao();
+  private DbTransactionManager transactionManager = new DbTransactionManager(
+      Config.getInt("transactions.attempts", TRANSACTION_ATTEMPTS),
+      Config.getInt("transactions.backoff-millis", TRANSACTION_BACKOFF_MILLIS));
+  private EventBus<Money> balanceEvents = new EventBus<>();
   private TransactionService transactionService
-      = new DefaultTransactionService(operationDao, transferDao, accountService);
-  private TransactionRouter transactionRouter = new TransactionRouter(transactionService);
+      = new PublishingTransactionService(transactionService(), balanceEvents);
+  private BalanceCheckpointJob checkpointJob = checkpointJob();
+  private TransactionRouter transactionRouter
+      = new TransactionRouter(transactionService, dispatcher);
+  private BalanceStreamRouter balanceStreamRouter = new BalanceStreamRouter(
+      transactionService, balanceEvents, dispatcher,
+      Config.getInt("balance.stream.buffer", BALANCE_STREAM_BUFFER));
+
+  private MetricsRouter metricsRouter = new MetricsRouter(metrics);
 
   private final RoutingHandler handler = new RoutingHandler()
       .addAll(userRouter.handler())
       .addAll(accountRouter.handler())
       .addAll(transactionRouter.handler())
-      .setFallbackHandler(exchange -> {
-        Gson gson = new Gson();
-        exchange.setStatusCode(400);
-        exchange.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exchange.getResponseSender().send(gson.toJson(
-            ErrorResponse.builder().code(400)
-                .message("Method not found")
-                .timestamp(System.currentTimeMillis()).build()));
-      })
-      .setInvalidMethodHandler(exchange -> {
-        Gson gson = new Gson();
-        exchange.setStatusCode(400);
-        exchange.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exchange.getResponseSender().send(gson.toJson(
-            ErrorResponse.builder().code(400)
-                .message("Wrong method format")
-                .timestamp(System.currentTimeMillis()).build()));
-      });
+      .addAll(balanceStreamRouter.handler())
+      .addAll(metricsRouter.handler())
+      .setFallbackHandler(exchange -> Json.sendError(exchange, 400, "Method not found"))
+      .setInvalidMethodHandler(exchange -> Json.sendError(exchange, 400, "Wrong method format"));
+
+  private final HttpHandler instrumented = new MetricsHandler(metrics, handler);
+
+  Router() {
+    metrics.counter("user_cache_hits_total", "User cache hits.",
+        () -> userService.stats().hitCount());
+    metrics.counter("user_cache_misses_total", "User cache misses.",
+        () -> userService.stats().missCount());
+    metrics.counter("account_cache_hits_total", "Account cache hits.",
+        () -> accountService.stats().hitCount());
+    metrics.counter("account_cache_misses_total", "Account cache misses.",
+        () -> accountService.stats().missCount());
+    metrics.gauge("dispatch_queue_depth", "Requests waiting for a dispatch thread.",
+        dispatcher::queued);
+    metrics.gauge("dispatch_active", "Requests running on dispatch threads.",
+        dispatcher::active);
+    metrics.counter("dispatch_completed_total", "Requests completed on dispatch threads.",
+        dispatcher::completed);
+    metrics.counter("dispatch_rejected_total", "Requests rejected with a full dispatch queue.",
+        dispatcher::rejected);
+    metrics.gauge("balance_subscribers", "Open balance streams.",
+        balanceEvents::getSubscribers);
+    metrics.counter("balance_events_published_total",
+        "Balance changes published to open streams.", balanceEvents::getPublished);
+    metrics.counter("balance_events_dropped_total",
+        "Balances dropped from the buffer of a slow stream.", balanceEvents::getDropped);
+    metrics.counter("transaction_retries_total",
+        "Transactions run again after a deadlock, lock timeout or balance version conflict.",
+        transactionManager::getRetries);
+  }
+
+  private StatementMetrics statementMetrics() {
+    StatementMetrics statements = new StatementMetrics(
+        Config.getInt("db.slow-statement-millis", SLOW_STATEMENT_MILLIS), TimeUnit.MILLISECONDS);
+    JdbcTemplate.shared().addListener(statements);
+    metrics.counter("db_statements_total", "Statements run by the DAOs.",
+        statements::getStatements);
+    metrics.counter("db_statement_failures_total", "DAO statements that threw.",
+        statements::getFailures);
+    metrics.counter("db_slow_statements_total", "DAO statements over the slow threshold.",
+        statements::getSlow);
+    metrics.counter("db_statement_micros_total", "Time spent in DAO statements.",
+        statements::getMicros);
+
+    return statements;
+  }
+
+  private OperationDao<OperationDaoEntity, Long> operationDao() {
+    String concurrency = Config.getString("transactions.concurrency", "pessimistic");
+    DbOperationDao dao;
+    try {
+      dao = new DbOperationDao(
+          DbOperationDao.Concurrency.valueOf(concurrency.toUpperCase(Locale.ROOT)));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown concurrency strategy " + concurrency, e);
+    }
+    metrics.counter("balance_versioned_updates_total",
+        "Optimistic balance updates attempted.", dao::getVersionedUpdates);
+    metrics.counter("balance_version_conflicts_total",
+        "Optimistic balance updates that lost to a concurrent change.",
+        dao::getVersionConflicts);
+
+    return dao;
+  }
+
+  private TransactionService transactionService() {
+    String engine = Config.getString("transactions.engine", ENGINE_DATABASE);
+    if (ENGINE_LEDGER.equals(engine)) {
+      return ledger();
+    } else if (!ENGINE_DATABASE.equals(engine)) {
+      throw new IllegalArgumentException("Unknown transactions engine " + engine);
+    }
+
+    return groupCommit(new DefaultTransactionService(
+        operationDao, transferDao, accountService, transactionManager));
+  }
+
+  private TransactionService ledger() {
+    LedgerEngine ledger = new LedgerEngine(
+        Paths.get(Config.getString("ledger.directory", "ledger")),
+        Config.getInt("ledger.partitions", Runtime.getRuntime().availableProcessors()),
+        Config.getInt("ledger.ring-size", LEDGER_RING_SIZE),
+        operationDao, transferDao, new DbLedgerCheckpointDao(), transactionManager);
+    metrics.counter("ledger_journaled_total", "Entries written to the ledger journals.",
+        ledger::getJournaled);
+    metrics.counter("ledger_projected_total", "Ledger entries written to the database.",
+        ledger::getProjected);
+    metrics.gauge("ledger_projection_queue", "Journaled batches waiting for the database.",
+        ledger::getProjectionQueue);
+
+    return new LedgerTransactionService(ledger, transferDao, accountService);
+  }
+
+  private BalanceCheckpointJob checkpointJob() {
+    int interval = Config.getInt("balance.checkpoint.interval-seconds",
+        CHECKPOINT_INTERVAL_SECONDS);
+    BalanceCheckpointJob job = new BalanceCheckpointJob(
+        Config.getInt("balance.checkpoint.min-operations", CHECKPOINT_MIN_OPERATIONS),
+        interval, TimeUnit.SECONDS);
+    if (interval > 0) {
+      job.start();
+    }
+    metrics.counter("balance_checkpoints_total", "Account balance checkpoints taken.",
+        job::getCheckpoints);
+
+    return job;
+  }
+
+  private TransactionService groupCommit(TransactionService transactionService) {
+    if (!Config.getBoolean("transfers.group-commit", false)) {
+      return transactionService;
+    }
+
+    GroupCommitTransactionService groupCommit = new GroupCommitTransactionService(
+        transactionService,
+        Config.getInt("transfers.group-commit.max-batch", GROUP_COMMIT_MAX_BATCH),
+        Config.getInt("transfers.group-commit.window-micros", GROUP_COMMIT_WINDOW_MICROS),
+        TimeUnit.MICROSECONDS);
+    metrics.counter("group_commit_batches_total", "Transfer batches committed together.",
+        groupCommit::getBatches);
+    metrics.counter("group_commit_transfers_total", "Transfers committed in batches.",
+        groupCommit::getTransfers);
+
+    return groupCommit;
+  }
 
   public static Router getInstance() {
     return INSTANCE;
@@ -74,4 +233,12 @@ public enum Router {
     return handler;
   }
 
+  public HttpHandler httpHandler() {
+    return instrumented;
+  }
+
+  public MetricsRegistry metrics() {
+    return metrics;
+  }
+
 }
@@ -1,34 +1,58 @@
 package com.fintech.routers;
 
+import com.fintech.json.Json;
+import com.fintech.json.JsonLineReader;
 import com.fintech.models.AccountOperation;
-import com.fintech.models.ErrorResponse;
+import com.fintech.models.IngestOperation;
+import com.fintech.models.Money;
 import com.fintech.models.TransferOperation;
 import com.fintech.models.TransferRepresentation;
+import com.fintech.models.TransferResult;
 import com.fintech.services.TransactionService;
-import com.fintech.utils.LocalDateTimeAdapter;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.RoutingHandler;
-import io.undertow.util.HttpString;
-import java.nio.charset.Charset;
+import io.undertow.util.Headers;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+import org.jboss.logging.Logger;
 
 public class TransactionRouter implements RoutingHandlerFactory {
 
+  private static final Logger log = Logger.getLogger(TransactionRouter.class);
+
+  private static final String MODE_ATOMIC = "atomic";
+  private static final String MODE_BEST_EFFORT = "best-effort";
+
+  private static final String APPLICATION_NDJSON = "application/x-ndjson";
+  private static final int INGEST_BATCH_SIZE = 1000;
+  private static final int MAX_LINE_LENGTH = 64 * 1024;
+
   private TransactionService transactionService;
+  private Dispatcher dispatcher;
 
   public TransactionRouter(TransactionService transactionService) {
+    this(transactionService, Dispatcher.shared());
+  }
+
+  public TransactionRouter(TransactionService transactionService, Dispatcher dispatcher) {
     this.transactionService = transactionService;
+    this.dispatcher = dispatcher;
   }
 
   void cashIn(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
+    dispatcher.receive(exchange, (exc, bytes) -> {
       String number = exc.getQueryParameters().get("number").getFirst();
-      AccountOperation operation
-          = new Gson().fromJson(
-          new String(bytes, Charset.defaultCharset()), AccountOperation.class);
+      AccountOperation operation = Json.decode(bytes, Json.ACCOUNT_OPERATION);
       try {
         transactionService.cashIn(number, operation.getAmount());
         exc.setStatusCode(200);
@@ -39,11 +63,9 @@ public class TransactionRouter implements RoutingHandlerFactory {
   }
 
   void withdraw(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
+    dispatcher.receive(exchange, (exc, bytes) -> {
       String number = exc.getQueryParameters().get("number").getFirst();
-      AccountOperation operation
-          = new Gson().fromJson(
-          new String(bytes, Charset.defaultCharset()), AccountOperation.class);
+      AccountOperation operation = Json.decode(bytes, Json.ACCOUNT_OPERATION);
       try {
         transactionService.withdraw(number, operation.getAmount());
         exc.setStatusCode(200);
@@ -54,11 +76,16 @@ public class TransactionRouter implements RoutingHandlerFactory {
   }
 
   void balance(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
+    dispatcher.receive(exchange, (exc, bytes) -> {
       String number = exc.getQueryParameters().get("number").getFirst();
+      Deque<String> at = exc.getQueryParameters().get("at");
       try {
+        Money balance = Objects.isNull(at)
+            ? transactionService.balance(number)
+            : transactionService.balanceAt(number, timestamp(at.getFirst()));
+
         exc.setStatusCode(200);
-        exc.getResponseSender().send(transactionService.balance(number).toPlainString());
+        exc.getResponseSender().send(balance.toString());
       } catch (IllegalArgumentException e) {
         createErrorResponse(exc, e);
       }
@@ -66,11 +93,8 @@ public class TransactionRouter implements RoutingHandlerFactory {
   }
 
   void transfer(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
-      Gson gson = new Gson();
-
-      TransferOperation operation
-          = gson.fromJson(new String(bytes, Charset.defaultCharset()), TransferOperation.class);
+    dispatcher.receive(exchange, (exc, bytes) -> {
+      TransferOperation operation = Json.decode(bytes, Json.TRANSFER_OPERATION);
       try {
         transactionService.transfer(operation);
 
@@ -81,30 +105,114 @@ public class TransactionRouter implements RoutingHandlerFactory {
     });
   }
 
+  void transferAll(HttpServerExchange exchange) {
+    dispatcher.receive(exchange, (exc, bytes) -> {
+      List<TransferOperation> operations = Json.decodeList(bytes, Json.TRANSFER_OPERATION);
+      try {
+        if (Objects.isNull(operations)) {
+          throw new IllegalArgumentException("Empty batch");
+        }
+        List<TransferResult> results = transactionService.transferAll(operations, isAtomic(exc));
+
+        exc.setStatusCode(200);
+        Json.sendList(exc, Json.TRANSFER_RESULT, results);
+      } catch (IllegalArgumentException e) {
+        createErrorResponse(exc, e);
+      }
+    });
+  }
+
   void list(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
-      Integer limit = 100;
-      Integer offset = 0;
-      if (exc.getQueryParameters().containsKey("limit")) {
-        limit = Integer.valueOf(exc.getQueryParameters().get("limit").getFirst());
+    dispatcher.receive(exchange, (exc, bytes) -> {
+      if (Pagination.isStream(exc)) {
+        Dispatcher.blocking(exc, this::stream);
+        return;
       }
-      if (exc.getQueryParameters().containsKey("offset")) {
-        offset = Integer.valueOf(exc.getQueryParameters().get("offset").getFirst());
+
+      List<TransferRepresentation> transferRepresentations;
+      try {
+        Integer limit = Pagination.limit(exc);
+        if (Pagination.isOffset(exc)) {
+          transferRepresentations = transactionService.findAll(limit, Pagination.offset(exc));
+        } else {
+          String cursor = Pagination.cursor(exc);
+          transferRepresentations = transactionService.findAllAfter(
+              Objects.isNull(cursor) ? null : Long.valueOf(cursor), limit);
+          Pagination.nextCursor(exc, transferRepresentations, limit,
+              TransferRepresentation::getId);
+        }
+      } catch (IllegalArgumentException e) {
+        createErrorResponse(exc, e);
+        return;
       }
 
-      List<TransferRepresentation> transferRepresentations
-          = transactionService.findAll(limit, offset);
       exc.setStatusCode(200);
-      exc.getResponseHeaders()
-          .add(HttpString.tryFromString("Content-Type"), "application/json");
-      final Gson gson = new GsonBuilder()
-          .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter()).create();
-      exc.getResponseSender().send(gson.toJson(transferRepresentations));
+      Json.sendList(exc, Json.TRANSFER_REPRESENTATION, transferRepresentations);
     });
   }
 
+  void stream(HttpServerExchange exchange) {
+    try (Stream<TransferRepresentation> transfers = transactionService.streamAll()) {
+      exchange.setStatusCode(200);
+      Json.sendStream(exchange, Json.TRANSFER_REPRESENTATION, transfers.iterator());
+    }
+  }
+
+  void ingest(HttpServerExchange exchange) {
+    dispatcher.dispatch(exchange, exc -> Dispatcher.blocking(exc, this::ingestLines));
+  }
+
+  /**
+   * Reads the operations line by line while the body arrives and runs them in line
+   * order, in batches of up to {@value #INGEST_BATCH_SIZE} lines: a batch is run once it
+   * is full or once the lines received so far are used up, so a slow producer isn't kept
+   * waiting for its results. The result of every line is written back as soon as its
+   * batch has run, a line that fails doesn't stop the ones after it.
+   *
+   * <p>An unexpected error fails the operation it came from and the rest of its batch.
+   * The results of the batch are still written, then the response ends and the lines
+   * after the batch are not run.
+   */
+  void ingestLines(HttpServerExchange exchange) {
+    exchange.startBlocking();
+    exchange.setStatusCode(200);
+    exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, APPLICATION_NDJSON);
+
+    JsonLineReader lines = new JsonLineReader(exchange.getInputStream(), MAX_LINE_LENGTH);
+    try (OutputStream out = exchange.getOutputStream()) {
+      List<Integer> numbers = new ArrayList<>(INGEST_BATCH_SIZE);
+      List<IngestOperation> operations = new ArrayList<>(INGEST_BATCH_SIZE);
+      List<TransferResult> failed = new ArrayList<>();
+      List<TransferResult> results = new ArrayList<>(INGEST_BATCH_SIZE);
+      boolean running = true;
+      while (running && lines.next()) {
+        try {
+          operations.add(check(lines.decode(Json.INGEST_OPERATION)));
+          numbers.add(lines.number());
+        } catch (IllegalArgumentException | JsonParseException e) {
+          failed.add(failed(lines.number(), e.getMessage()));
+        }
+
+        if (numbers.size() + failed.size() >= INGEST_BATCH_SIZE || !lines.ready()) {
+          running = ingestBatch(numbers, operations, failed, results);
+          Json.writeLines(out, Json.TRANSFER_RESULT, results);
+          numbers.clear();
+          operations.clear();
+          failed.clear();
+          results.clear();
+        }
+      }
+      if (running) {
+        ingestBatch(numbers, operations, failed, results);
+        Json.writeLines(out, Json.TRANSFER_RESULT, results);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   void delete(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
+    dispatcher.receive(exchange, (exc, bytes) -> {
       Long transferId = Long.parseLong(exc.getQueryParameters().get("transferId").getFirst());
       try {
         transactionService.delete(transferId);
@@ -115,16 +223,107 @@ public class TransactionRouter implements RoutingHandlerFactory {
     });
   }
 
-  private void createErrorResponse(HttpServerExchange exc, Exception e) {
-    Gson gson = new Gson();
+  /**
+   * Runs a batch of ingested operations in line order, runs of consecutive transfers as
+   * one best-effort batch, and adds the results of the operations and of the lines that
+   * failed to parse to {@code results}, in line order.
+   *
+   * @return false if an unexpected error failed an operation and the ones after it
+   */
+  private boolean ingestBatch(List<Integer> numbers, List<IngestOperation> operations,
+                              List<TransferResult> failed, List<TransferResult> results) {
+    boolean completed = true;
+    int from = 0;
+    int to = 0;
+    try {
+      while (from < operations.size()) {
+        to = from + 1;
+        IngestOperation operation = operations.get(from);
+        if (operation.getType() == IngestOperation.Type.CASH_IN) {
+          results.add(ingestCashIn(numbers.get(from), operation));
+          from = to;
+          continue;
+        }
 
-    exc.setStatusCode(400);
-    exc.getResponseHeaders()
-        .add(HttpString.tryFromString("Content-Type"), "application/json");
-    exc.getResponseSender().send(gson.toJson(
-        ErrorResponse.builder().code(400)
-            .message(e.getMessage())
-            .timestamp(System.currentTimeMillis()).build()));
+        List<TransferOperation> transfers = new ArrayList<>();
+        transfers.add(operation.toTransfer());
+        while (to < operations.size()
+            && operations.get(to).getType() == IngestOperation.Type.TRANSFER) {
+          transfers.add(operations.get(to).toTransfer());
+          to++;
+        }
+        List<TransferResult> run = new ArrayList<>(transfers.size());
+        for (TransferResult result : transactionService.transferAll(transfers, false)) {
+          run.add(TransferResult.builder().index(numbers.get(from + result.getIndex()))
+              .id(result.getId()).status(result.getStatus()).message(result.getMessage())
+              .build());
+        }
+        results.addAll(run);
+        from = to;
+      }
+    } catch (RuntimeException e) {
+      log.errorf(e, "Ingest stopped at line %d", numbers.get(from));
+      completed = false;
+      // Nothing of the failed cash-in or run of transfers is committed
+      for (int i = from; i < operations.size(); i++) {
+        results.add(failed(numbers.get(i), i < to ? "Operation failed" : "Operation not run"));
+      }
+    }
+
+    results.addAll(failed);
+    results.sort(Comparator.comparingInt(TransferResult::getIndex));
+
+    return completed;
+  }
+
+  private TransferResult ingestCashIn(int number, IngestOperation operation) {
+    try {
+      transactionService.cashIn(operation.getAccount(), operation.getAmount());
+    } catch (IllegalArgumentException e) {
+      return failed(number, e.getMessage());
+    }
+
+    return TransferResult.builder().index(number).status(TransferResult.Status.COMPLETED)
+        .build();
+  }
+
+  private IngestOperation check(IngestOperation operation) {
+    if (Objects.isNull(operation) || Objects.isNull(operation.getType())) {
+      throw new IllegalArgumentException("Wrong operation type");
+    } else if (operation.getType() == IngestOperation.Type.CASH_IN
+        && (Objects.isNull(operation.getAmount()) || operation.getAmount().isNegative())) {
+      throw new IllegalArgumentException("Wrong amount " + operation.getAmount());
+    }
+
+    return operation;
+  }
+
+  private TransferResult failed(int number, String message) {
+    return TransferResult.builder().index(number).status(TransferResult.Status.FAILED)
+        .message(message).build();
+  }
+
+  private boolean isAtomic(HttpServerExchange exc) {
+    Deque<String> mode = exc.getQueryParameters().get("mode");
+    if (Objects.isNull(mode) || MODE_ATOMIC.equals(mode.getFirst())) {
+      return true;
+    } else if (MODE_BEST_EFFORT.equals(mode.getFirst())) {
+      return false;
+    }
+
+    throw new IllegalArgumentException("Wrong mode " + mode.getFirst());
+  }
+
+  private LocalDateTime timestamp(String value) {
+    try {
+      return LocalDateTime.parse(value, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("Wrong time " + value);
+    }
+  }
+
+  private void createErrorResponse(HttpServerExchange exc, Exception e) {
+    Json.sendError(exc, 400, e.getMessage());
   }
 
   @Override
@@ -134,6 +333,8 @@ public class TransactionRouter implements RoutingHandlerFactory {
         .post("/accounts/{number}/withdraw", this::withdraw)
         .get("/accounts/{number}/balance", this::balance)
         .post("/transfers", this::transfer)
+        .post("/transfers/batch", this::transferAll)
+        .post("/ingest", this::ingest)
         .get("/transfers", this::list)
         .delete("/transfers/{transferId}", this::delete);
   }
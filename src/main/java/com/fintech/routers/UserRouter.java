@@ -1,21 +1,25 @@
 package com.fintech.routers;
 
-import com.fintech.models.ErrorResponse;
+import com.fintech.json.Json;
 import com.fintech.models.User;
 import com.fintech.services.UserService;
-import com.google.gson.Gson;
 import io.undertow.server.HttpServerExchange;
 import io.undertow.server.RoutingHandler;
-import io.undertow.util.HttpString;
-import java.nio.charset.Charset;
 import java.util.List;
+import java.util.stream.Stream;
 
 public class UserRouter implements RoutingHandlerFactory {
 
   private UserService userService;
+  private Dispatcher dispatcher;
 
   UserRouter(UserService userService) {
+    this(userService, Dispatcher.shared());
+  }
+
+  UserRouter(UserService userService, Dispatcher dispatcher) {
     this.userService = userService;
+    this.dispatcher = dispatcher;
   }
 
   public RoutingHandler handler() {
@@ -28,82 +32,54 @@ public class UserRouter implements RoutingHandlerFactory {
   }
 
   void userInfo(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
+    dispatcher.receive(exchange, (exc, bytes) -> {
       String userId = exc.getQueryParameters().get("userId").getFirst();
 
-      final Gson gson = new Gson();
       try {
         User user = userService.getById(userId);
 
         exc.setStatusCode(200);
-        exc.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exc.getResponseSender().send(gson.toJson(user));
+        Json.send(exc, Json.USER, user);
       } catch (IllegalArgumentException e) {
-        exc.setStatusCode(404);
-        exc.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exc.getResponseSender().send(gson.toJson(
-            ErrorResponse.builder().code(404)
-                .message(e.getMessage())
-                .timestamp(System.currentTimeMillis()).build()));
+        Json.sendError(exc, 404, e.getMessage());
       }
 
     });
   }
 
   void createUser(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
-      final Gson gson = new Gson();
-
-      User user = gson.fromJson(new String(bytes, Charset.defaultCharset()), User.class);
+    dispatcher.receive(exchange, (exc, bytes) -> {
+      User user = Json.decode(bytes, Json.USER);
       try {
         User persistedUser = userService.save(user);
         exc.setStatusCode(201);
-        exc.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exc.getResponseSender().send(gson.toJson(persistedUser));
+        Json.send(exc, Json.USER, persistedUser);
       } catch (IllegalArgumentException e) {
-        exc.setStatusCode(400);
-        exc.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exc.getResponseSender().send(gson.toJson(
-            ErrorResponse.builder().code(400)
-                .message(e.getMessage())
-                .timestamp(System.currentTimeMillis()).build()));
+        Json.sendError(exc, 400, e.getMessage());
       }
     });
   }
 
   void updateUser(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
+    dispatcher.receive(exchange, (exc, bytes) -> {
       String userId = exc.getQueryParameters().get("userId").getFirst();
 
-      final Gson gson = new Gson();
-      User body = gson.fromJson(new String(bytes, Charset.defaultCharset()), User.class);
+      User body = Json.decode(bytes, Json.USER);
 
       if (userService.exists(userId)) {
         User update = User.builder().id(userId).fullName(body.getFullName()).build();
 
         User persistedUser = userService.save(update);
         exc.setStatusCode(200);
-        exc.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exc.getResponseSender().send(gson.toJson(persistedUser));
+        Json.send(exc, Json.USER, persistedUser);
       } else {
-        exc.setStatusCode(400);
-        exc.getResponseHeaders()
-            .add(HttpString.tryFromString("Content-Type"), "application/json");
-        exc.getResponseSender().send(gson.toJson(
-            ErrorResponse.builder().code(400)
-                .message("User doesn't exist")
-                .timestamp(System.currentTimeMillis()).build()));
+        Json.sendError(exc, 400, "User doesn't exist");
       }
     });
   }
 
   void delete(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
+    dispatcher.receive(exchange, (exc, bytes) -> {
       String userId = exc.getQueryParameters().get("userId").getFirst();
       try {
         userService.delete(userId);
@@ -115,23 +91,36 @@ public class UserRouter implements RoutingHandlerFactory {
   }
 
   void list(HttpServerExchange exchange) {
-    exchange.getRequestReceiver().receiveFullBytes((exc, bytes) -> {
-      final Gson gson = new Gson();
-      Integer limit = 100;
-      Integer offset = 0;
-      if (exc.getQueryParameters().containsKey("limit")) {
-        limit = Integer.valueOf(exc.getQueryParameters().get("limit").getFirst());
+    dispatcher.receive(exchange, (exc, bytes) -> {
+      if (Pagination.isStream(exc)) {
+        Dispatcher.blocking(exc, this::stream);
+        return;
       }
-      if (exc.getQueryParameters().containsKey("offset")) {
-        offset = Integer.valueOf(exc.getQueryParameters().get("offset").getFirst());
+
+      List<User> users;
+      try {
+        Integer limit = Pagination.limit(exc);
+        if (Pagination.isOffset(exc)) {
+          users = userService.findAll(limit, Pagination.offset(exc));
+        } else {
+          users = userService.findAllAfter(Pagination.cursor(exc), limit);
+          Pagination.nextCursor(exc, users, limit, User::getId);
+        }
+      } catch (IllegalArgumentException e) {
+        Json.sendError(exc, 400, e.getMessage());
+        return;
       }
 
-      List<User> users = userService.findAll(limit, offset);
       exc.setStatusCode(200);
-      exc.getResponseHeaders()
-          .add(HttpString.tryFromString("Content-Type"), "application/json");
-      exc.getResponseSender().send(gson.toJson(users));
+      Json.sendList(exc, Json.USER, users);
     });
   }
 
+  void stream(HttpServerExchange exchange) {
+    try (Stream<User> users = userService.streamAll()) {
+      exchange.setStatusCode(200);
+      Json.sendStream(exchange, Json.USER, users.iterator());
+    }
+  }
+
 }
@@ -1,22 +1,43 @@
 package com.fintech.services;
 
+import com.fintech.models.Money;
 import com.fintech.models.TransferOperation;
 import com.fintech.models.TransferRepresentation;
-import java.math.BigDecimal;
+import com.fintech.models.TransferResult;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface TransactionService {
 
-  void cashIn(String account, BigDecimal amount);
+  void cashIn(String account, Money amount);
 
-  void withdraw(String account, BigDecimal amount);
+  void withdraw(String account, Money amount);
 
-  BigDecimal balance(String account);
+  Money balance(String account);
+
+  Money balanceAt(String account, LocalDateTime timestamp);
 
   void transfer(TransferOperation operation);
 
+  List<TransferResult> transferAll(List<TransferOperation> operations, boolean atomic);
+
+  /**
+   * The transfer as its accounts and amount.
+   *
+   * @throws IllegalArgumentException if there is no such transfer
+   */
+  TransferRepresentation getById(Long id);
+
   List<TransferRepresentation> findAll(Integer limit, Integer offset);
 
+  List<TransferRepresentation> findAllAfter(Long after, Integer limit);
+
+  /**
+   * All transfers ordered by id, read while the stream is consumed. Must be closed.
+   */
+  Stream<TransferRepresentation> streamAll();
+
   void delete(Long id);
 
 }
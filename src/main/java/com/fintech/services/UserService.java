@@ -2,6 +2,7 @@ package com.fintech.services;
 
 import com.fintech.models.User;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface UserService {
 
@@ -15,6 +16,13 @@ public interface UserService {
 
   List<User> findAll(Integer limit, Integer offset);
 
+  List<User> findAllAfter(String after, Integer limit);
+
+  /**
+   * All users ordered by id, read while the stream is consumed. Must be closed.
+   */
+  Stream<User> streamAll();
+
   boolean exists(String id);
 
 }
@@ -0,0 +1,84 @@
+package com.fintech.services.impl;
+
+import com.fintech.models.Account;
+import com.fintech.services.AccountService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Read-through cache of account metadata in front of another {@link AccountService}.
+ *
+ * <p>Only existing accounts are cached, so an account created elsewhere is never hidden
+ * behind a cached miss. Entries are evicted by the W-TinyLFU policy of Caffeine.
+ *
+ * <p>Whether an account exists is not cached: cash-ins, withdrawals and transfers check it
+ * first, and another instance may have deleted the account. Deleting only invalidates the
+ * entry of this instance, so elsewhere a deleted account can still be read until its entry
+ * expires.
+ */
+public class CachingAccountService implements AccountService {
+
+  private final AccountService accountService;
+  private final Cache<String, Account> accounts;
+
+  public CachingAccountService(AccountService accountService, long maximumSize,
+                               Duration expireAfterWrite) {
+    this.accountService = accountService;
+    this.accounts = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWrite)
+        .recordStats()
+        .build();
+  }
+
+  @Override
+  public boolean exists(String number) {
+    return accountService.exists(number);
+  }
+
+  @Override
+  public Account getByNumber(String number) {
+    Account account = accounts.get(number, this::load);
+    if (Objects.isNull(account)) {
+      throw new IllegalArgumentException(
+          String.format("Account %s doesn't exists", number));
+    }
+
+    return account;
+  }
+
+  @Override
+  public Account addAccountToUser(String userId, String currency) {
+    Account account = accountService.addAccountToUser(userId, currency);
+    accounts.put(account.getNumber(), account);
+
+    return account;
+  }
+
+  @Override
+  public void delete(String number) {
+    try {
+      accountService.delete(number);
+    } finally {
+      accounts.invalidate(number);
+    }
+  }
+
+  @Override
+  public List<Account> userAccounts(String userId) {
+    return accountService.userAccounts(userId);
+  }
+
+  public CacheStats stats() {
+    return accounts.stats();
+  }
+
+  private Account load(String number) {
+    return accountService.exists(number) ? accountService.getByNumber(number) : null;
+  }
+
+}
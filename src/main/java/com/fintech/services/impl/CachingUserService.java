@@ -0,0 +1,101 @@
+package com.fintech.services.impl;
+
+import com.fintech.models.User;
+import com.fintech.services.UserService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache of users in front of another {@link UserService}, see
+ * {@link CachingAccountService}. A user renamed or deleted by another instance can still be
+ * read until its entry expires, whether it exists is not cached.
+ */
+public class CachingUserService implements UserService {
+
+  private final UserService userService;
+  private final Cache<String, User> users;
+
+  public CachingUserService(UserService userService, long maximumSize,
+                            Duration expireAfterWrite) {
+    this.userService = userService;
+    this.users = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(expireAfterWrite)
+        .recordStats()
+        .build();
+  }
+
+  @Override
+  public User getById(String id) {
+    User user = users.get(id, this::load);
+    if (Objects.isNull(user)) {
+      throw new IllegalArgumentException(
+          String.format("User with id %s doesn't exists", id));
+    }
+
+    return user;
+  }
+
+  @Override
+  public User save(User user) {
+    User result;
+    try {
+      result = userService.save(user);
+    } finally {
+      if (Objects.nonNull(user.getId())) {
+        users.invalidate(user.getId());
+      }
+    }
+    users.put(result.getId(), result);
+
+    return result;
+  }
+
+  @Override
+  public void delete(String id) {
+    try {
+      userService.delete(id);
+    } finally {
+      users.invalidate(id);
+    }
+  }
+
+  @Override
+  public List<User> findAll() {
+    return userService.findAll();
+  }
+
+  @Override
+  public List<User> findAll(Integer limit, Integer offset) {
+    return userService.findAll(limit, offset);
+  }
+
+  @Override
+  public List<User> findAllAfter(String after, Integer limit) {
+    return userService.findAllAfter(after, limit);
+  }
+
+  @Override
+  public Stream<User> streamAll() {
+    return userService.streamAll();
+  }
+
+  @Override
+  public boolean exists(String id) {
+    return userService.exists(id);
+  }
+
+  public CacheStats stats() {
+    return users.stats();
+  }
+
+  private User load(String id) {
+    return userService.exists(id) ? userService.getById(id) : null;
+  }
+
+}
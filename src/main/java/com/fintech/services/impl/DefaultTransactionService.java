@@ -1,67 +1,84 @@
 package com.fintech.services.impl;
 
 import com.fintech.dao.OperationDao;
+import com.fintech.dao.TransactionManager;
 import com.fintech.dao.TransferDao;
+import com.fintech.dao.impl.DbTransactionManager;
 import com.fintech.models.Account;
+import com.fintech.models.Money;
 import com.fintech.models.TransferOperation;
 import com.fintech.models.TransferRepresentation;
+import com.fintech.models.TransferResult;
 import com.fintech.models.dao.OperationDaoEntity;
 import com.fintech.models.dao.TransferDaoEntity;
 import com.fintech.services.AccountService;
 import com.fintech.services.TransactionService;
-import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class DefaultTransactionService implements TransactionService {
 
+  private static final int MAX_BATCH_SIZE = 10_000;
+
   private OperationDao<OperationDaoEntity, Long> operationDao;
   private TransferDao<TransferDaoEntity, Long> transferDao;
   private AccountService accountService;
+  private TransactionManager transactionManager;
 
   public DefaultTransactionService(OperationDao<OperationDaoEntity, Long> operationDao,
                                    TransferDao<TransferDaoEntity, Long> transferDao,
                                    AccountService accountService) {
+    this(operationDao, transferDao, accountService, new DbTransactionManager());
+  }
+
+  public DefaultTransactionService(OperationDao<OperationDaoEntity, Long> operationDao,
+                                   TransferDao<TransferDaoEntity, Long> transferDao,
+                                   AccountService accountService,
+                                   TransactionManager transactionManager) {
     this.operationDao = operationDao;
     this.transferDao = transferDao;
     this.accountService = accountService;
+    this.transactionManager = transactionManager;
   }
 
   @Override
-  public void cashIn(String account, BigDecimal amount) {
-    if (!accountService.exists(account)) {
-      throw new IllegalArgumentException("Account " + account + " doesn't exist");
-    }
+  public void cashIn(String account, Money amount) {
+    transactionManager.inTransaction(() -> {
+      if (!accountService.exists(account)) {
+        throw new IllegalArgumentException("Account " + account + " doesn't exist");
+      }
 
-    OperationDaoEntity operationDaoEntity = new OperationDaoEntity();
-    operationDaoEntity.setAccountNumber(account);
-    operationDaoEntity.setDebit(amount);
+      OperationDaoEntity operationDaoEntity = new OperationDaoEntity();
+      operationDaoEntity.setAccountNumber(account);
+      operationDaoEntity.setDebit(amount);
 
-    operationDao.insert(operationDaoEntity);
+      return operationDao.insert(operationDaoEntity);
+    });
   }
 
   @Override
-  public void withdraw(String account, BigDecimal amount) {
-    if (!accountService.exists(account)) {
-      throw new IllegalArgumentException("Account " + account + " doesn't exist");
-    }
-    synchronized (account.intern()) {
-      if (!isMoneyEnough(account, amount)) {
-        throw new IllegalArgumentException("There is no enough money");
+  public void withdraw(String account, Money amount) {
+    transactionManager.inTransaction(() -> {
+      if (!accountService.exists(account)) {
+        throw new IllegalArgumentException("Account " + account + " doesn't exist");
       }
 
       OperationDaoEntity operationDaoEntity = new OperationDaoEntity();
       operationDaoEntity.setAccountNumber(account);
       operationDaoEntity.setCredit(amount);
 
-      operationDao.insert(operationDaoEntity);
-    }
+      return insertCovered(operationDaoEntity);
+    });
   }
 
   @Override
-  public BigDecimal balance(String account) {
+  public Money balance(String account) {
     if (!accountService.exists(account)) {
       throw new IllegalArgumentException("Account " + account + " doesn't exist");
     }
@@ -69,15 +86,86 @@ public class DefaultTransactionService implements TransactionService {
     return operationDao.accountBalance(account);
   }
 
+  @Override
+  public Money balanceAt(String account, LocalDateTime timestamp) {
+    if (!accountService.exists(account)) {
+      throw new IllegalArgumentException("Account " + account + " doesn't exist");
+    }
+
+    return operationDao.balanceAt(account, timestamp);
+  }
+
   @Override
   public void transfer(TransferOperation operation) {
+    transactionManager.inTransaction(() -> doTransfer(operation));
+  }
+
+  @Override
+  public List<TransferResult> transferAll(List<TransferOperation> operations, boolean atomic) {
+    if (operations.size() > MAX_BATCH_SIZE) {
+      throw new IllegalArgumentException("Batch is bigger than " + MAX_BATCH_SIZE);
+    }
+
+    // Every account is resolved once, however many transfers of the batch it takes part in
+    Map<String, Account> accounts = new HashMap<>();
+    for (TransferOperation operation : operations) {
+      if (Objects.isNull(operation)) {
+        continue;
+      }
+      for (String number : Arrays.asList(operation.getAccountFrom(), operation.getAccountTo())) {
+        if (Objects.nonNull(number) && !accounts.containsKey(number)) {
+          accounts.put(number,
+              accountService.exists(number) ? accountService.getByNumber(number) : null);
+        }
+      }
+    }
+    accounts.values().removeIf(Objects::isNull);
+
+    return transactionManager.inTransaction(() -> doTransferAll(operations, accounts, atomic));
+  }
+
+  @Override
+  public TransferRepresentation getById(Long id) {
+    TransferRepresentation transfer = transferDao.findRepresentation(id);
+    if (Objects.isNull(transfer)) {
+      throw new IllegalArgumentException("Transfer " + id + " doesn't exist");
+    }
+
+    return transfer;
+  }
+
+  @Override
+  public List<TransferRepresentation> findAll(Integer limit, Integer offset) {
+    return transferDao.findRepresentations(limit, offset);
+  }
+
+  @Override
+  public List<TransferRepresentation> findAllAfter(Long after, Integer limit) {
+    return transferDao.findRepresentationsAfter(after, limit);
+  }
+
+  @Override
+  public Stream<TransferRepresentation> streamAll() {
+    return transferDao.streamRepresentations();
+  }
+
+  @Override
+  public void delete(Long id) {
+    if (!transferDao.isExist(id)) {
+      throw new IllegalArgumentException("Transfer " + id + " doesn't exist");
+    }
+
+    transferDao.deleteById(id);
+  }
+
+  private TransferDaoEntity doTransfer(TransferOperation operation) {
     if (!accountService.exists(operation.getAccountFrom())) {
       throw new IllegalArgumentException(
           "Account " + operation.getAccountFrom() + " doesn't exist");
     } else if (!accountService.exists(operation.getAccountTo())) {
       throw new IllegalArgumentException(
           "Account " + operation.getAccountTo() + " doesn't exist");
-    } else if (operation.getAmount().compareTo(BigDecimal.ZERO) < 0) {
+    } else if (operation.getAmount().isNegative()) {
       throw new IllegalArgumentException(
           "Wrong amount " + operation.getAmount());
     }
@@ -89,49 +177,120 @@ public class DefaultTransactionService implements TransactionService {
       throw new IllegalArgumentException("Accounts with different currencies");
     }
 
-    synchronized (operation.getAccountFrom().intern()) {
-      if (!isMoneyEnough(operation.getAccountFrom(), operation.getAmount())) {
-        throw new IllegalArgumentException("There is no enough money");
+    OperationDaoEntity from = insertCovered(
+        createOperation(operation.getAccountFrom(), null, operation.getAmount()));
+    OperationDaoEntity to = operationDao.insert(
+        createOperation(operation.getAccountTo(), operation.getAmount(), null));
+
+    List<Long> operations = Arrays.asList(from.getId(), to.getId());
+
+    TransferDaoEntity transferDaoEntity = new TransferDaoEntity();
+    transferDaoEntity.setOperations(operations);
+
+    return transferDao.insert(transferDaoEntity);
+  }
+
+  private List<TransferResult> doTransferAll(List<TransferOperation> operations,
+                                             Map<String, Account> accounts, boolean atomic) {
+    // The balances stay locked until the batch commits, so they can't go negative
+    // because of transfers made meanwhile by this or another instance
+    Map<String, Long> balances = new HashMap<>();
+    operationDao.lockAccountBalances(accounts.keySet())
+        .forEach((account, balance) -> balances.put(account, balance.getMinorUnits()));
+
+    TransferResult[] results = new TransferResult[operations.size()];
+    List<Integer> accepted = new ArrayList<>(operations.size());
+    for (int i = 0; i < operations.size(); i++) {
+      TransferOperation operation = operations.get(i);
+
+      String error = validate(operation, accounts, balances);
+      if (Objects.isNull(error)) {
+        long amount = operation.getAmount().getMinorUnits();
+        balances.merge(operation.getAccountFrom(), -amount, Long::sum);
+        balances.merge(operation.getAccountTo(), amount, Long::sum);
+        accepted.add(i);
+      } else {
+        results[i] = TransferResult.builder().index(i)
+            .status(TransferResult.Status.FAILED).message(error).build();
       }
+    }
 
-      OperationDaoEntity from = operationDao.insert(
-          createOperation(operation.getAccountFrom(), null, operation.getAmount()));
-      OperationDaoEntity to = operationDao.insert(
-          createOperation(operation.getAccountTo(), operation.getAmount(), null));
+    if (atomic && accepted.size() < operations.size()) {
+      for (Integer index : accepted) {
+        results[index] = TransferResult.builder().index(index)
+            .status(TransferResult.Status.ROLLED_BACK).build();
+      }
+      return Arrays.asList(results);
+    }
 
-      List<Long> operations = Arrays.asList(from.getId(), to.getId());
+    List<OperationDaoEntity> legs = new ArrayList<>(accepted.size() * 2);
+    for (Integer index : accepted) {
+      TransferOperation operation = operations.get(index);
+      legs.add(createOperation(operation.getAccountFrom(), null, operation.getAmount()));
+      legs.add(createOperation(operation.getAccountTo(), operation.getAmount(), null));
+    }
+    List<Long> operationIds = operationDao.insertAll(legs);
 
+    List<TransferDaoEntity> transfers = new ArrayList<>(accepted.size());
+    for (int i = 0; i < accepted.size(); i++) {
       TransferDaoEntity transferDaoEntity = new TransferDaoEntity();
-      transferDaoEntity.setOperations(operations);
+      transferDaoEntity.setOperations(operationIds.subList(i * 2, i * 2 + 2));
+      transfers.add(transferDaoEntity);
+    }
+    List<Long> transferIds = transferDao.insertAll(transfers);
 
-      transferDao.insert(transferDaoEntity);
+    for (int i = 0; i < accepted.size(); i++) {
+      int index = accepted.get(i);
+      results[index] = TransferResult.builder().index(index).id(transferIds.get(i))
+          .status(TransferResult.Status.COMPLETED).build();
     }
-  }
 
-  @Override
-  public List<TransferRepresentation> findAll(Integer limit, Integer offset) {
-    return transferDao.findAll(limit, offset).stream()
-        .map(this::valueOf).collect(Collectors.toList());
+    return Arrays.asList(results);
   }
 
-  @Override
-  public void delete(Long id) {
-    synchronized (id) {
-      if (!transferDao.isExist(id)) {
-        throw new IllegalArgumentException("Transfer " + id + " doesn't exist");
-      }
+  private String validate(TransferOperation operation, Map<String, Account> accounts,
+                          Map<String, Long> balances) {
+    if (Objects.isNull(operation)) {
+      return "Empty transfer";
+    }
 
-      transferDao.deleteById(id);
+    Account accountFrom = accounts.get(operation.getAccountFrom());
+    Account accountTo = accounts.get(operation.getAccountTo());
+
+    if (Objects.isNull(accountFrom)) {
+      return "Account " + operation.getAccountFrom() + " doesn't exist";
+    } else if (Objects.isNull(accountTo)) {
+      return "Account " + operation.getAccountTo() + " doesn't exist";
+    } else if (Objects.isNull(operation.getAmount())
+        || operation.getAmount().isNegative()) {
+      return "Wrong amount " + operation.getAmount();
+    } else if (!accountFrom.getCurrency().equals(accountTo.getCurrency())) {
+      return "Accounts with different currencies";
+    } else if (balances.getOrDefault(operation.getAccountFrom(), 0L)
+        < operation.getAmount().getMinorUnits()) {
+      return "There is no enough money";
+    } else if (balances.getOrDefault(operation.getAccountTo(), 0L)
+        > Long.MAX_VALUE - operation.getAmount().getMinorUnits()) {
+      return "Wrong amount " + operation.getAmount();
     }
+
+    return null;
   }
 
-  public boolean isMoneyEnough(String account, BigDecimal amount) {
-    BigDecimal balance = operationDao.accountBalance(account);
+  /**
+   * Inserts the credit operation if the balance covers it, the database checks and
+   * moves the balance in one statement.
+   */
+  private OperationDaoEntity insertCovered(OperationDaoEntity operation) {
+    OperationDaoEntity inserted = operationDao.insertIfCovered(operation);
+    if (Objects.isNull(inserted)) {
+      throw new IllegalArgumentException("There is no enough money");
+    }
 
-    return balance.compareTo(amount) >= 0;
+    return inserted;
   }
 
-  private OperationDaoEntity createOperation(String account, BigDecimal debit, BigDecimal credit) {
+  private OperationDaoEntity createOperation(String account, Money debit, Money credit) {
     OperationDaoEntity entity = new OperationDaoEntity();
     entity.setAccountNumber(account);
     entity.setDebit(debit);
@@ -151,7 +310,7 @@ public class DefaultTransactionService implements TransactionService {
     String to = Objects.isNull(operationDaoEntity1.getCredit())
         ? operationDaoEntity1.getAccountNumber() : operationDaoEntity2.getAccountNumber();
 
-    BigDecimal amount = Objects.isNull(operationDaoEntity1.getCredit())
+    Money amount = Objects.isNull(operationDaoEntity1.getCredit())
         ? operationDaoEntity1.getDebit() : operationDaoEntity1.getCredit();
 
     return TransferRepresentation.builder().accountFrom(from).accountTo(to).amount(amount)
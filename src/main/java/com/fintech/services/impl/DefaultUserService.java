@@ -4,12 +4,16 @@ import com.fintech.dao.UserDao;
 import com.fintech.models.User;
 import com.fintech.models.dao.UserDaoEntity;
 import com.fintech.services.UserService;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class DefaultUserService implements UserService {
 
+  private static final int PAGE_SIZE = 1000;
+
   private UserDao<UserDaoEntity, String> userDao;
 
   public DefaultUserService(UserDao<UserDaoEntity, String> userDao) {
@@ -62,7 +66,16 @@ public class DefaultUserService implements UserService {
 
   @Override
   public List<User> findAll() {
-    return findAll(Integer.MAX_VALUE, 0);
+    List<User> users = new ArrayList<>();
+
+    List<User> page = findAllAfter(null, PAGE_SIZE);
+    users.addAll(page);
+    while (page.size() == PAGE_SIZE) {
+      page = findAllAfter(page.get(page.size() - 1).getId(), PAGE_SIZE);
+      users.addAll(page);
+    }
+
+    return users;
   }
 
   @Override
@@ -70,6 +83,17 @@ public class DefaultUserService implements UserService {
     return userDao.findAll(limit, offset).stream().map(User::valueOf).collect(Collectors.toList());
   }
 
+  @Override
+  public List<User> findAllAfter(String after, Integer limit) {
+    return userDao.findAllAfter(after, limit).stream()
+        .map(User::valueOf).collect(Collectors.toList());
+  }
+
+  @Override
+  public Stream<User> streamAll() {
+    return userDao.streamAll().map(User::valueOf);
+  }
+
   @Override
   public boolean exists(String id) {
     return userDao.isExist(id);
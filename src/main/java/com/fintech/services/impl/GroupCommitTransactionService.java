@@ -0,0 +1,264 @@
+package com.fintech.services.impl;
+
+import com.fintech.models.Money;
+import com.fintech.models.TransferOperation;
+import com.fintech.models.TransferRepresentation;
+import com.fintech.models.TransferResult;
+import com.fintech.services.TransactionService;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Group commit of transfers in front of another {@link TransactionService}.
+ *
+ * <p>Transfers are queued and a single committer thread hands them to
+ * {@link TransactionService#transferAll} in best-effort mode: everything that arrived
+ * within {@code window} of the first queued transfer, up to {@code maxBatchSize}. A caller
+ * returns only after the batch holding its transfer has committed, so one commit is
+ * shared by all concurrent transfers instead of paid by each.
+ */
+public class GroupCommitTransactionService implements TransactionService, AutoCloseable {
+
+  private static final long POLL_MILLIS = 100;
+
+  private final TransactionService transactionService;
+  private final int maxBatchSize;
+  private final long windowNanos;
+
+  private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+  private final Thread committer;
+  // Guards running against queueing, so nothing is queued once close has drained the queue
+  private final Object lifecycle = new Object();
+  private volatile boolean running = true;
+
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder transfers = new LongAdder();
+
+  public GroupCommitTransactionService(TransactionService transactionService,
+                                       int maxBatchSize, long window, TimeUnit unit) {
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("Wrong batch size " + maxBatchSize);
+    }
+    this.transactionService = transactionService;
+    this.maxBatchSize = maxBatchSize;
+    this.windowNanos = unit.toNanos(window);
+
+    this.committer = new Thread(this::commitLoop, "group-commit");
+    this.committer.setDaemon(true);
+    this.committer.start();
+  }
+
+  /**
+   * Queues the transfer, the future completes once its batch has committed.
+   *
+   * @throws IllegalStateException if the service is closed or its committer thread died
+   */
+  public CompletableFuture<TransferResult> submit(TransferOperation operation) {
+    Pending pending = new Pending(operation);
+    synchronized (lifecycle) {
+      if (!running) {
+        throw new IllegalStateException("Group commit is closed");
+      }
+      if (!committer.isAlive()) {
+        throw new IllegalStateException("Group commit has stopped");
+      }
+      queue.add(pending);
+    }
+
+    return pending.result;
+  }
+
+  @Override
+  public void transfer(TransferOperation operation) {
+    TransferResult result;
+    try {
+      result = submit(operation).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+
+    if (result.getStatus() != TransferResult.Status.COMPLETED) {
+      throw new IllegalArgumentException(result.getMessage());
+    }
+  }
+
+  @Override
+  public List<TransferResult> transferAll(List<TransferOperation> operations, boolean atomic) {
+    return transactionService.transferAll(operations, atomic);
+  }
+
+  @Override
+  public void cashIn(String account, Money amount) {
+    transactionService.cashIn(account, amount);
+  }
+
+  @Override
+  public void withdraw(String account, Money amount) {
+    transactionService.withdraw(account, amount);
+  }
+
+  @Override
+  public Money balance(String account) {
+    return transactionService.balance(account);
+  }
+
+  @Override
+  public Money balanceAt(String account, LocalDateTime timestamp) {
+    return transactionService.balanceAt(account, timestamp);
+  }
+
+  @Override
+  public TransferRepresentation getById(Long id) {
+    return transactionService.getById(id);
+  }
+
+  @Override
+  public List<TransferRepresentation> findAll(Integer limit, Integer offset) {
+    return transactionService.findAll(limit, offset);
+  }
+
+  @Override
+  public List<TransferRepresentation> findAllAfter(Long after, Integer limit) {
+    return transactionService.findAllAfter(after, limit);
+  }
+
+  @Override
+  public Stream<TransferRepresentation> streamAll() {
+    return transactionService.streamAll();
+  }
+
+  @Override
+  public void delete(Long id) {
+    transactionService.delete(id);
+  }
+
+  @Override
+  public void close() {
+    synchronized (lifecycle) {
+      running = false;
+    }
+    committer.interrupt();
+    try {
+      committer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    List<Pending> rest = new ArrayList<>();
+    queue.drainTo(rest);
+    fail(rest, new IllegalStateException("Group commit is closed"));
+  }
+
+  public long getBatches() {
+    return batches.sum();
+  }
+
+  public long getTransfers() {
+    return transfers.sum();
+  }
+
+  private void commitLoop() {
+    List<Pending> batch = new ArrayList<>(maxBatchSize);
+    while (running) {
+      try {
+        Pending first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        gather(batch, System.nanoTime() + windowNanos);
+      } catch (InterruptedException e) {
+        if (!batch.isEmpty()) {
+          commitSafely(batch);
+        }
+        return;
+      }
+
+      commitSafely(batch);
+      batch.clear();
+    }
+  }
+
+  /**
+   * Whatever goes wrong, an {@link Error} included, fails the futures of this batch only,
+   * so the committer goes on with the next one and no caller waits forever.
+   */
+  private void commitSafely(List<Pending> batch) {
+    try {
+      commit(batch);
+    } catch (Throwable e) {
+      fail(batch, e);
+    }
+  }
+
+  private void gather(List<Pending> batch, long deadline) throws InterruptedException {
+    while (batch.size() < maxBatchSize) {
+      queue.drainTo(batch, maxBatchSize - batch.size());
+
+      long remaining = deadline - System.nanoTime();
+      if (batch.size() >= maxBatchSize || remaining <= 0) {
+        return;
+      }
+
+      Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) {
+        return;
+      }
+      batch.add(next);
+    }
+  }
+
+  private void commit(List<Pending> batch) {
+    List<TransferOperation> operations = batch.stream()
+        .map(pending -> pending.operation)
+        .collect(Collectors.toList());
+
+    List<TransferResult> results;
+    try {
+      results = transactionService.transferAll(operations, false);
+      if (results.size() != batch.size()) {
+        throw new IllegalStateException("Got " + results.size() + " results of "
+            + batch.size() + " transfers");
+      }
+    } catch (RuntimeException e) {
+      fail(batch, e);
+      return;
+    }
+
+    batches.increment();
+    transfers.add(batch.size());
+    for (int i = 0; i < batch.size(); i++) {
+      batch.get(i).result.complete(results.get(i));
+    }
+  }
+
+  private void fail(List<Pending> batch, Throwable e) {
+    for (Pending pending : batch) {
+      pending.result.completeExceptionally(e);
+    }
+  }
+
+  private static final class Pending {
+
+    private final TransferOperation operation;
+    private final CompletableFuture<TransferResult> result = new CompletableFuture<>();
+
+    private Pending(TransferOperation operation) {
+      this.operation = operation;
+    }
+
+  }
+
+}
@@ -0,0 +1,240 @@
+package com.fintech.services.impl;
+
+import com.fintech.dao.TransferDao;
+import com.fintech.ledger.LedgerEngine;
+import com.fintech.ledger.LedgerEntry;
+import com.fintech.models.Account;
+import com.fintech.models.Money;
+import com.fintech.models.TransferOperation;
+import com.fintech.models.TransferRepresentation;
+import com.fintech.models.TransferResult;
+import com.fintech.models.dao.TransferDaoEntity;
+import com.fintech.services.AccountService;
+import com.fintech.services.TransactionService;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+/**
+ * {@link TransactionService} on top of the in-memory {@link LedgerEngine}.
+ *
+ * <p>Balances are served from memory and every change is acknowledged once journaled.
+ * Transfers reach the TRANSFERS table when the ledger projects them, so listing them
+ * lags slightly behind and batch results carry no transfer ids.
+ */
+public class LedgerTransactionService implements TransactionService, AutoCloseable {
+
+  private static final int MAX_BATCH_SIZE = 10_000;
+
+  private final LedgerEngine ledger;
+  private final TransferDao<TransferDaoEntity, Long> transferDao;
+  private final AccountService accountService;
+
+  public LedgerTransactionService(LedgerEngine ledger,
+                                  TransferDao<TransferDaoEntity, Long> transferDao,
+                                  AccountService accountService) {
+    this.ledger = ledger;
+    this.transferDao = transferDao;
+    this.accountService = accountService;
+  }
+
+  @Override
+  public void cashIn(String account, Money amount) {
+    if (!accountService.exists(account)) {
+      throw new IllegalArgumentException("Account " + account + " doesn't exist");
+    }
+
+    await(ledger.submit(LedgerEntry.cashIn(account, amount)));
+  }
+
+  @Override
+  public void withdraw(String account, Money amount) {
+    if (!accountService.exists(account)) {
+      throw new IllegalArgumentException("Account " + account + " doesn't exist");
+    }
+
+    await(ledger.submit(LedgerEntry.withdraw(account, amount)));
+  }
+
+  @Override
+  public Money balance(String account) {
+    if (!accountService.exists(account)) {
+      throw new IllegalArgumentException("Account " + account + " doesn't exist");
+    }
+
+    return ledger.balance(account);
+  }
+
+  @Override
+  public Money balanceAt(String account, LocalDateTime timestamp) {
+    if (!accountService.exists(account)) {
+      throw new IllegalArgumentException("Account " + account + " doesn't exist");
+    }
+
+    return ledger.balanceAt(account, timestamp);
+  }
+
+  @Override
+  public void transfer(TransferOperation operation) {
+    if (!accountService.exists(operation.getAccountFrom())) {
+      throw new IllegalArgumentException(
+          "Account " + operation.getAccountFrom() + " doesn't exist");
+    } else if (!accountService.exists(operation.getAccountTo())) {
+      throw new IllegalArgumentException(
+          "Account " + operation.getAccountTo() + " doesn't exist");
+    } else if (operation.getAmount().isNegative()) {
+      throw new IllegalArgumentException(
+          "Wrong amount " + operation.getAmount());
+    }
+
+    Account accountFrom = accountService.getByNumber(operation.getAccountFrom());
+    Account accountTo = accountService.getByNumber(operation.getAccountTo());
+
+    if (!accountFrom.getCurrency().equals(accountTo.getCurrency())) {
+      throw new IllegalArgumentException("Accounts with different currencies");
+    }
+
+    await(ledger.submit(LedgerEntry.transfer(
+        operation.getAccountFrom(), operation.getAccountTo(), operation.getAmount())));
+  }
+
+  @Override
+  public List<TransferResult> transferAll(List<TransferOperation> operations, boolean atomic) {
+    if (operations.size() > MAX_BATCH_SIZE) {
+      throw new IllegalArgumentException("Batch is bigger than " + MAX_BATCH_SIZE);
+    }
+
+    Map<String, Account> accounts = new HashMap<>();
+    TransferResult[] results = new TransferResult[operations.size()];
+    List<LedgerEntry> entries = new ArrayList<>(operations.size());
+    for (int i = 0; i < operations.size(); i++) {
+      TransferOperation operation = operations.get(i);
+
+      String error = validate(operation, accounts);
+      if (Objects.isNull(error)) {
+        entries.add(LedgerEntry.transfer(
+            operation.getAccountFrom(), operation.getAccountTo(), operation.getAmount()));
+      } else {
+        entries.add(null);
+        results[i] = TransferResult.builder().index(i)
+            .status(TransferResult.Status.FAILED).message(error).build();
+      }
+    }
+
+    String[] rejected = ledger.submitAll(entries, atomic);
+    boolean rolledBack = false;
+    for (int i = 0; i < entries.size(); i++) {
+      if (Objects.nonNull(rejected[i])) {
+        results[i] = TransferResult.builder().index(i)
+            .status(TransferResult.Status.FAILED).message(rejected[i]).build();
+      }
+      rolledBack |= Objects.nonNull(results[i]);
+    }
+    rolledBack &= atomic;
+
+    for (int i = 0; i < entries.size(); i++) {
+      if (Objects.isNull(results[i])) {
+        results[i] = TransferResult.builder().index(i).status(rolledBack
+            ? TransferResult.Status.ROLLED_BACK : TransferResult.Status.COMPLETED).build();
+      }
+    }
+
+    return Arrays.asList(results);
+  }
+
+  @Override
+  public TransferRepresentation getById(Long id) {
+    TransferRepresentation transfer = transferDao.findRepresentation(id);
+    if (Objects.isNull(transfer)) {
+      throw new IllegalArgumentException("Transfer " + id + " doesn't exist");
+    }
+
+    return transfer;
+  }
+
+  @Override
+  public List<TransferRepresentation> findAll(Integer limit, Integer offset) {
+    return transferDao.findRepresentations(limit, offset);
+  }
+
+  @Override
+  public List<TransferRepresentation> findAllAfter(Long after, Integer limit) {
+    return transferDao.findRepresentationsAfter(after, limit);
+  }
+
+  @Override
+  public Stream<TransferRepresentation> streamAll() {
+    return transferDao.streamRepresentations();
+  }
+
+  @Override
+  public void delete(Long id) {
+    TransferRepresentation transfer = transferDao.findRepresentation(id);
+    if (Objects.isNull(transfer) || !ledger.reserveReversal(id)) {
+      throw new IllegalArgumentException("Transfer " + id + " doesn't exist");
+    }
+
+    try {
+      await(ledger.submit(LedgerEntry.reversal(id, transfer.getAccountFrom(),
+          transfer.getAccountTo(), transfer.getAmount())));
+    } catch (RuntimeException e) {
+      ledger.releaseReversal(id);
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() {
+    ledger.close();
+  }
+
+  private String validate(TransferOperation operation, Map<String, Account> accounts) {
+    if (Objects.isNull(operation)) {
+      return "Empty transfer";
+    }
+
+    Account accountFrom = resolve(operation.getAccountFrom(), accounts);
+    Account accountTo = resolve(operation.getAccountTo(), accounts);
+
+    if (Objects.isNull(accountFrom)) {
+      return "Account " + operation.getAccountFrom() + " doesn't exist";
+    } else if (Objects.isNull(accountTo)) {
+      return "Account " + operation.getAccountTo() + " doesn't exist";
+    } else if (Objects.isNull(operation.getAmount())
+        || operation.getAmount().isNegative()) {
+      return "Wrong amount " + operation.getAmount();
+    } else if (!accountFrom.getCurrency().equals(accountTo.getCurrency())) {
+      return "Accounts with different currencies";
+    }
+
+    return null;
+  }
+
+  private Account resolve(String number, Map<String, Account> accounts) {
+    if (Objects.isNull(number)) {
+      return null;
+    }
+
+    return accounts.computeIfAbsent(number,
+        key -> accountService.exists(key) ? accountService.getByNumber(key) : null);
+  }
+
+  private void await(CompletableFuture<Void> future) {
+    try {
+      future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+}
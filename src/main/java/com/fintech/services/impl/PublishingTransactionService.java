@@ -0,0 +1,130 @@
+package com.fintech.services.impl;
+
+import com.fintech.events.EventBus;
+import com.fintech.models.Money;
+import com.fintech.models.TransferOperation;
+import com.fintech.models.TransferRepresentation;
+import com.fintech.models.TransferResult;
+import com.fintech.services.TransactionService;
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.jboss.logging.Logger;
+
+/**
+ * Publishes the new balance of every account touched by a committed cash-in, withdrawal,
+ * transfer or transfer deletion to the {@code balances} bus, the account number is the
+ * topic. The balance is only read for accounts that have subscribers.
+ *
+ * <p>The change is committed by the time it is published, a failure to publish is logged
+ * and doesn't fail the call.
+ */
+public class PublishingTransactionService implements TransactionService {
+
+  private static final Logger log = Logger.getLogger(PublishingTransactionService.class);
+
+  private final TransactionService transactionService;
+  private final EventBus<Money> balances;
+
+  public PublishingTransactionService(TransactionService transactionService,
+                                      EventBus<Money> balances) {
+    this.transactionService = transactionService;
+    this.balances = balances;
+  }
+
+  @Override
+  public void cashIn(String account, Money amount) {
+    transactionService.cashIn(account, amount);
+    publish(account);
+  }
+
+  @Override
+  public void withdraw(String account, Money amount) {
+    transactionService.withdraw(account, amount);
+    publish(account);
+  }
+
+  @Override
+  public Money balance(String account) {
+    return transactionService.balance(account);
+  }
+
+  @Override
+  public Money balanceAt(String account, LocalDateTime timestamp) {
+    return transactionService.balanceAt(account, timestamp);
+  }
+
+  @Override
+  public void transfer(TransferOperation operation) {
+    transactionService.transfer(operation);
+    publish(operation.getAccountFrom());
+    publish(operation.getAccountTo());
+  }
+
+  @Override
+  public List<TransferResult> transferAll(List<TransferOperation> operations, boolean atomic) {
+    List<TransferResult> results = transactionService.transferAll(operations, atomic);
+
+    // Once per account, however many transfers of the batch touched it
+    Set<String> accounts = new LinkedHashSet<>();
+    for (TransferResult result : results) {
+      if (result.getStatus() == TransferResult.Status.COMPLETED) {
+        TransferOperation operation = operations.get(result.getIndex());
+        accounts.add(operation.getAccountFrom());
+        accounts.add(operation.getAccountTo());
+      }
+    }
+    accounts.forEach(this::publish);
+
+    return results;
+  }
+
+  @Override
+  public TransferRepresentation getById(Long id) {
+    return transactionService.getById(id);
+  }
+
+  @Override
+  public List<TransferRepresentation> findAll(Integer limit, Integer offset) {
+    return transactionService.findAll(limit, offset);
+  }
+
+  @Override
+  public List<TransferRepresentation> findAllAfter(Long after, Integer limit) {
+    return transactionService.findAllAfter(after, limit);
+  }
+
+  @Override
+  public Stream<TransferRepresentation> streamAll() {
+    return transactionService.streamAll();
+  }
+
+  @Override
+  public void delete(Long id) {
+    if (!balances.hasSubscribers()) {
+      transactionService.delete(id);
+      return;
+    }
+
+    TransferRepresentation transfer = transactionService.getById(id);
+    transactionService.delete(id);
+    publish(transfer.getAccountFrom());
+    publish(transfer.getAccountTo());
+  }
+
+  private void publish(String account) {
+    if (Objects.isNull(account)) {
+      return;
+    }
+
+    try {
+      balances.publish(account, () -> transactionService.balance(account));
+    } catch (RuntimeException e) {
+      log.warnf(e, "Balance of %s is not published", account);
+    }
+  }
+
+}
@@ -0,0 +1,48 @@
+package com.fintech.utils;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Reads settings from system properties, falling back to environment variables named
+ * after the key in upper case with dots and dashes replaced by underscores
+ * ({@code transfers.group-commit.max-batch} is {@code TRANSFERS_GROUP_COMMIT_MAX_BATCH}).
+ */
+public final class Config {
+
+  private Config() {
+  }
+
+  public static String getString(String key, String defaultValue) {
+    String value = System.getProperty(key);
+    if (Objects.isNull(value)) {
+      value = System.getenv(environmentName(key));
+    }
+
+    return Objects.isNull(value) ? defaultValue : value;
+  }
+
+  static String environmentName(String key) {
+    return key.toUpperCase(Locale.ROOT).replace('.', '_').replace('-', '_');
+  }
+
+  public static boolean getBoolean(String key, boolean defaultValue) {
+    String value = getString(key, null);
+
+    return Objects.isNull(value) ? defaultValue : Boolean.parseBoolean(value.trim());
+  }
+
+  public static int getInt(String key, int defaultValue) {
+    String value = getString(key, null);
+    if (Objects.isNull(value)) {
+      return defaultValue;
+    }
+
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Wrong value of " + key + ": " + value, e);
+    }
+  }
+
+}
@@ -0,0 +1 @@
+create index transfer_operations_operation_id on TRANSFER_OPERATIONS (operation_id);
@@ -0,0 +1,2 @@
+alter table ACCOUNT_BALANCES
+    add column version bigint default 0 not null;
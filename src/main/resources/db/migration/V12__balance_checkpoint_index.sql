@@ -0,0 +1 @@
+create index balance_checkpoints_operation_id on BALANCE_CHECKPOINTS (operation_id);
@@ -0,0 +1,10 @@
+create table ACCOUNT_BALANCES
+(
+    account varchar primary key,
+    balance double  not null default 0
+);
+
+insert into ACCOUNT_BALANCES (account, balance)
+select account, IFNULL(SUM(debit), 0) - IFNULL(SUM(credit), 0)
+from OPERATIONS
+group by account;
@@ -0,0 +1,3 @@
+create sequence ACCOUNT_NUMBERS
+    start with 100000000000
+    increment by 100;
@@ -0,0 +1,5 @@
+create table LEDGER_CHECKPOINTS
+(
+    journal_id       int primary key,
+    journal_position bigint not null
+);
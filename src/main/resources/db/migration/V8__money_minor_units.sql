@@ -0,0 +1,15 @@
+update OPERATIONS
+set debit  = ROUND(debit * 100),
+    credit = ROUND(credit * 100);
+
+alter table OPERATIONS
+    alter column debit bigint;
+
+alter table OPERATIONS
+    alter column credit bigint;
+
+update ACCOUNT_BALANCES
+set balance = ROUND(balance * 100);
+
+alter table ACCOUNT_BALANCES
+    alter column balance bigint default 0 not null;
@@ -0,0 +1,10 @@
+create table BALANCE_CHECKPOINTS
+(
+    account      varchar   not null,
+    operation_id bigint    not null,
+    balance      bigint    not null,
+    as_of        timestamp not null,
+    primary key (account, operation_id)
+);
+
+create index operations_account_id on OPERATIONS (account, id);
@@ -101,6 +101,9 @@ public class AccountDaoTests {
     MatcherAssert.assertThat("Check number", accountDaoEntity.getNumber(), notNullValue());
     MatcherAssert.assertThat("Check user id", accountDaoEntity.getUserId(), is("123"));
     MatcherAssert.assertThat("Check currency", accountDaoEntity.getCurrency(), is("EUR"));
+    MatcherAssert.assertThat("Check created",
+        accountDao.getById(accountDaoEntity.getNumber()).getCreated(),
+        is(accountDaoEntity.getCreated()));
   }
 
   @Test
@@ -0,0 +1,62 @@
+package com.fintech.dao;
+
+import com.fintech.dao.impl.SequenceAccountNumberAllocator;
+import com.fintech.testutils.DbUtils;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AccountNumberAllocatorTests {
+
+  @BeforeClass
+  public static void initClass() {
+    DbUtils.initDb();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    DbUtils.close();
+  }
+
+  @Test
+  public void uniqueNumbersAcrossAllocatorsTest() {
+    AccountNumberAllocator first = new SequenceAccountNumberAllocator();
+    AccountNumberAllocator second = new SequenceAccountNumberAllocator();
+
+    Set<String> numbers = new HashSet<>();
+    for (int i = 0; i < 250; i++) {
+      Assert.assertTrue(numbers.add(first.next()));
+      Assert.assertTrue(numbers.add(second.next()));
+    }
+
+    Assert.assertEquals(500, numbers.size());
+  }
+
+  @Test
+  public void checkDigitTest() {
+    AccountNumberAllocator allocator = new SequenceAccountNumberAllocator();
+
+    String number = allocator.next();
+
+    Assert.assertTrue(number.startsWith("KZ"));
+    Assert.assertTrue(SequenceAccountNumberAllocator.isValid(number));
+
+    char last = number.charAt(number.length() - 1);
+    String typo = number.substring(0, number.length() - 1) + (char) ('0' + (last - '0' + 1) % 10);
+    Assert.assertFalse(SequenceAccountNumberAllocator.isValid(typo));
+  }
+
+  @Test
+  public void withoutCheckDigitTest() {
+    AccountNumberAllocator allocator = new SequenceAccountNumberAllocator(false);
+
+    Assert.assertEquals(14, allocator.next().length());
+  }
+
+}
@@ -0,0 +1,205 @@
+package com.fintech.dao;
+
+import com.fintech.dao.impl.BalanceCheckpointJob;
+import com.fintech.dao.impl.DbOperationDao;
+import com.fintech.dao.impl.DbTransferDao;
+import com.fintech.models.Money;
+import com.fintech.models.dao.OperationDaoEntity;
+import com.fintech.models.dao.TransferDaoEntity;
+import com.fintech.testutils.DbUtils;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BalanceCheckpointTests {
+
+  private static final LocalDateTime START = LocalDateTime.of(2019, 10, 1, 12, 0);
+
+  private OperationDao<OperationDaoEntity, Long> operationDao;
+  private BalanceCheckpointJob checkpointJob;
+
+  @BeforeClass
+  public static void initClass() {
+    DbUtils.initDb();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    DbUtils.close();
+  }
+
+  @Before
+  public void initTest() {
+    operationDao = new DbOperationDao();
+    checkpointJob = new BalanceCheckpointJob(2, 1, TimeUnit.HOURS);
+  }
+
+  @After
+  public void afterTest() throws SQLException {
+    try (Connection connection = DbConnectionManager.getConnection()) {
+      connection.createStatement()
+          .executeUpdate("DELETE FROM TRANSFER_OPERATIONS");
+      connection.createStatement()
+          .executeUpdate("DELETE FROM TRANSFERS");
+      connection.createStatement()
+          .executeUpdate("DELETE FROM OPERATIONS");
+      connection.createStatement()
+          .executeUpdate("DELETE FROM ACCOUNT_BALANCES");
+      connection.createStatement()
+          .executeUpdate("DELETE FROM BALANCE_CHECKPOINTS");
+      connection.createStatement()
+          .executeUpdate("ALTER TABLE OPERATIONS ALTER COLUMN id RESTART WITH 1");
+    }
+  }
+
+  @Test
+  public void checkpointTest() throws SQLException {
+    createOperation("USD123", 10000, null, 0);
+    Assert.assertEquals(0, checkpointJob.checkpoint());
+
+    createOperation("USD123", null, 2500, 1);
+    createOperation("USD456", 700, null, 2);
+    Assert.assertEquals(2, checkpointJob.checkpoint());
+    Assert.assertEquals(2, checkpointJob.getCheckpoints());
+
+    createOperation("USD123", 100, null, 3);
+    createOperation("USD123", 100, null, 4);
+    Assert.assertEquals(1, checkpointJob.checkpoint());
+
+    Assert.assertEquals(Money.of(7700), checkpoint("USD123"));
+    Assert.assertEquals(Money.of(700), checkpoint("USD456"));
+  }
+
+  //An operation that commits after a higher id isn't skipped by the checkpoint
+  @Test
+  public void inFlightTest() throws Exception {
+    operationDao.insert(operation("USD123", 10000));
+    CountDownLatch inserted = new CountDownLatch(1);
+    CountDownLatch checkpointing = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    Future<?> inFlight = executor.submit(() -> DbConnectionManager.inTransaction(connection -> {
+      operationDao.insert(operation("USD123", 500));
+      inserted.countDown();
+      try {
+        checkpointing.await();
+        // Gives the checkpoint time to wait for the balance lock
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return null;
+    }));
+    inserted.await();
+    operationDao.insert(operation("USD456", 700));
+    Future<Integer> written = executor.submit(() -> {
+      checkpointing.countDown();
+      return new BalanceCheckpointJob(1, 1, TimeUnit.HOURS).checkpoint();
+    });
+
+    inFlight.get();
+    Assert.assertEquals(2, written.get().intValue());
+    executor.shutdown();
+
+    Assert.assertEquals(Money.of(10500), checkpoint("USD123"));
+    Assert.assertEquals(Money.of(10500),
+        operationDao.balanceAt("USD123", LocalDateTime.now().plusHours(1)));
+  }
+
+  @Test
+  public void balanceAtTest() throws SQLException {
+    createOperation("USD123", 10000, null, 0);
+    createOperation("USD123", null, 2500, 10);
+    createOperation("USD456", 700, null, 20);
+    checkpointJob.checkpoint();
+    createOperation("USD123", 100, null, 30);
+
+    Assert.assertEquals(Money.ZERO, operationDao.balanceAt("USD123", START.minusMinutes(1)));
+    Assert.assertEquals(Money.of(10000), operationDao.balanceAt("USD123", START));
+    Assert.assertEquals(Money.of(7500), operationDao.balanceAt("USD123", START.plusMinutes(25)));
+    Assert.assertEquals(Money.of(7600), operationDao.balanceAt("USD123", START.plusHours(1)));
+    Assert.assertEquals(Money.of(700), operationDao.balanceAt("USD456", START.plusHours(1)));
+    Assert.assertEquals(Money.ZERO, operationDao.balanceAt("USD789", START.plusHours(1)));
+  }
+
+  //A deleted transfer is taken out of the checkpoints that include it
+  @Test
+  public void deleteTransferTest() throws SQLException {
+    Long credit = createOperation("USD123", null, 2500, 0);
+    Long debit = createOperation("USD456", 2500, null, 0);
+    TransferDaoEntity transfer = new TransferDaoEntity();
+    transfer.setOperations(Arrays.asList(credit, debit));
+    TransferDao<TransferDaoEntity, Long> transferDao = new DbTransferDao();
+    Long transferId = transferDao.insert(transfer).getId();
+    checkpointJob.checkpoint();
+
+    transferDao.deleteById(transferId);
+
+    Assert.assertEquals(Money.ZERO, checkpoint("USD123"));
+    Assert.assertEquals(Money.ZERO, checkpoint("USD456"));
+    Assert.assertEquals(Money.ZERO, operationDao.balanceAt("USD456", START.plusHours(1)));
+  }
+
+  private Money checkpoint(String account) throws SQLException {
+    try (Connection connection = DbConnectionManager.getConnection()) {
+      PreparedStatement preparedStatement
+          = connection.prepareStatement(
+          "SELECT balance FROM BALANCE_CHECKPOINTS WHERE account = ? "
+              + "ORDER BY operation_id DESC LIMIT 1");
+      preparedStatement.setString(1, account);
+
+      ResultSet resultSet = preparedStatement.executeQuery();
+      Assert.assertTrue(resultSet.next());
+
+      return Money.of(resultSet.getLong(1));
+    }
+  }
+
+  private OperationDaoEntity operation(String account, int debit) {
+    OperationDaoEntity operation = new OperationDaoEntity();
+    operation.setAccountNumber(account);
+    operation.setDebit(Money.of(debit));
+
+    return operation;
+  }
+
+  private Long createOperation(String account, Integer debit, Integer credit, int minute)
+      throws SQLException {
+    try (Connection connection = DbConnectionManager.getConnection()) {
+      PreparedStatement preparedStatement
+          = connection.prepareStatement(
+          "INSERT INTO OPERATIONS (account, debit, credit, created) VALUES (?, ?, ?, ?)",
+          Statement.RETURN_GENERATED_KEYS);
+      preparedStatement.setString(1, account);
+      preparedStatement.setObject(2, debit);
+      preparedStatement.setObject(3, credit);
+      preparedStatement.setTimestamp(4, Timestamp.valueOf(START.plusMinutes(minute)));
+      preparedStatement.executeUpdate();
+
+      ResultSet generatedKeys = preparedStatement.getGeneratedKeys();
+      generatedKeys.next();
+
+      return generatedKeys.getLong(1);
+    }
+  }
+
+}
@@ -0,0 +1,163 @@
+package com.fintech.dao;
+
+import com.fintech.testutils.DbUtils;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JdbcTemplateTests {
+
+  private JdbcTemplate jdbc;
+  private List<String> executed;
+  private List<String> failed;
+
+  @BeforeClass
+  public static void initClass() {
+    DbUtils.initDb();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    DbUtils.close();
+  }
+
+  @Before
+  public void initTest() {
+    jdbc = new JdbcTemplate(10, 5);
+    executed = new ArrayList<>();
+    failed = new ArrayList<>();
+    jdbc.addListener((sql, elapsedNanos, failure) -> {
+      Assert.assertTrue(elapsedNanos > 0);
+      (failure ? failed : executed).add(sql);
+    });
+  }
+
+  @After
+  public void afterTest() {
+    jdbc.update("DELETE FROM USERS", statement -> { });
+  }
+
+  @Test
+  public void queryTest() {
+    insertUser("1", "First");
+    insertUser("2", "Second");
+
+    List<String> names = jdbc.query("SELECT full_name FROM USERS ORDER BY id",
+        resultSet -> resultSet.getString(1));
+
+    Assert.assertEquals(Arrays.asList("First", "Second"), names);
+    Assert.assertEquals("Second", jdbc.queryOne("SELECT full_name FROM USERS WHERE id = ?",
+        statement -> statement.setString(1, "2"), resultSet -> resultSet.getString(1)));
+    Assert.assertNull(jdbc.queryOne("SELECT full_name FROM USERS WHERE id = ?",
+        statement -> statement.setString(1, "3"), resultSet -> resultSet.getString(1)));
+    Assert.assertTrue(jdbc.exists("SELECT * FROM USERS WHERE id = ?",
+        statement -> statement.setString(1, "1")));
+  }
+
+  @Test
+  public void batchInsertTest() {
+    List<String> names = new ArrayList<>();
+    for (int i = 0; i < 2500; i++) {
+      names.add("User " + i);
+    }
+
+    List<Timestamp> created = jdbc.batchInsert(
+        "INSERT INTO USERS (id, full_name) VALUES (?, ?)", new String[] {"CREATED"}, names,
+        (statement, name) -> {
+          statement.setString(1, name.substring(5));
+          statement.setString(2, name);
+        }, generatedKeys -> generatedKeys.getTimestamp("CREATED"));
+
+    Assert.assertEquals(names.size(), created.size());
+    Assert.assertFalse(created.contains(null));
+    Assert.assertEquals(1, jdbc.batch("UPDATE USERS SET full_name = ? WHERE id = ?",
+        Arrays.asList("1", "2"), (statement, id) -> {
+          statement.setString(1, "Renamed");
+          statement.setString(2, id);
+        })[1]);
+  }
+
+  //Statements join the unit of work of the thread
+  @Test
+  public void transactionTest() {
+    try {
+      DbConnectionManager.inTransaction(connection -> {
+        insertUser("1", "First");
+        Assert.assertTrue(jdbc.exists("SELECT * FROM USERS WHERE id = ?",
+            statement -> statement.setString(1, "1")));
+        throw new IllegalStateException();
+      });
+      Assert.fail();
+    } catch (IllegalStateException e) {
+      Assert.assertFalse(jdbc.exists("SELECT * FROM USERS WHERE id = ?",
+          statement -> statement.setString(1, "1")));
+    }
+  }
+
+  @Test
+  public void listenerTest() {
+    insertUser("1", "First");
+
+    try {
+      jdbc.query("SELECT missing FROM USERS", resultSet -> resultSet.getString(1));
+      Assert.fail();
+    } catch (RuntimeException e) {
+      Assert.assertTrue(e.getCause() instanceof SQLException);
+    }
+
+    Assert.assertEquals(Arrays.asList("INSERT INTO USERS (id, full_name) VALUES (?, ?)"),
+        executed);
+    Assert.assertEquals(Arrays.asList("SELECT missing FROM USERS"), failed);
+  }
+
+  @Test
+  public void streamTest() {
+    insertUser("1", "First");
+    insertUser("2", "Second");
+    executed.clear();
+
+    try (Stream<String> names = jdbc.stream("SELECT full_name FROM USERS ORDER BY id",
+        statement -> { }, resultSet -> resultSet.getString(1))) {
+      Assert.assertEquals(Arrays.asList("First", "Second"),
+          names.collect(Collectors.toList()));
+      Assert.assertTrue(executed.isEmpty());
+    }
+    Assert.assertEquals(Arrays.asList("SELECT full_name FROM USERS ORDER BY id"), executed);
+
+    //Closing before the end releases the cursor as well
+    try (Stream<String> names = jdbc.stream("SELECT full_name FROM USERS ORDER BY id",
+        statement -> { }, resultSet -> resultSet.getString(1))) {
+      Assert.assertEquals("First", names.findFirst().orElse(null));
+    }
+    Assert.assertEquals(2, executed.size());
+    Assert.assertTrue(failed.isEmpty());
+  }
+
+  @Test
+  public void statementCacheTest() {
+    Assert.assertEquals("64", jdbc.queryOne(
+        "SELECT value FROM INFORMATION_SCHEMA.SETTINGS WHERE name = 'QUERY_CACHE_SIZE'",
+        statement -> { }, resultSet -> resultSet.getString(1)));
+  }
+
+  private void insertUser(String id, String fullName) {
+    jdbc.update("INSERT INTO USERS (id, full_name) VALUES (?, ?)", statement -> {
+      statement.setString(1, id);
+      statement.setString(2, fullName);
+    });
+  }
+
+}
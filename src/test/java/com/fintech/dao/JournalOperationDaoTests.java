@@ -0,0 +1,168 @@
+package com.fintech.dao;
+
+import com.fintech.dao.impl.JournalOperationDao;
+import com.fintech.models.Money;
+import com.fintech.models.dao.OperationDaoEntity;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JournalOperationDaoTests {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Path directory;
+  private JournalOperationDao operationDao;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = folder.newFolder().toPath();
+    operationDao = new JournalOperationDao(directory, 4);
+  }
+
+  @After
+  public void after() {
+    operationDao.close();
+  }
+
+  @Test
+  public void getByIdTest() {
+    OperationDaoEntity persisted = operationDao.insert(operation("USD123", "50.25", null));
+
+    OperationDaoEntity entity = operationDao.getById(persisted.getId());
+
+    Assert.assertEquals(Long.valueOf(1), entity.getId());
+    Assert.assertEquals("USD123", entity.getAccountNumber());
+    Assert.assertEquals(Money.parse("50.25"), entity.getDebit());
+    Assert.assertNull(entity.getCredit());
+    Assert.assertNotNull(entity.getCreated());
+    Assert.assertNull(operationDao.getById(2L));
+    Assert.assertTrue(operationDao.isExist(1L));
+    Assert.assertFalse(operationDao.isExist(2L));
+  }
+
+  @Test
+  public void insertAllTest() {
+    List<Long> ids = operationDao.insertAll(Arrays.asList(
+        operation("USD123", "100", null),
+        operation("USD456", "10", null),
+        operation("USD123", null, "30.5")));
+
+    Assert.assertEquals(Arrays.asList(1L, 2L, 3L), ids);
+    Assert.assertEquals(0, Money.parse("69.5").compareTo(
+        operationDao.accountBalance("USD123")));
+
+    Map<String, Money> balances
+        = operationDao.accountBalances(Arrays.asList("USD456", "USD789"));
+    Assert.assertEquals(0, Money.parse("10").compareTo(balances.get("USD456")));
+    Assert.assertEquals(0, Money.ZERO.compareTo(balances.get("USD789")));
+  }
+
+  //Segments roll over and everything is rebuilt on reopen
+  @Test
+  public void reopenTest() throws IOException {
+    for (int i = 0; i < 10; i++) {
+      operationDao.insert(operation(i % 2 == 0 ? "USD123" : "USD456", "1", null));
+    }
+    operationDao.close();
+
+    try (Stream<Path> files = Files.list(directory)) {
+      Assert.assertEquals(3, files.filter(path -> path.toString().endsWith(".log")).count());
+    }
+
+    operationDao = new JournalOperationDao(directory, 4);
+    Assert.assertEquals(0, Money.parse("5").compareTo(
+        operationDao.accountBalance("USD123")));
+    Assert.assertEquals("USD456", operationDao.getById(10L).getAccountNumber());
+    Assert.assertEquals(Long.valueOf(11), operationDao.insert(
+        operation("USD789", "1", null)).getId());
+    Assert.assertEquals(Arrays.asList(9L, 10L, 11L), operationDao.findAllAfter(8L, 10)
+        .stream().map(OperationDaoEntity::getId).collect(Collectors.toList()));
+  }
+
+  //A record with a broken checksum ends the journal
+  @Test
+  public void corruptTailTest() throws IOException {
+    operationDao.insert(operation("USD123", "1", null));
+    operationDao.insert(operation("USD123", "2", null));
+    operationDao.close();
+
+    try (FileChannel channel = FileChannel.open(
+        directory.resolve(String.format("segment-%020d.log", 1)), StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[]{42}), 56 + 30);
+    }
+
+    operationDao = new JournalOperationDao(directory, 4);
+    Assert.assertEquals(0, Money.parse("1").compareTo(operationDao.accountBalance("USD123")));
+    Assert.assertFalse(operationDao.isExist(2L));
+    Assert.assertEquals(Long.valueOf(2), operationDao.insert(
+        operation("USD123", "5", null)).getId());
+  }
+
+  @Test
+  public void balanceAtTest() {
+    for (int i = 1; i <= 200; i++) {
+      operationDao.insert(operation("USD123", String.valueOf(i), null));
+      operationDao.insert(operation("USD456", "1", null));
+    }
+
+    // Operation 2 * k - 1 is the k-th cash-in of USD123
+    Assert.assertEquals(0, Money.parse("1").compareTo(operationDao.balanceAt("USD123", 1)));
+    Assert.assertEquals(0, Money.parse("5050").compareTo(
+        operationDao.balanceAt("USD123", 200)));
+    Assert.assertEquals(0, Money.parse("8256").compareTo(
+        operationDao.balanceAt("USD123", 256)));
+    Assert.assertEquals(0, Money.parse("20100").compareTo(
+        operationDao.balanceAt("USD123", 1000)));
+    Assert.assertEquals(0, Money.ZERO.compareTo(operationDao.balanceAt("USD456", 1)));
+  }
+
+  @Test
+  public void balanceAtTimeTest() throws InterruptedException {
+    for (int i = 0; i < 100; i++) {
+      operationDao.insert(operation("USD123", "1", null));
+    }
+    Thread.sleep(5);
+    final LocalDateTime between = LocalDateTime.now();
+    Thread.sleep(5);
+    for (int i = 0; i < 100; i++) {
+      operationDao.insert(operation("USD123", null, "0.5"));
+    }
+
+    LocalDateTime first = operationDao.getById(1L).getCreated();
+    Assert.assertEquals(Money.ZERO, operationDao.balanceAt("USD123", first.minusSeconds(1)));
+    Assert.assertEquals(Money.parse("100"), operationDao.balanceAt("USD123", between));
+    Assert.assertEquals(Money.parse("50"),
+        operationDao.balanceAt("USD123", between.plusMinutes(1)));
+    Assert.assertEquals(Money.ZERO, operationDao.balanceAt("USD456", between));
+  }
+
+  private OperationDaoEntity operation(String account, String debit, String credit) {
+    OperationDaoEntity entity = new OperationDaoEntity();
+    entity.setAccountNumber(account);
+    entity.setDebit(debit == null ? null : Money.parse(debit));
+    entity.setCredit(credit == null ? null : Money.parse(credit));
+
+    return entity;
+  }
+
+}
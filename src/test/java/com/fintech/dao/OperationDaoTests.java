@@ -1,14 +1,23 @@
 package com.fintech.dao;
 
 import com.fintech.dao.impl.DbOperationDao;
+import com.fintech.dao.impl.DbTransactionManager;
+import com.fintech.models.Money;
 import com.fintech.models.dao.OperationDaoEntity;
 import com.fintech.testutils.DbUtils;
-import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -58,6 +67,8 @@ public class OperationDaoTests {
           .executeUpdate("DELETE FROM USERS WHERE id is not null");
       connection.createStatement()
           .executeUpdate("DELETE FROM OPERATIONS WHERE id is not null");
+      connection.createStatement()
+          .executeUpdate("DELETE FROM ACCOUNT_BALANCES WHERE account is not null");
     }
   }
 
@@ -68,13 +79,13 @@ public class OperationDaoTests {
     OperationDaoEntity entity = operationDao.getById(id);
 
     Assert.assertEquals("USD123", entity.getAccountNumber());
-    Assert.assertEquals(BigDecimal.valueOf(50.0), entity.getDebit());
+    Assert.assertEquals(Money.parse("50.0"), entity.getDebit());
     Assert.assertEquals(id, entity.getId());
   }
 
   @Test
   public void insertTest() {
-    BigDecimal amount = BigDecimal.valueOf(50.0);
+    Money amount = Money.parse("50.0");
     OperationDaoEntity operationDaoEntity = new OperationDaoEntity();
     operationDaoEntity.setDebit(amount);
     operationDaoEntity.setAccountNumber("USD123");
@@ -85,24 +96,227 @@ public class OperationDaoTests {
     Assert.assertNotNull(result.getId());
   }
 
+  @Test
+  public void insertOverflowTest() {
+    OperationDaoEntity operationDaoEntity = new OperationDaoEntity();
+    operationDaoEntity.setDebit(Money.of(Long.MAX_VALUE));
+    operationDaoEntity.setAccountNumber("USD123");
+    operationDao.insert(operationDaoEntity);
+
+    try {
+      operationDao.insert(operationDaoEntity);
+      Assert.fail("Insert must fail");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("Wrong amount " + Money.of(Long.MAX_VALUE), e.getMessage());
+    }
+    try {
+      operationDao.insertAll(Arrays.asList(operationDaoEntity, operationDaoEntity));
+      Assert.fail("Insert must fail");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("Wrong amount " + Money.of(Long.MAX_VALUE), e.getMessage());
+    }
+    Assert.assertEquals(Money.of(Long.MAX_VALUE), operationDao.accountBalance("USD123"));
+  }
+
   @Test
   public void accountBalanceTest() {
-    BigDecimal cashIn = BigDecimal.valueOf(50.0);
+    Money cashIn = Money.parse("50.0");
 
     OperationDaoEntity operationDaoEntity = new OperationDaoEntity();
     operationDaoEntity.setDebit(cashIn);
     operationDaoEntity.setAccountNumber("USD123");
 
-    BigDecimal balanceBefore = operationDao.accountBalance("USD123");
-    Assert.assertEquals(BigDecimal.valueOf(0.0), balanceBefore);
+    Money balanceBefore = operationDao.accountBalance("USD123");
+    Assert.assertEquals(Money.parse("0.0"), balanceBefore);
 
     operationDao.insert(operationDaoEntity);
 
-    BigDecimal balanceAfter = operationDao.accountBalance("USD123");
+    Money balanceAfter = operationDao.accountBalance("USD123");
 
     Assert.assertEquals(cashIn, balanceAfter);
   }
 
+  @Test
+  public void accountBalanceWithCreditTest() {
+    OperationDaoEntity cashIn = new OperationDaoEntity();
+    cashIn.setDebit(Money.parse("50.0"));
+    cashIn.setAccountNumber("USD123");
+    operationDao.insert(cashIn);
+
+    OperationDaoEntity withdraw = new OperationDaoEntity();
+    withdraw.setCredit(Money.parse("20.0"));
+    withdraw.setAccountNumber("USD123");
+    operationDao.insert(withdraw);
+
+    Assert.assertEquals(Money.parse("30.0"), operationDao.accountBalance("USD123"));
+    Assert.assertEquals(Money.parse("0.0"), operationDao.accountBalance("USD456"));
+  }
+
+  @Test
+  public void insertRollbackTest() {
+    OperationDaoEntity operationDaoEntity = new OperationDaoEntity();
+    operationDaoEntity.setDebit(Money.parse("50.0"));
+    operationDaoEntity.setAccountNumber("USD123");
+
+    try {
+      DbConnectionManager.inTransaction(connection -> {
+        OperationDaoEntity result = operationDao.insert(operationDaoEntity);
+        Assert.assertEquals(Money.parse("50.0"), operationDao.accountBalance("USD123"));
+        Assert.assertNotNull(operationDao.getById(result.getId()));
+
+        throw new IllegalStateException("Rollback");
+      });
+      Assert.fail("Unit of work must fail");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals(Money.parse("0.0"), operationDao.accountBalance("USD123"));
+    }
+  }
+
+  @Test
+  public void insertAllTest() {
+    List<OperationDaoEntity> operations = Arrays.asList(
+        operation("USD123", Money.parse("100.0"), null),
+        operation("USD123", null, Money.parse("30.0")),
+        operation("USD456", Money.parse("30.0"), null));
+
+    List<Long> ids = operationDao.insertAll(operations);
+
+    Assert.assertEquals(3, ids.size());
+    Assert.assertEquals("USD456", operationDao.getById(ids.get(2)).getAccountNumber());
+
+    Map<String, Money> balances
+        = operationDao.accountBalances(Arrays.asList("USD123", "USD456", "USD789"));
+    Assert.assertEquals(Money.parse("70.0"), balances.get("USD123"));
+    Assert.assertEquals(Money.parse("30.0"), balances.get("USD456"));
+    Assert.assertEquals(Money.parse("0.0"), balances.get("USD789"));
+  }
+
+  @Test
+  public void lockAccountBalancesTest() throws SQLException {
+    operationDao.insert(operation("USD123", Money.parse("50.0"), null));
+
+    Map<String, Money> balances = DbConnectionManager.inTransaction(connection ->
+        operationDao.lockAccountBalances(Arrays.asList("USD456", "USD123")));
+
+    Assert.assertEquals(Money.parse("50.0"), balances.get("USD123"));
+    Assert.assertEquals(Money.ZERO, balances.get("USD456"));
+    // The account without a balance got a row to lock
+    try (Connection connection = DbConnectionManager.getConnection()) {
+      ResultSet resultSet = connection.createStatement().executeQuery(
+          "SELECT COUNT(*) FROM ACCOUNT_BALANCES WHERE account = 'USD456'");
+      resultSet.next();
+      Assert.assertEquals(1, resultSet.getInt(1));
+    }
+  }
+
+  //Batches locking the same accounts in opposite orders don't deadlock
+  @Test
+  public void lockAccountBalancesConcurrentTest() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<List<Long>>> results = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      List<String> accounts = i % 2 == 0
+          ? Arrays.asList("USD123", "USD456") : Arrays.asList("USD456", "USD123");
+      results.add(executor.submit(() -> DbConnectionManager.inTransaction(connection -> {
+        operationDao.lockAccountBalances(accounts);
+        return operationDao.insertAll(Arrays.asList(
+            operation(accounts.get(0), Money.parse("1.0"), null),
+            operation(accounts.get(1), Money.parse("1.0"), null)));
+      })));
+    }
+
+    for (Future<List<Long>> result : results) {
+      Assert.assertEquals(2, result.get().size());
+    }
+    executor.shutdown();
+
+    Assert.assertEquals(Money.parse("16.0"), operationDao.accountBalance("USD123"));
+    Assert.assertEquals(Money.parse("16.0"), operationDao.accountBalance("USD456"));
+  }
+
+  @Test
+  public void insertIfCoveredTest() {
+    operationDao.insert(operation("USD123", Money.parse("50.0"), null));
+
+    Assert.assertNull(operationDao.insertIfCovered(operation("USD123", null, Money.parse("60.0"))));
+    Assert.assertNull(operationDao.insertIfCovered(operation("USD456", null, Money.parse("1.0"))));
+    Assert.assertNotNull(
+        operationDao.insertIfCovered(operation("USD123", null, Money.parse("50.0"))));
+
+    Assert.assertEquals(Money.ZERO, operationDao.accountBalance("USD123"));
+    Assert.assertEquals(Money.ZERO, operationDao.accountBalance("USD456"));
+  }
+
+  //Concurrent withdrawals never overdraw the account
+  @Test
+  public void insertIfCoveredConcurrentTest() throws Exception {
+    operationDao.insert(operation("USD123", Money.parse("100.0"), null));
+    TransactionManager transactionManager = new DbTransactionManager();
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<OperationDaoEntity>> results = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      results.add(executor.submit(() -> transactionManager.inTransaction(
+          () -> operationDao.insertIfCovered(operation("USD123", null, Money.parse("20.0"))))));
+    }
+
+    int inserted = 0;
+    for (Future<OperationDaoEntity> result : results) {
+      if (result.get() != null) {
+        inserted++;
+      }
+    }
+    executor.shutdown();
+
+    Assert.assertEquals(5, inserted);
+    Assert.assertEquals(Money.ZERO, operationDao.accountBalance("USD123"));
+  }
+
+  @Test
+  public void insertIfCoveredOptimisticTest() throws SQLException {
+    DbOperationDao optimisticDao = new DbOperationDao(DbOperationDao.Concurrency.OPTIMISTIC);
+    optimisticDao.insert(operation("USD123", Money.parse("50.0"), null));
+
+    Assert.assertNull(
+        optimisticDao.insertIfCovered(operation("USD123", null, Money.parse("60.0"))));
+    Assert.assertNull(
+        optimisticDao.insertIfCovered(operation("USD456", null, Money.parse("1.0"))));
+    Assert.assertNotNull(
+        optimisticDao.insertIfCovered(operation("USD123", null, Money.parse("20.0"))));
+
+    Assert.assertEquals(Money.parse("30.0"), optimisticDao.accountBalance("USD123"));
+    Assert.assertEquals(1, version("USD123"));
+    Assert.assertEquals(3, optimisticDao.getVersionedUpdates());
+    Assert.assertEquals(0, optimisticDao.getVersionConflicts());
+  }
+
+  //Concurrent optimistic withdrawals retry on conflicts and never overdraw the account
+  @Test
+  public void insertIfCoveredOptimisticConcurrentTest() throws Exception {
+    DbOperationDao optimisticDao = new DbOperationDao(DbOperationDao.Concurrency.OPTIMISTIC);
+    optimisticDao.insert(operation("USD123", Money.parse("100.0"), null));
+    TransactionManager transactionManager = new DbTransactionManager(100, 1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<OperationDaoEntity>> results = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      results.add(executor.submit(() -> transactionManager.inTransaction(
+          () -> optimisticDao.insertIfCovered(operation("USD123", null, Money.parse("20.0"))))));
+    }
+
+    int inserted = 0;
+    for (Future<OperationDaoEntity> result : results) {
+      if (result.get() != null) {
+        inserted++;
+      }
+    }
+    executor.shutdown();
+
+    Assert.assertEquals(5, inserted);
+    Assert.assertEquals(Money.ZERO, optimisticDao.accountBalance("USD123"));
+    Assert.assertEquals(5, version("USD123"));
+  }
+
   @Test(expected = UnsupportedOperationException.class)
   public void updateTest() {
     operationDao.update(null);
@@ -136,8 +350,8 @@ public class OperationDaoTests {
           "INSERT INTO OPERATIONS (account, debit, credit) VALUES (?, ?, ?)",
           Statement.RETURN_GENERATED_KEYS);
       preparedStatement.setString(1, "USD123");
-      preparedStatement.setBigDecimal(2, BigDecimal.valueOf(50.0));
-      preparedStatement.setBigDecimal(3, null);
+      preparedStatement.setLong(2, 5000);
+      preparedStatement.setNull(3, Types.BIGINT);
 
       preparedStatement.executeUpdate();
 
@@ -150,4 +364,26 @@ public class OperationDaoTests {
     return id;
   }
 
+  private long version(String account) throws SQLException {
+    try (Connection connection = DbConnectionManager.getConnection()) {
+      PreparedStatement preparedStatement = connection.prepareStatement(
+          "SELECT version FROM ACCOUNT_BALANCES WHERE account = ?");
+      preparedStatement.setString(1, account);
+
+      ResultSet resultSet = preparedStatement.executeQuery();
+      Assert.assertTrue(resultSet.next());
+
+      return resultSet.getLong(1);
+    }
+  }
+
+  private OperationDaoEntity operation(String account, Money debit, Money credit) {
+    OperationDaoEntity entity = new OperationDaoEntity();
+    entity.setAccountNumber(account);
+    entity.setDebit(debit);
+    entity.setCredit(credit);
+
+    return entity;
+  }
+
 }
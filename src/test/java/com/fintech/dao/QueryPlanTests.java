@@ -0,0 +1,251 @@
+package com.fintech.dao;
+
+import com.fintech.dao.impl.BalanceCheckpointJob;
+import com.fintech.dao.impl.DbAccountDao;
+import com.fintech.dao.impl.DbLedgerCheckpointDao;
+import com.fintech.dao.impl.DbOperationDao;
+import com.fintech.dao.impl.DbTransferDao;
+import com.fintech.dao.impl.DbUserDao;
+import com.fintech.models.Money;
+import com.fintech.models.dao.AccountDaoEntity;
+import com.fintech.models.dao.OperationDaoEntity;
+import com.fintech.models.dao.TransferDaoEntity;
+import com.fintech.models.dao.UserDaoEntity;
+import com.fintech.testutils.DbUtils;
+import java.sql.Connection;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Runs every DAO statement once with H2 query statistics on, then checks the plan of
+ * each recorded statement, so a dropped index or a non-sargable predicate fails here.
+ */
+@RunWith(JUnit4.class)
+public class QueryPlanTests {
+
+  private static final String TABLE_SCAN = "tableScan";
+  // A table or index read without a condition, bar MIN or MAX straight from the index
+  private static final Pattern FULL_SCAN =
+      Pattern.compile("/\\* [\\w.\"]+ \\*/(?!\\s*/\\* direct lookup \\*/)");
+
+  private static Map<String, String> plans;
+
+  @BeforeClass
+  public static void initClass() throws SQLException {
+    DbUtils.initDb();
+
+    execute("SET QUERY_STATISTICS_MAX_ENTRIES 1000");
+    execute("SET QUERY_STATISTICS TRUE");
+    try {
+      runDaos();
+      plans = explain(recordedStatements());
+    } finally {
+      execute("SET QUERY_STATISTICS FALSE");
+    }
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    DbUtils.close();
+  }
+
+  @Test
+  public void noTableScansTest() {
+    Assert.assertFalse(plans.isEmpty());
+
+    List<String> scans = new ArrayList<>();
+    plans.forEach((sql, plan) -> {
+      // Offset pages read the table from the start by definition, first keyset pages only
+      // read their limit off the start of the index
+      boolean firstPage = plan.contains("/* index sorted */") && plan.contains("FETCH FIRST");
+      if (FULL_SCAN.matcher(plan).find() && !sql.contains("OFFSET ?") && !firstPage) {
+        scans.add(sql + "\n" + plan);
+      }
+    });
+
+    Assert.assertTrue(String.join("\n\n", scans), scans.isEmpty());
+  }
+
+  @Test
+  public void exactMatchLookupsTest() {
+    Assert.assertTrue(plan("SELECT * FROM USERS WHERE id = ?").contains("PRIMARY_KEY"));
+    Assert.assertTrue(plan("SELECT * FROM ACCOUNTS WHERE number = ?").contains("PRIMARY_KEY"));
+    // H2 backs the foreign key with an index of its own
+    Assert.assertFalse(plan("SELECT * FROM ACCOUNTS WHERE USER_ID = ?").contains(TABLE_SCAN));
+    Assert.assertTrue(plan("SELECT balance FROM ACCOUNT_BALANCES WHERE account = ?")
+        .contains("PRIMARY_KEY"));
+  }
+
+  @Test
+  public void operationLookupsTest() {
+    Assert.assertTrue(explain("SELECT transfer_id FROM TRANSFER_OPERATIONS "
+        + "WHERE operation_id = ?").contains("TRANSFER_OPERATIONS_OPERATION_ID"));
+    Assert.assertTrue(explain("SELECT * FROM OPERATIONS WHERE account = ?")
+        .contains("OPERATIONS_ACCOUNT_ID"));
+  }
+
+  @Test
+  public void checkpointLookupsTest() {
+    // The newest checkpoint is read from the end of the index, not found by a scan
+    Assert.assertTrue(plan("SELECT IFNULL(MAX(operation_id), 0) FROM BALANCE_CHECKPOINTS")
+        .contains("direct lookup"));
+    Assert.assertTrue(plans.keySet().stream()
+        .anyMatch(sql -> sql.startsWith("INSERT INTO BALANCE_CHECKPOINTS")));
+  }
+
+  private static String plan(String sql) {
+    String plan = plans.get(sql);
+    Assert.assertNotNull("Statement wasn't run: " + sql, plan);
+
+    return plan;
+  }
+
+  private static void runDaos() {
+    UserDao<UserDaoEntity, String> userDao = new DbUserDao();
+    UserDaoEntity newUser = new UserDaoEntity();
+    newUser.setFullName("Plan");
+    UserDaoEntity user = userDao.insert(newUser);
+    userDao.update(user);
+    userDao.getById(user.getId());
+    userDao.isExist(user.getId());
+    userDao.findAll(10, 0);
+    userDao.findAllAfter(null, 10);
+    userDao.findAllAfter(user.getId(), 10);
+
+    AccountDao<AccountDaoEntity, String> accountDao = new DbAccountDao();
+    AccountDaoEntity from = account(accountDao, user.getId());
+    AccountDaoEntity to = account(accountDao, user.getId());
+    accountDao.update(from);
+    accountDao.getById(from.getNumber());
+    accountDao.isExist(from.getNumber());
+    accountDao.userAccounts(user.getId());
+    accountDao.findAll(10, 0);
+    accountDao.findAllAfter(null, 10);
+    accountDao.findAllAfter(from.getNumber(), 10);
+
+    OperationDao<OperationDaoEntity, Long> operationDao = new DbOperationDao();
+    Long credit = operationDao.insert(operation(from.getNumber(), null, 2500)).getId();
+    final Long debit = operationDao.insert(operation(to.getNumber(), 2500, null)).getId();
+    final List<Long> batch = operationDao.insertAll(Arrays.asList(
+        operation(from.getNumber(), null, 100), operation(to.getNumber(), 100, null)));
+    operationDao.getById(credit);
+    operationDao.accountBalance(from.getNumber());
+    operationDao.accountBalances(Arrays.asList(from.getNumber(), to.getNumber()));
+    operationDao.lockAccountBalances(Arrays.asList(from.getNumber(), to.getNumber()));
+    operationDao.insertIfCovered(operation(from.getNumber(), null, 1));
+    new DbOperationDao(DbOperationDao.Concurrency.OPTIMISTIC)
+        .insertIfCovered(operation(from.getNumber(), null, 1));
+
+    TransferDao<TransferDaoEntity, Long> transferDao = new DbTransferDao();
+    TransferDaoEntity transfer = new TransferDaoEntity();
+    transfer.setOperations(Arrays.asList(credit, debit));
+    Long transferId = transferDao.insert(transfer).getId();
+    TransferDaoEntity batched = new TransferDaoEntity();
+    batched.setOperations(batch);
+    transferDao.insertAll(Arrays.asList(batched));
+    transferDao.getById(transferId);
+    transferDao.findRepresentation(transferId);
+    transferDao.isExist(transferId);
+    transferDao.findAll(10, 0);
+    transferDao.findAllAfter(null, 10);
+    transferDao.findRepresentations(10, 0);
+    transferDao.findRepresentationsAfter(null, 10);
+
+    new BalanceCheckpointJob(1, 1, TimeUnit.HOURS).checkpoint();
+    operationDao.balanceAt(from.getNumber(), LocalDateTime.now());
+    transferDao.deleteById(transferId);
+
+    LedgerCheckpointDao ledgerCheckpointDao = new DbLedgerCheckpointDao();
+    ledgerCheckpointDao.save(0, 1);
+    ledgerCheckpointDao.position(0);
+
+    accountDao.deleteById(to.getNumber());
+    userDao.deleteById("nobody");
+  }
+
+  private static AccountDaoEntity account(AccountDao<AccountDaoEntity, String> accountDao,
+                                          String userId) {
+    AccountDaoEntity account = new AccountDaoEntity();
+    account.setUserId(userId);
+    account.setCurrency("USD");
+
+    return accountDao.insert(account);
+  }
+
+  private static OperationDaoEntity operation(String account, Integer debit, Integer credit) {
+    OperationDaoEntity operation = new OperationDaoEntity();
+    operation.setAccountNumber(account);
+    operation.setDebit(debit == null ? null : Money.of(debit));
+    operation.setCredit(credit == null ? null : Money.of(credit));
+
+    return operation;
+  }
+
+  private static List<String> recordedStatements() throws SQLException {
+    List<String> statements = new ArrayList<>();
+    try (Connection connection = DbConnectionManager.getConnection()) {
+      ResultSet resultSet = connection.createStatement().executeQuery(
+          "SELECT SQL_STATEMENT FROM INFORMATION_SCHEMA.QUERY_STATISTICS");
+
+      while (resultSet.next()) {
+        String sql = resultSet.getString(1);
+        if (sql.matches("(?is)\\s*(SELECT|UPDATE|DELETE|MERGE|INSERT\\b.*\\bSELECT)\\b.*")
+            && !sql.contains("INFORMATION_SCHEMA")) {
+          statements.add(sql);
+        }
+      }
+    }
+
+    return statements;
+  }
+
+  private static Map<String, String> explain(List<String> statements) {
+    Map<String, String> explained = new LinkedHashMap<>();
+    for (String sql : statements) {
+      explained.put(sql, explain(sql));
+    }
+
+    return explained;
+  }
+
+  private static String explain(String sql) {
+    try (Connection connection = DbConnectionManager.getConnection()) {
+      PreparedStatement preparedStatement = connection.prepareStatement("EXPLAIN " + sql);
+      ParameterMetaData parameters = preparedStatement.getParameterMetaData();
+      for (int i = 1; i <= parameters.getParameterCount(); i++) {
+        preparedStatement.setNull(i, Types.NULL);
+      }
+
+      ResultSet resultSet = preparedStatement.executeQuery();
+      resultSet.next();
+
+      return resultSet.getString(1);
+    } catch (SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void execute(String sql) throws SQLException {
+    try (Connection connection = DbConnectionManager.getConnection()) {
+      connection.createStatement().execute(sql);
+    }
+  }
+
+}
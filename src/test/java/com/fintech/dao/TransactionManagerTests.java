@@ -0,0 +1,89 @@
+package com.fintech.dao;
+
+import com.fintech.dao.impl.DbTransactionManager;
+import com.fintech.testutils.DbUtils;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class TransactionManagerTests {
+
+  @BeforeClass
+  public static void initClass() {
+    DbUtils.initDb();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    DbUtils.close();
+  }
+
+  //A deadlock victim is run again
+  @Test
+  public void retryTest() {
+    DbTransactionManager transactionManager = new DbTransactionManager(3);
+    AtomicInteger runs = new AtomicInteger();
+
+    String result = transactionManager.inTransaction(() -> {
+      if (runs.incrementAndGet() < 3) {
+        throw new RuntimeException(new SQLTransactionRollbackException("Deadlock"));
+      }
+      return "done";
+    });
+
+    Assert.assertEquals("done", result);
+    Assert.assertEquals(2, transactionManager.getRetries());
+  }
+
+  @Test
+  public void retryLimitTest() {
+    DbTransactionManager transactionManager = new DbTransactionManager(2);
+    AtomicInteger runs = new AtomicInteger();
+
+    try {
+      transactionManager.inTransaction(() -> {
+        runs.incrementAndGet();
+        throw new RuntimeException(new SQLTransactionRollbackException("Deadlock"));
+      });
+      Assert.fail();
+    } catch (RuntimeException e) {
+      Assert.assertEquals(2, runs.get());
+    }
+  }
+
+  //Other failures and nested units of work aren't retried
+  @Test
+  public void noRetryTest() {
+    DbTransactionManager transactionManager = new DbTransactionManager(3);
+    AtomicInteger runs = new AtomicInteger();
+
+    try {
+      transactionManager.inTransaction(() -> {
+        runs.incrementAndGet();
+        throw new RuntimeException(new SQLException("Syntax error"));
+      });
+      Assert.fail();
+    } catch (RuntimeException e) {
+      Assert.assertEquals(1, runs.get());
+    }
+
+    try {
+      DbConnectionManager.inTransaction(connection -> transactionManager.inTransaction(() -> {
+        runs.incrementAndGet();
+        throw new RuntimeException(new SQLTransactionRollbackException("Deadlock"));
+      }));
+      Assert.fail();
+    } catch (RuntimeException e) {
+      Assert.assertEquals(2, runs.get());
+    }
+    Assert.assertEquals(0, transactionManager.getRetries());
+  }
+
+}
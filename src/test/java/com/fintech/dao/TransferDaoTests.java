@@ -4,10 +4,16 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 
 import com.fintech.dao.impl.DbTransferDao;
+import com.fintech.models.Money;
+import com.fintech.models.TransferRepresentation;
 import com.fintech.models.dao.TransferDaoEntity;
 import com.fintech.testutils.DbUtils;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -50,10 +56,10 @@ public class TransferDaoTests {
               "INSERT INTO TRANSFERS (id) VALUES (1)");
       connection.createStatement()
           .executeUpdate(
-              "INSERT INTO OPERATIONS (id, account, debit) VALUES (1, '123', 100)");
+              "INSERT INTO OPERATIONS (id, account, debit) VALUES (1, '123', 10000)");
       connection.createStatement()
           .executeUpdate(
-              "INSERT INTO OPERATIONS (id, account, credit) VALUES (2, '123', 100)");
+              "INSERT INTO OPERATIONS (id, account, credit) VALUES (2, '123', 10000)");
       connection.createStatement()
           .executeUpdate(
               "INSERT INTO TRANSFER_OPERATIONS (transfer_id, operation_id) VALUES (1 ,1)");
@@ -70,6 +76,8 @@ public class TransferDaoTests {
           .executeUpdate("DELETE FROM TRANSFER_OPERATIONS WHERE transfer_id is not null");
       connection.createStatement()
           .executeUpdate("DELETE FROM OPERATIONS WHERE id is not null");
+      connection.createStatement()
+          .executeUpdate("DELETE FROM ACCOUNT_BALANCES WHERE account is not null");
       connection.createStatement()
           .executeUpdate("DELETE FROM TRANSFERS WHERE id is not null");
       connection.createStatement()
@@ -98,6 +106,56 @@ public class TransferDaoTests {
     assertThat(transferDao.findAll(10, 0), hasSize(1));
   }
 
+  @Test
+  public void findRepresentationsTest() {
+    List<TransferRepresentation> transfers = transferDao.findRepresentations(10, 0);
+
+    assertThat(transfers, hasSize(1));
+    TransferRepresentation transfer = transfers.get(0);
+    Assert.assertEquals(Long.valueOf(1L), transfer.getId());
+    Assert.assertEquals("123", transfer.getAccountFrom());
+    Assert.assertEquals("123", transfer.getAccountTo());
+    Assert.assertEquals(0, Money.parse("100").compareTo(transfer.getAmount()));
+    Assert.assertNotNull(transfer.getCreated());
+
+    assertThat(transferDao.findRepresentations(10, 1), hasSize(0));
+  }
+
+  @Test
+  public void findRepresentationTest() {
+    TransferRepresentation transfer = transferDao.findRepresentation(1L);
+
+    Assert.assertEquals(Long.valueOf(1L), transfer.getId());
+    Assert.assertEquals("123", transfer.getAccountFrom());
+    Assert.assertEquals(0, Money.parse("100").compareTo(transfer.getAmount()));
+    Assert.assertNull(transferDao.findRepresentation(2L));
+  }
+
+  @Test
+  public void streamRepresentationsTest() {
+    List<TransferRepresentation> transfers;
+    try (Stream<TransferRepresentation> stream = transferDao.streamRepresentations()) {
+      transfers = stream.collect(Collectors.toList());
+    }
+
+    assertThat(transfers, hasSize(1));
+    TransferRepresentation transfer = transfers.get(0);
+    TransferRepresentation expected = transferDao.findRepresentations(10, 0).get(0);
+    Assert.assertEquals(expected.getId(), transfer.getId());
+    Assert.assertEquals(expected.getAccountFrom(), transfer.getAccountFrom());
+    Assert.assertEquals(expected.getAccountTo(), transfer.getAccountTo());
+    Assert.assertEquals(0, expected.getAmount().compareTo(transfer.getAmount()));
+    Assert.assertEquals(expected.getCreated(), transfer.getCreated());
+  }
+
+  @Test
+  public void findAfterTest() {
+    assertThat(transferDao.findAllAfter(null, 10), hasSize(1));
+    assertThat(transferDao.findAllAfter(1L, 10), hasSize(0));
+    assertThat(transferDao.findRepresentationsAfter(null, 10), hasSize(1));
+    assertThat(transferDao.findRepresentationsAfter(1L, 10), hasSize(0));
+  }
+
   @Test
   public void deleteByIdTest() {
     transferDao.deleteById(1L);
@@ -110,6 +168,34 @@ public class TransferDaoTests {
     transferDao.delete(transferDaoEntity);
   }
 
+  @Test
+  public void insertTest() {
+    TransferDaoEntity transfer = new TransferDaoEntity();
+    transfer.setOperations(Arrays.asList(1L, 2L));
+
+    TransferDaoEntity inserted = transferDao.insert(transfer);
+    TransferDaoEntity persisted = transferDao.getById(inserted.getId());
+
+    Assert.assertEquals(persisted.getCreated(), inserted.getCreated());
+    assertThat(inserted.getOperations(), hasSize(2));
+    assertThat(persisted.getOperations(), hasSize(2));
+  }
+
+  @Test
+  public void insertAllTest() {
+    TransferDaoEntity first = new TransferDaoEntity();
+    first.setOperations(Arrays.asList(1L, 2L));
+    TransferDaoEntity second = new TransferDaoEntity();
+    second.setOperations(Arrays.asList(2L, 1L));
+
+    List<Long> ids = transferDao.insertAll(Arrays.asList(first, second));
+
+    assertThat(ids, hasSize(2));
+    assertThat(transferDao.getById(ids.get(0)).getOperations(), hasSize(2));
+    assertThat(transferDao.getById(ids.get(1)).getOperations(), hasSize(2));
+    assertThat(transferDao.findAllAfter(1L, 10), hasSize(2));
+  }
+
   @Test(expected = UnsupportedOperationException.class)
   public void updateTest() {
     transferDao.update(null);
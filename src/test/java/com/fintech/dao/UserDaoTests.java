@@ -8,6 +8,10 @@ import com.fintech.models.dao.UserDaoEntity;
 import com.fintech.testutils.DbUtils;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.hamcrest.MatcherAssert;
 import org.hamcrest.core.IsNull;
 import org.junit.After;
@@ -61,6 +65,8 @@ public class UserDaoTests {
         persisted.getId(), is(IsNull.notNullValue()));
     MatcherAssert.assertThat("Check date",
         persisted.getCreated(), is(IsNull.notNullValue()));
+    MatcherAssert.assertThat("Check stored date",
+        userDao.getById(persisted.getId()).getCreated(), is(persisted.getCreated()));
   }
 
   @Test
@@ -110,4 +116,35 @@ public class UserDaoTests {
         userDao.findAll(10, 0), hasSize(1));
   }
 
+  @Test
+  public void userListAfterTest() throws SQLException {
+    try (Connection connection = DbConnectionManager.getConnection()) {
+      connection.createStatement()
+          .executeUpdate("INSERT INTO USERS (id, full_name) VALUES ('456', 'TEST2')");
+    }
+
+    List<UserDaoEntity> firstPage = userDao.findAllAfter(null, 1);
+    MatcherAssert.assertThat(firstPage, hasSize(1));
+    MatcherAssert.assertThat(firstPage.get(0).getId(), is("123"));
+
+    List<UserDaoEntity> secondPage = userDao.findAllAfter("123", 10);
+    MatcherAssert.assertThat(secondPage, hasSize(1));
+    MatcherAssert.assertThat(secondPage.get(0).getId(), is("456"));
+
+    MatcherAssert.assertThat(userDao.findAllAfter("456", 10), hasSize(0));
+  }
+
+  @Test
+  public void userStreamTest() throws SQLException {
+    try (Connection connection = DbConnectionManager.getConnection()) {
+      connection.createStatement()
+          .executeUpdate("INSERT INTO USERS (id, full_name) VALUES ('456', 'TEST2')");
+    }
+
+    try (Stream<UserDaoEntity> users = userDao.streamAll()) {
+      MatcherAssert.assertThat(users.map(UserDaoEntity::getId).collect(Collectors.toList()),
+          is(Arrays.asList("123", "456")));
+    }
+  }
+
 }
@@ -0,0 +1,110 @@
+package com.fintech.events;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class EventBusTests {
+
+  @Test
+  public void dropOldestTest() {
+    EventBus<Integer> bus = new EventBus<>();
+    Subscription<Integer> slow = bus.subscribe("KZ1", 2, () -> 0);
+    final Subscription<Integer> fast = bus.subscribe("KZ1", 10, () -> 0);
+
+    for (int i = 1; i <= 3; i++) {
+      bus.publish("KZ1", () -> 10);
+    }
+    bus.publish("KZ1", () -> 20);
+
+    Assert.assertEquals(Integer.valueOf(10), slow.poll());
+    Assert.assertEquals(Integer.valueOf(20), slow.poll());
+    Assert.assertNull(slow.poll());
+    Assert.assertEquals(3, bus.getDropped());
+
+    Assert.assertEquals(Integer.valueOf(0), fast.poll());
+    for (int i = 1; i <= 3; i++) {
+      Assert.assertEquals(Integer.valueOf(10), fast.poll());
+    }
+    Assert.assertEquals(Integer.valueOf(20), fast.poll());
+    Assert.assertEquals(4, bus.getPublished());
+  }
+
+  @Test
+  public void topicsTest() {
+    EventBus<Integer> bus = new EventBus<>();
+    AtomicInteger computed = new AtomicInteger();
+
+    bus.publish("KZ1", computed::incrementAndGet);
+    Assert.assertEquals(0, computed.get());
+
+    Subscription<Integer> first = bus.subscribe("KZ1", 4, () -> 0);
+    final Subscription<Integer> second = bus.subscribe("KZ2", 4, () -> 0);
+    AtomicInteger signals = new AtomicInteger();
+    first.onEvent(signals::incrementAndGet);
+    Assert.assertEquals(1, signals.get());
+    Assert.assertEquals(2, bus.getSubscribers());
+
+    bus.publish("KZ1", computed::incrementAndGet);
+    Assert.assertEquals(1, computed.get());
+    Assert.assertEquals(2, signals.get());
+    Assert.assertEquals(Integer.valueOf(0), second.poll());
+    Assert.assertNull(second.poll());
+
+    first.close();
+    first.close();
+    bus.publish("KZ1", computed::incrementAndGet);
+    Assert.assertEquals(1, computed.get());
+    Assert.assertFalse(first.hasEvents());
+    Assert.assertEquals(1, bus.getSubscribers());
+
+    second.close();
+    Assert.assertFalse(bus.hasSubscribers());
+  }
+
+  @Test
+  public void staleEventTest() throws InterruptedException {
+    EventBus<Integer> bus = new EventBus<>();
+    final Subscription<Integer> subscription = bus.subscribe("KZ1", 4, () -> 0);
+    CountDownLatch computing = new CountDownLatch(1);
+    CountDownLatch published = new CountDownLatch(1);
+
+    // Started first but handed over last, after a newer event
+    Thread stale = new Thread(() -> bus.publish("KZ1", () -> {
+      computing.countDown();
+      try {
+        published.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return 10;
+    }));
+    stale.start();
+    computing.await();
+    bus.publish("KZ1", () -> 20);
+    published.countDown();
+    stale.join();
+
+    Assert.assertEquals(Integer.valueOf(0), subscription.poll());
+    Assert.assertEquals(Integer.valueOf(20), subscription.poll());
+    Assert.assertNull(subscription.poll());
+  }
+
+  @Test
+  public void failedInitialTest() {
+    EventBus<Integer> bus = new EventBus<>();
+    try {
+      bus.subscribe("KZ1", 4, () -> {
+        throw new IllegalArgumentException("Account KZ1 doesn't exist");
+      });
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      Assert.assertFalse(bus.hasSubscribers());
+    }
+  }
+
+}
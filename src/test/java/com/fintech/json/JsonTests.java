@@ -0,0 +1,132 @@
+package com.fintech.json;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+import com.fintech.models.Account;
+import com.fintech.models.AccountOperation;
+import com.fintech.models.ErrorResponse;
+import com.fintech.models.IngestOperation;
+import com.fintech.models.Money;
+import com.fintech.models.TransferOperation;
+import com.fintech.models.TransferRepresentation;
+import com.fintech.models.User;
+import com.fintech.utils.LocalDateTimeAdapter;
+import com.fintech.utils.MoneyAdapter;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import org.hamcrest.MatcherAssert;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JsonTests {
+
+  private final Gson gson = new GsonBuilder()
+      .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+      .registerTypeAdapter(Money.class, new MoneyAdapter()).create();
+
+  @Test
+  public void encodeSameAsGsonTest() {
+    User user = User.builder().id("1").fullName("Jöhn <Smith> & \"Sons\" 💰").build();
+    assertSameAsGson(Json.USER, user);
+    assertSameAsGson(Json.ACCOUNT, Account.builder().number("KZ1").build());
+    assertSameAsGson(Json.ACCOUNT_OPERATION, new AccountOperation(Money.parse("12.50")));
+    assertSameAsGson(Json.TRANSFER_REPRESENTATION, TransferRepresentation.builder()
+        .id(5L).accountFrom("KZ1").accountTo("KZ2").amount(Money.parse("100.0"))
+        .created(LocalDateTime.of(2019, 10, 1, 12, 30, 15, 123_000_000)).build());
+    assertSameAsGson(Json.ERROR_RESPONSE, ErrorResponse.builder().code(400)
+        .message("Wrong 'amount'").timestamp(1570000000000L).build());
+    assertSameAsGson(Json.TRANSFER_OPERATION, TransferOperation.builder()
+        .accountFrom("KZ1").accountTo("KZ2").amount(Money.parse("10")).build());
+  }
+
+  @Test
+  public void decodeTest() {
+    byte[] body = "{\"from\": \"KZ1\", \"to\": \"KZ2\", \"amount\": 20.5, \"note\": [1, {}]}"
+        .getBytes(StandardCharsets.UTF_8);
+
+    TransferOperation operation = Json.decode(body, Json.TRANSFER_OPERATION);
+
+    MatcherAssert.assertThat(operation.getAccountFrom(), is("KZ1"));
+    MatcherAssert.assertThat(operation.getAccountTo(), is("KZ2"));
+    MatcherAssert.assertThat(operation.getAmount(), is(Money.parse("20.5")));
+  }
+
+  @Test
+  public void decodeUtf8Test() {
+    String name = "Жанна 李 💰";
+    byte[] body = ("{\"fullName\": \"" + name + "\"}").getBytes(StandardCharsets.UTF_8);
+
+    MatcherAssert.assertThat(Json.decode(body, Json.USER).getFullName(), is(name));
+  }
+
+  @Test
+  public void decodeEmptyTest() {
+    MatcherAssert.assertThat(Json.decode(new byte[0], Json.USER), is(nullValue()));
+  }
+
+  @Test(expected = JsonSyntaxException.class)
+  public void decodeTrailingContentTest() {
+    Json.decode("{\"amount\": 1} {}".getBytes(StandardCharsets.UTF_8), Json.ACCOUNT_OPERATION);
+  }
+
+  @Test(expected = JsonSyntaxException.class)
+  public void decodeWrongNumberTest() {
+    Json.decode("{\"amount\": \"ten\"}".getBytes(StandardCharsets.UTF_8),
+        Json.ACCOUNT_OPERATION);
+  }
+
+  @Test
+  public void readLinesTest() throws IOException {
+    StringBuilder longName = new StringBuilder();
+    for (int i = 0; i < 10_000; i++) {
+      longName.append('a');
+    }
+    String body = "{\"type\": \"cash-in\", \"account\": \"KZ1\", \"amount\": 1}\r\n"
+        + "\n  \n"
+        + "{\"type\": \"transfer\", \"from\": \"" + longName + "\", \"amount\": 2}\n"
+        + "{\"account\": \"" + longName + longName + "\"}\n"
+        + "{\"type\": \"transfer\", \"to\": \"KZ2\"}";
+    JsonLineReader lines = new JsonLineReader(
+        new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), 15_000);
+
+    MatcherAssert.assertThat(lines.next(), is(true));
+    IngestOperation cashIn = lines.decode(Json.INGEST_OPERATION);
+    MatcherAssert.assertThat(lines.number(), is(0));
+    MatcherAssert.assertThat(cashIn.getType(), is(IngestOperation.Type.CASH_IN));
+    MatcherAssert.assertThat(cashIn.getAmount(), is(Money.parse("1")));
+
+    MatcherAssert.assertThat(lines.next(), is(true));
+    MatcherAssert.assertThat(lines.number(), is(3));
+    MatcherAssert.assertThat(lines.decode(Json.INGEST_OPERATION).getAccountFrom(),
+        is(longName.toString()));
+
+    MatcherAssert.assertThat(lines.next(), is(true));
+    try {
+      lines.decode(Json.INGEST_OPERATION);
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      MatcherAssert.assertThat(e.getMessage(), is("Line is longer than 15000 bytes"));
+    }
+
+    MatcherAssert.assertThat(lines.next(), is(true));
+    MatcherAssert.assertThat(lines.number(), is(5));
+    MatcherAssert.assertThat(lines.decode(Json.INGEST_OPERATION).getAccountTo(), is("KZ2"));
+    MatcherAssert.assertThat(lines.next(), is(false));
+  }
+
+  private <T> void assertSameAsGson(JsonCodec<T> codec, T value) {
+    String encoded = new String(Json.encode(codec, value), StandardCharsets.UTF_8);
+
+    MatcherAssert.assertThat(encoded, is(gson.toJson(value)));
+  }
+
+}
@@ -0,0 +1,100 @@
+package com.fintech.ledger;
+
+import com.fintech.models.Money;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class JournalTests {
+
+  private static final LocalDateTime CREATED = LocalDateTime.of(2020, 1, 2, 3, 4, 5);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void replayTest() throws IOException {
+    Path path = folder.newFolder().toPath().resolve("test.journal");
+    LocalDateTime created = CREATED.plusNanos(6_000_000);
+    long first;
+    try (Journal journal = new Journal(path)) {
+      journal.append(LedgerEntry.cashIn("USD123", Money.parse("100.0")).createdAt(created));
+      first = journal.flush();
+      journal.append(LedgerEntry.transfer("USD123", "USD456", Money.parse("25.50"))
+          .createdAt(created));
+      journal.append(LedgerEntry.reversal(7L, "USD123", "USD456", Money.parse("25.50"))
+          .createdAt(created));
+      journal.flush();
+    }
+
+    List<LedgerEntry> entries = new ArrayList<>();
+    try (Journal journal = new Journal(path)) {
+      Assert.assertEquals(Files.size(path), journal.replay(0, entries::add));
+    }
+
+    Assert.assertEquals(3, entries.size());
+    Assert.assertEquals(LedgerEntry.Type.CASH_IN, entries.get(0).getType());
+    Assert.assertEquals(Money.parse("100.0"), entries.get(0).getAmount());
+    Assert.assertFalse(entries.get(0).hasCounterparty());
+    Assert.assertEquals("USD456", entries.get(1).getCounterparty());
+    Assert.assertEquals(created, entries.get(1).getCreated());
+    Assert.assertEquals(-2550L, entries.get(1).delta());
+    Assert.assertEquals(7L, entries.get(2).getReference());
+    Assert.assertEquals(created, entries.get(2).getCreated());
+
+    List<LedgerEntry> tail = new ArrayList<>();
+    try (Journal journal = new Journal(path)) {
+      journal.replay(first, tail::add);
+    }
+    Assert.assertEquals(2, tail.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void notAcceptedTest() throws IOException {
+    try (Journal journal = new Journal(folder.newFolder().toPath().resolve("test.journal"))) {
+      journal.append(LedgerEntry.cashIn("USD123", Money.parse("10")));
+    }
+  }
+
+  @Test
+  public void tornTailTest() throws IOException {
+    Path path = folder.newFolder().toPath().resolve("test.journal");
+    long end;
+    try (Journal journal = new Journal(path)) {
+      journal.append(LedgerEntry.cashIn("USD123", Money.parse("10")).createdAt(CREATED));
+      end = journal.flush();
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.APPEND)) {
+      channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 42, 1, 2}));
+    }
+
+    List<LedgerEntry> entries = new ArrayList<>();
+    try (Journal journal = new Journal(path)) {
+      Assert.assertEquals(end, journal.replay(0, entries::add));
+      journal.append(LedgerEntry.withdraw("USD123", Money.parse("1")).createdAt(CREATED));
+      journal.flush();
+    }
+    Assert.assertEquals(1, entries.size());
+
+    entries.clear();
+    try (Journal journal = new Journal(path)) {
+      journal.replay(0, entries::add);
+    }
+    Assert.assertEquals(2, entries.size());
+    Assert.assertEquals(LedgerEntry.Type.WITHDRAW, entries.get(1).getType());
+  }
+
+}
@@ -0,0 +1,83 @@
+package com.fintech.ledger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RingBufferTests {
+
+  @Test
+  public void fullRingTest() {
+    RingBuffer<Integer> ring = new RingBuffer<>(3);
+    Assert.assertEquals(4, ring.capacity());
+
+    for (int i = 0; i < 4; i++) {
+      Assert.assertTrue(ring.offer(i));
+    }
+    Assert.assertFalse(ring.offer(4));
+
+    Assert.assertEquals(Integer.valueOf(0), ring.poll());
+    Assert.assertTrue(ring.offer(4));
+    for (int i = 1; i <= 4; i++) {
+      Assert.assertEquals(Integer.valueOf(i), ring.poll());
+    }
+    Assert.assertNull(ring.poll());
+    Assert.assertTrue(ring.isEmpty());
+  }
+
+  @Test
+  public void concurrentProducersTest() throws InterruptedException {
+    RingBuffer<Integer> ring = new RingBuffer<>(64);
+    int producers = 4;
+    int perProducer = 10_000;
+    CountDownLatch start = new CountDownLatch(1);
+
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      int base = p * perProducer;
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          return;
+        }
+        for (int i = 0; i < perProducer; i++) {
+          while (!ring.offer(base + i)) {
+            Thread.yield();
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+
+    // Every producer's elements must come out once and in its own order
+    int[] last = new int[producers];
+    Arrays.fill(last, -1);
+    int received = 0;
+    while (received < producers * perProducer) {
+      Integer element = ring.poll();
+      if (element == null) {
+        Thread.yield();
+        continue;
+      }
+      int producer = element / perProducer;
+      Assert.assertTrue(element % perProducer > last[producer]);
+      last[producer] = element % perProducer;
+      received++;
+    }
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assert.assertTrue(ring.isEmpty());
+  }
+
+}
@@ -0,0 +1,58 @@
+package com.fintech.models;
+
+import java.math.BigDecimal;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MoneyTests {
+
+  @Test
+  public void parseTest() {
+    Assert.assertEquals(1250L, Money.parse("12.5").getMinorUnits());
+    Assert.assertEquals(1250L, Money.parse("12.500").getMinorUnits());
+    Assert.assertEquals(-5L, Money.parse("-0.05").getMinorUnits());
+    Assert.assertEquals(10000L, Money.parse("1e2").getMinorUnits());
+    Assert.assertEquals(Money.of(1234), Money.valueOf(new BigDecimal("12.34")));
+  }
+
+  //Sub-cent amounts are rejected, not rounded
+  @Test(expected = IllegalArgumentException.class)
+  public void parseTooPreciseTest() {
+    Money.parse("0.001");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseTooBigTest() {
+    Money.parse("100000000000000000");
+  }
+
+  @Test
+  public void toStringTest() {
+    Assert.assertEquals("0.0", Money.ZERO.toString());
+    Assert.assertEquals("100.0", Money.of(10000).toString());
+    Assert.assertEquals("12.5", Money.of(1250).toString());
+    Assert.assertEquals("0.05", Money.of(5).toString());
+    Assert.assertEquals("-20.01", Money.of(-2001).toString());
+    Assert.assertEquals("-92233720368547758.08", Money.of(Long.MIN_VALUE).toString());
+    Assert.assertEquals(new BigDecimal("12.50"), Money.of(1250).toBigDecimal());
+  }
+
+  @Test
+  public void arithmeticTest() {
+    Money balance = Money.of(10000, "USD").minus(Money.of(2550)).plus(Money.of(50, "USD"));
+
+    Assert.assertEquals(Money.of(7500, "USD"), balance);
+    Assert.assertTrue(balance.compareTo(Money.of(7501)) < 0);
+    Assert.assertTrue(balance.negate().isNegative());
+    Assert.assertEquals(0, Money.ZERO.signum());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void differentCurrenciesTest() {
+    Money.of(100, "USD").plus(Money.of(100, "EUR"));
+  }
+
+}
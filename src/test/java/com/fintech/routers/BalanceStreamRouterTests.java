@@ -0,0 +1,144 @@
+package com.fintech.routers;
+
+import com.fintech.dao.DbConnectionManager;
+import com.fintech.dao.impl.DbAccountDao;
+import com.fintech.dao.impl.DbOperationDao;
+import com.fintech.dao.impl.DbTransferDao;
+import com.fintech.dao.impl.DbUserDao;
+import com.fintech.events.EventBus;
+import com.fintech.models.Money;
+import com.fintech.models.TransferOperation;
+import com.fintech.services.AccountService;
+import com.fintech.services.TransactionService;
+import com.fintech.services.UserService;
+import com.fintech.services.impl.DefaultAccountService;
+import com.fintech.services.impl.DefaultTransactionService;
+import com.fintech.services.impl.DefaultUserService;
+import com.fintech.services.impl.PublishingTransactionService;
+import com.fintech.testutils.DbUtils;
+import com.fintech.testutils.DefaultUndertowServer;
+import io.undertow.util.StatusCodes;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class BalanceStreamRouterTests {
+
+  private static DefaultUndertowServer server;
+  private static EventBus<Money> balances;
+  private static TransactionService transactionService;
+
+  @BeforeClass
+  public static void initClass() {
+    DbUtils.initDb();
+
+    UserService userService = new DefaultUserService(new DbUserDao());
+    AccountService accountService = new DefaultAccountService(new DbAccountDao(), userService);
+
+    balances = new EventBus<>();
+    transactionService = new PublishingTransactionService(new DefaultTransactionService(
+        new DbOperationDao(), new DbTransferDao(), accountService), balances);
+    BalanceStreamRouter router = new BalanceStreamRouter(
+        transactionService, balances, Dispatcher.shared(), 4);
+
+    server = DefaultUndertowServer.createServer(router.handler());
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    server.stop();
+    DbUtils.close();
+  }
+
+  @Before
+  public void setUp() throws SQLException {
+    try (Connection connection = DbConnectionManager.getConnection()) {
+      connection.createStatement()
+          .executeUpdate("INSERT INTO USERS (id, full_name) VALUES ('123', 'TEST1')");
+      connection.createStatement()
+          .executeUpdate("INSERT INTO ACCOUNTS (number, user_id, currency) "
+              + "VALUES ('USD123', '123', 'USD')");
+      connection.createStatement()
+          .executeUpdate("INSERT INTO ACCOUNTS (number, user_id, currency) "
+              + "VALUES ('USD456', '123', 'USD')");
+    }
+  }
+
+  @After
+  public void after() throws SQLException {
+    try (Connection connection = DbConnectionManager.getConnection()) {
+      connection.createStatement()
+          .executeUpdate("DELETE FROM ACCOUNTS WHERE number is not null");
+      connection.createStatement()
+          .executeUpdate("DELETE FROM USERS WHERE id is not null");
+    }
+  }
+
+  @Test
+  public void balanceStream_SuccessTest() throws IOException, InterruptedException {
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      HttpGet get = new HttpGet(server.getUrl() + "/accounts/USD456/balance/stream");
+      try (CloseableHttpResponse response = httpClient.execute(get)) {
+        Assert.assertEquals(StatusCodes.OK, response.getStatusLine().getStatusCode());
+        BufferedReader events = new BufferedReader(new InputStreamReader(
+            response.getEntity().getContent(), StandardCharsets.UTF_8));
+
+        Money initial = nextBalance(events);
+
+        transactionService.cashIn("USD123", Money.parse("100"));
+        transactionService.cashIn("USD456", Money.parse("30"));
+        Assert.assertEquals(0, initial.plus(Money.parse("30")).compareTo(nextBalance(events)));
+
+        transactionService.transfer(TransferOperation.builder().accountFrom("USD123")
+            .accountTo("USD456").amount(Money.parse("20")).build());
+        Assert.assertEquals(0, initial.plus(Money.parse("50")).compareTo(nextBalance(events)));
+        Assert.assertEquals(1, balances.getSubscribers());
+      }
+    }
+
+    // A closed connection is noticed once writing to it fails, then the subscription ends
+    for (int i = 0; i < 100 && balances.hasSubscribers(); i++) {
+      transactionService.cashIn("USD456", Money.parse("1"));
+      Thread.sleep(50);
+    }
+    Assert.assertFalse(balances.hasSubscribers());
+  }
+
+  @Test
+  public void balanceStream_NotFoundTest() throws IOException {
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      HttpGet get = new HttpGet(server.getUrl() + "/accounts/USD789/balance/stream");
+      try (CloseableHttpResponse response = httpClient.execute(get)) {
+        Assert.assertEquals(StatusCodes.NOT_FOUND, response.getStatusLine().getStatusCode());
+      }
+    }
+    Assert.assertFalse(balances.hasSubscribers());
+  }
+
+  private Money nextBalance(BufferedReader events) throws IOException {
+    for (String line = events.readLine(); line != null; line = events.readLine()) {
+      if (line.startsWith("data:")) {
+        return Money.parse(line.substring("data:".length()));
+      }
+    }
+
+    throw new IOException("Stream is closed");
+  }
+
+}
@@ -0,0 +1,83 @@
+package com.fintech.routers;
+
+import com.fintech.testutils.DefaultUndertowServer;
+import io.undertow.server.RoutingHandler;
+import io.undertow.util.StatusCodes;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class DispatcherTests {
+
+  private static DefaultUndertowServer server;
+  private static ExecutorService executor;
+  private static Dispatcher dispatcher;
+
+  @BeforeClass
+  public static void initClass() {
+    executor = Executors.newSingleThreadExecutor();
+    dispatcher = new Dispatcher(executor, 100);
+    Dispatcher rejecting = new Dispatcher(executor, 0);
+
+    RoutingHandler handler = new RoutingHandler()
+        .get("/thread", exchange -> dispatcher.receive(exchange, (exc, bytes) ->
+            exc.getResponseSender().send(String.valueOf(exc.isInIoThread()))))
+        .get("/status", exchange -> dispatcher.receive(exchange, (exc, bytes) ->
+            exc.setStatusCode(StatusCodes.ACCEPTED)))
+        .get("/rejected", exchange -> rejecting.receive(exchange, (exc, bytes) ->
+            exc.setStatusCode(StatusCodes.OK)));
+
+    server = DefaultUndertowServer.createServer(handler);
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    server.stop();
+    executor.shutdown();
+  }
+
+  @Test
+  public void dispatchOffIoThread_SuccessTest() throws IOException {
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      HttpResponse result = httpClient.execute(new HttpGet(server.getUrl() + "/thread"));
+
+      Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+      Assert.assertEquals("false", EntityUtils.toString(result.getEntity()));
+    }
+  }
+
+  @Test
+  public void dispatchEndsExchange_SuccessTest() throws IOException {
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      HttpResponse result = httpClient.execute(new HttpGet(server.getUrl() + "/status"));
+      EntityUtils.consume(result.getEntity());
+
+      Assert.assertEquals(StatusCodes.ACCEPTED, result.getStatusLine().getStatusCode());
+      Assert.assertEquals(0, dispatcher.queued());
+    }
+  }
+
+  @Test
+  public void fullQueue_RejectedTest() throws IOException {
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      HttpResponse result = httpClient.execute(new HttpGet(server.getUrl() + "/rejected"));
+      EntityUtils.consume(result.getEntity());
+
+      Assert.assertEquals(StatusCodes.SERVICE_UNAVAILABLE,
+          result.getStatusLine().getStatusCode());
+    }
+  }
+
+}
@@ -0,0 +1,96 @@
+package com.fintech.routers;
+
+import static org.hamcrest.CoreMatchers.containsString;
+
+import com.fintech.metrics.MetricsHandler;
+import com.fintech.metrics.MetricsRegistry;
+import com.fintech.testutils.DefaultUndertowServer;
+import io.undertow.server.RoutingHandler;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+import java.io.IOException;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.hamcrest.MatcherAssert;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MetricsRouterTests {
+
+  private static DefaultUndertowServer server;
+  private static MetricsRegistry registry;
+
+  @BeforeClass
+  public static void initClass() {
+    registry = new MetricsRegistry();
+    registry.gauge("test_gauge", "Test gauge.", () -> 42);
+
+    RoutingHandler handler = new RoutingHandler()
+        .addAll(new MetricsRouter(registry).handler())
+        .get("/items/{id}", exchange -> exchange.getResponseSender().send("item"));
+
+    server = DefaultUndertowServer.createServer(new MetricsHandler(registry, handler));
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    server.stop();
+  }
+
+  @Test
+  public void routeMetrics_SuccessTest() throws IOException, InterruptedException {
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      for (int i = 0; i < 3; i++) {
+        HttpResponse result = httpClient.execute(new HttpGet(server.getUrl() + "/items/" + i));
+        EntityUtils.consume(result.getEntity());
+        Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+      }
+
+      awaitRequests("/items/{id}", StatusCodes.OK, 3);
+
+      HttpResponse result = httpClient.execute(new HttpGet(server.getUrl() + "/metrics"));
+      String body = EntityUtils.toString(result.getEntity());
+
+      Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+      MatcherAssert.assertThat(body, containsString(
+          "http_requests_total{method=\"GET\",route=\"/items/{id}\",status=\"200\"} 3"));
+      MatcherAssert.assertThat(body, containsString(
+          "http_request_duration_seconds{method=\"GET\",route=\"/items/{id}\",quantile=\"0.99\"}"));
+      MatcherAssert.assertThat(body, containsString(
+          "http_request_duration_seconds_count{method=\"GET\",route=\"/items/{id}\"} 3"));
+      MatcherAssert.assertThat(body, containsString("http_requests_in_flight 1"));
+      MatcherAssert.assertThat(body, containsString("test_gauge 42"));
+    }
+  }
+
+  @Test
+  public void unmatchedRoute_SuccessTest() throws IOException, InterruptedException {
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      HttpResponse result = httpClient.execute(new HttpGet(server.getUrl() + "/unknown"));
+      EntityUtils.consume(result.getEntity());
+
+      Assert.assertEquals(StatusCodes.NOT_FOUND, result.getStatusLine().getStatusCode());
+      awaitRequests("unmatched", StatusCodes.NOT_FOUND, 1);
+    }
+  }
+
+  // Completion listeners may still be running after the client has read the response
+  private static void awaitRequests(String route, int status, long expected)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 1000;
+    while (registry.route(route, Methods.GET).requests(status) < expected
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(expected, registry.route(route, Methods.GET).requests(status));
+  }
+
+}
@@ -2,6 +2,13 @@ package com.fintech.routers;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 import com.fintech.dao.AccountDao;
 import com.fintech.dao.DbConnectionManager;
@@ -12,6 +19,8 @@ import com.fintech.dao.impl.DbAccountDao;
 import com.fintech.dao.impl.DbOperationDao;
 import com.fintech.dao.impl.DbTransferDao;
 import com.fintech.dao.impl.DbUserDao;
+import com.fintech.models.Money;
+import com.fintech.models.TransferResult;
 import com.fintech.models.dao.AccountDaoEntity;
 import com.fintech.models.dao.OperationDaoEntity;
 import com.fintech.models.dao.TransferDaoEntity;
@@ -30,6 +39,7 @@ import io.undertow.util.StatusCodes;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
@@ -250,6 +260,26 @@ public class TransactionRouterTests {
 
       Assert.assertEquals(StatusCodes.BAD_REQUEST,
           wrongAccountBalanceResult.getStatusLine().getStatusCode());
+
+      //Wrong balance time
+      HttpGet wrongTimeBalance
+          = new HttpGet(server.getUrl() + "/accounts/USD123/balance?at=yesterday");
+      HttpResponse wrongTimeBalanceResult = httpClient.execute(wrongTimeBalance);
+
+      Assert.assertEquals(StatusCodes.BAD_REQUEST,
+          wrongTimeBalanceResult.getStatusLine().getStatusCode());
+    }
+  }
+
+  @Test
+  public void balanceAtTest() throws IOException {
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      HttpGet balanceAt = new HttpGet(
+          server.getUrl() + "/accounts/USD123/balance?at=2019-10-01T12:00:00");
+      HttpResponse balanceAtResult = httpClient.execute(balanceAt);
+
+      Assert.assertEquals(StatusCodes.OK, balanceAtResult.getStatusLine().getStatusCode());
+      Assert.assertEquals("0.0", HttpUtils.readBodyAsString(balanceAtResult.getEntity()));
     }
   }
 
@@ -291,6 +321,115 @@ public class TransactionRouterTests {
     }
   }
 
+  @Test
+  public void transferBatchBestEffortTest() throws IOException {
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      HttpPost cashIn = new HttpPost(server.getUrl() + "/accounts/USD456/cash-in");
+      cashIn.setEntity(new StringEntity("{\"amount\": 100.0}", ContentType.APPLICATION_JSON));
+      Assert.assertEquals(StatusCodes.OK,
+          httpClient.execute(cashIn).getStatusLine().getStatusCode());
+
+      String jsonString = "[{\"from\": \"USD456\", \"to\": \"USD123\", \"amount\": 10.0},"
+          + "{\"from\": \"USD456\", \"to\": \"EUR456\", \"amount\": 1.0}]";
+      HttpPost batch = new HttpPost(server.getUrl() + "/transfers/batch?mode=best-effort");
+      batch.setEntity(new StringEntity(jsonString, ContentType.APPLICATION_JSON));
+
+      HttpResponse batchResult = httpClient.execute(batch);
+      Assert.assertEquals(StatusCodes.OK, batchResult.getStatusLine().getStatusCode());
+
+      TransferResult[] results
+          = HttpUtils.readBody(batchResult.getEntity(), TransferResult[].class);
+      assertThat(results, arrayWithSize(2));
+      Assert.assertEquals(TransferResult.Status.COMPLETED, results[0].getStatus());
+      Assert.assertNotNull(results[0].getId());
+      Assert.assertEquals(TransferResult.Status.FAILED, results[1].getStatus());
+      Assert.assertEquals("Accounts with different currencies", results[1].getMessage());
+    }
+  }
+
+  @Test
+  public void ingestTest() throws IOException {
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      String lines = "{\"type\": \"cash-in\", \"account\": \"USD456\", \"amount\": 100.0}\n"
+          + "{\"type\": \"transfer\", \"from\": \"USD456\", \"to\": \"USD123\", \"amount\": 10.0}\n"
+          + "\n"
+          + "{\"type\": \"transfer\", \"from\": \n"
+          + "{\"type\": \"transfer\", \"from\": \"USD456\", \"to\": \"EUR456\", \"amount\": 1.0}\n"
+          + "{\"type\": \"refund\", \"account\": \"USD456\"}";
+      HttpGet balance = new HttpGet(server.getUrl() + "/accounts/USD123/balance");
+      final Money before = Money.parse(
+          HttpUtils.readBodyAsString(httpClient.execute(balance).getEntity()));
+
+      HttpPost ingest = new HttpPost(server.getUrl() + "/ingest");
+      ingest.setEntity(new StringEntity(lines, ContentType.create("application/x-ndjson")));
+
+      HttpResponse ingestResult = httpClient.execute(ingest);
+      Assert.assertEquals(StatusCodes.OK, ingestResult.getStatusLine().getStatusCode());
+
+      List<TransferResult> results
+          = HttpUtils.readLines(ingestResult.getEntity(), TransferResult.class);
+      assertThat(results, hasSize(5));
+      Assert.assertEquals(0, results.get(0).getIndex());
+      Assert.assertEquals(TransferResult.Status.COMPLETED, results.get(0).getStatus());
+      Assert.assertEquals(1, results.get(1).getIndex());
+      Assert.assertEquals(TransferResult.Status.COMPLETED, results.get(1).getStatus());
+      Assert.assertNotNull(results.get(1).getId());
+      Assert.assertEquals(3, results.get(2).getIndex());
+      Assert.assertEquals(TransferResult.Status.FAILED, results.get(2).getStatus());
+      Assert.assertEquals(4, results.get(3).getIndex());
+      Assert.assertEquals("Accounts with different currencies", results.get(3).getMessage());
+      Assert.assertEquals(5, results.get(4).getIndex());
+      Assert.assertEquals("Wrong operation type", results.get(4).getMessage());
+
+      Money after = Money.parse(
+          HttpUtils.readBodyAsString(httpClient.execute(balance).getEntity()));
+      Assert.assertEquals(0, Money.parse("10").compareTo(after.minus(before)));
+    }
+  }
+
+  //An unexpected error still writes the results so far and runs nothing after it
+  @Test
+  public void ingestFailureTest() throws IOException {
+    TransactionService failing = mock(TransactionService.class);
+    given(failing.transferAll(any(), eq(false)))
+        .willThrow(new IllegalStateException("Database is down"));
+    DefaultUndertowServer failingServer = DefaultUndertowServer.createServer(
+        new TransactionRouter(failing).handler());
+
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      String lines = "{\"type\": \"cash-in\", \"account\": \"USD456\", \"amount\": 100.0}\n"
+          + "{\"type\": \"transfer\", \"from\": \"USD456\", \"to\": \"USD123\", \"amount\": 10.0}\n"
+          + "{\"type\": \"cash-in\", \"account\": \"USD123\", \"amount\": 1.0}\n";
+      HttpPost ingest = new HttpPost(failingServer.getUrl() + "/ingest");
+      ingest.setEntity(new StringEntity(lines, ContentType.create("application/x-ndjson")));
+
+      HttpResponse ingestResult = httpClient.execute(ingest);
+      Assert.assertEquals(StatusCodes.OK, ingestResult.getStatusLine().getStatusCode());
+
+      List<TransferResult> results
+          = HttpUtils.readLines(ingestResult.getEntity(), TransferResult.class);
+      Assert.assertEquals(TransferResult.Status.COMPLETED, results.get(0).getStatus());
+      Assert.assertEquals(1, results.get(1).getIndex());
+      Assert.assertEquals(TransferResult.Status.FAILED, results.get(1).getStatus());
+      Assert.assertEquals("Operation failed", results.get(1).getMessage());
+      verify(failing).cashIn(eq("USD456"), any());
+      verify(failing, never()).cashIn(eq("USD123"), any());
+    } finally {
+      failingServer.stop();
+    }
+  }
+
+  @Test
+  public void transferBatchWrongModeTest() throws IOException {
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      HttpPost batch = new HttpPost(server.getUrl() + "/transfers/batch?mode=some");
+      batch.setEntity(new StringEntity("[]", ContentType.APPLICATION_JSON));
+
+      HttpResponse batchResult = httpClient.execute(batch);
+      Assert.assertEquals(StatusCodes.BAD_REQUEST, batchResult.getStatusLine().getStatusCode());
+    }
+  }
+
   @Test
   public void transferWrongAccountFromTest() throws IOException {
     try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
@@ -14,6 +14,7 @@ import io.undertow.util.StatusCodes;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
@@ -131,6 +132,47 @@ public class UserRouterTests {
     }
   }
 
+  @Test
+  public void userListCursor_SuccessTest() throws IOException {
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      HttpGet get1 = new HttpGet(server.getUrl() + "/users?limit=2");
+      HttpResponse result1 = httpClient.execute(get1);
+
+      Assert.assertEquals(StatusCodes.OK, result1.getStatusLine().getStatusCode());
+      Header cursor = result1.getFirstHeader("X-Next-Cursor");
+      Assert.assertNotNull(cursor);
+      HttpUtils.readBodyAsString(result1.getEntity());
+
+      HttpGet get2 = new HttpGet(server.getUrl() + "/users?limit=2&cursor=" + cursor.getValue());
+      HttpResponse result2 = httpClient.execute(get2);
+
+      Assert.assertEquals(StatusCodes.OK, result2.getStatusLine().getStatusCode());
+      Assert.assertNull(result2.getFirstHeader("X-Next-Cursor"));
+      Assert.assertEquals("[{\"id\":\"789\",\"fullName\":\"TEST3\"}]",
+          HttpUtils.readBodyAsString(result2.getEntity()));
+
+      HttpGet get3 = new HttpGet(server.getUrl() + "/users?cursor=not*base64");
+      HttpResponse result3 = httpClient.execute(get3);
+
+      Assert.assertEquals(StatusCodes.BAD_REQUEST, result3.getStatusLine().getStatusCode());
+      HttpUtils.readBodyAsString(result3.getEntity());
+    }
+  }
+
+  @Test
+  public void userListStream_SuccessTest() throws IOException {
+    try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
+      String jsonFullList = "[{\"id\":\"123\",\"fullName\":\"TEST1\"},"
+          + "{\"id\":\"456\",\"fullName\":\"TEST2\"},{\"id\":\"789\",\"fullName\":\"TEST3\"}]";
+
+      HttpGet get = new HttpGet(server.getUrl() + "/users?stream=true&limit=1");
+      HttpResponse result = httpClient.execute(get);
+
+      Assert.assertEquals(StatusCodes.OK, result.getStatusLine().getStatusCode());
+      Assert.assertEquals(jsonFullList, HttpUtils.readBodyAsString(result.getEntity()));
+    }
+  }
+
   @Test
   public void userCreate_SuccessTest() throws IOException {
     try (CloseableHttpClient httpClient = HttpClients.createMinimal()) {
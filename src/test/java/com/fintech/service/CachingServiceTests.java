@@ -0,0 +1,142 @@
+package com.fintech.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.fintech.models.Account;
+import com.fintech.models.User;
+import com.fintech.services.AccountService;
+import com.fintech.services.UserService;
+import com.fintech.services.impl.CachingAccountService;
+import com.fintech.services.impl.CachingUserService;
+import java.time.Duration;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingServiceTests {
+
+  @Mock
+  private AccountService accountService;
+  @Mock
+  private UserService userService;
+
+  private CachingAccountService cachingAccountService;
+  private CachingUserService cachingUserService;
+
+  @Before
+  public void setUp() {
+    cachingAccountService
+        = new CachingAccountService(accountService, 100, Duration.ofMinutes(1));
+    cachingUserService = new CachingUserService(userService, 100, Duration.ofMinutes(1));
+  }
+
+  @Test
+  public void accountReadThroughTest() {
+    Account account = Account.builder().number("USD123").currency("USD").build();
+    given(accountService.exists("USD123")).willReturn(true);
+    given(accountService.getByNumber("USD123")).willReturn(account);
+
+    Assert.assertSame(account, cachingAccountService.getByNumber("USD123"));
+    Assert.assertSame(account, cachingAccountService.getByNumber("USD123"));
+
+    verify(accountService).getByNumber("USD123");
+    Assert.assertEquals(1, cachingAccountService.stats().hitCount());
+    Assert.assertEquals(1, cachingAccountService.stats().missCount());
+  }
+
+  @Test
+  public void accountExistsIsNotCachedTest() {
+    Account account = Account.builder().number("USD123").currency("USD").build();
+    given(accountService.exists("USD123")).willReturn(true);
+    given(accountService.getByNumber("USD123")).willReturn(account);
+    cachingAccountService.getByNumber("USD123");
+
+    // Deleted by another instance
+    given(accountService.exists("USD123")).willReturn(false);
+
+    Assert.assertFalse(cachingAccountService.exists("USD123"));
+  }
+
+  @Test
+  public void accountMissIsNotCachedTest() {
+    given(accountService.exists("USD123")).willReturn(false);
+
+    Assert.assertFalse(cachingAccountService.exists("USD123"));
+    Assert.assertFalse(cachingAccountService.exists("USD123"));
+
+    verify(accountService, times(2)).exists("USD123");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void accountGetMissingTest() {
+    given(accountService.exists("USD123")).willReturn(false);
+
+    cachingAccountService.getByNumber("USD123");
+  }
+
+  @Test
+  public void accountDeleteInvalidatesTest() {
+    Account account = Account.builder().number("USD123").currency("USD").build();
+    given(accountService.exists("USD123")).willReturn(true).willReturn(false);
+    given(accountService.getByNumber("USD123")).willReturn(account);
+
+    Assert.assertSame(account, cachingAccountService.getByNumber("USD123"));
+    cachingAccountService.delete("USD123");
+    try {
+      cachingAccountService.getByNumber("USD123");
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      verify(accountService).delete("USD123");
+    }
+  }
+
+  @Test
+  public void accountCreateIsCachedTest() {
+    Account account = Account.builder().number("USD123").currency("USD").build();
+    given(accountService.addAccountToUser("123", "USD")).willReturn(account);
+
+    cachingAccountService.addAccountToUser("123", "USD");
+
+    Assert.assertSame(account, cachingAccountService.getByNumber("USD123"));
+    verify(accountService, times(0)).getByNumber(any());
+  }
+
+  @Test
+  public void userSaveInvalidatesTest() {
+    User user = new User("123", "TEST");
+    User renamed = new User("123", "TEST1");
+    given(userService.exists("123")).willReturn(true);
+    given(userService.getById("123")).willReturn(user);
+    given(userService.save(renamed)).willReturn(renamed);
+
+    Assert.assertSame(user, cachingUserService.getById("123"));
+    cachingUserService.save(renamed);
+    Assert.assertSame(renamed, cachingUserService.getById("123"));
+
+    verify(userService).getById("123");
+  }
+
+  @Test
+  public void userDeleteInvalidatesTest() {
+    User user = new User("123", "TEST");
+    given(userService.exists("123")).willReturn(true).willReturn(false);
+    given(userService.getById("123")).willReturn(user);
+
+    Assert.assertSame(user, cachingUserService.getById("123"));
+    cachingUserService.delete("123");
+    try {
+      cachingUserService.getById("123");
+      Assert.fail();
+    } catch (IllegalArgumentException e) {
+      verify(userService).delete("123");
+    }
+  }
+
+}
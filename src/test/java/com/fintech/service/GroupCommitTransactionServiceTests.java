@@ -0,0 +1,165 @@
+package com.fintech.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.verify;
+
+import com.fintech.models.Money;
+import com.fintech.models.TransferOperation;
+import com.fintech.models.TransferResult;
+import com.fintech.services.TransactionService;
+import com.fintech.services.impl.GroupCommitTransactionService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GroupCommitTransactionServiceTests {
+
+  @Mock
+  private TransactionService transactionService;
+
+  private GroupCommitTransactionService groupCommit;
+
+  @Before
+  public void setUp() {
+    groupCommit = new GroupCommitTransactionService(transactionService, 10,
+        50, TimeUnit.MILLISECONDS);
+  }
+
+  @After
+  public void after() {
+    groupCommit.close();
+  }
+
+  @Test
+  public void transfersCommittedTogetherTest() {
+    given(transactionService.transferAll(any(), eq(false))).willAnswer(invocation -> {
+      List<TransferOperation> operations = invocation.getArgument(0);
+      List<TransferResult> results = new ArrayList<>();
+      for (int i = 0; i < operations.size(); i++) {
+        results.add(TransferResult.builder().index(i).id((long) i)
+            .status(TransferResult.Status.COMPLETED).build());
+      }
+      return results;
+    });
+
+    List<CompletableFuture<TransferResult>> futures = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      futures.add(groupCommit.submit(operation("USD" + i)));
+    }
+    futures.forEach(CompletableFuture::join);
+
+    Assert.assertEquals(25, groupCommit.getTransfers());
+    Assert.assertTrue("Transfers must share commits", groupCommit.getBatches() < 25);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void failedTransferTest() {
+    given(transactionService.transferAll(any(), anyBoolean())).willAnswer(invocation ->
+        Collections.singletonList(TransferResult.builder().index(0)
+            .status(TransferResult.Status.FAILED).message("There is no enough money").build()));
+
+    groupCommit.transfer(operation("USD123"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void batchErrorTest() {
+    given(transactionService.transferAll(any(), anyBoolean()))
+        .willThrow(new IllegalStateException("Timed out waiting for account lock"));
+
+    groupCommit.transfer(operation("USD123"));
+  }
+
+  @Test
+  public void committerSurvivesErrorsTest() {
+    given(transactionService.transferAll(any(), anyBoolean()))
+        .willThrow(new StackOverflowError())
+        .willReturn(Collections.emptyList())
+        .willReturn(Collections.singletonList(TransferResult.builder().index(0).id(1L)
+            .status(TransferResult.Status.COMPLETED).build()));
+
+    try {
+      groupCommit.transfer(operation("USD123"));
+      Assert.fail("Error must fail the transfer");
+    } catch (CompletionException e) {
+      Assert.assertTrue(e.getCause() instanceof StackOverflowError);
+    }
+    try {
+      groupCommit.transfer(operation("USD123"));
+      Assert.fail("Missing result must fail the transfer");
+    } catch (IllegalStateException e) {
+      // The committer is still running
+    }
+    groupCommit.transfer(operation("USD123"));
+
+    Assert.assertEquals(1, groupCommit.getTransfers());
+  }
+
+  //Every transfer queued while closing is committed or failed, none is left waiting
+  @Test
+  public void closeWhileSubmittingTest() throws Exception {
+    given(transactionService.transferAll(any(), anyBoolean())).willAnswer(invocation -> {
+      List<TransferOperation> operations = invocation.getArgument(0);
+      List<TransferResult> results = new ArrayList<>();
+      for (int i = 0; i < operations.size(); i++) {
+        results.add(TransferResult.builder().index(i)
+            .status(TransferResult.Status.COMPLETED).build());
+      }
+      return results;
+    });
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<List<CompletableFuture<TransferResult>>>> submitters = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      submitters.add(executor.submit(() -> {
+        List<CompletableFuture<TransferResult>> futures = new ArrayList<>();
+        try {
+          while (true) {
+            futures.add(groupCommit.submit(operation("USD123")));
+          }
+        } catch (IllegalStateException e) {
+          return futures;
+        }
+      }));
+    }
+    Thread.sleep(50);
+    groupCommit.close();
+
+    for (Future<List<CompletableFuture<TransferResult>>> submitter : submitters) {
+      for (CompletableFuture<TransferResult> future : submitter.get(5, TimeUnit.SECONDS)) {
+        Assert.assertTrue(future.isDone());
+      }
+    }
+    executor.shutdown();
+  }
+
+  @Test
+  public void delegateTest() {
+    given(transactionService.balance("USD123")).willReturn(Money.parse("10"));
+
+    Assert.assertEquals(Money.parse("10"), groupCommit.balance("USD123"));
+    verify(transactionService).balance("USD123");
+  }
+
+  private TransferOperation operation(String from) {
+    return TransferOperation.builder().accountFrom(from).accountTo("USD999")
+        .amount(Money.parse("1")).build();
+  }
+
+}
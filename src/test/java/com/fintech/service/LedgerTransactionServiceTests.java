@@ -0,0 +1,551 @@
+package com.fintech.service;
+
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+import com.fintech.dao.DbConnectionManager;
+import com.fintech.dao.OperationDao;
+import com.fintech.dao.TransactionManager;
+import com.fintech.dao.TransferDao;
+import com.fintech.dao.impl.DbLedgerCheckpointDao;
+import com.fintech.dao.impl.DbOperationDao;
+import com.fintech.dao.impl.DbTransactionManager;
+import com.fintech.dao.impl.DbTransferDao;
+import com.fintech.ledger.Journal;
+import com.fintech.ledger.LedgerEngine;
+import com.fintech.ledger.LedgerEntry;
+import com.fintech.models.Account;
+import com.fintech.models.Money;
+import com.fintech.models.TransferOperation;
+import com.fintech.models.TransferResult;
+import com.fintech.models.dao.OperationDaoEntity;
+import com.fintech.models.dao.TransferDaoEntity;
+import com.fintech.services.AccountService;
+import com.fintech.services.impl.LedgerTransactionService;
+import com.fintech.testutils.DbUtils;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.hamcrest.MatcherAssert;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * The scenarios of {@link TransactionServiceTests} run against the ledger engine, with
+ * a real database behind it since the ledger owns the balances.
+ */
+@RunWith(JUnit4.class)
+public class LedgerTransactionServiceTests {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final Map<String, Account> accounts = new HashMap<>();
+  private final OperationDao<OperationDaoEntity, Long> operationDao = new DbOperationDao();
+  private final TransferDao<TransferDaoEntity, Long> transferDao = new DbTransferDao();
+
+  private AccountService accountService;
+  private Path directory;
+  private LedgerEngine ledger;
+  private LedgerTransactionService transactionService;
+
+  @BeforeClass
+  public static void initClass() {
+    DbUtils.initDb();
+  }
+
+  @AfterClass
+  public static void afterClass() {
+    DbUtils.close();
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    accountService = mock(AccountService.class);
+    given(accountService.exists(anyString()))
+        .willAnswer(invocation -> accounts.containsKey(invocation.<String>getArgument(0)));
+    given(accountService.getByNumber(anyString()))
+        .willAnswer(invocation -> accounts.get(invocation.<String>getArgument(0)));
+    givenAccount("USD123", "USD");
+    givenAccount("USD456", "USD");
+    givenAccount("USD789", "USD");
+    givenAccount("EUR123", "EUR");
+
+    directory = folder.newFolder().toPath();
+    open();
+  }
+
+  @After
+  public void after() throws SQLException {
+    transactionService.close();
+
+    try (Connection connection = DbConnectionManager.getConnection()) {
+      connection.createStatement().executeUpdate("DELETE FROM TRANSFER_OPERATIONS");
+      connection.createStatement().executeUpdate("DELETE FROM TRANSFERS");
+      connection.createStatement().executeUpdate("DELETE FROM OPERATIONS");
+      connection.createStatement().executeUpdate("DELETE FROM ACCOUNT_BALANCES");
+      connection.createStatement().executeUpdate("DELETE FROM LEDGER_CHECKPOINTS");
+    }
+  }
+
+  //Cash in money
+  @Test
+  public void cashInSuccessTest() {
+    transactionService.cashIn("USD123", Money.parse("100"));
+
+    assertBalance("USD123", 100);
+    transactionService.close();
+    assertPersistedBalance("USD123", 100);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void cashInExceptionTest() {
+    transactionService.cashIn("USD999", Money.parse("50"));
+  }
+
+  //Withdraw money
+  @Test
+  public void withdrawSuccessTest() {
+    transactionService.cashIn("USD123", Money.parse("100"));
+    transactionService.withdraw("USD123", Money.parse("40"));
+
+    assertBalance("USD123", 60);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void withdrawExceptionTest() {
+    transactionService.withdraw("USD999", Money.parse("50"));
+  }
+
+  @Test
+  public void withdrawLowBalanceExceptionTest() {
+    transactionService.cashIn("USD123", Money.parse("10"));
+
+    try {
+      transactionService.withdraw("USD123", Money.parse("50"));
+      Assert.fail("Withdraw must fail");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("There is no enough money", e.getMessage());
+    }
+    assertBalance("USD123", 10);
+  }
+
+  //Reject an amount the balance can't hold, the partition goes on
+  @Test
+  public void cashInOverflowTest() {
+    Money max = Money.of(Long.MAX_VALUE);
+    transactionService.cashIn("USD123", max);
+
+    try {
+      transactionService.cashIn("USD123", max);
+      Assert.fail("Cash in must fail");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("Wrong amount " + max, e.getMessage());
+    }
+    transactionService.withdraw("USD123", max);
+    assertBalance("USD123", 0);
+  }
+
+  //A balance that can't be loaded fails only its entry, the partition goes on
+  @Test
+  public void balanceLoadFailureTest() {
+    transactionService.close();
+    OperationDao<OperationDaoEntity, Long> failing = spy(operationDao);
+    willThrow(new IllegalStateException("Database is down"))
+        .given(failing).accountBalance("USD456");
+    ledger = new LedgerEngine(directory, 1, 64, failing, transferDao,
+        new DbLedgerCheckpointDao(), new DbTransactionManager());
+    transactionService = new LedgerTransactionService(ledger, transferDao, accountService);
+
+    try {
+      transactionService.cashIn("USD456", Money.parse("100"));
+      Assert.fail("Cash in must fail");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("Database is down", e.getMessage());
+    }
+    transactionService.cashIn("USD123", Money.parse("100"));
+    assertBalance("USD123", 100);
+  }
+
+  //Transfer money between accounts
+  @Test
+  public void transferMoneySuccessTest() {
+    transactionService.cashIn("USD123", Money.parse("100"));
+    transactionService.transfer(transfer("USD123", "USD456", 30));
+    transactionService.transfer(transfer("USD456", "USD789", 10));
+
+    assertBalance("USD123", 70);
+    assertBalance("USD456", 20);
+    assertBalance("USD789", 10);
+
+    transactionService.close();
+    Assert.assertEquals(2, transferDao.findRepresentations(10, 0).size());
+    assertPersistedBalance("USD123", 70);
+    assertPersistedBalance("USD456", 20);
+    assertPersistedBalance("USD789", 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void transferNoAccountFromExceptionTest() {
+    transactionService.transfer(transfer("USD999", "USD456", 50));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void transferNoAccountToExceptionTest() {
+    transactionService.transfer(transfer("USD123", "USD999", 50));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void transferWrongAmountExceptionTest() {
+    transactionService.transfer(transfer("USD123", "USD456", -50));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void transferNoMoneyExceptionTest() {
+    transactionService.transfer(transfer("USD123", "USD456", 50));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void transferMismatchCurrenciesExceptionTest() {
+    transactionService.cashIn("USD123", Money.parse("100"));
+    transactionService.transfer(transfer("USD123", "EUR123", 50));
+  }
+
+  //Transfer a batch, skipping the transfers that fail
+  @Test
+  public void transferAllBestEffortSuccessTest() {
+    transactionService.cashIn("USD123", Money.parse("100"));
+
+    List<TransferResult> results = transactionService.transferAll(batch(), false);
+
+    MatcherAssert.assertThat(results.get(0).getStatus(), is(TransferResult.Status.COMPLETED));
+    MatcherAssert.assertThat(results.get(1).getStatus(), is(TransferResult.Status.FAILED));
+    MatcherAssert.assertThat(results.get(1).getMessage(), is("There is no enough money"));
+    MatcherAssert.assertThat(results.get(2).getStatus(), is(TransferResult.Status.COMPLETED));
+    MatcherAssert.assertThat(results.get(3).getStatus(), is(TransferResult.Status.FAILED));
+    MatcherAssert.assertThat(results.get(3).getMessage(), is("Account 99999 doesn't exist"));
+    assertBalance("USD123", 40);
+    assertBalance("USD456", 50);
+    assertBalance("USD789", 10);
+  }
+
+  @Test
+  public void transferOverflowTest() {
+    transactionService.cashIn("USD123", Money.parse("100"));
+    transactionService.cashIn("USD456", Money.of(Long.MAX_VALUE));
+
+    try {
+      transactionService.transfer(transfer("USD123", "USD456", 1));
+      Assert.fail("Transfer must fail");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("Wrong amount " + Money.of(100), e.getMessage());
+    }
+    List<TransferResult> results = transactionService.transferAll(
+        Arrays.asList(transfer("USD123", "USD456", 1), transfer("USD123", "USD789", 1)), false);
+
+    MatcherAssert.assertThat(results.get(0).getStatus(), is(TransferResult.Status.FAILED));
+    MatcherAssert.assertThat(results.get(0).getMessage(), is("Wrong amount " + Money.of(100)));
+    MatcherAssert.assertThat(results.get(1).getStatus(), is(TransferResult.Status.COMPLETED));
+    assertBalance("USD123", 99);
+  }
+
+  //Credits racing from other partitions are reserved, the ones that don't fit are rejected
+  @Test
+  public void concurrentTransferOverflowTest() throws Exception {
+    transactionService.cashIn("USD456", Money.of(Long.MAX_VALUE - 1000));
+    List<String> senders = new ArrayList<>();
+    for (int i = 0; i < 16; i++) {
+      givenAccount("USD" + (1000 + i), "USD");
+      senders.add("USD" + (1000 + i));
+      transactionService.cashIn("USD" + (1000 + i), Money.parse("1"));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(senders.size());
+    List<Future<String>> results = new ArrayList<>();
+    for (String sender : senders) {
+      results.add(executor.submit(() -> {
+        try {
+          transactionService.transfer(transfer(sender, "USD456", 1));
+          return null;
+        } catch (IllegalArgumentException e) {
+          return e.getMessage();
+        }
+      }));
+    }
+    int completed = 0;
+    for (Future<String> result : results) {
+      if (Objects.isNull(result.get())) {
+        completed++;
+      } else {
+        Assert.assertEquals("Wrong amount " + Money.of(100), result.get());
+      }
+    }
+    executor.shutdown();
+
+    Assert.assertEquals(10, completed);
+    Assert.assertEquals(Money.of(Long.MAX_VALUE), transactionService.balance("USD456"));
+    transactionService.cashIn("USD123", Money.parse("1"));
+    assertBalance("USD123", 1);
+  }
+
+  //Reject the whole batch when one transfer fails
+  @Test
+  public void transferAllAtomicFailedTest() {
+    transactionService.cashIn("USD123", Money.parse("100"));
+
+    List<TransferResult> results = transactionService.transferAll(batch(), true);
+
+    MatcherAssert.assertThat(results.get(0).getStatus(), is(TransferResult.Status.ROLLED_BACK));
+    MatcherAssert.assertThat(results.get(1).getStatus(), is(TransferResult.Status.FAILED));
+    MatcherAssert.assertThat(results.get(2).getStatus(), is(TransferResult.Status.ROLLED_BACK));
+    MatcherAssert.assertThat(results.get(3).getStatus(), is(TransferResult.Status.FAILED));
+    assertBalance("USD123", 100);
+    assertBalance("USD456", 0);
+  }
+
+  //Delete transfer by id
+  @Test
+  public void deleteTransferByIdSuccessTest() throws InterruptedException {
+    transactionService.cashIn("USD123", Money.parse("100"));
+    transactionService.transfer(transfer("USD123", "USD456", 30));
+    awaitProjection();
+
+    transactionService.delete(transactionService.findAll(10, 0).get(0).getId());
+
+    assertBalance("USD123", 100);
+    assertBalance("USD456", 0);
+    transactionService.close();
+    Assert.assertTrue(transferDao.findRepresentations(10, 0).isEmpty());
+    assertPersistedBalance("USD123", 100);
+    assertPersistedBalance("USD456", 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void deleteTransferByIdExceptionTest() {
+    transactionService.delete(1L);
+  }
+
+  @Test
+  public void balanceSuccessTest() {
+    OperationDaoEntity entity = new OperationDaoEntity();
+    entity.setAccountNumber("USD123");
+    entity.setDebit(Money.parse("100"));
+    operationDao.insert(entity);
+
+    assertBalance("USD123", 100);
+    transactionService.cashIn("USD123", Money.parse("1"));
+    assertBalance("USD123", 101);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void balanceExceptionTest() {
+    transactionService.balance("USD999");
+  }
+
+  //Balances survive a restart
+  @Test
+  public void restartTest() {
+    transactionService.cashIn("USD123", Money.parse("100"));
+    transactionService.transfer(transfer("USD123", "USD456", 30));
+    transactionService.withdraw("USD456", Money.parse("5"));
+
+    transactionService.close();
+    open();
+
+    assertBalance("USD123", 70);
+    assertBalance("USD456", 25);
+  }
+
+  //Entries journaled but never projected are applied and projected on start
+  @Test
+  public void journalReplayTest() {
+    transactionService.cashIn("USD123", Money.parse("100"));
+    transactionService.close();
+
+    try (Journal journal = new Journal(directory.resolve("partition-0.journal"))) {
+      journal.replay(0, entry -> { });
+      journal.append(LedgerEntry.transfer("USD123", "USD456", Money.parse("40"))
+          .createdAt(LocalDateTime.now()));
+      journal.flush();
+    }
+    open();
+
+    assertBalance("USD123", 60);
+    assertBalance("USD456", 40);
+    transactionService.close();
+    assertPersistedBalance("USD123", 60);
+    assertPersistedBalance("USD456", 40);
+    Assert.assertEquals(1, transferDao.findRepresentations(10, 0).size());
+  }
+
+  //History includes the entries the projector hasn't written yet
+  @Test
+  public void balanceAtUnprojectedTest() throws InterruptedException {
+    transactionService.close();
+    AtomicBoolean down = new AtomicBoolean(true);
+    TransactionManager transactionManager = new DbTransactionManager();
+    ledger = new LedgerEngine(directory, 4, 64, operationDao, transferDao,
+        new DbLedgerCheckpointDao(), new TransactionManager() {
+          @Override
+          public <T> T inTransaction(Supplier<T> work) {
+            if (down.get()) {
+              throw new IllegalStateException("Database is down");
+            }
+            return transactionManager.inTransaction(work);
+          }
+        });
+    transactionService = new LedgerTransactionService(ledger, transferDao, accountService);
+
+    final LocalDateTime before = LocalDateTime.now().minusNanos(1_000_000);
+    transactionService.cashIn("USD123", Money.parse("100"));
+    transactionService.transfer(transfer("USD123", "USD456", 30));
+    final LocalDateTime after = LocalDateTime.now();
+
+    Assert.assertEquals(0, ledger.getProjected());
+    Assert.assertEquals(Money.ZERO, transactionService.balanceAt("USD123", before));
+    Assert.assertEquals(Money.of(7000), transactionService.balanceAt("USD123", after));
+    Assert.assertEquals(Money.of(3000), transactionService.balanceAt("USD456", after));
+
+    down.set(false);
+    // Closing stops the projector if its last attempt failed, the entries wait for a restart
+    awaitProjection();
+    transactionService.close();
+    Assert.assertEquals(Money.of(7000), operationDao.balanceAt("USD123", after));
+    Assert.assertEquals(Money.of(3000), operationDao.balanceAt("USD456", after));
+  }
+
+  //Rows projected after a restart are created when their entries were acknowledged
+  @Test
+  public void replayedCreatedTest() throws SQLException, InterruptedException {
+    transactionService.cashIn("USD123", Money.parse("100"));
+    final LocalDateTime before = LocalDateTime.now();
+    transactionService.transfer(transfer("USD123", "USD456", 30));
+    final LocalDateTime acknowledged = LocalDateTime.now();
+    transactionService.close();
+
+    // Projected again from the start of the journals
+    after();
+    Thread.sleep(50);
+    open();
+    transactionService.close();
+
+    LocalDateTime created = transferDao.findRepresentations(10, 0).get(0).getCreated();
+    Assert.assertFalse(created.isBefore(before));
+    Assert.assertFalse(created.isAfter(acknowledged));
+    assertPersistedBalance("USD456", 30);
+  }
+
+  //Concurrent transfers never lose money or overdraw an account
+  @Test
+  public void concurrentTransfersTest() throws InterruptedException {
+    List<String> numbers = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      numbers.add("USD" + i);
+      givenAccount("USD" + i, "USD");
+      transactionService.cashIn("USD" + i, Money.parse("100"));
+    }
+
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Random random = new Random(t);
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 300; i++) {
+          String from = numbers.get(random.nextInt(numbers.size()));
+          String to = numbers.get(random.nextInt(numbers.size()));
+          try {
+            transactionService.transfer(transfer(from, to, 1 + random.nextInt(30)));
+          } catch (IllegalArgumentException e) {
+            Assert.assertEquals("There is no enough money", e.getMessage());
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Money total = Money.ZERO;
+    for (String number : numbers) {
+      Money balance = transactionService.balance(number);
+      Assert.assertTrue(balance.signum() >= 0);
+      total = total.plus(balance);
+    }
+    Assert.assertEquals(0, total.compareTo(Money.parse("800")));
+
+    Map<String, Money> balances = new HashMap<>();
+    numbers.forEach(number -> balances.put(number, transactionService.balance(number)));
+    transactionService.close();
+    numbers.forEach(number -> Assert.assertEquals(0,
+        operationDao.accountBalance(number).compareTo(balances.get(number))));
+  }
+
+  private void open() {
+    ledger = new LedgerEngine(directory, 4, 64, operationDao, transferDao,
+        new DbLedgerCheckpointDao(), new DbTransactionManager());
+    transactionService = new LedgerTransactionService(ledger, transferDao, accountService);
+  }
+
+  private void givenAccount(String number, String currency) {
+    accounts.put(number, Account.builder().number(number).currency(currency).build());
+  }
+
+  private void awaitProjection() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (ledger.getProjected() < ledger.getJournaled()
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  private void assertBalance(String account, long expected) {
+    Assert.assertEquals(0,
+        transactionService.balance(account).compareTo(Money.of(expected * 100L)));
+  }
+
+  private void assertPersistedBalance(String account, long expected) {
+    Assert.assertEquals(0,
+        operationDao.accountBalance(account).compareTo(Money.of(expected * 100L)));
+  }
+
+  private List<TransferOperation> batch() {
+    return Arrays.asList(
+        transfer("USD123", "USD456", 60),
+        transfer("USD123", "USD456", 60),
+        transfer("USD456", "USD789", 10),
+        transfer("USD123", "99999", 1));
+  }
+
+  private TransferOperation transfer(String from, String to, long amount) {
+    return TransferOperation.builder()
+        .accountFrom(from).accountTo(to).amount(Money.of(amount * 100L)).build();
+  }
+
+}
@@ -14,18 +14,21 @@ import static org.mockito.Mockito.verify;
 import com.fintech.dao.OperationDao;
 import com.fintech.dao.TransferDao;
 import com.fintech.models.Account;
+import com.fintech.models.Money;
 import com.fintech.models.TransferOperation;
 import com.fintech.models.TransferRepresentation;
+import com.fintech.models.TransferResult;
 import com.fintech.models.dao.OperationDaoEntity;
 import com.fintech.models.dao.TransferDaoEntity;
 import com.fintech.services.AccountService;
 import com.fintech.services.impl.DefaultTransactionService;
-import java.math.BigDecimal;
+import com.fintech.testutils.DirectTransactionManager;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.LongStream;
 import org.hamcrest.MatcherAssert;
@@ -48,6 +51,8 @@ public class TransactionServiceTests {
   private OperationDao<OperationDaoEntity, Long> operationDao;
   @Mock
   private TransferDao<TransferDaoEntity, Long> transferDao;
+  @Spy
+  private DirectTransactionManager transactionManager;
   @InjectMocks
   @Spy
   private DefaultTransactionService transactionService
@@ -57,7 +62,7 @@ public class TransactionServiceTests {
   @Test
   public void cashInSuccessTest() {
     String account = "123456789";
-    BigDecimal amount = BigDecimal.valueOf(100);
+    Money amount = Money.parse("100");
 
     OperationDaoEntity operationDaoEntity = new OperationDaoEntity();
     operationDaoEntity.setAccountNumber(account);
@@ -82,7 +87,7 @@ public class TransactionServiceTests {
   @Test(expected = IllegalArgumentException.class)
   public void cashInExceptionTest() {
     String account = "123456788";
-    BigDecimal amount = BigDecimal.valueOf(50);
+    Money amount = Money.parse("50");
     given(accountService.exists(account)).willReturn(false);
 
     transactionService.cashIn(account, amount);
@@ -94,23 +99,22 @@ public class TransactionServiceTests {
   @Test
   public void withdrawSuccessTest() {
     String account = "123456789";
-    BigDecimal amount = BigDecimal.valueOf(50);
+    Money amount = Money.parse("50");
 
     OperationDaoEntity operationDaoEntity = new OperationDaoEntity();
     operationDaoEntity.setAccountNumber(account);
     operationDaoEntity.setCredit(amount);
 
     given(accountService.exists(account)).willReturn(true);
-    given(operationDao.insert(any())).willReturn(operationDaoEntity);
-    doReturn(true).when(transactionService).isMoneyEnough(eq(account), eq(amount));
+    given(operationDao.insertIfCovered(any())).willReturn(operationDaoEntity);
 
     transactionService.withdraw(account, amount);
     verify(accountService).exists(any());
 
     ArgumentCaptor<OperationDaoEntity> argumentCaptor
         = ArgumentCaptor.forClass(OperationDaoEntity.class);
-    verify(operationDao).insert(argumentCaptor.capture());
-    verify(transactionService).isMoneyEnough(any(), any());
+    verify(operationDao).insertIfCovered(argumentCaptor.capture());
+    verify(operationDao, never()).insert(any());
 
     OperationDaoEntity arg = argumentCaptor.getValue();
     MatcherAssert.assertThat("Check account", arg.getAccountNumber(), is(account));
@@ -121,28 +125,26 @@ public class TransactionServiceTests {
   @Test(expected = IllegalArgumentException.class)
   public void withdrawExceptionTest() {
     String account = "123456788";
-    BigDecimal amount = BigDecimal.valueOf(50);
+    Money amount = Money.parse("50");
 
     given(accountService.exists(account)).willReturn(false);
 
     transactionService.withdraw(account, amount);
     verify(accountService).exists(any());
-    verify(transactionService, never()).isMoneyEnough(any(), any());
-    verify(operationDao, never()).insert(any());
+    verify(operationDao, never()).insertIfCovered(any());
   }
 
   @Test(expected = IllegalArgumentException.class)
   public void withdrawLowBalanceExceptionTest() {
     String account = "123456788";
-    BigDecimal amount = BigDecimal.valueOf(50);
+    Money amount = Money.parse("50");
 
     given(accountService.exists(account)).willReturn(true);
-    doReturn(false).when(transactionService).isMoneyEnough(eq(account), eq(amount));
+    given(operationDao.insertIfCovered(any())).willReturn(null);
 
     transactionService.withdraw(account, amount);
     verify(accountService).exists(any());
-    verify(transactionService).isMoneyEnough(any(), any());
-    verify(operationDao, never()).insert(any());
+    verify(operationDao).insertIfCovered(any());
   }
 
   //Transfer money between accounts
@@ -150,7 +152,7 @@ public class TransactionServiceTests {
   public void transferMoneySuccessTest() {
     String from = "12345";
     String to = "23456";
-    BigDecimal amount = BigDecimal.valueOf(50);
+    Money amount = Money.parse("50");
 
     TransferDaoEntity entity = new TransferDaoEntity();
 
@@ -159,11 +161,11 @@ public class TransactionServiceTests {
 
     given(accountService.exists(any())).willReturn(true);
     given(accountService.getByNumber(any())).willReturn(accFrom).willReturn(accTo);
-    doReturn(true).when(transactionService).isMoneyEnough(eq(from), eq(amount));
 
     OperationDaoEntity operationFrom = createOperation(1L, from, null, amount);
     OperationDaoEntity operationTo = createOperation(2L, to, amount, null);
-    given(operationDao.insert(any())).willReturn(operationFrom).willReturn(operationTo);
+    given(operationDao.insertIfCovered(any())).willReturn(operationFrom);
+    given(operationDao.insert(any())).willReturn(operationTo);
 
     given(transferDao.insert(any())).willReturn(entity);
 
@@ -173,9 +175,10 @@ public class TransactionServiceTests {
     transactionService.transfer(operation);
 
     verify(accountService, times(2)).exists(any());
-    verify(transactionService).isMoneyEnough(any(), any());
     verify(accountService, times(2)).getByNumber(any());
-    verify(operationDao, times(2)).insert(any());
+    verify(operationDao).insertIfCovered(any());
+    verify(operationDao).insert(any());
+    verify(transactionManager).inTransaction(any());
 
     ArgumentCaptor<TransferDaoEntity> argumentCaptor
         = ArgumentCaptor.forClass(TransferDaoEntity.class);
@@ -189,7 +192,7 @@ public class TransactionServiceTests {
   public void transferNoAccountFromExceptionTest() {
     String from = "12345";
     String to = "23456";
-    BigDecimal amount = BigDecimal.valueOf(50);
+    Money amount = Money.parse("50");
 
     given(accountService.exists(eq(from))).willReturn(false);
 
@@ -199,7 +202,7 @@ public class TransactionServiceTests {
     transactionService.transfer(operation);
 
     verify(accountService).exists(any());
-    verify(transactionService, never()).isMoneyEnough(any(), any());
+    verify(operationDao, never()).insertIfCovered(any());
     verify(accountService, never()).getByNumber(any());
     verify(operationDao, never()).insert(any());
     verify(transferDao, never()).insert(any());
@@ -209,7 +212,7 @@ public class TransactionServiceTests {
   public void transferNoAccountToExceptionTest() {
     String from = "12345";
     String to = "23456";
-    BigDecimal amount = BigDecimal.valueOf(50);
+    Money amount = Money.parse("50");
 
     given(accountService.exists(eq(from))).willReturn(true);
     given(accountService.exists(eq(to))).willReturn(false);
@@ -220,7 +223,7 @@ public class TransactionServiceTests {
     transactionService.transfer(operation);
 
     verify(accountService, times(2)).exists(any());
-    verify(transactionService, never()).isMoneyEnough(any(), any());
+    verify(operationDao, never()).insertIfCovered(any());
     verify(accountService, never()).getByNumber(any());
     verify(operationDao, never()).insert(any());
     verify(transferDao, never()).insert(any());
@@ -230,7 +233,7 @@ public class TransactionServiceTests {
   public void transferWrongAmountExceptionTest() {
     String from = "12345";
     String to = "23456";
-    BigDecimal amount = BigDecimal.valueOf(-50);
+    Money amount = Money.parse("-50");
 
     given(accountService.exists(any())).willReturn(true);
 
@@ -240,7 +243,7 @@ public class TransactionServiceTests {
     transactionService.transfer(operation);
 
     verify(accountService, times(2)).exists(any());
-    verify(transactionService, never()).isMoneyEnough(any(), any());
+    verify(operationDao, never()).insertIfCovered(any());
     verify(accountService, never()).getByNumber(any());
     verify(operationDao, never()).insert(any());
     verify(transferDao, never()).insert(any());
@@ -250,10 +253,10 @@ public class TransactionServiceTests {
   public void transferNoMoneyExceptionTest() {
     String from = "12345";
     String to = "23456";
-    BigDecimal amount = BigDecimal.valueOf(50);
+    Money amount = Money.parse("50");
 
     given(accountService.exists(any())).willReturn(true);
-    doReturn(false).when(transactionService).isMoneyEnough(eq(from), eq(amount));
+    given(operationDao.insertIfCovered(any())).willReturn(null);
     Account accFrom = Account.builder().number(from).currency("USD").build();
     Account accTo = Account.builder().number(to).currency("USD").build();
     given(accountService.getByNumber(any())).willReturn(accFrom).willReturn(accTo);
@@ -264,7 +267,7 @@ public class TransactionServiceTests {
     transactionService.transfer(operation);
 
     verify(accountService, times(2)).exists(any());
-    verify(transactionService).isMoneyEnough(any(), any());
+    verify(operationDao).insertIfCovered(any());
     verify(accountService, never()).getByNumber(any());
     verify(operationDao, never()).insert(any());
     verify(transferDao, never()).insert(any());
@@ -274,7 +277,7 @@ public class TransactionServiceTests {
   public void transferMismatchCurrenciesExceptionTest() {
     String from = "12345";
     String to = "23456";
-    BigDecimal amount = BigDecimal.valueOf(50);
+    Money amount = Money.parse("50");
 
     given(accountService.exists(any())).willReturn(true);
     Account accFrom = Account.builder().number(from).currency("USD").build();
@@ -288,11 +291,83 @@ public class TransactionServiceTests {
 
     verify(accountService).exists(any());
     verify(accountService, times(2)).getByNumber(any());
-    verify(transactionService, never()).isMoneyEnough(any(), any());
+    verify(operationDao, never()).insertIfCovered(any());
     verify(operationDao, never()).insert(any());
     verify(transferDao, never()).insert(any());
   }
 
+  //Transfer a batch, skipping the transfers that fail
+  @Test
+  public void transferAllBestEffortSuccessTest() {
+    givenBatchAccounts();
+    given(operationDao.insertAll(any())).willReturn(Arrays.asList(1L, 2L, 3L, 4L));
+    given(transferDao.insertAll(any())).willReturn(Arrays.asList(10L, 11L));
+
+    List<TransferResult> results = transactionService.transferAll(batch(), false);
+
+    MatcherAssert.assertThat(results, hasSize(4));
+    MatcherAssert.assertThat(results.get(0).getStatus(), is(TransferResult.Status.COMPLETED));
+    MatcherAssert.assertThat(results.get(0).getId(), is(10L));
+    MatcherAssert.assertThat(results.get(1).getStatus(), is(TransferResult.Status.FAILED));
+    MatcherAssert.assertThat(results.get(1).getMessage(), is("There is no enough money"));
+    MatcherAssert.assertThat(results.get(2).getStatus(), is(TransferResult.Status.COMPLETED));
+    MatcherAssert.assertThat(results.get(2).getId(), is(11L));
+    MatcherAssert.assertThat(results.get(3).getStatus(), is(TransferResult.Status.FAILED));
+    MatcherAssert.assertThat(results.get(3).getMessage(), is("Account 99999 doesn't exist"));
+
+    ArgumentCaptor<List<OperationDaoEntity>> operations = ArgumentCaptor.forClass(List.class);
+    verify(operationDao).insertAll(operations.capture());
+    MatcherAssert.assertThat(operations.getValue(), hasSize(4));
+    verify(operationDao).lockAccountBalances(any());
+    verify(operationDao, never()).insert(any());
+    verify(transactionManager).inTransaction(any());
+  }
+
+  @Test
+  public void transferAllOverflowTest() {
+    givenBatchAccounts();
+    Map<String, Money> balances = new HashMap<>();
+    balances.put("12345", Money.parse("100"));
+    balances.put("23456", Money.of(Long.MAX_VALUE));
+    given(operationDao.lockAccountBalances(any())).willReturn(balances);
+
+    List<TransferResult> results = transactionService.transferAll(Collections.singletonList(
+        TransferOperation.builder().accountFrom("12345").accountTo("23456")
+            .amount(Money.parse("1")).build()), false);
+
+    MatcherAssert.assertThat(results.get(0).getStatus(), is(TransferResult.Status.FAILED));
+    MatcherAssert.assertThat(results.get(0).getMessage(), is("Wrong amount 1.0"));
+  }
+
+  //Reject the whole batch when one transfer fails
+  @Test
+  public void transferAllAtomicFailedTest() {
+    givenBatchAccounts();
+
+    List<TransferResult> results = transactionService.transferAll(batch(), true);
+
+    MatcherAssert.assertThat(results.get(0).getStatus(), is(TransferResult.Status.ROLLED_BACK));
+    MatcherAssert.assertThat(results.get(1).getStatus(), is(TransferResult.Status.FAILED));
+    MatcherAssert.assertThat(results.get(2).getStatus(), is(TransferResult.Status.ROLLED_BACK));
+    MatcherAssert.assertThat(results.get(3).getStatus(), is(TransferResult.Status.FAILED));
+    verify(operationDao, never()).insertAll(any());
+    verify(transferDao, never()).insertAll(any());
+  }
+
+  //Get transfer by id
+  @Test
+  public void getTransferByIdSuccessTest() {
+    TransferRepresentation transfer = TransferRepresentation.builder().id(1L).build();
+    given(transferDao.findRepresentation(1L)).willReturn(transfer);
+
+    Assert.assertSame(transfer, transactionService.getById(1L));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void getTransferByIdExceptionTest() {
+    transactionService.getById(1L);
+  }
+
   //Delete transfer by id
   @Test
   public void deleteTransferByIdSuccessTest() {
@@ -323,7 +398,7 @@ public class TransactionServiceTests {
   @Test
   public void balanceSuccessTest() {
     String account = "12345";
-    BigDecimal amount = BigDecimal.valueOf(100);
+    Money amount = Money.parse("100");
 
     given(operationDao.accountBalance(eq(account))).willReturn(amount);
     given(accountService.exists(eq(account))).willReturn(true);
@@ -349,28 +424,6 @@ public class TransactionServiceTests {
     verify(accountService).exists(any());
   }
 
-  @Test
-  public void isMoneyEnoughTrueTest() {
-    String account = "12345";
-    BigDecimal amount = new BigDecimal(50);
-
-    doReturn(BigDecimal.valueOf(100)).when(operationDao).accountBalance(account);
-
-    Assert.assertTrue(transactionService.isMoneyEnough(account, amount));
-    verify(operationDao).accountBalance(any());
-  }
-
-  @Test
-  public void isMoneyEnoughFalseTest() {
-    String account = "12345";
-    BigDecimal amount = new BigDecimal(50);
-
-    doReturn(BigDecimal.valueOf(40)).when(operationDao).accountBalance(account);
-
-    Assert.assertFalse(transactionService.isMoneyEnough(account, amount));
-    verify(operationDao).accountBalance(any());
-  }
-
   @Test
   public void valueOf_TransferRepresentationTest() {
     List<Long> operationIds = Collections.unmodifiableList(Arrays.asList(1L, 2L));
@@ -382,7 +435,7 @@ public class TransactionServiceTests {
     transferDaoEntity.setCreated(dateTime);
     transferDaoEntity.setOperations(operationIds);
 
-    BigDecimal amount = BigDecimal.valueOf(100);
+    Money amount = Money.parse("100");
 
     String accountFrom = "12345";
     OperationDaoEntity firstOperation = new OperationDaoEntity();
@@ -410,20 +463,23 @@ public class TransactionServiceTests {
 
   @Test
   public void findAllSuccessTest() {
-    List<TransferDaoEntity> transfers = transferList();
+    List<TransferRepresentation> transfers = LongStream.rangeClosed(0, 9).boxed()
+        .map(id -> TransferRepresentation.builder().id(id).build())
+        .collect(Collectors.toList());
 
     int limit = 10;
     int offset = 0;
 
-    doReturn(transfers).when(transferDao).findAll(eq(limit), eq(offset));
-    doReturn(TransferRepresentation.builder().build()).when(transactionService).valueOf(any());
+    doReturn(transfers).when(transferDao).findRepresentations(eq(limit), eq(offset));
 
     MatcherAssert.assertThat("Check user list",
         transactionService.findAll(limit, offset), Matchers.hasSize(10));
+    verify(transferDao, never()).findAll(any(), any());
+    verify(operationDao, never()).getById(any());
   }
 
   private OperationDaoEntity createOperation(Long id, String account,
-                                             BigDecimal debit, BigDecimal credit) {
+                                             Money debit, Money credit) {
     OperationDaoEntity operationDaoEntity = new OperationDaoEntity();
     operationDaoEntity.setId(id);
     operationDaoEntity.setAccountNumber(account);
@@ -433,17 +489,31 @@ public class TransactionServiceTests {
     return operationDaoEntity;
   }
 
-  private List<TransferDaoEntity> transferList() {
-    return LongStream.rangeClosed(0, 9).boxed().map(number -> {
-      TransferDaoEntity entity = new TransferDaoEntity();
-      entity.setId(number);
-      List<Long> operations = new ArrayList<>();
-      operations.add(number * 10 + 1);
-      operations.add(number * 10 + 2);
-      entity.setOperations(operations);
-
-      return entity;
-    }).collect(Collectors.toList());
+  private void givenBatchAccounts() {
+    given(accountService.exists(any())).willReturn(true);
+    given(accountService.exists("99999")).willReturn(false);
+    given(accountService.getByNumber("12345"))
+        .willReturn(Account.builder().number("12345").currency("USD").build());
+    given(accountService.getByNumber("23456"))
+        .willReturn(Account.builder().number("23456").currency("USD").build());
+
+    Map<String, Money> balances = new HashMap<>();
+    balances.put("12345", Money.parse("100"));
+    balances.put("23456", Money.ZERO);
+    given(operationDao.lockAccountBalances(any())).willReturn(balances);
+  }
+
+  // The second transfer overdraws 23456 and the last one has an unknown account
+  private List<TransferOperation> batch() {
+    return Arrays.asList(
+        TransferOperation.builder().accountFrom("12345").accountTo("23456")
+            .amount(Money.parse("60")).build(),
+        TransferOperation.builder().accountFrom("23456").accountTo("12345")
+            .amount(Money.parse("70")).build(),
+        TransferOperation.builder().accountFrom("12345").accountTo("23456")
+            .amount(Money.parse("40")).build(),
+        TransferOperation.builder().accountFrom("12345").accountTo("99999")
+            .amount(Money.parse("1")).build());
   }
 
 }
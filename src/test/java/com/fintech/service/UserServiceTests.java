@@ -15,6 +15,7 @@ import com.fintech.models.User;
 import com.fintech.models.dao.UserDaoEntity;
 import com.fintech.services.UserService;
 import com.fintech.services.impl.DefaultUserService;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -203,10 +204,34 @@ public class UserServiceTests {
         })
         .collect(Collectors.toList());
 
-    given(userDao.findAll(Integer.MAX_VALUE, 0)).willReturn(users);
+    given(userDao.findAllAfter(any(), any())).willReturn(users);
     MatcherAssert.assertThat("Check user list",
         userService.findAll(), hasSize(10));
-    verify(userDao).findAll(any(), any());
+    verify(userDao).findAllAfter(any(), any());
+    verify(userDao, never()).findAll(any(), any());
+  }
+
+  @Test
+  public void findAllPagesSuccessTest() {
+    List<UserDaoEntity> firstPage = IntStream.range(0, 1000)
+        .boxed()
+        .map(number -> {
+          UserDaoEntity entity = new UserDaoEntity();
+          entity.setId(String.format("%04d", number));
+          entity.setFullName("User " + number);
+          return entity;
+        })
+        .collect(Collectors.toList());
+    UserDaoEntity last = new UserDaoEntity();
+    last.setId("1000");
+    last.setFullName("User 1000");
+
+    given(userDao.findAllAfter(null, 1000)).willReturn(firstPage);
+    given(userDao.findAllAfter("0999", 1000)).willReturn(Collections.singletonList(last));
+
+    MatcherAssert.assertThat("Check user list",
+        userService.findAll(), hasSize(1001));
+    verify(userDao, times(2)).findAllAfter(any(), any());
   }
 
   @Test
@@ -1,7 +1,7 @@
 package com.fintech.testutils;
 
 import io.undertow.Undertow;
-import io.undertow.server.RoutingHandler;
+import io.undertow.server.HttpHandler;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.util.Objects;
@@ -14,7 +14,7 @@ public class DefaultUndertowServer {
   private Integer port;
   private Undertow undertow;
 
-  private DefaultUndertowServer(RoutingHandler handler) {
+  private DefaultUndertowServer(HttpHandler handler) {
     port = findFreePort();
 
     undertow = Undertow.builder()
@@ -24,7 +24,7 @@ public class DefaultUndertowServer {
     undertow.start();
   }
 
-  public static DefaultUndertowServer createServer(RoutingHandler handler) {
+  public static DefaultUndertowServer createServer(HttpHandler handler) {
     return new DefaultUndertowServer(handler);
   }
 
@@ -0,0 +1,13 @@
+package com.fintech.testutils;
+
+import com.fintech.dao.TransactionManager;
+import java.util.function.Supplier;
+
+public class DirectTransactionManager implements TransactionManager {
+
+  @Override
+  public <T> T inTransaction(Supplier<T> work) {
+    return work.get();
+  }
+
+}
@@ -5,6 +5,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
 import org.apache.http.HttpEntity;
 
 public class HttpUtils {
@@ -21,6 +23,18 @@ public class HttpUtils {
     return gson.fromJson(readBodyAsString(httpEntity), type);
   }
 
+  public static <T> List<T> readLines(HttpEntity httpEntity, Class<T> clazz) throws IOException {
+    Gson gson = new Gson();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(httpEntity.getContent()));
+
+    List<T> values = new ArrayList<>();
+    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+      values.add(gson.fromJson(line, clazz));
+    }
+
+    return values;
+  }
+
   public static String readBodyAsString(HttpEntity httpEntity) throws IOException {
     BufferedReader reader = new BufferedReader(new InputStreamReader(httpEntity.getContent()));
 
@@ -0,0 +1,41 @@
+package com.fintech.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class ConfigTests {
+
+  @Test
+  public void environmentNameTest() {
+    Assert.assertEquals("DISPATCH_THREADS", Config.environmentName("dispatch.threads"));
+    Assert.assertEquals("TRANSFERS_GROUP_COMMIT_MAX_BATCH",
+        Config.environmentName("transfers.group-commit.max-batch"));
+    Assert.assertEquals("DB_QUERY_TIMEOUT_SECONDS",
+        Config.environmentName("db.query-timeout-seconds"));
+  }
+
+  @Test
+  public void propertyTest() {
+    System.setProperty("config.test-value", "7");
+    try {
+      Assert.assertEquals(7, Config.getInt("config.test-value", 1));
+      Assert.assertEquals(1, Config.getInt("config.missing-value", 1));
+    } finally {
+      System.clearProperty("config.test-value");
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void wrongIntTest() {
+    System.setProperty("config.test-value", "seven");
+    try {
+      Config.getInt("config.test-value", 1);
+    } finally {
+      System.clearProperty("config.test-value");
+    }
+  }
+
+}
@@ -0,0 +1,20 @@
+package com.fintech.utils;
+
+import com.fintech.models.Money;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+
+/**
+ * Gson reference encoding of {@link Money}, used to check the hand written codecs against.
+ */
+public class MoneyAdapter implements JsonSerializer<Money> {
+
+  public JsonElement serialize(Money money,
+                               Type typeOfSrc, JsonSerializationContext context) {
+    return new JsonPrimitive(new BigDecimal(money.toString()));
+  }
+}
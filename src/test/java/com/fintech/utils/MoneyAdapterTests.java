@@ -0,0 +1,21 @@
+package com.fintech.utils;
+
+import com.fintech.models.Money;
+import com.google.gson.JsonSerializer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class MoneyAdapterTests {
+
+  private JsonSerializer<Money> adapter = new MoneyAdapter();
+
+  @Test
+  public void serialize_SuccessTest() {
+    Assert.assertEquals("12.5", adapter.serialize(Money.of(1250), null, null).toString());
+    Assert.assertEquals("100.0", adapter.serialize(Money.of(10000), null, null).toString());
+  }
+
+}